@@ -81,6 +81,11 @@ public class Activity {
      */
     public static final int REMOVE_LINK = 14;
 
+    /**
+     * Id of the log entry.
+     */
+    private int logId;
+
     /**
      * Path of the resource on which the action is performed.
      */
@@ -106,6 +111,24 @@ public class Activity {
      */
     private String actionData;
 
+    /**
+     * Method to get the id of the log entry.
+     *
+     * @return the id, or 0 if it was not read with the log entry.
+     */
+    public int getLogId() {
+        return logId;
+    }
+
+    /**
+     * Method to set the id of the log entry.
+     *
+     * @param logId the id
+     */
+    public void setLogId(int logId) {
+        this.logId = logId;
+    }
+
     /**
      * Get the resource path of the log entry.
      *
@@ -252,6 +252,20 @@ public interface Resource {
      */
     InputStream getContentStream() throws RepositoryException;
 
+    /**
+     * Method to get a range of the content as a stream. If the content of the resource has not been
+     * loaded, as for resources obtained through {@link Repository#getMetaData(String)}, only the
+     * requested range is read from the database.
+     *
+     * @param offset the position of the first byte to read.
+     * @param length the maximum number of bytes to read, or -1 to read up to the end.
+     *
+     * @return the range of the content as an input stream, which is empty if the offset is beyond
+     *         the end of the content.
+     * @throws RepositoryException throws if the operation fail.
+     */
+    InputStream getContentStream(long offset, long length) throws RepositoryException;
+
     /**
      * Method to set the content stream.
      *
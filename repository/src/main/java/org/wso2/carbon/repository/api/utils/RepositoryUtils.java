@@ -111,6 +111,77 @@ public final class RepositoryUtils {
         return new ByteArrayInputStream(getByteArray(inputStream));
     }
 
+    /**
+     * Create an in-memory input stream for a range of the given input stream. Only the bytes of the
+     * range are kept in memory. The given input stream is closed after completing this method.
+     *
+     * @param inputStream the input stream.
+     * @param offset      the number of bytes to skip.
+     * @param length      the maximum number of bytes to read, or -1 to read up to the end.
+     *
+     * @return the in-memory input stream, which is empty if the offset is beyond the end of the
+     *         input stream.
+     * @throws RepositoryException if the operation failed.
+     */
+    public static InputStream getMemoryStream(InputStream inputStream, long offset, long length)
+            throws RepositoryException {
+        if (offset < 0 || length < -1) {
+            String msg = "Invalid content range, offset: " + offset + ", length: " + length + ".";
+            log.error(msg);
+            throw new RepositoryUserContentException(msg);
+        }
+
+        if (offset == 0 && length == -1) {
+            return getMemoryStream(inputStream);
+        }
+
+        if (inputStream == null) {
+            String msg = "Could not create memory based content for null input stream.";
+            log.error(msg);
+            throw new RepositoryUserContentException(msg);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            long remaining = offset;
+            while (remaining > 0) {
+                long skipped = inputStream.skip(remaining);
+                if (skipped <= 0) {
+                    // some streams do not skip, so fall back to reading a byte at a time.
+                    if (inputStream.read() == -1) {
+                        return new ByteArrayInputStream(new byte[0]);
+                    }
+                    skipped = 1;
+                }
+                remaining -= skipped;
+            }
+
+            byte[] contentChunk = new byte[RepositoryConstants.DEFAULT_BUFFER_SIZE];
+            remaining = (length == -1) ? Long.MAX_VALUE : length;
+            int byteCount;
+            while (remaining > 0 && (byteCount = inputStream.read(contentChunk, 0,
+                    (int) Math.min(contentChunk.length, remaining))) != -1) {
+                out.write(contentChunk, 0, byteCount);
+                remaining -= byteCount;
+            }
+
+            return new ByteArrayInputStream(out.toByteArray());
+
+        } catch (IOException e) {
+            String msg = "Failed to read the content range in to a byte array. " + e.getMessage();
+            log.error(msg, e);
+            throw new RepositoryUserContentException(msg, e);
+        } finally {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                String msg = "Failed to close streams used for creating memory stream. "
+                        + e.getMessage();
+                log.error(msg, e);
+            }
+        }
+    }
+
     /**
      * Method to obtain the parent path of the given resource path.
      *
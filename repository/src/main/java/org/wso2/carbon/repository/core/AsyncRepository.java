@@ -0,0 +1,401 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.repository.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.repository.api.Collection;
+import org.wso2.carbon.repository.api.Repository;
+import org.wso2.carbon.repository.api.Resource;
+import org.wso2.carbon.repository.core.config.DataBaseConfiguration;
+import org.wso2.carbon.repository.core.config.RepositoryContext;
+
+/**
+ * Runs operations of a {@link Repository}, typically an {@link EmbeddedRepository}, on worker
+ * threads and returns their results as {@link Future}s.
+ * <p/>
+ * At most a fixed number of operations run at the same time. By default this is half the maximum
+ * number of active connections of the repository database pool, which leaves the other half to
+ * synchronous callers. Operations submitted beyond the limit are queued, and handed to the
+ * executor in order as earlier operations end, so that neither the callers nor the threads of the
+ * executor wait for one another. Each operation captures the {@link CurrentContext} of the
+ * submitting thread and runs under it on the worker.
+ * <p/>
+ * Transactions are bound to the thread that runs them, so every operation executes in its own
+ * transaction on the worker. Work that must be atomic should be submitted as a single task
+ * through {@link #submit(Callable)}.
+ */
+public class AsyncRepository {
+
+    private static final Log log = LogFactory.getLog(AsyncRepository.class);
+
+    private static final AtomicInteger poolCount = new AtomicInteger();
+
+    private final Repository repository;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final Queue<Operation<?>> queue = new ConcurrentLinkedQueue<Operation<?>>();
+    private final boolean ownsExecutor;
+
+    // An operation waiting for a permit, which fails if the executor does not accept it.
+    private static final class Operation<T> extends FutureTask<T> {
+
+        private Operation(Callable<T> callable) {
+            super(callable);
+        }
+
+        private void reject(RejectedExecutionException e) {
+            setException(e);
+        }
+    }
+
+    /**
+     * Creates an asynchronous repository with its own worker threads. The number of workers and
+     * concurrent operations is derived from the size of the database pool.
+     *
+     * @param repository the repository to run operations on.
+     */
+    public AsyncRepository(Repository repository) {
+        this(repository, getDefaultConcurrency());
+    }
+
+    /**
+     * Creates an asynchronous repository with its own worker threads.
+     *
+     * @param repository     the repository to run operations on.
+     * @param maxConcurrency the maximum number of operations that run at the same time.
+     */
+    public AsyncRepository(Repository repository, int maxConcurrency) {
+        this(repository, createExecutor(maxConcurrency), maxConcurrency, true);
+    }
+
+    /**
+     * Creates an asynchronous repository that runs operations on the given executor. The executor
+     * is not shut down by {@link #shutdown()}.
+     *
+     * @param repository     the repository to run operations on.
+     * @param executor       the executor to run operations on.
+     * @param maxConcurrency the maximum number of operations that run at the same time, regardless
+     *                       of the number of threads of the executor.
+     */
+    public AsyncRepository(Repository repository, ExecutorService executor, int maxConcurrency) {
+        this(repository, executor, maxConcurrency, false);
+    }
+
+    private AsyncRepository(Repository repository, ExecutorService executor, int maxConcurrency, boolean ownsExecutor) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("The maximum concurrency must be positive: " + maxConcurrency);
+        }
+
+        this.repository = repository;
+        this.executor = executor;
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Method to obtain the underlying repository.
+     *
+     * @return the repository operations are run on.
+     */
+    public Repository getRepository() {
+        return repository;
+    }
+
+    /**
+     * Method to run an arbitrary unit of work under the caller's context, subject to the
+     * concurrency limit. The work is queued until a permit is free, without holding the caller or
+     * a thread of the executor.
+     *
+     * @param task the work to run.
+     *
+     * @return the future result of the work, which fails with a {@link RejectedExecutionException}
+     *         if the executor does not accept the work once a permit is free.
+     * @throws RejectedExecutionException if the executor has been shut down.
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("The asynchronous repository has been shut down.");
+        }
+
+        Operation<T> operation = new Operation<T>(CurrentContext.wrap(task));
+        queue.add(operation);
+        dispatch();
+
+        return operation;
+    }
+
+    /**
+     * Method to fetch a resource asynchronously.
+     *
+     * @param path the path of the resource.
+     *
+     * @return the future resource.
+     * @see Repository#get(String)
+     */
+    public Future<Resource> get(final String path) {
+        return submit(new Callable<Resource>() {
+            public Resource call() throws Exception {
+                return repository.get(path);
+            }
+        });
+    }
+
+    /**
+     * Method to fetch a page of a collection asynchronously.
+     *
+     * @param path     the path of the collection.
+     * @param start    the index of the first child to fetch.
+     * @param pageSize the number of children to fetch.
+     *
+     * @return the future collection.
+     * @see Repository#get(String, int, int)
+     */
+    public Future<Collection> get(final String path, final int start, final int pageSize) {
+        return submit(new Callable<Collection>() {
+            public Collection call() throws Exception {
+                return repository.get(path, start, pageSize);
+            }
+        });
+    }
+
+    /**
+     * Method to fetch many resources concurrently. The returned futures are in the order of the
+     * given paths.
+     *
+     * @param paths the paths of the resources.
+     *
+     * @return the list of future resources.
+     */
+    public List<Future<Resource>> getAll(List<String> paths) {
+        List<Future<Resource>> futures = new ArrayList<Future<Resource>>(paths.size());
+
+        for (String path : paths) {
+            futures.add(get(path));
+        }
+
+        return futures;
+    }
+
+    /**
+     * Method to fetch the meta data of a resource asynchronously.
+     *
+     * @param path the path of the resource.
+     *
+     * @return the future resource, without content.
+     * @see Repository#getMetaData(String)
+     */
+    public Future<Resource> getMetaData(final String path) {
+        return submit(new Callable<Resource>() {
+            public Resource call() throws Exception {
+                return repository.getMetaData(path);
+            }
+        });
+    }
+
+    /**
+     * Method to check the existence of a resource asynchronously.
+     *
+     * @param path the path of the resource.
+     *
+     * @return the future existence flag.
+     * @see Repository#resourceExists(String)
+     */
+    public Future<Boolean> resourceExists(final String path) {
+        return submit(new Callable<Boolean>() {
+            public Boolean call() throws Exception {
+                return repository.resourceExists(path);
+            }
+        });
+    }
+
+    /**
+     * Method to add or update a resource asynchronously.
+     *
+     * @param suggestedPath the path to store the resource at.
+     * @param resource      the resource to store.
+     *
+     * @return the future actual path of the resource.
+     * @see Repository#put(String, Resource)
+     */
+    public Future<String> put(final String suggestedPath, final Resource resource) {
+        return submit(new Callable<String>() {
+            public String call() throws Exception {
+                return repository.put(suggestedPath, resource);
+            }
+        });
+    }
+
+    /**
+     * Method to delete a resource asynchronously.
+     *
+     * @param path the path of the resource.
+     *
+     * @return a future that completes when the resource is deleted.
+     * @see Repository#delete(String)
+     */
+    public Future<Void> delete(final String path) {
+        return submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                repository.delete(path);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Method to move a resource asynchronously.
+     *
+     * @param currentPath the current path of the resource.
+     * @param newPath     the new path of the resource.
+     *
+     * @return the future actual new path.
+     * @see Repository#move(String, String)
+     */
+    public Future<String> move(final String currentPath, final String newPath) {
+        return submit(new Callable<String>() {
+            public String call() throws Exception {
+                return repository.move(currentPath, newPath);
+            }
+        });
+    }
+
+    /**
+     * Method to copy a resource asynchronously.
+     *
+     * @param sourcePath the path of the resource to copy.
+     * @param targetPath the path of the copy.
+     *
+     * @return the future actual target path.
+     * @see Repository#copy(String, String)
+     */
+    public Future<String> copy(final String sourcePath, final String targetPath) {
+        return submit(new Callable<String>() {
+            public String call() throws Exception {
+                return repository.copy(sourcePath, targetPath);
+            }
+        });
+    }
+
+    /**
+     * Method to execute a query asynchronously.
+     *
+     * @param path       the path of the stored query.
+     * @param parameters the query parameters.
+     *
+     * @return the future result collection.
+     * @see Repository#executeQuery(String, Map)
+     */
+    public Future<Collection> executeQuery(final String path, final Map<?, ?> parameters) {
+        return submit(new Callable<Collection>() {
+            public Collection call() throws Exception {
+                return repository.executeQuery(path, parameters);
+            }
+        });
+    }
+
+    /**
+     * Method to stop accepting operations. Operations already submitted still run. Executors
+     * passed in by the caller are left running.
+     */
+    public void shutdown() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    // Hands queued operations to the executor while permits are free. It is called after an
+    // operation is queued and after one ends, so that no operation is left waiting for a free permit.
+    private void dispatch() {
+        while (!queue.isEmpty() && permits.tryAcquire()) {
+            final Operation<?> operation = queue.poll();
+
+            if (operation == null) {
+                permits.release();
+                continue;
+            }
+
+            try {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            // a cancelled operation returns at once, and a running one only once
+                            // its work has ended, even if it was interrupted.
+                            operation.run();
+                        } finally {
+                            permits.release();
+                            dispatch();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                operation.reject(e);
+            }
+        }
+    }
+
+    // Half the database pool, and at least one.
+    private static int getDefaultConcurrency() {
+        int maxActive = DatabaseConstants.DEFAULT_MAX_ACTIVE;
+        RepositoryContext repositoryContext = RepositoryContext.getBaseInstance();
+
+        if (repositoryContext != null) {
+            DataBaseConfiguration dbConfiguration = repositoryContext.getDefaultDataBaseConfiguration();
+
+            if (dbConfiguration != null && dbConfiguration.getMaxActive() != null) {
+                try {
+                    maxActive = Integer.parseInt(dbConfiguration.getMaxActive().trim());
+                } catch (NumberFormatException e) {
+                    log.warn("Invalid maxActive value in the database configuration: " +
+                            dbConfiguration.getMaxActive() + ". Using the default.");
+                }
+            }
+        }
+
+        return Math.max(1, maxActive / 2);
+    }
+
+    private static ExecutorService createExecutor(int threads) {
+        final int poolId = poolCount.incrementAndGet();
+
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "AsyncRepository-" + poolId + "-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
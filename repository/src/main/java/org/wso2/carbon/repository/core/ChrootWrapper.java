@@ -29,6 +29,7 @@ import org.wso2.carbon.repository.api.Collection;
 import org.wso2.carbon.repository.api.RepositoryConstants;
 import org.wso2.carbon.repository.api.Resource;
 import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.core.jdbc.dataaccess.QueryResultCollection;
 
 /**
  * Class providing the chroot related functionality. The instance of this is used by the
@@ -242,6 +243,12 @@ public class ChrootWrapper {
         if (basePrefix == null || basePrefix.length() == 0) {
             return collection;
         }
+
+        if (collection instanceof QueryResultCollection) {
+            // the results are filtered as they are read, without reading all of them here.
+            ((QueryResultCollection) collection).setChrootWrapper(this);
+            return collection;
+        }
         
         String[] results = collection.getChildPaths();
         
@@ -274,6 +281,11 @@ public class ChrootWrapper {
         if (basePrefix == null || basePrefix.length() == 0) {
             return;
         }
+
+        if (collection instanceof QueryResultCollection) {
+            ((QueryResultCollection) collection).setChrootWrapper(this);
+            return;
+        }
         
         Object content = collection.getContent();
         
@@ -16,10 +16,8 @@
 
 package org.wso2.carbon.repository.core;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashSet;
-import java.util.List;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
@@ -31,6 +29,7 @@ import org.wso2.carbon.repository.api.exceptions.RepositoryException;
 import org.wso2.carbon.repository.core.dataobjects.ResourceDO;
 import org.wso2.carbon.repository.core.exceptions.RepositoryServerException;
 import org.wso2.carbon.repository.core.internal.RepositoryServiceComponent;
+import org.wso2.carbon.repository.core.utils.InternalUtils;
 
 /**
  * The default registry implementation of the Collection interface.
@@ -211,16 +210,10 @@ public class CollectionImpl extends ResourceImpl implements Collection {
      */  
     public Resource[] getChildren() throws RepositoryException {
     	String[] childPaths = getChildPaths();
-    	
-    	List<Resource> resources = new ArrayList<Resource>();
     	Repository repository = RepositoryServiceComponent.getRepositoryService().getRepository();
     	
-    	for(String childPath : childPaths) {
-    		resources.add(repository.get(childPath));
-    	}
-    	
-    	Resource[] resourceArray = resources.toArray(new ResourceImpl[resources.size()]);
-    	return resourceArray ;
+    	Resource[] resources = InternalUtils.getResources(repository, childPaths);
+    	return Arrays.asList(resources).toArray(new ResourceImpl[resources.length]);
     }
 
     /**
@@ -281,16 +274,10 @@ public class CollectionImpl extends ResourceImpl implements Collection {
      */   
     public Resource[] getChildren(int start, int num) throws RepositoryException {
     	String[] childPaths = getChildPaths(start, num);
-    	
-    	List<Resource> resources = new ArrayList<Resource>();
     	Repository repository = RepositoryServiceComponent.getRepositoryService().getRepository();
     	
-    	for(String childPath : childPaths) {
-    		resources.add(repository.get(childPath));
-    	}
-    	
-    	Resource[] resourceArray = resources.toArray(new ResourceImpl[resources.size()]);
-    	return resourceArray ;
+    	Resource[] resources = InternalUtils.getResources(repository, childPaths);
+    	return Arrays.asList(resources).toArray(new ResourceImpl[resources.length]);
     }
 
     /**
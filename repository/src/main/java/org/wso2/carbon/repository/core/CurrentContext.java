@@ -16,66 +16,202 @@
 
 package org.wso2.carbon.repository.core;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Stack;
+import java.util.concurrent.Callable;
 
 import org.wso2.carbon.repository.api.Repository;
+import org.wso2.carbon.repository.core.tracing.Span;
 
 /**
  * A class to keep track of the session associated with a registry operation. This session values
  * are only valid inside it is call tree that root any operation go trough user registry.
+ * <p/>
+ * The session of a thread is a single immutable {@link Frame}. Each set or remove replaces the
+ * frame of the current thread with a new one, and each value keeps its own stack of previous
+ * values within the frame, so the set and remove methods keep their push and pop behaviour. As
+ * frames are never modified, a frame obtained through {@link #capture()} can be handed to another
+ * thread and installed there with {@link #attach(Frame)}.
  */
 public final class CurrentContext {
 
     private CurrentContext() {
     }
 
-    private static ThreadLocal<Stack<String>> tUserIdStack = new ThreadLocal<Stack<String>>() {
-        protected Stack<String> initialValue() {
-            return new Stack<String>();
+    private static final Frame EMPTY_FRAME = new Frame(null, null, null, null, null, null, null,
+            Collections.<String, Object>emptyMap());
+
+    private static ThreadLocal<Frame> tFrame = new ThreadLocal<Frame>() {
+        protected Frame initialValue() {
+            return EMPTY_FRAME;
         }
     };
 
-    private static ThreadLocal<Stack<Integer>> tTenantIdStack = new ThreadLocal<Stack<Integer>>() {
-        protected Stack<Integer> initialValue() {
-            return new Stack<Integer>();
+    // An immutable stack of values. A null node is an empty stack.
+    private static final class Node<T> {
+
+        private final T value;
+        private final Node<T> next;
+
+        private Node(T value, Node<T> next) {
+            this.value = value;
+            this.next = next;
         }
-    };
 
-    private static ThreadLocal<Stack<Integer>> tCallerTenantIdStack =
-            new ThreadLocal<Stack<Integer>>() {
-                protected Stack<Integer> initialValue() {
-                    return new Stack<Integer>();
-                }
-            };
+        private static <T> T peek(Node<T> node) {
+            return node == null ? null : node.value;
+        }
 
-    private static ThreadLocal<Stack<String>> tChrootStack = new ThreadLocal<Stack<String>>() {
-        protected Stack<String> initialValue() {
-            return new Stack<String>();
+        private static <T> Node<T> pop(Node<T> node) {
+            return node == null ? null : node.next;
         }
-    };
+    }
 
-    private static ThreadLocal<Stack<Repository>> tRepositoryStack =
-            new ThreadLocal<Stack<Repository>>() {
-                protected Stack<Repository> initialValue() {
-                    return new Stack<Repository>();
-                }
-            };
+    /**
+     * The immutable session state of a registry operation.
+     */
+    public static final class Frame {
+
+        private final Node<String> users;
+        private final Node<Integer> tenantIds;
+        private final Node<Integer> callerTenantIds;
+        private final Node<String> chroots;
+        private final Node<Repository> repositories;
+        private final Node<Map<String, String>> localPathMaps;
+        private final Node<Span> spans;
+        private final Map<String, Object> attributes;
+
+        private Frame(Node<String> users, Node<Integer> tenantIds, Node<Integer> callerTenantIds,
+                      Node<String> chroots, Node<Repository> repositories,
+                      Node<Map<String, String>> localPathMaps, Node<Span> spans,
+                      Map<String, Object> attributes) {
+            this.users = users;
+            this.tenantIds = tenantIds;
+            this.callerTenantIds = callerTenantIds;
+            this.chroots = chroots;
+            this.repositories = repositories;
+            this.localPathMaps = localPathMaps;
+            this.spans = spans;
+            this.attributes = attributes;
+        }
+
+        private Frame withUsers(Node<String> users) {
+            return new Frame(users, tenantIds, callerTenantIds, chroots, repositories, localPathMaps, spans, attributes);
+        }
+
+        private Frame withTenantIds(Node<Integer> tenantIds) {
+            return new Frame(users, tenantIds, callerTenantIds, chroots, repositories, localPathMaps, spans, attributes);
+        }
+
+        private Frame withCallerTenantIds(Node<Integer> callerTenantIds) {
+            return new Frame(users, tenantIds, callerTenantIds, chroots, repositories, localPathMaps, spans, attributes);
+        }
+
+        private Frame withChroots(Node<String> chroots) {
+            return new Frame(users, tenantIds, callerTenantIds, chroots, repositories, localPathMaps, spans, attributes);
+        }
+
+        private Frame withRepositories(Node<Repository> repositories) {
+            return new Frame(users, tenantIds, callerTenantIds, chroots, repositories, localPathMaps, spans, attributes);
+        }
+
+        private Frame withLocalPathMaps(Node<Map<String, String>> localPathMaps) {
+            return new Frame(users, tenantIds, callerTenantIds, chroots, repositories, localPathMaps, spans, attributes);
+        }
+
+        private Frame withSpans(Node<Span> spans) {
+            return new Frame(users, tenantIds, callerTenantIds, chroots, repositories, localPathMaps, spans, attributes);
+        }
+
+        private Frame withAttributes(Map<String, Object> attributes) {
+            return new Frame(users, tenantIds, callerTenantIds, chroots, repositories, localPathMaps, spans, attributes);
+        }
+    }
+
+    /**
+     * Method to obtain the session of the current thread, to be attached to another thread.
+     *
+     * @return the session frame of the current thread.
+     */
+    public static Frame capture() {
+        return tFrame.get();
+    }
 
-    private static ThreadLocal<Stack<Map<String, String>>> tLocalPathMapStack =
-            new ThreadLocal<Stack<Map<String, String>>>() {
-                protected Stack<Map<String, String>> initialValue() {
-                    return new Stack<Map<String, String>>();
+    /**
+     * Method to make the given session the session of the current thread. The returned frame must
+     * be passed to {@link #restore(Frame)} once the work done under the session completes.
+     *
+     * @param frame the session frame obtained through {@link #capture()}.
+     *
+     * @return the session frame that was replaced.
+     */
+    public static Frame attach(Frame frame) {
+        Frame previous = tFrame.get();
+        tFrame.set(frame != null ? frame : EMPTY_FRAME);
+        return previous;
+    }
+
+    /**
+     * Method to restore the session that was replaced by {@link #attach(Frame)}.
+     *
+     * @param previous the session frame returned by {@link #attach(Frame)}.
+     */
+    public static void restore(Frame previous) {
+        if (previous == null || previous == EMPTY_FRAME) {
+            tFrame.remove();
+        } else {
+            tFrame.set(previous);
+        }
+    }
+
+    /**
+     * Method to wrap a task so that it runs under the session of the calling thread, regardless of
+     * the thread that executes it.
+     *
+     * @param task the task to wrap.
+     *
+     * @return the wrapped task.
+     */
+    public static Runnable wrap(final Runnable task) {
+        final Frame frame = capture();
+
+        return new Runnable() {
+            public void run() {
+                Frame previous = attach(frame);
+
+                try {
+                    task.run();
+                } finally {
+                    restore(previous);
                 }
-            };
+            }
+        };
+    }
 
-    private static ThreadLocal<Map<String, Object>> tAttributes =
-            new ThreadLocal<Map<String, Object>>() {
-                protected Map<String, Object> initialValue() {
-                    return new HashMap<String, Object>();
+    /**
+     * Method to wrap a task so that it runs under the session of the calling thread, regardless of
+     * the thread that executes it.
+     *
+     * @param task the task to wrap.
+     *
+     * @return the wrapped task.
+     */
+    public static <T> Callable<T> wrap(final Callable<T> task) {
+        final Frame frame = capture();
+
+        return new Callable<T>() {
+            public T call() throws Exception {
+                Frame previous = attach(frame);
+
+                try {
+                    return task.call();
+                } finally {
+                    restore(previous);
                 }
-            };
+            }
+        };
+    }
 
     /**
      * Methods that abstract the set and get of the stack values of user realm.
@@ -83,18 +219,7 @@ public final class CurrentContext {
      * @return the current associated with the session.
      */
     public static String getUser() {
-        Stack<String> userStack = tUserIdStack.get();
-        
-        if (userStack == null) {
-            tUserIdStack.remove();
-            userStack = tUserIdStack.get();
-        }
-        
-        if (userStack.isEmpty()) {
-            return null;
-        }
-        
-        return userStack.peek();
+        return Node.peek(tFrame.get().users);
     }
 
     /**
@@ -103,24 +228,18 @@ public final class CurrentContext {
      * @param userID the id of th user
      */
     public static void setUser(String userID) {
-        Stack<String> userStack = tUserIdStack.get();
-        
-        if (userStack == null) {
-            tUserIdStack.remove();
-            userStack = tUserIdStack.get();
-        }
-        
-        userStack.push(userID);
+        Frame frame = tFrame.get();
+        tFrame.set(frame.withUsers(new Node<String>(userID, frame.users)));
     }
 
     /**
      * Remove the user from the session stack.
      */
     public static void removeUser() {
-        Stack<String> userStack = tUserIdStack.get();
-        
-        if (userStack != null && !userStack.isEmpty()) {
-            userStack.pop();
+        Frame frame = tFrame.get();
+
+        if (frame.users != null) {
+            tFrame.set(frame.withUsers(Node.pop(frame.users)));
         }
     }
 
@@ -130,18 +249,13 @@ public final class CurrentContext {
      * @return the tenant id associated with the session.
      */
     public static int getTenantId() {
-        Stack<Integer> tenantIdStack = tTenantIdStack.get();
-        
-        if (tenantIdStack == null) {
-            tTenantIdStack.remove();
-            tenantIdStack = tTenantIdStack.get();
-        }
-        
-        if (tenantIdStack.isEmpty()) {
+        Node<Integer> tenantIds = tFrame.get().tenantIds;
+
+        if (tenantIds == null) {
             return -1;
         }
-        
-        return tenantIdStack.peek();
+
+        return tenantIds.value;
     }
 
     /**
@@ -150,24 +264,18 @@ public final class CurrentContext {
      * @param tenantId the tenant id.
      */
     public static void setTenantId(int tenantId) {
-        Stack<Integer> tenantIdStack = tTenantIdStack.get();
-        
-        if (tenantIdStack == null) {
-            tTenantIdStack.remove();
-            tenantIdStack = tTenantIdStack.get();
-        }
-        
-        tenantIdStack.push(tenantId);
+        Frame frame = tFrame.get();
+        tFrame.set(frame.withTenantIds(new Node<Integer>(tenantId, frame.tenantIds)));
     }
 
     /**
      * Remove the tenant id from the session stack.
      */
     public static void removeTenantId() {
-        Stack<Integer> tenantIdStack = tTenantIdStack.get();
-        
-        if (tenantIdStack != null && !tenantIdStack.isEmpty()) {
-            tenantIdStack.pop();
+        Frame frame = tFrame.get();
+
+        if (frame.tenantIds != null) {
+            tFrame.set(frame.withTenantIds(Node.pop(frame.tenantIds)));
         }
     }
 
@@ -177,18 +285,13 @@ public final class CurrentContext {
      * @return the callers tenant id associated with the session.
      */
     public static int getCallerTenantId() {
-        Stack<Integer> tenantIdStack = tCallerTenantIdStack.get();
-        
-        if (tenantIdStack == null) {
-            tCallerTenantIdStack.remove();
-            tenantIdStack = tCallerTenantIdStack.get();
-        }
-        
-        if (tenantIdStack.isEmpty()) {
+        Node<Integer> callerTenantIds = tFrame.get().callerTenantIds;
+
+        if (callerTenantIds == null) {
             return -1;
         }
-        
-        return tenantIdStack.peek();
+
+        return callerTenantIds.value;
     }
 
     /**
@@ -197,24 +300,18 @@ public final class CurrentContext {
      * @param callerTenantId the callers tenant id
      */
     public static void setCallerTenantId(int callerTenantId) {
-        Stack<Integer> tenantIdStack = tCallerTenantIdStack.get();
-        
-        if (tenantIdStack == null) {
-            tCallerTenantIdStack.remove();
-            tenantIdStack = tCallerTenantIdStack.get();
-        }
-        
-        tenantIdStack.push(callerTenantId);
+        Frame frame = tFrame.get();
+        tFrame.set(frame.withCallerTenantIds(new Node<Integer>(callerTenantId, frame.callerTenantIds)));
     }
 
     /**
      * Remove the callers tenant id from the session stack.
      */
     public static void removeCallerTenantId() {
-        Stack<Integer> tenantIdStack = tCallerTenantIdStack.get();
-        
-        if (tenantIdStack != null && !tenantIdStack.isEmpty()) {
-            tenantIdStack.pop();
+        Frame frame = tFrame.get();
+
+        if (frame.callerTenantIds != null) {
+            tFrame.set(frame.withCallerTenantIds(Node.pop(frame.callerTenantIds)));
         }
     }
 
@@ -224,18 +321,7 @@ public final class CurrentContext {
      * @return the chroot associated with the session.
      */
     public static String getChroot() {
-        Stack<String> chrootStack = tChrootStack.get();
-        
-        if (chrootStack == null) {
-            tChrootStack.remove();
-            chrootStack = tChrootStack.get();
-        }
-        
-        if (chrootStack.isEmpty()) {
-            return null;
-        }
-        
-        return chrootStack.peek();
+        return Node.peek(tFrame.get().chroots);
     }
 
     /**
@@ -244,24 +330,18 @@ public final class CurrentContext {
      * @param chroot the chroot.
      */
     public static void setChroot(String chroot) {
-        Stack<String> chrootStack = tChrootStack.get();
-        
-        if (chrootStack == null) {
-            tChrootStack.remove();
-            chrootStack = tChrootStack.get();
-        }
-        
-        chrootStack.push(chroot);
+        Frame frame = tFrame.get();
+        tFrame.set(frame.withChroots(new Node<String>(chroot, frame.chroots)));
     }
 
     /**
      * Remove the chroot from the session stack.
      */
     public static void removeChroot() {
-        Stack<String> chrootStack = tChrootStack.get();
-        
-        if (chrootStack != null && !chrootStack.isEmpty()) {
-            chrootStack.pop();
+        Frame frame = tFrame.get();
+
+        if (frame.chroots != null) {
+            tFrame.set(frame.withChroots(Node.pop(frame.chroots)));
         }
     }
 
@@ -271,18 +351,7 @@ public final class CurrentContext {
      * @return the user repository associated with the context.
      */
     public static Repository getRespository() {
-        Stack<Repository> repositoryStack = tRepositoryStack.get();
-        
-        if (repositoryStack == null) {
-            tRepositoryStack.remove();
-            repositoryStack = tRepositoryStack.get();
-        }
-        
-        if (repositoryStack.isEmpty()) {
-            return null;
-        }
-        
-        return repositoryStack.peek();
+        return Node.peek(tFrame.get().repositories);
     }
 
     /**
@@ -291,24 +360,18 @@ public final class CurrentContext {
      * @param userRegistry the user registry.
      */
     public static void setUserRegistry(Repository userRegistry) {
-        Stack<Repository> userRegistryStack = tRepositoryStack.get();
-        
-        if (userRegistryStack == null) {
-            tRepositoryStack.remove();
-            userRegistryStack = tRepositoryStack.get();
-        }
-        
-        userRegistryStack.push(userRegistry);
+        Frame frame = tFrame.get();
+        tFrame.set(frame.withRepositories(new Node<Repository>(userRegistry, frame.repositories)));
     }
 
     /**
      * Remove the user registry from the session stack.
      */
     public static void removeUserRegistry() {
-        Stack<Repository> userRegistryStack = tRepositoryStack.get();
-        
-        if (userRegistryStack != null && !userRegistryStack.isEmpty()) {
-            userRegistryStack.pop();
+        Frame frame = tFrame.get();
+
+        if (frame.repositories != null) {
+            tFrame.set(frame.withRepositories(Node.pop(frame.repositories)));
         }
     }
 
@@ -318,18 +381,7 @@ public final class CurrentContext {
      * @return the local path map associated with the session.
      */
     public static Map<String, String> getLocalPathMap() {
-        Stack<Map<String, String>> localPathMapStack = tLocalPathMapStack.get();
-        
-        if (localPathMapStack == null) {
-            tLocalPathMapStack.remove();
-            localPathMapStack = tLocalPathMapStack.get();
-        }
-        
-        if (localPathMapStack.isEmpty()) {
-            return null;
-        }
-        
-        return localPathMapStack.peek();
+        return Node.peek(tFrame.get().localPathMaps);
     }
 
     /**
@@ -338,28 +390,52 @@ public final class CurrentContext {
      * @param localPathMap the local path map.
      */
     public static void setLocalPathMap(Map<String, String> localPathMap) {
-        Stack<Map<String, String>> localPathMapStack = tLocalPathMapStack.get();
-        
-        if (localPathMapStack == null) {
-            tLocalPathMapStack.remove();
-            localPathMapStack = tLocalPathMapStack.get();
-        }
-        
-        localPathMapStack.push(localPathMap);
+        Frame frame = tFrame.get();
+        tFrame.set(frame.withLocalPathMaps(new Node<Map<String, String>>(localPathMap, frame.localPathMaps)));
     }
 
     /**
      * Remove the local path map from the session stack.
      */
     public static void removeLocalPathMap() {
-        Stack<Map<String, String>> localPathMapStack = tLocalPathMapStack.get();
-        
-        if (localPathMapStack != null && !localPathMapStack.isEmpty()) {
-            localPathMapStack.pop();
+        Frame frame = tFrame.get();
+
+        if (frame.localPathMaps != null) {
+            tFrame.set(frame.withLocalPathMaps(Node.pop(frame.localPathMaps)));
         }
     }
 
 
+    /**
+     * Methods that abstract the set and get of the stack values.
+     *
+     * @return the trace span of the operation being run, or null if it is not traced.
+     */
+    public static Span getSpan() {
+        return Node.peek(tFrame.get().spans);
+    }
+
+    /**
+     * Inserting the trace span to the session stack.
+     *
+     * @param span the trace span, which may be null.
+     */
+    public static void setSpan(Span span) {
+        Frame frame = tFrame.get();
+        tFrame.set(frame.withSpans(new Node<Span>(span, frame.spans)));
+    }
+
+    /**
+     * Remove the trace span from the session stack.
+     */
+    public static void removeSpan() {
+        Frame frame = tFrame.get();
+
+        if (frame.spans != null) {
+            tFrame.set(frame.withSpans(Node.pop(frame.spans)));
+        }
+    }
+
     /**
      * Methods to return the session attribute.
      *
@@ -368,7 +444,7 @@ public final class CurrentContext {
      * @return the object of the attribute
      */
     public static Object getAttribute(String key) {
-        return tAttributes.get().get(key);
+        return tFrame.get().attributes.get(key);
     }
 
     /**
@@ -378,14 +454,21 @@ public final class CurrentContext {
      * @param value the session attribute value
      */
     public static void setAttribute(String key, Object value) {
-        tAttributes.get().put(key, value);
+        Frame frame = tFrame.get();
+        Map<String, Object> attributes = new HashMap<String, Object>(frame.attributes);
+        attributes.put(key, value);
+        tFrame.set(frame.withAttributes(attributes));
     }
 
     /**
      * Remove all the session attributes.
      */
     public static void removeAttributes() {
-        tAttributes.set(new HashMap<String, Object>());
+        Frame frame = tFrame.get();
+
+        if (!frame.attributes.isEmpty()) {
+            tFrame.set(frame.withAttributes(Collections.<String, Object>emptyMap()));
+        }
     }
 
     /**
@@ -394,6 +477,12 @@ public final class CurrentContext {
      * @param key key of attribute to be removed
      */
     public static void removeAttribute(String key) {
-        tAttributes.get().remove(key);
+        Frame frame = tFrame.get();
+
+        if (frame.attributes.containsKey(key)) {
+            Map<String, Object> attributes = new HashMap<String, Object>(frame.attributes);
+            attributes.remove(key);
+            tFrame.set(frame.withAttributes(attributes));
+        }
     }
 }
@@ -187,6 +187,11 @@ public class DatabaseConstants {
 	 */
 	public static final String COMMENTED_TIME_FIELD = "REG_COMMENTED_TIME";
 
+	/**
+	 * Represents the log id field.
+	 */
+	public static final String LOG_ID_FIELD = "REG_LOG_ID";
+
 	/**
 	 * Represents the logged time field.
 	 */
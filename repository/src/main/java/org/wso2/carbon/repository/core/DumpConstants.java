@@ -200,4 +200,25 @@ public class DumpConstants {
      * Element name for children, keep to support backward compatibility in restoring
      */
     public static final String CHILDS = "childs";
+
+    /**
+     * Element name of a dump of changes
+     */
+    public static final String CHANGES = "changes";
+
+    /**
+     * Attribute key of the logged time of the last log covered by a dump of changes
+     */
+    public static final String CHANGES_LOGGED_TIME = "loggedTime";
+
+    /**
+     * Attribute key of the id of the last log covered by a dump of changes
+     */
+    public static final String CHANGES_LOG_ID = "logId";
+
+    /**
+     * Attribute key of the ids of the logs covered by a dump of changes that were logged shortly
+     * before its last log
+     */
+    public static final String CHANGES_APPLIED_LOG_IDS = "appliedLogIds";
 }
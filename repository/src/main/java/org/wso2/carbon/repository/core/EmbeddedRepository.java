@@ -16,11 +16,17 @@
 
 package org.wso2.carbon.repository.core;
 
+import java.io.File;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -28,8 +34,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.cache.Cache;
 
@@ -48,6 +57,7 @@ import org.wso2.carbon.repository.api.exceptions.RepositoryException;
 import org.wso2.carbon.repository.api.exceptions.RepositoryResourceNotFoundException;
 import org.wso2.carbon.repository.api.handlers.Handler;
 import org.wso2.carbon.repository.api.handlers.HandlerContext;
+import org.wso2.carbon.repository.api.utils.RepositoryUtils;
 import org.wso2.carbon.repository.core.caching.CacheResource;
 import org.wso2.carbon.repository.core.caching.RepositoryCacheKey;
 import org.wso2.carbon.repository.core.config.DataBaseConfiguration;
@@ -59,12 +69,16 @@ import org.wso2.carbon.repository.core.exceptions.RepositoryServerContentExcepti
 import org.wso2.carbon.repository.core.handlers.HandlerLifecycleManager;
 import org.wso2.carbon.repository.core.handlers.HandlerManager;
 import org.wso2.carbon.repository.core.handlers.builtin.SimulationFilter;
+import org.wso2.carbon.repository.core.jdbc.dataaccess.QueryResultCollection;
 import org.wso2.carbon.repository.core.queries.QueryProcessorManager;
 import org.wso2.carbon.repository.core.statistics.DBQueryStatisticsLog;
 import org.wso2.carbon.repository.core.statistics.StatisticsRecord;
-import org.wso2.carbon.repository.core.utils.DumpReader;
+import org.wso2.carbon.repository.core.tracing.Tracer;
 import org.wso2.carbon.repository.core.utils.InternalConstants;
 import org.wso2.carbon.repository.core.utils.InternalUtils;
+import org.wso2.carbon.repository.core.utils.LogCursor;
+import org.wso2.carbon.repository.core.utils.SnapshotReader;
+import org.wso2.carbon.repository.core.utils.SnapshotWriter;
 import org.wso2.carbon.repository.core.utils.VersionedPath;
 import org.wso2.carbon.repository.spi.dao.LogsDAO;
 import org.wso2.carbon.repository.spi.dao.ResourceDAO;
@@ -265,7 +279,7 @@ public class EmbeddedRepository implements Repository {
     	}
     	
     	try {
-    		setContextInformation();
+    		setContextInformation("beginTransaction");
 	        beginDBQueryLog(3);
 	        dataAccessManager.getTransactionManager().beginTransaction();
     	} finally {
@@ -280,8 +294,12 @@ public class EmbeddedRepository implements Repository {
     	}
     	
     	try {
-    		setContextInformation();
+    		setContextInformation("rollbackTransaction");
 	        dataAccessManager.getTransactionManager().rollbackTransaction();
+	        if (!dataAccessManager.getDatabaseTransaction().isStarted()) {
+	            repository.getMediaTypeCache().transactionEnded();
+	            repository.getLinkResolutionCache().transactionEnded();
+	        }
 	        endDBQueryLog(3);
     	} finally {
     		clearContextInformation();
@@ -295,8 +313,12 @@ public class EmbeddedRepository implements Repository {
     	}
     	
     	try { 
-    		setContextInformation();
+    		setContextInformation("commitTransaction");
 	        dataAccessManager.getTransactionManager().commitTransaction();
+	        if (!dataAccessManager.getDatabaseTransaction().isStarted()) {
+	            repository.getMediaTypeCache().transactionEnded();
+	            repository.getLinkResolutionCache().transactionEnded();
+	        }
 	        endDBQueryLog(3);
     	} finally {
     		clearContextInformation();
@@ -309,7 +331,7 @@ public class EmbeddedRepository implements Repository {
     		init();
     	}
         try {
-        	setContextInformation();
+        	setContextInformation("newResource");
             beginDBQueryLog(2);
             ResourceImpl resource = new ResourceImpl();
             resource.setAuthorUserName(CurrentContext.getUser());
@@ -326,7 +348,7 @@ public class EmbeddedRepository implements Repository {
     		init();
     	}
         try {
-        	setContextInformation();
+        	setContextInformation("newCollection");
             beginDBQueryLog(2);
             CollectionImpl coll = new CollectionImpl();
             coll.setAuthorUserName(CurrentContext.getUser());
@@ -346,7 +368,7 @@ public class EmbeddedRepository implements Repository {
         boolean transactionSucceeded = false;
         
         try {
-        	setContextInformation();
+        	setContextInformation("getMetaData");
         	
         	path = chrootWrapper.getInPath(path);
         	
@@ -403,7 +425,7 @@ public class EmbeddedRepository implements Repository {
         HandlerContext context = new HandlerContext(this);
         boolean mustPutChild = false;
         try {
-        	setContextInformation();
+        	setContextInformation("put");
         	
             suggestedPath = chrootWrapper.getInPath(suggestedPath);
         	
@@ -494,7 +516,7 @@ public class EmbeddedRepository implements Repository {
         HandlerContext context = new HandlerContext(this);
         HandlerContext importChildContext = new HandlerContext(this);
         try {
-        	setContextInformation();
+        	setContextInformation("importResource");
         	
             suggestedPath = chrootWrapper.getInPath(suggestedPath);
         	
@@ -592,7 +614,7 @@ public class EmbeddedRepository implements Repository {
         boolean transactionSucceeded = false;
         HandlerContext context = new HandlerContext(this);
         try {
-        	setContextInformation();
+        	setContextInformation("delete");
         	
             path = chrootWrapper.getInPath(path) ;
         	
@@ -654,7 +676,7 @@ public class EmbeddedRepository implements Repository {
         boolean transactionSucceeded = false;
         HandlerContext context = new HandlerContext(this);
         try {
-        	setContextInformation();
+        	setContextInformation("rename");
         	
         	currentPath = chrootWrapper.getInPath(currentPath);
             if (newName.startsWith(RepositoryConstants.ROOT_PATH)) {
@@ -725,7 +747,7 @@ public class EmbeddedRepository implements Repository {
         HandlerContext context = new HandlerContext(this);
         
         try {
-        	setContextInformation();
+        	setContextInformation("move");
         	
             currentPath = chrootWrapper.getInPath(currentPath) ;
             newPath = chrootWrapper.getInPath(newPath);
@@ -796,7 +818,7 @@ public class EmbeddedRepository implements Repository {
 
         HandlerContext context = new HandlerContext(this);
         try {
-        	setContextInformation();
+        	setContextInformation("copy");
 
             sourcePath = chrootWrapper.getInPath(sourcePath);
             targetPath = chrootWrapper.getInPath(targetPath);
@@ -867,7 +889,7 @@ public class EmbeddedRepository implements Repository {
 
         HandlerContext context = new HandlerContext(this);
         try {
-        	setContextInformation();
+        	setContextInformation("createVersion");
         	
             path = chrootWrapper.getInPath(path);
 
@@ -916,7 +938,7 @@ public class EmbeddedRepository implements Repository {
         HandlerContext context = new HandlerContext(this);
         
         try {
-        	setContextInformation();
+        	setContextInformation("getVersions");
             
             path = chrootWrapper.getInPath(path);
 
@@ -963,7 +985,7 @@ public class EmbeddedRepository implements Repository {
         HandlerContext context = new HandlerContext(this);
         
         try {
-        	setContextInformation();
+        	setContextInformation("restoreVersion");
 
             versionPath = chrootWrapper.getInPath(versionPath);
 
@@ -1047,7 +1069,7 @@ public class EmbeddedRepository implements Repository {
         Resource query = null;
         
         try {
-        	setContextInformation();
+        	setContextInformation("executeQuery");
         	
             if (path != null) {
                 String newPath = chrootWrapper.getInPath(path);
@@ -1110,26 +1132,23 @@ public class EmbeddedRepository implements Repository {
                     if (output != null) {
                         String[] children = output.getChildPaths();
                         if (children != null) {
-                            for (String child : children) {
-                                if (child != null && (remote || resourceExists(child))) {
-                                    results.add(child);
-                                }
-                            }
+                            addExistingPaths(children, results, remote);
                         }
 
-                        if (temp != null) {
-                            children = temp.getChildPaths();
-                            if (children != null) {
-                                for (String child : children) {
-                                    if (child != null && (remote || resourceExists(child))) {
-                                        results.add(child);
-                                    }
+                        if (temp instanceof QueryResultCollection) {
+                            // the results of the query are read after these as they are requested.
+                            ((QueryResultCollection) temp).setPrecedingPaths(results.toArray(new String[results.size()]));
+                        } else {
+                            if (temp != null) {
+                                children = temp.getChildPaths();
+                                if (children != null) {
+                                    addExistingPaths(children, results, remote);
                                 }
+                            } else {
+                                temp = output;
                             }
-                        } else {
-                            temp = output;
+                            temp.setContent(results.toArray(new String[results.size()]));
                         }
-                        temp.setContent(results.toArray(new String[results.size()]));
                     }
                     output = temp;
                 }
@@ -1172,7 +1191,7 @@ public class EmbeddedRepository implements Repository {
     	
         boolean transactionSucceeded = false;
         try {
-        	setContextInformation();
+        	setContextInformation("getLogs");
         	
             resourcePath = chrootWrapper.getInPath(resourcePath);
         	
@@ -1243,7 +1262,7 @@ public class EmbeddedRepository implements Repository {
         HandlerContext context = new HandlerContext(this);
         
         try {
-        	setContextInformation();
+        	setContextInformation("createLink");
         	
         	path = chrootWrapper.getInPath(path);
         	target = chrootWrapper.getInPath(target);
@@ -1344,7 +1363,7 @@ public class EmbeddedRepository implements Repository {
         HandlerContext context = new HandlerContext(this);
         
         try {
-        	setContextInformation();
+        	setContextInformation("createLink");
         	
         	path = chrootWrapper.getInPath(path);
 
@@ -1435,7 +1454,7 @@ public class EmbeddedRepository implements Repository {
         HandlerContext context = new HandlerContext(this);
         
         try {
-        	setContextInformation();
+        	setContextInformation("removeLink");
         	
         	path = chrootWrapper.getInPath(path);
 
@@ -1533,7 +1552,7 @@ public class EmbeddedRepository implements Repository {
         HandlerContext context = new HandlerContext(this);
         
         try {
-        	setContextInformation();
+        	setContextInformation("restore");
         	
         	path = chrootWrapper.getInPath(path);
 
@@ -1572,12 +1591,6 @@ public class EmbeddedRepository implements Repository {
                     rollbackTransaction();
                 }
             }
-            if (log.isDebugEnabled()) {
-                log.debug("total read: " + DumpReader.getTotalRead());
-                log.debug("total buffered: " + DumpReader.getTotalBuffered());
-                log.debug("maximum buffer size: " + DumpReader.getMaxBufferedSize());
-                log.debug("total buffer read size: " + DumpReader.getTotalBufferedRead());
-            }
             clearContextInformation();
         }
     }
@@ -1596,7 +1609,7 @@ public class EmbeddedRepository implements Repository {
         HandlerContext context = new HandlerContext(this);
         
         try {
-        	setContextInformation();
+        	setContextInformation("dump");
         	
         	path = chrootWrapper.getInPath(path);
 
@@ -1628,6 +1641,323 @@ public class EmbeddedRepository implements Repository {
         }
     }
 
+    /**
+     * Method to dump the changes made to the resources under a path after the given log, so that
+     * a copy of the path restored from an earlier dump can be brought up to date through {@link
+     * #restoreChanges(String, Reader)}. The logs queued so far are written before the changes are
+     * collected.
+     *
+     * @param path   the path to obtain the changes from.
+     * @param since  the position returned by the previous dump of changes, a cursor positioned at
+     *               a time with a log id of 0 to dump the changes made after that time, or null
+     *               to dump the whole subtree.
+     * @param writer the writer used.
+     *
+     * @return the position of the last log covered by the dump, to obtain the next dump from.
+     * @throws RepositoryException if the operation failed.
+     */
+    public LogCursor dumpChanges(String path, LogCursor since, Writer writer) throws RepositoryException {
+        if (log.isTraceEnabled()) {
+            log.trace("Preparing operation dump changes, path: " + path + ".");
+        }
+
+        if(!embeddedRegistryInitialized) {
+            init();
+        }
+
+        boolean transactionSucceeded = false;
+        LogCursor cursor;
+
+        try {
+            setContextInformation("dumpChanges");
+
+            path = chrootWrapper.getInPath(path);
+            registryContext.getLogWriter().flush();
+
+            beginTransaction();
+
+            cursor = repository.dumpChanges(path, since, writer);
+
+            transactionSucceeded = true;
+        } finally {
+            if (transactionSucceeded) {
+                commitTransaction();
+            } else {
+                rollbackTransaction();
+            }
+            clearContextInformation();
+        }
+
+        return cursor;
+    }
+
+    /**
+     * Method to restore a dump of changes obtained through {@link #dumpChanges(String, LogCursor,
+     * Writer)}, deleting the resources of its tombstones and writing its resources in order. The
+     * handlers see this as a restore of the path.
+     *
+     * @param path   the path to restore the changes to.
+     * @param reader the reader used.
+     *
+     * @return the position of the last log covered by the restored dump, or null if the repository
+     *         is read-only or the restore was handled elsewhere.
+     * @throws RepositoryException if the operation failed.
+     */
+    public LogCursor restoreChanges(String path, Reader reader) throws RepositoryException {
+        if (log.isTraceEnabled()) {
+            log.trace("Preparing operation restore changes, path: " + path + ".");
+        }
+
+        if (InternalUtils.isRepositoryReadOnly(this)) {
+            log.warn("Cannot continue the operation restore changes, the coreRegistry is read-only");
+            return null;
+        }
+
+        if(!embeddedRegistryInitialized) {
+            init();
+        }
+
+        boolean transactionSucceeded = false;
+        HandlerContext context = new HandlerContext(this);
+        LogCursor cursor = null;
+
+        try {
+            setContextInformation("restoreChanges");
+
+            path = chrootWrapper.getInPath(path);
+
+            beginTransaction();
+
+            context.setDumpingReader(reader);
+            context.setResourcePath(new ResourcePath(path));
+            registryContext.getHandlerManager().restore(context);
+
+            if (!SimulationFilter.isSimulation()) {
+                if (!context.isProcessingComplete()) {
+                    cursor = repository.restoreChanges(path, reader);
+                }
+
+                registryContext.getHandlerManager(HandlerLifecycleManager.COMMIT_HANDLER_PHASE).restore(context);
+
+                transactionSucceeded = true;
+            }
+        } finally {
+            if (transactionSucceeded) {
+                commitTransaction();
+            } else {
+                try {
+                    registryContext.getHandlerManager(HandlerLifecycleManager.ROLLBACK_HANDLER_PHASE).restore(context);
+                } finally {
+                    rollbackTransaction();
+                }
+            }
+            clearContextInformation();
+        }
+
+        return cursor;
+    }
+
+    /**
+     * Method to write a snapshot of the resources under a path, to be restored through {@link
+     * #restoreSnapshot(String, File, int, int)}. A snapshot holds the same fields as a dump, in a
+     * binary format that can be restored in parallel. Handlers are not invoked.
+     *
+     * @param path       the path to take the snapshot of.
+     * @param file       the file to write the snapshot to, which is replaced if it exists.
+     * @param compressed whether the blocks of the snapshot are compressed.
+     *
+     * @return the number of resources written.
+     * @throws RepositoryException if the operation failed.
+     */
+    public long dumpSnapshot(String path, File file, boolean compressed) throws RepositoryException {
+        if (log.isTraceEnabled()) {
+            log.trace("Preparing operation dump snapshot, path: " + path + ".");
+        }
+
+        if(!embeddedRegistryInitialized) {
+            init();
+        }
+
+        boolean transactionSucceeded = false;
+        SnapshotWriter writer = null;
+
+        try {
+            setContextInformation("dumpSnapshot");
+
+            path = chrootWrapper.getInPath(path);
+            writer = new SnapshotWriter(file, compressed);
+
+            beginTransaction();
+
+            repository.dumpSnapshot(path, writer);
+            writer.close();
+
+            transactionSucceeded = true;
+        } finally {
+            if (transactionSucceeded) {
+                commitTransaction();
+            } else {
+                if (writer != null) {
+                    writer.abort();
+                }
+                rollbackTransaction();
+            }
+            clearContextInformation();
+        }
+
+        return writer.getRecordCount();
+    }
+
+    /**
+     * Method to restore a snapshot written by {@link #dumpSnapshot(String, File, boolean)}, or
+     * converted from a dump through {@link SnapshotConverter}, replacing the resources under the
+     * path. The collections are restored first in a single transaction, after which the other
+     * resources are restored in batches, each in its own transaction, by a number of threads.
+     * Handlers are not invoked, and the cached resources under the path are cleared.
+     *
+     * @param path      the path to restore the snapshot to.
+     * @param file      the snapshot file.
+     * @param threads   the number of threads restoring resources.
+     * @param batchSize the number of resources restored in each transaction.
+     *
+     * @return the number of resources restored, which is 0 if the repository is read-only.
+     * @throws RepositoryException if the operation failed. Batches restored before the failure
+     *                             are kept.
+     */
+    public long restoreSnapshot(String path, File file, int threads, final int batchSize) throws RepositoryException {
+        if (log.isTraceEnabled()) {
+            log.trace("Preparing operation restore snapshot, path: " + path + ".");
+        }
+
+        if (InternalUtils.isRepositoryReadOnly(this)) {
+            log.warn("Cannot continue the operation restore snapshot, the coreRegistry is read-only");
+            return 0;
+        }
+
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+        }
+
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be positive: " + batchSize);
+        }
+
+        if(!embeddedRegistryInitialized) {
+            init();
+        }
+
+        final String inPath = chrootWrapper.getInPath(path);
+        final SnapshotReader reader = new SnapshotReader(file);
+        AsyncRepository asyncRepository = null;
+
+        try {
+            // parents are written before their children, so all collections go in first.
+            List<SnapshotReader.Entry> collections = new ArrayList<SnapshotReader.Entry>();
+
+            for (int i = 0; i < reader.getBlockCount(); i++) {
+                if (reader.getCollectionCount(i) > 0) {
+                    collections.addAll(reader.readBlock(i, true, false));
+                }
+            }
+
+            restoreSnapshotBatch(inPath, collections, true);
+
+            asyncRepository = new AsyncRepository(this, threads);
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+            for (int i = 0; i < reader.getBlockCount(); i++) {
+                if (reader.getRecordCount(i) == reader.getCollectionCount(i)) {
+                    continue;
+                }
+
+                final int block = i;
+                futures.add(asyncRepository.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        List<SnapshotReader.Entry> entries = reader.readBlock(block, false, true);
+
+                        for (int start = 0; start < entries.size(); start += batchSize) {
+                            restoreSnapshotBatch(inPath,
+                                    entries.subList(start, Math.min(start + batchSize, entries.size())), false);
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RepositoryException) {
+                        throw (RepositoryException) e.getCause();
+                    }
+
+                    String msg = "Failed to restore the snapshot " + file.getAbsolutePath() + " to " + path + ".";
+                    log.error(msg, e.getCause());
+                    throw new RepositoryException(msg, e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            String msg = "Interrupted while restoring the snapshot " + file.getAbsolutePath() + " to " + path + ".";
+            log.error(msg, e);
+            throw new RepositoryException(msg, e);
+        } finally {
+            if (asyncRepository != null) {
+                asyncRepository.shutdown();
+            }
+            reader.close();
+            clearCachedSubtree(inPath);
+        }
+
+        return reader.getRecordCount();
+    }
+
+    // Method to restore a batch of resources of a snapshot in a transaction, clearing the path
+    // first for the batch of collections.
+    private void restoreSnapshotBatch(String path, List<SnapshotReader.Entry> entries, boolean prepare)
+            throws RepositoryException {
+        boolean transactionSucceeded = false;
+
+        try {
+            setContextInformation("restoreSnapshot");
+
+            beginTransaction();
+
+            if (prepare) {
+                repository.prepareSnapshotRestore(path);
+            }
+            repository.restoreSnapshot(path, entries);
+
+            transactionSucceeded = true;
+        } finally {
+            if (transactionSucceeded) {
+                commitTransaction();
+            } else {
+                rollbackTransaction();
+            }
+            clearContextInformation();
+        }
+    }
+
+    // Method to remove the cached resources under a path, and the cached pages of its parent.
+    @SuppressWarnings("rawtypes")
+    private static void clearCachedSubtree(String path) {
+        String parentPath = RepositoryUtils.getParentPath(path);
+        Cache<RepositoryCacheKey, CacheResource> cache = getCache();
+        Iterator<RepositoryCacheKey> keys = cache.keys();
+
+        while (keys.hasNext()) {
+            RepositoryCacheKey key = keys.next();
+            String keyPath = key.getPath();
+
+            if (keyPath.startsWith(path) || (parentPath != null && (keyPath.equals(parentPath) ||
+                    keyPath.startsWith(parentPath + ";")))) {
+                cache.remove(key);
+            }
+        }
+    }
+
     @Override
     public String getEventingServiceURL(String path) throws RepositoryException {
         if (log.isTraceEnabled()) {
@@ -1640,7 +1970,7 @@ public class EmbeddedRepository implements Repository {
     	}
     	
     	try {
-    		setContextInformation();
+    		setContextInformation("getEventingServiceURL");
 	    	path = chrootWrapper.getInPath(path);
 	    	
 	        if (path == null || eventingServiceURLs.size() == 0) {
@@ -1679,7 +2009,7 @@ public class EmbeddedRepository implements Repository {
     	}
     	
     	try {
-    		setContextInformation();
+    		setContextInformation("setEventingServiceURL");
 	    	path = chrootWrapper.getInPath(path);
 	    	
 	        if (path == null) {
@@ -1709,7 +2039,7 @@ public class EmbeddedRepository implements Repository {
     	boolean transactionSucceeded = false;    	
         
         try {
-        	setContextInformation();
+        	setContextInformation("removeVersionHistory");
 
             beginTransaction();
         	
@@ -1745,7 +2075,7 @@ public class EmbeddedRepository implements Repository {
     	}
     	
     	try {
-    		setContextInformation();
+    		setContextInformation("get");
 	    	path = chrootWrapper.getInPath(path);
 	    	
 	        if (registryContext != null && registryContext.isCacheEnabled()) {
@@ -1836,7 +2166,7 @@ public class EmbeddedRepository implements Repository {
     	}
     	
     	try {
-    		setContextInformation();
+    		setContextInformation("get");
     		path = chrootWrapper.getInPath(path);
     	
 	        if (registryContext != null && registryContext.isCacheEnabled()) {
@@ -1922,7 +2252,7 @@ public class EmbeddedRepository implements Repository {
     	}
     	
     	try {
-    		setContextInformation();
+    		setContextInformation("resourceExists");
     		
 	    	path = chrootWrapper.getInPath(path) ;
 
@@ -1946,7 +2276,293 @@ public class EmbeddedRepository implements Repository {
     		clearContextInformation();
     	}
 	}
-    
+
+    /**
+     * Method to check the existence of resources at a number of paths. The result is the same as
+     * that of calling {@link #resourceExists(String)} for each path, but paths that are neither
+     * versioned nor intercepted by a handler are checked together, using a fixed number of queries
+     * per parent collection.
+     *
+     * @param paths the paths to check.
+     *
+     * @return the subset of the given paths at which a resource exists.
+     * @throws RepositoryException if the operation failed.
+     */
+    public Set<String> getExistingPaths(String[] paths) throws RepositoryException {
+        if (log.isTraceEnabled()) {
+            log.trace("Preparing operation get existing paths, number of paths: " + (paths == null ? 0 : paths.length) + ".");
+        }
+
+        if(!embeddedRegistryInitialized) {
+            init();
+        }
+
+        Set<String> existingPaths = new HashSet<String>();
+
+        if (paths == null || paths.length == 0) {
+            return existingPaths;
+        }
+
+        List<String> individualPaths = new ArrayList<String>();
+
+        try {
+            setContextInformation("getExistingPaths");
+
+            @SuppressWarnings("rawtypes")
+            Cache<RepositoryCacheKey, CacheResource> cache = getCache();
+            Map<String, String> batchPaths = new HashMap<String, String>();
+            boolean transactionSucceeded = false;
+
+            try {
+                beginTransaction();
+
+                for (String path : paths) {
+                    if (path == null) {
+                        continue;
+                    }
+
+                    String inPath = chrootWrapper.getInPath(path);
+                    ResourcePath resourcePath = new ResourcePath(inPath);
+                    HandlerContext context = new HandlerContext(this);
+                    context.setResourcePath(resourcePath);
+
+                    if (!getRepositoryService().isNoCachePath(inPath) && cache.containsKey(getRegistryCacheKey(this, inPath))) {
+                        existingPaths.add(path);
+                    } else if (SimulationFilter.isSimulation() ||
+                            InternalUtils.getVersionedPath(resourcePath).getVersion() != -1 ||
+                            registryContext.getHandlerManager().isResourceExistsHandled(context)) {
+                        individualPaths.add(path);
+                    } else {
+                        batchPaths.put(inPath, path);
+                    }
+                }
+
+                if (!batchPaths.isEmpty()) {
+                    for (String inPath : repository.getExistingPaths(new ArrayList<String>(batchPaths.keySet()))) {
+                        existingPaths.add(batchPaths.get(inPath));
+
+                        if (!getRepositoryService().isNoCachePath(inPath)) {
+                            cache.put(getRegistryCacheKey(this, inPath), new CacheResource<Resource>(null));
+                        }
+                    }
+                }
+
+                transactionSucceeded = true;
+            } finally {
+                if (transactionSucceeded) {
+                    commitTransaction();
+                } else {
+                    rollbackTransaction();
+                }
+            }
+        } finally {
+            clearContextInformation();
+        }
+
+        for (String path : individualPaths) {
+            if (resourceExists(path)) {
+                existingPaths.add(path);
+            }
+        }
+
+        return existingPaths;
+    }
+
+    /**
+     * Method to get the resources at a number of paths. The result is the same as that of calling
+     * {@link #get(String)} for each path, and the handlers are invoked for each path as well, but
+     * the resources that are neither cached, versioned nor served by a handler are read together,
+     * using a fixed number of queries per parent collection.
+     *
+     * @param paths the paths of the resources.
+     *
+     * @return the resources, in the order of the given paths.
+     * @throws RepositoryException if the operation failed, or if any of the resources does not
+     *                             exist.
+     */
+    public Resource[] getResources(String[] paths) throws RepositoryException {
+        if (log.isTraceEnabled()) {
+            log.trace("Preparing operation get resources, number of paths: " + (paths == null ? 0 : paths.length) + ".");
+        }
+
+        if(!embeddedRegistryInitialized) {
+            init();
+        }
+
+        if (paths == null || paths.length == 0) {
+            return new Resource[0];
+        }
+
+        Resource[] resources = new Resource[paths.length];
+        List<Integer> individualIndexes = new ArrayList<Integer>();
+
+        try {
+            setContextInformation("getResources");
+
+            boolean cacheEnabled = registryContext != null && registryContext.isCacheEnabled();
+            @SuppressWarnings("rawtypes")
+            Cache<RepositoryCacheKey, CacheResource> cache = cacheEnabled ? getCache() : null;
+            Map<String, List<Integer>> batchIndexes = new LinkedHashMap<String, List<Integer>>();
+
+            for (int i = 0; i < paths.length; i++) {
+                String inPath = chrootWrapper.getInPath(paths[i]);
+
+                if (SimulationFilter.isSimulation() ||
+                        InternalUtils.getVersionedPath(new ResourcePath(inPath)).getVersion() != -1 ||
+                        (cacheEnabled && (getRepositoryService().isNoCachePath(inPath) || isCommunityFeatureRequest(inPath)))) {
+                    individualIndexes.add(i);
+                    continue;
+                }
+
+                if (cacheEnabled) {
+                    Object ghostResourceObject = cache.get(getRegistryCacheKey(this, inPath));
+
+                    if (ghostResourceObject != null) {
+                        @SuppressWarnings("unchecked")
+                        Resource resource = ((CacheResource<Resource>) ghostResourceObject).getResource();
+
+                        if (resource != null) {
+                            resources[i] = getOutResource(resource);
+                            continue;
+                        }
+                    }
+                }
+
+                List<Integer> indexes = batchIndexes.get(inPath);
+
+                if (indexes == null) {
+                    indexes = new LinkedList<Integer>();
+                    batchIndexes.put(inPath, indexes);
+                }
+
+                indexes.add(i);
+            }
+
+            if (!batchIndexes.isEmpty()) {
+                for (Map.Entry<String, Resource> entry : getResources(batchIndexes.keySet()).entrySet()) {
+                    Resource resource = entry.getValue();
+
+                    if (cacheEnabled && (resource.getProperty(RepositoryConstants.REGISTRY_LINK) == null ||
+                            resource.getProperty(RepositoryConstants.REGISTRY_MOUNT) != null)) {
+                        RepositoryCacheKey registryCacheKey = getRegistryCacheKey(this, entry.getKey());
+                        Object ghostResourceObject = cache.get(registryCacheKey);
+
+                        if (ghostResourceObject == null) {
+                            cache.put(registryCacheKey, new CacheResource<Resource>(resource));
+                        } else {
+                            @SuppressWarnings("unchecked")
+                            CacheResource<Resource> ghostResource = (CacheResource<Resource>) ghostResourceObject;
+                            ghostResource.setResource(resource);
+                        }
+                    }
+
+                    for (Integer i : batchIndexes.get(entry.getKey())) {
+                        resources[i] = getOutResource(resource);
+                    }
+                }
+            }
+        } finally {
+            clearContextInformation();
+        }
+
+        for (Integer i : individualIndexes) {
+            resources[i] = get(paths[i]);
+        }
+
+        return resources;
+    }
+
+    // Invokes the handlers for each of the given paths as getResource does, but reads the
+    // resources that no handler served together, in the same transaction. Paths served by a
+    // handler, such as mounted paths, are not read from the database.
+    private Map<String, Resource> getResources(Set<String> paths) throws RepositoryException {
+        Map<String, Resource> resources = new LinkedHashMap<String, Resource>();
+        Map<String, HandlerContext> contexts = new LinkedHashMap<String, HandlerContext>();
+        boolean transactionSucceeded = false;
+
+        try {
+            beginTransaction();
+
+            List<String> storedPaths = new ArrayList<String>();
+
+            for (String path : paths) {
+                HandlerContext context = new HandlerContext(this);
+                context.setResourcePath(new ResourcePath(path));
+                contexts.put(path, context);
+
+                Resource resource = registryContext.getHandlerManager().get(context);
+
+                if (resource == null) {
+                    resource = context.getResource();
+                }
+
+                if (resource == null) {
+                    storedPaths.add(path);
+                } else {
+                    resources.put(path, resource);
+                }
+            }
+
+            Map<String, Resource> storedResources = storedPaths.isEmpty() ?
+                    Collections.<String, Resource>emptyMap() : repository.get(storedPaths);
+
+            for (Map.Entry<String, HandlerContext> entry : contexts.entrySet()) {
+                String path = entry.getKey();
+                HandlerContext context = entry.getValue();
+                Resource resource = resources.get(path);
+
+                if (resource == null) {
+                    resource = storedResources.get(path);
+                }
+
+                if (resource == null) {
+                    throw new RepositoryResourceNotFoundException(path, RepositoryErrorCodes.RESOURCE_PATH_ERROR);
+                }
+
+                context.setResource(resource);
+
+                registryContext.getHandlerManager(HandlerLifecycleManager.COMMIT_HANDLER_PHASE).get(context);
+
+                resources.put(path, resource);
+            }
+
+            transactionSucceeded = true;
+
+            return resources;
+        } finally {
+            if (transactionSucceeded) {
+                commitTransaction();
+            } else {
+                try {
+                    for (HandlerContext context : contexts.values()) {
+                        registryContext.getHandlerManager(
+                                HandlerLifecycleManager.ROLLBACK_HANDLER_PHASE).get(context);
+                    }
+                } finally {
+                    rollbackTransaction();
+                }
+            }
+        }
+    }
+
+    // Copies a resource read by the get operations for the caller, as done by get.
+    private Resource getOutResource(Resource resource) throws RepositoryException {
+        if (getRegistryContext() != null && getRegistryContext().isCacheEnabled()) {
+            if (resource instanceof CollectionVersionImpl) {
+                resource = new CollectionVersionImpl((CollectionVersionImpl) resource);
+            } else if (resource instanceof CollectionImpl) {
+                resource = new CollectionImpl((CollectionImpl) resource);
+            } else {
+                resource = new ResourceImpl((ResourceImpl) resource);
+            }
+        }
+
+        ((ResourceImpl) resource).setUserName(userName);
+        ((ResourceImpl) resource).setTenantId(tenantId);
+
+        return chrootWrapper.getOutResource(resource);
+    }
+
 	@Override
 	public String getResourceMediaTypes() throws RepositoryException {
 		return resourceMediaTypes;
@@ -2000,7 +2616,8 @@ public class EmbeddedRepository implements Repository {
         }
         repository = new ResourceStorer(dataAccessManager,
                 versionRepository, registryContext.isVersionOnChange(),
-                new RecursionRepository(this));
+                new RecursionRepository(this), registryContext.getMediaTypeCache(),
+                registryContext.getLinkResolutionCache());
 
         if (log.isTraceEnabled()) {
             log.trace("Initializing the query manager for processing custom queries.");
@@ -2045,7 +2662,7 @@ public class EmbeddedRepository implements Repository {
         chrootWrapper = new ChrootWrapper(concatenatedChroot);
         
         try {
-            setContextInformation();
+            setContextInformation("init");
             if ((registryContext != null && registryContext.isClone()) || (repositoryService != null && repositoryService.isClone())) {
                 try {
                     addRootCollection();
@@ -2416,9 +3033,21 @@ public class EmbeddedRepository implements Repository {
     }
 
     /**
-     * Method to clear session information.
+     * Method to set the information related to users in to the current session, and start the
+     * trace span of the given operation.
+     *
+     * @param operation the name of the repository operation.
+     */
+    private void setContextInformation(String operation) {
+        setContextInformation();
+        Tracer.beginOperation(operation);
+    }
+
+    /**
+     * Method to clear session information, and end the trace span of the operation.
      */
     private final void clearContextInformation() {
+        Tracer.endOperation();
 
         if (log.isTraceEnabled()) {
             log.trace("Clearing the context for repository operation, chroot: " + chrootWrapper.getBasePrefix() + ", " +
@@ -2436,6 +3065,18 @@ public class EmbeddedRepository implements Repository {
         }
     }
     
+    // Adds the given paths that exist to the results, keeping their order. Paths of remote queries
+    // are not checked.
+    private void addExistingPaths(String[] paths, Set<String> results, boolean remote) throws RepositoryException {
+        Set<String> existingPaths = remote ? null : getExistingPaths(paths);
+
+        for (String path : paths) {
+            if (path != null && (remote || existingPaths.contains(path))) {
+                results.add(path);
+            }
+        }
+    }
+
     // test whether this request was made specifically for a tag, comment or a rating.
     private boolean isCommunityFeatureRequest(String path) {
         if (path == null) {
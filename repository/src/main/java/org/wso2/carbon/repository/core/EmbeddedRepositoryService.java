@@ -42,6 +42,9 @@ import org.wso2.carbon.repository.core.config.RepositoryContext;
 import org.wso2.carbon.repository.core.exceptions.RepositoryDBException;
 import org.wso2.carbon.repository.core.exceptions.RepositoryInitException;
 import org.wso2.carbon.repository.core.handlers.HandlerManager;
+import org.wso2.carbon.repository.core.jdbc.dao.LogStorageManager;
+import org.wso2.carbon.repository.core.jdbc.dao.PathCacheWarmer;
+import org.wso2.carbon.repository.core.jdbc.dao.VersionHistoryCompactor;
 import org.wso2.carbon.repository.core.utils.InternalUtils;
 import org.wso2.carbon.repository.spi.dataaccess.DataAccessManager;
 import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
@@ -204,6 +207,10 @@ public class EmbeddedRepositoryService implements RepositoryService {
                 InternalUtils.registerMountPoints(systemRepository, MultitenantConstants.SUPER_TENANT_ID);
             }
 
+            PathCacheWarmer.warmUp(repositoryContext, MultitenantConstants.SUPER_TENANT_ID);
+            VersionHistoryCompactor.schedule(repositoryContext, MultitenantConstants.SUPER_TENANT_ID);
+            LogStorageManager.schedule(repositoryContext);
+
             if (log.isTraceEnabled()) {
                 log.trace("JDBC Registry instance created successfully.");
             }
@@ -30,6 +30,7 @@ import org.wso2.carbon.repository.api.utils.RepositoryUtils;
 import org.wso2.carbon.repository.core.config.RepositoryContext;
 import org.wso2.carbon.repository.core.dataobjects.ResourceDO;
 import org.wso2.carbon.repository.core.exceptions.RepositoryServerContentException;
+import org.wso2.carbon.repository.core.exceptions.RepositoryServerException;
 import org.wso2.carbon.repository.spi.dao.ResourceDAO;
 import org.wso2.carbon.repository.spi.dataaccess.DataAccessManager;
 
@@ -876,6 +877,45 @@ public class ResourceImpl implements org.wso2.carbon.repository.api.Resource {
         }
     }
 
+    /**
+     * Method to get a range of the content stream. If the content has not been loaded, only the
+     * requested range is read from the database.
+     *
+     * @param offset the position of the first byte to read.
+     * @param length the maximum number of bytes to read, or -1 to read up to the end.
+     *
+     * @return the range of the content stream.
+     * @throws RepositoryException throws if the operation fail.
+     */
+    public InputStream getContentStream(long offset, long length) throws RepositoryException {
+        pullContentFromOriginal();
+        if (content == null && dbBasedContentID > 0 && snapshotID == -1) {
+            if (resourceDAO == null) {
+                throw new RepositoryServerException(
+                        "The data access object for resources has not been created.");
+            }
+
+            setContextInformation();
+            try {
+                InputStream contentStream =
+                        resourceDAO.getContentStream(dbBasedContentID, offset, length);
+                if (contentStream == null) {
+                    throw new RepositoryServerContentException("Resource content is empty.");
+                }
+                return contentStream;
+            } finally {
+                clearContextInformation();
+            }
+        }
+
+        if (content instanceof InputStream) {
+            // the stream can only be read once, so keep its bytes for the later reads.
+            content = RepositoryUtils.getByteArray((InputStream) content);
+        }
+
+        return RepositoryUtils.getMemoryStream(getContentStream(), offset, length);
+    }
+
     /**
      * Invalidates the current file based content and creates a new file based content for the new
      * content stream. Given content stream will be closed after completing this method.
@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.repository.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.repository.api.Repository;
+import org.wso2.carbon.repository.api.Resource;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+
+/**
+ * Imports many resources from their source URLs at once, running the imports through an
+ * {@link AsyncRepository} so that no more of them run at the same time than it allows.
+ * <p/>
+ * Each resource is imported through {@link Repository#importResource(String, String, Resource)}
+ * in its own transaction. An import that fails because its content could not be read is retried,
+ * after a delay growing with each attempt; other failures are not retried. The connections are
+ * opened through the {@link org.wso2.carbon.repository.core.utils.URLFetcher} of the repository
+ * context, and when the repository keeps content in a file content store, the content is copied
+ * from the connection into the store without being read into memory.
+ */
+public class ResourceImporter {
+
+    private static final Log log = LogFactory.getLog(ResourceImporter.class);
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    private static final long DEFAULT_RETRY_DELAY = 1000;
+
+    private final AsyncRepository asyncRepository;
+    private final int maxAttempts;
+    private final long retryDelay;
+
+    /**
+     * A resource to import.
+     */
+    public static class Item {
+
+        private final String path;
+        private final String sourceURL;
+        private final Resource metaResource;
+        private volatile String importedPath;
+        private volatile RepositoryException error;
+        private volatile int attempts;
+
+        /**
+         * Creates an item to import.
+         *
+         * @param path         the path to import the resource to.
+         * @param sourceURL    the URL to read the content from.
+         * @param metaResource the resource holding the meta data of the imported resource, which is
+         *                     used by this item only.
+         */
+        public Item(String path, String sourceURL, Resource metaResource) {
+            this.path = path;
+            this.sourceURL = sourceURL;
+            this.metaResource = metaResource;
+        }
+
+        /**
+         * Method to obtain the path the resource is imported to.
+         *
+         * @return the suggested path.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Method to obtain the URL the content is read from.
+         *
+         * @return the source URL.
+         */
+        public String getSourceURL() {
+            return sourceURL;
+        }
+
+        /**
+         * Method to obtain the path the resource was stored at.
+         *
+         * @return the actual path, or null if the resource has not been imported.
+         */
+        public String getImportedPath() {
+            return importedPath;
+        }
+
+        /**
+         * Method to obtain the reason the import failed.
+         *
+         * @return the error of the last attempt, or null if the import did not fail.
+         */
+        public RepositoryException getError() {
+            return error;
+        }
+
+        /**
+         * Method to obtain the number of times the import was attempted.
+         *
+         * @return the number of attempts.
+         */
+        public int getAttempts() {
+            return attempts;
+        }
+    }
+
+    /**
+     * Receives the items as they complete.
+     */
+    public interface ProgressListener {
+
+        /**
+         * Called on the importing thread when an item has been imported, or has failed for the
+         * last time.
+         *
+         * @param item     the completed item.
+         * @param progress the progress of the whole import.
+         */
+        void itemCompleted(Item item, Progress progress);
+    }
+
+    /**
+     * Progress of an import of many resources.
+     */
+    public static class Progress {
+
+        private final int total;
+        private final AtomicInteger imported = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger retries = new AtomicInteger();
+        private final long startTime = System.currentTimeMillis();
+
+        private Progress(int total) {
+            this.total = total;
+        }
+
+        /**
+         * Method to obtain the number of resources to import.
+         *
+         * @return the number of items.
+         */
+        public int getTotal() {
+            return total;
+        }
+
+        /**
+         * Method to obtain the number of resources imported so far.
+         *
+         * @return the number of imported items.
+         */
+        public int getImported() {
+            return imported.get();
+        }
+
+        /**
+         * Method to obtain the number of resources that could not be imported.
+         *
+         * @return the number of failed items.
+         */
+        public int getFailed() {
+            return failed.get();
+        }
+
+        /**
+         * Method to obtain the number of attempts that were retried.
+         *
+         * @return the number of retries.
+         */
+        public int getRetries() {
+            return retries.get();
+        }
+
+        /**
+         * Method to determine whether all the resources have been imported or have failed.
+         *
+         * @return true if the import has completed.
+         */
+        public boolean isCompleted() {
+            return getImported() + getFailed() == total;
+        }
+
+        /**
+         * Method to obtain the number of resources imported per second.
+         *
+         * @return the throughput of the import.
+         */
+        public double getThroughput() {
+            long elapsedTime = System.currentTimeMillis() - startTime;
+
+            if (elapsedTime == 0) {
+                return 0;
+            }
+
+            return getImported() * 1000.0 / elapsedTime;
+        }
+    }
+
+    /**
+     * Creates an importer retrying each import up to three times.
+     *
+     * @param asyncRepository the repository the resources are imported through.
+     */
+    public ResourceImporter(AsyncRepository asyncRepository) {
+        this(asyncRepository, DEFAULT_MAX_ATTEMPTS, DEFAULT_RETRY_DELAY);
+    }
+
+    /**
+     * Creates an importer.
+     *
+     * @param asyncRepository the repository the resources are imported through.
+     * @param maxAttempts     the number of times an import is attempted.
+     * @param retryDelay      the delay before the first retry of an import in milliseconds, which
+     *                        grows with each further retry.
+     */
+    public ResourceImporter(AsyncRepository asyncRepository, int maxAttempts, long retryDelay) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("The number of attempts must be positive: " + maxAttempts);
+        }
+
+        this.asyncRepository = asyncRepository;
+        this.maxAttempts = maxAttempts;
+        this.retryDelay = retryDelay;
+    }
+
+    /**
+     * Method to import the given resources, returning when all of them have been imported or
+     * have failed. The errors of failed items are kept on the items.
+     *
+     * @param items    the resources to import.
+     * @param listener the listener receiving the completed items, or null.
+     *
+     * @return the progress of the import.
+     * @throws InterruptedException if the thread was interrupted while waiting for the imports.
+     */
+    public Progress importResources(List<Item> items, final ProgressListener listener) throws InterruptedException {
+        final Progress progress = new Progress(items.size());
+        List<Future<Void>> futures = new ArrayList<Future<Void>>(items.size());
+
+        for (final Item item : items) {
+            futures.add(asyncRepository.submit(new Callable<Void>() {
+                public Void call() throws Exception {
+                    importItem(item, progress);
+
+                    if (listener != null) {
+                        listener.itemCompleted(item, progress);
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                log.error("Failed to report the progress of a resource import.", e.getCause());
+            }
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Imported " + progress.getImported() + " of " + progress.getTotal() + " resources, with " +
+                    progress.getRetries() + " retries and " + progress.getFailed() + " failures.");
+        }
+
+        return progress;
+    }
+
+    private void importItem(Item item, Progress progress) throws InterruptedException {
+        Repository repository = asyncRepository.getRepository();
+
+        while (true) {
+            item.attempts++;
+
+            try {
+                Resource metaResource = (item.metaResource != null) ? item.metaResource : repository.newResource();
+                item.importedPath = repository.importResource(item.path, item.sourceURL, metaResource);
+                item.error = null;
+                progress.imported.incrementAndGet();
+                return;
+            } catch (RepositoryException e) {
+                item.error = e;
+
+                if (item.attempts >= maxAttempts || !isReadFailure(e)) {
+                    log.error("Failed to import " + item.sourceURL + " to " + item.path + " after " +
+                            item.attempts + " attempts.", e);
+                    progress.failed.incrementAndGet();
+                    return;
+                }
+            }
+
+            progress.retries.incrementAndGet();
+            Thread.sleep(retryDelay * item.attempts);
+        }
+    }
+
+    // whether the content could not be read from the source URL, which may succeed later.
+    private static boolean isReadFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
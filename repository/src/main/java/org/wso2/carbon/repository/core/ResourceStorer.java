@@ -24,8 +24,13 @@ import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -52,15 +57,24 @@ import org.wso2.carbon.repository.api.exceptions.RepositoryException;
 import org.wso2.carbon.repository.api.exceptions.RepositoryResourceNotFoundException;
 import org.wso2.carbon.repository.api.exceptions.RepositoryUserContentException;
 import org.wso2.carbon.repository.api.utils.RepositoryUtils;
+import org.wso2.carbon.repository.core.caching.LinkResolutionCache;
+import org.wso2.carbon.repository.core.caching.MediaTypeCache;
 import org.wso2.carbon.repository.core.config.RepositoryContext;
 import org.wso2.carbon.repository.core.config.StaticConfiguration;
 import org.wso2.carbon.repository.core.dataobjects.ResourceDO;
 import org.wso2.carbon.repository.core.exceptions.RepositoryServerContentException;
+import org.wso2.carbon.repository.core.jdbc.dataaccess.JDBCTransactionManager;
 import org.wso2.carbon.repository.core.utils.DumpReader;
 import org.wso2.carbon.repository.core.utils.DumpWriter;
 import org.wso2.carbon.repository.core.utils.InternalConstants;
 import org.wso2.carbon.repository.core.utils.InternalUtils;
+import org.wso2.carbon.repository.core.utils.LogCursor;
+import org.wso2.carbon.repository.core.utils.LogWriter;
 import org.wso2.carbon.repository.core.utils.MediaTypesUtils;
+import org.wso2.carbon.repository.core.utils.SnapshotReader;
+import org.wso2.carbon.repository.core.utils.SnapshotWriter;
+import org.wso2.carbon.repository.core.utils.URLFetcher;
+import org.wso2.carbon.repository.spi.dao.LogsDAO;
 import org.wso2.carbon.repository.spi.dao.ResourceDAO;
 import org.wso2.carbon.repository.spi.dao.ResourceVersionDAO;
 import org.wso2.carbon.repository.spi.dataaccess.DataAccessManager;
@@ -87,6 +101,28 @@ public class ResourceStorer {
      */
     static final String IS_LOGGING_ACTIVITY = "isLoggingActivity";
 
+    /**
+     * Package-private constant for session key holding the {@link RestoreSession} of a batched
+     * restore. This constant is intended to be used only by the Repository and the restore session.
+     */
+    static final String RESTORE_SESSION = "restoreSession";
+
+    /**
+     * The number of logs read at once when collecting the changes for a dump of changes.
+     */
+    private static final int CHANGES_PAGE_LENGTH = 1000;
+
+    /**
+     * The time allowed for the clocks of the nodes writing logs to differ, in milliseconds.
+     */
+    private static final long CHANGES_CLOCK_SKEW = 60 * 1000;
+
+    /**
+     * How far behind the position of the previous dump of changes logs are read again, since each
+     * node writes its logs some time after they are logged, in milliseconds.
+     */
+    private static final long CHANGES_LOOK_BACK = LogWriter.DEFAULT_SLEEP_TIME + CHANGES_CLOCK_SKEW;
+
     /**
      * Determines whether to version resources automatically when a resource is modified.
      * Modifications that can be versioned, are adding new resources, changing content and changing
@@ -103,6 +139,16 @@ public class ResourceStorer {
      */
     private DataAccessManager dataAccessManager;
 
+    /**
+     * Media types of the resources, used to evaluate filters without loading the resources.
+     */
+    private MediaTypeCache mediaTypeCache;
+
+    /**
+     * Targets resolved for paths under symbolic links and mounts.
+     */
+    private LinkResolutionCache linkResolutionCache;
+
     /**
      * Constructs a Repository
      *
@@ -110,11 +156,16 @@ public class ResourceStorer {
      * @param versionRepository   the version repository.
      * @param versionOnChange     whether versioning needs to be done on change.
      * @param recursionRepository the recursion repository for recursive operations.
+     * @param mediaTypeCache      the media type cache shared by the repositories of the context.
+     * @param linkResolutionCache the link resolution cache shared by the repositories of the context.
      */
     public ResourceStorer(DataAccessManager dataAccessManager,
                       VersionResourceStorer versionRepository, boolean versionOnChange,
-                      RecursionRepository recursionRepository) {
+                      RecursionRepository recursionRepository, MediaTypeCache mediaTypeCache,
+                      LinkResolutionCache linkResolutionCache) {
         this.dataAccessManager = dataAccessManager;
+        this.mediaTypeCache = mediaTypeCache;
+        this.linkResolutionCache = linkResolutionCache;
         this.versionRepository = versionRepository;
         this.versionOnChange = versionOnChange;
         this.recursionRepository = recursionRepository;
@@ -137,6 +188,39 @@ public class ResourceStorer {
         return resourceDAO.resourceExists(purePath);
     }
 
+    /**
+     * Checks if pure resources exist at the given paths, using a fixed number of queries per
+     * parent collection.
+     *
+     * @param paths Paths of possible pure resources.
+     *
+     * @return the subset of the given paths at which a resource exists.
+     * @throws RepositoryException if the operation failed.
+     */
+    public Set<String> getExistingPaths(List<String> paths) throws RepositoryException {
+        Map<String, List<String>> pathsByPurePath = new LinkedHashMap<String, List<String>>();
+
+        for (String path : paths) {
+            String purePath = InternalUtils.getPureResourcePath(path);
+            List<String> samePaths = pathsByPurePath.get(purePath);
+
+            if (samePaths == null) {
+                samePaths = new LinkedList<String>();
+                pathsByPurePath.put(purePath, samePaths);
+            }
+
+            samePaths.add(path);
+        }
+
+        Set<String> existingPaths = new HashSet<String>();
+
+        for (String purePath : resourceDAO.getExistingPaths(new ArrayList<String>(pathsByPurePath.keySet()))) {
+            existingPaths.addAll(pathsByPurePath.get(purePath));
+        }
+
+        return existingPaths;
+    }
+
     /**
      * Gets the meta data of resource referred by the given path.
      *
@@ -162,6 +246,56 @@ public class ResourceStorer {
         return resource;
     }
 
+    /**
+     * Gets the media type of the resource referred by the given path, without loading its content
+     * or properties. Media types of existing resources are cached until the resource is written.
+     *
+     * @param path Path of a "pure" resource.
+     *
+     * @return the media type entry of the resource, or null if no resource exists at the path.
+     * @throws RepositoryException if the operation failed.
+     */
+    public MediaTypeCache.Entry getMediaTypeEntry(String path) throws RepositoryException {
+        String purePath = InternalUtils.getPureResourcePath(path);
+        int tenantId = CurrentContext.getTenantId();
+
+        MediaTypeCache.Entry entry = mediaTypeCache.get(tenantId, purePath);
+        if (entry != null) {
+            return entry;
+        }
+
+        long generation = mediaTypeCache.getGeneration(tenantId);
+        Resource resource = resourceDAO.getResourceMetaData(purePath);
+        
+        if (resource == null) {
+            return null;
+        }
+
+        entry = new MediaTypeCache.Entry(resource.getMediaType(), resource instanceof CollectionImpl);
+        mediaTypeCache.put(tenantId, purePath, entry, generation);
+
+        return entry;
+    }
+
+    /**
+     * Method to obtain the media type cache shared by the repositories of the context.
+     *
+     * @return the media type cache.
+     */
+    public MediaTypeCache getMediaTypeCache() {
+        return mediaTypeCache;
+    }
+
+    /**
+     * Method to obtain the cache of the targets resolved for paths under symbolic links and mounts,
+     * shared by the repositories of the context.
+     *
+     * @return the link resolution cache.
+     */
+    public LinkResolutionCache getLinkResolutionCache() {
+        return linkResolutionCache;
+    }
+
     /**
      * Gets the pure resource referred by the given path.
      *
@@ -176,12 +310,11 @@ public class ResourceStorer {
 
         String purePath = InternalUtils.getPureResourcePath(path);
 
-        Resource resource = resourceDAO.getResourceMetaData(purePath);
+        Resource resource = resourceDAO.getFilledResource(purePath);
         if (resource == null) {
             return null;
         }
-        
-        resourceDAO.fillResource((ResourceImpl) resource);
+
         ((ResourceImpl) resource).setDataAccessManager(dataAccessManager);
         ((ResourceImpl) resource).setUserName(CurrentContext.getUser());
         ((ResourceImpl) resource).setTenantId(CurrentContext.getTenantId());
@@ -189,6 +322,48 @@ public class ResourceStorer {
         return resource;
     }
 
+    /**
+     * Gets the resources referred by the given paths, using a fixed number of queries per parent
+     * collection.
+     *
+     * @param paths Paths of "pure" resources.
+     *
+     * @return the resources found, keyed by the given paths. Paths at which no resource exists are
+     *         left out.
+     * @throws RepositoryException if the operation failed.
+     */
+    public Map<String, Resource> get(List<String> paths) throws RepositoryException {
+        Map<String, List<String>> pathsByPurePath = new LinkedHashMap<String, List<String>>();
+
+        for (String path : paths) {
+            String purePath = InternalUtils.getPureResourcePath(path);
+            List<String> samePaths = pathsByPurePath.get(purePath);
+
+            if (samePaths == null) {
+                samePaths = new LinkedList<String>();
+                pathsByPurePath.put(purePath, samePaths);
+            }
+
+            samePaths.add(path);
+        }
+
+        Map<String, Resource> resources = new HashMap<String, Resource>();
+
+        for (Map.Entry<String, ResourceImpl> entry :
+                resourceDAO.getResources(new ArrayList<String>(pathsByPurePath.keySet())).entrySet()) {
+            ResourceImpl resource = entry.getValue();
+            resource.setDataAccessManager(dataAccessManager);
+            resource.setUserName(CurrentContext.getUser());
+            resource.setTenantId(CurrentContext.getTenantId());
+
+            for (String path : pathsByPurePath.get(entry.getKey())) {
+                resources.put(path, resource);
+            }
+        }
+
+        return resources;
+    }
+
     /**
      * Method to get a paged collection.
      *
@@ -244,6 +419,7 @@ public class ResourceStorer {
         validateProperties(path, resource);
 
         String purePath = InternalUtils.getPureResourcePath(path);
+        mediaTypeCache.invalidate(CurrentContext.getTenantId(), purePath, false);
 
         ResourceIDImpl resourceID = resourceDAO.getResourceID(purePath, resource instanceof CollectionImpl);
         
@@ -269,6 +445,7 @@ public class ResourceStorer {
             if (inverseResourceID != null) {
                 ResourceDO inverseResourceDO = resourceDAO.getResourceDO(inverseResourceID);
                 if (inverseResourceDO != null) {
+                    mediaTypeCache.invalidate(CurrentContext.getTenantId(), purePath, true);
                     deleteSubTree(inverseResourceID, inverseResourceDO, false);
                 }
             }
@@ -356,8 +533,20 @@ public class ResourceStorer {
             throw new RepositoryException(msg, e);
         }
 
+        // the fetcher and the content store are those of the repository importing the resource.
+        RepositoryContext repositoryContext = null;
+        if (CurrentContext.getRespository() != null) {
+            repositoryContext = InternalUtils.getRepositoryContext(CurrentContext.getRespository());
+        }
+
+        if (repositoryContext == null) {
+            repositoryContext = RepositoryContext.getBaseInstance();
+        }
+
+        URLFetcher urlFetcher = (repositoryContext != null) ? repositoryContext.getURLFetcher() : URLFetcher.DEFAULT;
+
         try {
-            URLConnection uc = url.openConnection();
+            URLConnection uc = urlFetcher.openConnection(url);
             InputStream in = uc.getInputStream();
             String mediaType = metaResource.getMediaType();
             if (mediaType == null) {
@@ -365,7 +554,15 @@ public class ResourceStorer {
             }
             metaResource.setMediaType(mediaType);
             metaResource.setDescription(metaResource.getDescription());
-            metaResource.setContentStream(in);
+
+            if (repositoryContext != null && repositoryContext.getContentStore() != null &&
+                    metaResource instanceof ResourceImpl) {
+                // the content is copied from the connection into the content store when the
+                // resource is added, instead of being read into memory first.
+                metaResource.setContent(in);
+            } else {
+                metaResource.setContentStream(in);
+            }
             put(purePath, metaResource);
 
         } catch (IOException e) {
@@ -410,6 +607,7 @@ public class ResourceStorer {
             }
         }
         
+        mediaTypeCache.invalidate(CurrentContext.getTenantId(), path, true);
         deleteSubTree(resourceID, resourceDO, false);
         updateParent(resourceDAO.getResourceID(RepositoryUtils.getParentPath(path), true));
     }
@@ -444,6 +642,7 @@ public class ResourceStorer {
             }
         }
         
+        mediaTypeCache.invalidate(CurrentContext.getTenantId(), path, true);
         deleteSubTree(resourceID, resourceDO, true);
     }
 
@@ -476,6 +675,7 @@ public class ResourceStorer {
             }
         }
         
+        mediaTypeCache.invalidate(CurrentContext.getTenantId(), path, false);
         deleteNode(resourceID, resourceDO, true);
     }
 
@@ -622,6 +822,9 @@ public class ResourceStorer {
             return newPath;
         }
 
+        mediaTypeCache.invalidate(CurrentContext.getTenantId(), oldPath, true);
+        mediaTypeCache.invalidate(CurrentContext.getTenantId(), newPath, true);
+
         // prepare the target parent path
         String targetParentPath = RepositoryUtils.getParentPath(newPath);
         
@@ -1033,7 +1236,18 @@ public class ResourceStorer {
             }
         }
         
+        mediaTypeCache.invalidate(CurrentContext.getTenantId(), path, true);
+
         DumpReader dumpReader = new DumpReader(reader);
+        RestoreSession session = (RestoreSession) CurrentContext.getAttribute(RESTORE_SESSION);
+
+        if (session != null && !session.isStarted()) {
+            // only the outermost restore of the session can commit the batches, and only if it
+            // owns the transaction.
+            session.start(dumpReader, dataAccessManager.getDatabaseTransaction().getNestedDepth() == 1 &&
+                    dataAccessManager.getTransactionManager() instanceof JDBCTransactionManager);
+        }
+
         XMLStreamReader xmlReader;
         
         try {
@@ -1045,12 +1259,27 @@ public class ResourceStorer {
         }
         
         try {
-            restoreRecursively(path, xmlReader, dumpReader, currentVersion, rootResourceExists);
+            restoreRecursively(path, xmlReader, dumpReader, currentVersion, rootResourceExists, session);
         } catch (XMLStreamException e) {
             String msg = "Failed to serialize the dumped element at " + path + ".";
             log.error(msg, e);
             throw new RepositoryException(msg, e);
         }
+
+        if (log.isDebugEnabled() && !(reader instanceof DumpReader)) {
+            log.debug("total read: " + dumpReader.getTotalRead());
+            log.debug("total buffered: " + dumpReader.getTotalBuffered());
+            log.debug("maximum buffer size: " + dumpReader.getMaxBufferedSize());
+            log.debug("total buffer read size: " + dumpReader.getTotalBufferedRead());
+        }
+    }
+
+    // Method to commit the resources restored so far in a batched restore.
+    private void commitRestoreBatch(RestoreSession session) throws RepositoryException {
+        ((JDBCTransactionManager) dataAccessManager.getTransactionManager()).commitPendingWork();
+        mediaTypeCache.transactionEnded();
+        linkResolutionCache.transactionEnded();
+        session.batchCommitted();
     }
 
     /**
@@ -1090,135 +1319,664 @@ public class ResourceStorer {
         }
     }
 
-    // Method to do a recursive restore.
-    private void restoreRecursively(String path, XMLStreamReader xmlReader, DumpReader dumpReader,
-                                    long currentVersion, boolean resourceExists) throws RepositoryException, XMLStreamException {
-        while (!xmlReader.isStartElement() && xmlReader.hasNext()) {
-            xmlReader.next();
-        }
+    /**
+     * Method to dump the changes made to the resources under a path after the given log. Each
+     * changed resource is written with its current state, and each deleted resource as a
+     * tombstone. A resource that was deleted, moved, renamed or restored over is written as a
+     * tombstone followed by its current subtree, if any. Resources updated without a log are found
+     * through their last updated time. Since each node writes its logs some time after logging
+     * them, the logs logged shortly before the given position are read again, dropping those the
+     * position marks as already dumped.
+     *
+     * @param _path  the path to obtain the changes from.
+     * @param since  the position of the last log covered by the previous dump, or null to dump
+     *               the whole subtree.
+     * @param writer the writer used.
+     *
+     * @return the position of the last log covered by the dump.
+     * @throws RepositoryException if the operation failed.
+     */
+    public LogCursor dumpChanges(String _path, LogCursor since, Writer writer) throws RepositoryException {
+        String path = _path;
 
-        if (!xmlReader.hasNext()) {
-            return;
+        if (!path.equals("/") && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
         }
 
-        if (!xmlReader.getLocalName().equals(DumpConstants.RESOURCE)) {
-            String msg = "Invalid dump to restore at " + path;
-            log.error(msg);
-            throw new RepositoryException(msg);
-        }
+        LogsDAO logsDAO = dataAccessManager.getDAOManager().getLogsDAO();
+        LogCursor cursor = new LogCursor();
 
-        String incomingParentPath = xmlReader.getAttributeValue(null, DumpConstants.RESOURCE_PATH);
+        // the changes, in the order of their last log, each telling whether the whole subtree of
+        // the path has to be replaced.
+        Map<String, Boolean> changes = new LinkedHashMap<String, Boolean>();
+        List<Activity> logs;
 
-        String resourceName = xmlReader.getAttributeValue(null, DumpConstants.RESOURCE_NAME);
-        String ignoreConflictsStrValue = xmlReader.getAttributeValue(null, DumpConstants.IGNORE_CONFLICTS);
+        if (since == null || since.getLoggedTime() == null) {
+            logsDAO.getLogs(null, Activity.ALL, null, null, null, true, cursor, 1, dataAccessManager);
+            addChange(changes, path, path, true);
 
-        boolean ignoreConflicts = true;
-        
-        if (ignoreConflictsStrValue != null && Boolean.toString(false).equals(ignoreConflictsStrValue)) {
-            ignoreConflicts = false;
-        }
+            // the logs before the position are covered by the whole subtree.
+            logs = (cursor.getLoggedTime() == null) ? new ArrayList<Activity>() :
+                    getLogsSince(logsDAO, cursor.getLoggedTime().getTime() - CHANGES_LOOK_BACK);
+        } else {
+            cursor.moveTo(since.getLoggedTime(), since.getLogId());
 
-        String isCollectionString = xmlReader.getAttributeValue(null, DumpConstants.RESOURCE_IS_COLLECTION);
-        boolean isCollection = isCollectionString.equals(DumpConstants.RESOURCE_IS_COLLECTION_TRUE);
+            for (String updatedPath : resourceDAO.getPathsUpdatedSince(path, since.getLoggedTime())) {
+                addChange(changes, path, updatedPath, false);
+            }
 
-        if (path.equals(RepositoryConstants.ROOT_PATH) && !isCollection) {
-            String msg = "Illegal to restore a non-collection in place of root collection.";
-            log.error(msg);
-            throw new RepositoryException(msg);
-        }
+            // a node may write a log after logs logged later than it were dumped, so the logs
+            // behind the position are read again, dropping those already dumped by their id.
+            logs = getLogsSince(logsDAO, since.getLoggedTime().getTime() - CHANGES_LOOK_BACK);
 
-        String status = xmlReader.getAttributeValue(null, DumpConstants.RESOURCE_STATUS);
+            for (Activity activity : logs) {
+                if (since.getAppliedLogIds().contains(activity.getLogId())) {
+                    continue;
+                }
 
-        if (DumpConstants.RESOURCE_DELETED.equals(status) && resourceExists) {
-            delete(path);
-            return;
-        }
+                switch (activity.getAction()) {
+                    case Activity.DELETE_RESOURCE:
+                    case Activity.RESTORE:
+                        addChange(changes, path, activity.getResourcePath(), true);
+                        break;
+                    case Activity.RENAME:
+                    case Activity.MOVE:
+                        addChange(changes, path, activity.getActionData(), true);
+                        addChange(changes, path, activity.getResourcePath(), true);
+                        break;
+                    case Activity.COPY:
+                        addChange(changes, path, activity.getActionData(), true);
+                        break;
+                    default:
+                        addChange(changes, path, activity.getResourcePath(), false);
+                }
 
-        ResourceImpl resourceImpl;
-        byte[] contentBytes = new byte[0];
-        
-        if (isCollection) {
-            resourceImpl = new CollectionImpl();
-        } else {
-            resourceImpl = new ResourceImpl();
+                if (isAfter(activity, cursor)) {
+                    cursor.moveTo(activity.getDate(), activity.getLogId());
+                }
+            }
         }
 
-        boolean isCreatorExisting = false;
-        boolean isCreatedTimeExisting = false;
-        boolean isUpdaterExisting = false;
-        boolean isUpdatedTimeExisting = false;
-        long dumpingResourceVersion = -1;
+        if (cursor.getLoggedTime() != null) {
+            Set<Integer> appliedLogIds = new HashSet<Integer>();
 
-        do {
-            xmlReader.next();
-        } while (!xmlReader.isStartElement() && xmlReader.hasNext());
+            for (Activity activity : logs) {
+                if (!isAfter(activity, cursor) &&
+                        activity.getDate().getTime() >= cursor.getLoggedTime().getTime() - CHANGES_LOOK_BACK) {
+                    appliedLogIds.add(activity.getLogId());
+                }
+            }
 
-        while (xmlReader.hasNext()) {
-            String localName = xmlReader.getLocalName();
+            cursor.setAppliedLogIds(appliedLogIds);
+        }
 
-            // setMediaType
-            if (localName.equals(DumpConstants.MEDIA_TYPE)) {
-                String text = xmlReader.getElementText();
-                if (text.indexOf('/') < 0) {
-                    text = MediaTypesUtils.getMediaType("dummy." + text);
-                }
-                if (text != null) {
-                    resourceImpl.setMediaType(text);
-                }
-                // now go to the next element
-                do {
-                    xmlReader.next();
-                } while (!xmlReader.isStartElement() && xmlReader.hasNext());
-            } else if (localName.equals(DumpConstants.CREATOR)) {
-                String text = xmlReader.getElementText();
-                if (text != null) {
-                    resourceImpl.setAuthorUserName(text);
-                    isCreatorExisting = true;
+        XMLStreamWriter xmlWriter = null;
+        
+        try {
+            XMLOutputFactory xof = XMLOutputFactory.newInstance();
+            xmlWriter = xof.createXMLStreamWriter(writer);
+
+            xmlWriter.writeStartElement(DumpConstants.CHANGES);
+            xmlWriter.writeAttribute(DumpConstants.RESOURCE_PATH, path);
+            
+            if (cursor.getLoggedTime() != null) {
+                xmlWriter.writeAttribute(DumpConstants.CHANGES_LOGGED_TIME,
+                        Long.toString(cursor.getLoggedTime().getTime()));
+                xmlWriter.writeAttribute(DumpConstants.CHANGES_LOG_ID, Integer.toString(cursor.getLogId()));
+
+                if (!cursor.getAppliedLogIds().isEmpty()) {
+                    StringBuilder appliedLogIds = new StringBuilder();
+                    for (int logId : cursor.getAppliedLogIds()) {
+                        if (appliedLogIds.length() > 0) {
+                            appliedLogIds.append(",");
+                        }
+                        appliedLogIds.append(logId);
+                    }
+                    xmlWriter.writeAttribute(DumpConstants.CHANGES_APPLIED_LOG_IDS, appliedLogIds.toString());
                 }
-                // now go to the next element
-                do {
-                    xmlReader.next();
-                } while (!xmlReader.isStartElement() && xmlReader.hasNext());
             }
-            // version: just to keep track of the server changes
-            else if (localName.equals(DumpConstants.VERSION)) {
-                String text = xmlReader.getElementText();
-                if (text != null) {
-                    dumpingResourceVersion = Long.parseLong(text);
+
+            for (Map.Entry<String, Boolean> change : changes.entrySet()) {
+                String changedPath = change.getKey();
+                boolean subtree = change.getValue();
+
+                // the current state of the subtree of an ancestor is written anyway.
+                if (isReplacedWithAncestor(changes, path, changedPath)) {
+                    continue;
                 }
-                // now go to the next element
-                do {
-                    xmlReader.next();
-                } while (!xmlReader.isStartElement() && xmlReader.hasNext());
-            }
-            // uuid: just to keep track of the server changes
-            else if (localName.equals(DumpConstants.UUID)) {
-                String text = xmlReader.getElementText();
-                if (text != null) {
-                    resourceImpl.setUUID(text);
+
+                if (subtree && !changedPath.equals(RepositoryConstants.ROOT_PATH)) {
+                    writeChange(path, changedPath, null, xmlWriter);
+                }
+
+                ResourceImpl resource = resourceDAO.getResourceMetaData(changedPath);
+                
+                if (resource == null) {
+                    if (!subtree) {
+                        writeChange(path, changedPath, null, xmlWriter);
+                    }
+                } else if (subtree) {
+                    writeSubtreeChanges(path, changedPath, resource, xmlWriter);
+                } else {
+                    writeChange(path, changedPath, resource, xmlWriter);
                 }
-                // now go to the next element
-                do {
-                    xmlReader.next();
-                } while (!xmlReader.isStartElement() && xmlReader.hasNext());
             }
-            // createdTime
-            else if (localName.equals(DumpConstants.CREATED_TIME)) {
-                String text = xmlReader.getElementText();
-                if (text != null) {
-                    long date = Long.parseLong(text);
-                    resourceImpl.setCreatedTime(new Date(date));
-                    isCreatedTimeExisting = true;
+
+            xmlWriter.writeEndElement();
+            xmlWriter.flush();
+        } catch (XMLStreamException e) {
+            String msg = "Failed to serialize the changes at " + path + ".";
+            log.error(msg);
+            throw new RepositoryException(msg, e);
+        } finally {
+            if (xmlWriter != null) {
+                try {
+                    xmlWriter.close();
+                } catch (XMLStreamException e) {
                 }
-                // now go to the next element
-                do {
-                    xmlReader.next();
-                } while (!xmlReader.isStartElement() && xmlReader.hasNext());
             }
-            // setLastUpdater
-            else if (localName.equals(DumpConstants.LAST_UPDATER)) {
-                String text = xmlReader.getElementText();
-                if (text != null) {
+        }
+
+        return cursor;
+    }
+
+    // Reads all the logs logged at or after the given time, in the order they were logged.
+    private List<Activity> getLogsSince(LogsDAO logsDAO, long from) throws RepositoryException {
+        List<Activity> logs = new ArrayList<Activity>();
+        Date fromDate = new Date(from);
+        LogCursor cursor = new LogCursor();
+        Activity[] page;
+
+        do {
+            page = logsDAO.getLogs(null, Activity.ALL, null, fromDate, null, false, cursor,
+                    CHANGES_PAGE_LENGTH, dataAccessManager);
+            logs.addAll(Arrays.asList(page));
+        } while (page.length == CHANGES_PAGE_LENGTH);
+
+        return logs;
+    }
+
+    // Returns whether a log was logged after the position of the cursor.
+    private static boolean isAfter(Activity activity, LogCursor cursor) {
+        long loggedTime = activity.getDate().getTime();
+        long cursorTime = cursor.getLoggedTime().getTime();
+
+        return loggedTime > cursorTime || (loggedTime == cursorTime && activity.getLogId() > cursor.getLogId());
+    }
+
+    /**
+     * Method to restore a dump of changes, applying its tombstones and resources in order.
+     *
+     * @param _path  the path to restore the changes to.
+     * @param reader the reader used.
+     *
+     * @return the position of the last log covered by the dump of changes, or a cursor positioned
+     *         before the first log, if the dump covered no logs.
+     * @throws RepositoryException if the operation failed.
+     */
+    public LogCursor restoreChanges(String _path, Reader reader) throws RepositoryException {
+        String path = _path;
+
+        if (!path.equals("/") && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+
+        LogCursor cursor = new LogCursor();
+
+        try {
+            XMLStreamReader xmlReader = XMLInputFactory.newInstance().createXMLStreamReader(reader);
+
+            while (!xmlReader.isStartElement() && xmlReader.hasNext()) {
+                xmlReader.next();
+            }
+
+            if (!xmlReader.isStartElement() || !xmlReader.getLocalName().equals(DumpConstants.CHANGES)) {
+                String msg = "Invalid dump of changes to restore at " + path + ".";
+                log.error(msg);
+                throw new RepositoryException(msg);
+            }
+
+            String loggedTime = xmlReader.getAttributeValue(null, DumpConstants.CHANGES_LOGGED_TIME);
+            
+            if (loggedTime != null) {
+                try {
+                    cursor.moveTo(new Date(Long.parseLong(loggedTime)),
+                            Integer.parseInt(xmlReader.getAttributeValue(null, DumpConstants.CHANGES_LOG_ID)));
+
+                    String appliedLogIds =
+                            xmlReader.getAttributeValue(null, DumpConstants.CHANGES_APPLIED_LOG_IDS);
+                    if (appliedLogIds != null && appliedLogIds.length() > 0) {
+                        for (String logId : appliedLogIds.split(",")) {
+                            cursor.getAppliedLogIds().add(Integer.parseInt(logId));
+                        }
+                    }
+                } catch (NumberFormatException e) {
+                    String msg = "Invalid position in the dump of changes to restore at " + path + ".";
+                    log.error(msg, e);
+                    throw new RepositoryException(msg, e);
+                }
+            }
+
+            do {
+                xmlReader.next();
+            } while (!xmlReader.isStartElement() && xmlReader.hasNext());
+
+            while (xmlReader.isStartElement()) {
+                if (!xmlReader.getLocalName().equals(DumpConstants.RESOURCE)) {
+                    String msg = "Invalid dump of changes to restore at " + path + ".";
+                    log.error(msg);
+                    throw new RepositoryException(msg);
+                }
+
+                String changedPath = getAbsolutePath(path,
+                        xmlReader.getAttributeValue(null, DumpConstants.RESOURCE_PATH));
+
+                mediaTypeCache.invalidate(CurrentContext.getTenantId(), changedPath, true);
+
+                if (DumpConstants.RESOURCE_DELETED.equals(
+                        xmlReader.getAttributeValue(null, DumpConstants.RESOURCE_STATUS))) {
+                    if (resourceExists(changedPath)) {
+                        delete(changedPath);
+                    }
+                    xmlReader.next();
+                } else {
+                    restoreRecursively(changedPath, xmlReader, null, -1, resourceExists(changedPath), null);
+                }
+
+                // the reader is left within the change, or at the element of the next change.
+                while (!xmlReader.isStartElement() && xmlReader.hasNext()) {
+                    xmlReader.next();
+                }
+            }
+        } catch (XMLStreamException e) {
+            String msg = "Failed to read the dump of changes to restore at " + path + ".";
+            log.error(msg, e);
+            throw new RepositoryException(msg, e);
+        }
+
+        return cursor;
+    }
+
+    /**
+     * Method to write a subtree to a snapshot, parents first.
+     *
+     * @param _path  the path to obtain the snapshot of.
+     * @param writer the writer of the snapshot.
+     *
+     * @throws RepositoryException if the operation failed.
+     */
+    public void dumpSnapshot(String _path, SnapshotWriter writer) throws RepositoryException {
+        String path = _path;
+
+        if (!path.equals("/") && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+
+        ResourceImpl resource = resourceDAO.getResourceMetaData(path);
+
+        if (resource == null) {
+            throw new RepositoryResourceNotFoundException(path);
+        }
+
+        writeSnapshot(path, path, resource, writer);
+    }
+
+    /**
+     * Method to prepare the restore of a snapshot, removing the resources at and under the given
+     * path, which are replaced by those of the snapshot.
+     *
+     * @param _path the path the snapshot is restored to.
+     *
+     * @throws RepositoryException if the operation failed.
+     */
+    public void prepareSnapshotRestore(String _path) throws RepositoryException {
+        String path = _path;
+
+        if (!path.equals("/") && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+
+        mediaTypeCache.invalidate(CurrentContext.getTenantId(), path, true);
+
+        if (!path.equals(RepositoryConstants.ROOT_PATH)) {
+            if (resourceExists(path)) {
+                delete(path);
+            }
+            return;
+        }
+
+        // the root itself can not be deleted, only what is under it.
+        CollectionImpl root = (CollectionImpl) resourceDAO.getResourceMetaData(path);
+        resourceDAO.fillChildren(root, 0, -1);
+
+        for (String childPath : root.getChildPaths()) {
+            delete(childPath);
+        }
+    }
+
+    /**
+     * Method to restore resources read from a snapshot. The parents of the resources must have been
+     * restored before them. Resources written by different threads do not lock each other out, so
+     * the resources under a collection can be restored in parallel once the collection exists.
+     *
+     * @param _path   the path the snapshot is restored to.
+     * @param entries the resources to restore.
+     *
+     * @throws RepositoryException if the operation failed.
+     */
+    public void restoreSnapshot(String _path, List<SnapshotReader.Entry> entries) throws RepositoryException {
+        String path = _path;
+
+        if (!path.equals("/") && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+
+        for (SnapshotReader.Entry entry : entries) {
+            String resourcePath = getAbsolutePath(path, entry.getPath());
+            ResourceImpl resourceImpl = entry.getResource();
+
+            if (resourcePath.equals(RepositoryConstants.ROOT_PATH) && !(resourceImpl instanceof CollectionImpl)) {
+                String msg = "Illegal to restore a non-collection in place of root collection.";
+                log.error(msg);
+                throw new RepositoryException(msg);
+            }
+
+            // completing the empty fields, as a restore of a dump would.
+            if (resourceImpl.getAuthorUserName() == null) {
+                resourceImpl.setAuthorUserName(CurrentContext.getUser());
+            }
+
+            if (resourceImpl.getCreatedTime() == null) {
+                resourceImpl.setCreatedTime(new Date(System.currentTimeMillis()));
+            }
+
+            if (resourceImpl.getLastUpdaterUserName() == null) {
+                resourceImpl.setLastUpdaterUserName(CurrentContext.getUser());
+            }
+
+            if (resourceImpl.getLastModified() == null) {
+                resourceImpl.setLastModified(new Date(System.currentTimeMillis()));
+            }
+
+            if (resourceImpl.getUUID() == null) {
+                setUUIDForResource(resourceImpl);
+            }
+
+            restoreLinks(resourcePath, resourceImpl);
+            writeRestoredResource(resourcePath, resourceImpl,
+                    (entry.getContent() != null) ? entry.getContent() : new byte[0], DumpConstants.RESOURCE_ADDED);
+        }
+    }
+
+    // Method to write a resource to a snapshot followed by its descendants, parents first.
+    private void writeSnapshot(String rootPath, String path, ResourceImpl resource, SnapshotWriter writer)
+            throws RepositoryException {
+        resourceDAO.fillResourceProperties(resource);
+        byte[] content = null;
+
+        if (!(resource instanceof CollectionImpl)) {
+            resourceDAO.fillResourceContent(resource);
+            content = (byte[]) resource.getContent();
+        }
+
+        writer.write(getRelativePath(rootPath, path), resource, content);
+
+        if (resource instanceof CollectionImpl) {
+            CollectionImpl collection = (CollectionImpl) resource;
+            resourceDAO.fillChildren(collection, 0, -1);
+
+            for (String childPath : collection.getChildPaths()) {
+                ResourceImpl child = resourceDAO.getResourceMetaData(childPath);
+
+                if (child != null) {
+                    writeSnapshot(rootPath, childPath, child, writer);
+                }
+            }
+        }
+    }
+
+    // Method to record a change of a dump of changes, moving it to the position of its last log.
+    private static void addChange(Map<String, Boolean> changes, String rootPath, String changedPath,
+                                  boolean subtree) {
+        if (changedPath == null) {
+            return;
+        }
+
+        if (!isInSubtree(rootPath, changedPath)) {
+            // changes to the subtree of an ancestor replace the whole dumped subtree.
+            if (!subtree || !isInSubtree(changedPath, rootPath)) {
+                return;
+            }
+            changedPath = rootPath;
+        }
+
+        Boolean replaced = changes.remove(changedPath);
+        changes.put(changedPath, subtree || (replaced != null && replaced));
+    }
+
+    // Method to check whether a change is covered by the subtree replaced for an ancestor.
+    private static boolean isReplacedWithAncestor(Map<String, Boolean> changes, String rootPath,
+                                                  String changedPath) {
+        String parentPath = changedPath;
+        
+        while (!parentPath.equals(rootPath) && !parentPath.equals(RepositoryConstants.ROOT_PATH)) {
+            parentPath = RepositoryUtils.getParentPath(parentPath);
+            
+            if (Boolean.TRUE.equals(changes.get(parentPath))) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+
+    // Method to check whether a path is the given path or one under it.
+    private static boolean isInSubtree(String path, String subtreePath) {
+        return path.equals(RepositoryConstants.ROOT_PATH) || subtreePath.equals(path) ||
+                subtreePath.startsWith(path + RepositoryConstants.PATH_SEPARATOR);
+    }
+
+    // Method to obtain the path of a resource relative to the root of a dump of changes or a
+    // snapshot, which is empty for the root itself.
+    private static String getRelativePath(String rootPath, String path) {
+        if (path.equals(rootPath)) {
+            return "";
+        } else if (rootPath.equals(RepositoryConstants.ROOT_PATH)) {
+            return path;
+        } else {
+            return path.substring(rootPath.length());
+        }
+    }
+
+    // Method to obtain the path of a resource from its path relative to the root it is restored to.
+    private static String getAbsolutePath(String rootPath, String relativePath) {
+        if (relativePath == null || relativePath.length() == 0) {
+            return rootPath;
+        } else if (rootPath.equals(RepositoryConstants.ROOT_PATH)) {
+            return relativePath;
+        } else {
+            return rootPath + relativePath;
+        }
+    }
+
+    // Method to write a resource of a dump of changes, or its tombstone if the resource is null.
+    private void writeChange(String rootPath, String changedPath, ResourceImpl resource, XMLStreamWriter xmlWriter)
+            throws RepositoryException, XMLStreamException {
+        xmlWriter.writeStartElement(DumpConstants.RESOURCE);
+        xmlWriter.writeAttribute(DumpConstants.RESOURCE_PATH, getRelativePath(rootPath, changedPath));
+
+        if (resource == null) {
+            xmlWriter.writeAttribute(DumpConstants.RESOURCE_STATUS, DumpConstants.RESOURCE_DELETED);
+        } else {
+            xmlWriter.writeAttribute(DumpConstants.RESOURCE_STATUS, DumpConstants.RESOURCE_UPDATED);
+            xmlWriter.writeAttribute(DumpConstants.RESOURCE_IS_COLLECTION,
+                    (resource instanceof CollectionImpl) ? DumpConstants.RESOURCE_IS_COLLECTION_TRUE : DumpConstants.RESOURCE_IS_COLLECTION_FALSE);
+            writeResourceFields(resource, xmlWriter);
+        }
+
+        xmlWriter.writeEndElement();
+    }
+
+    // Method to write a resource of a dump of changes followed by its descendants, parents first.
+    private void writeSubtreeChanges(String rootPath, String changedPath, ResourceImpl resource,
+                                     XMLStreamWriter xmlWriter) throws RepositoryException, XMLStreamException {
+        writeChange(rootPath, changedPath, resource, xmlWriter);
+
+        if (resource instanceof CollectionImpl) {
+            CollectionImpl collection = (CollectionImpl) resource;
+            resourceDAO.fillChildren(collection, 0, -1);
+
+            for (String childPath : collection.getChildPaths()) {
+                ResourceImpl child = resourceDAO.getResourceMetaData(childPath);
+                
+                if (child != null) {
+                    writeSubtreeChanges(rootPath, childPath, child, xmlWriter);
+                }
+            }
+        }
+    }
+
+    // Method to do a recursive restore.
+    private void restoreRecursively(String path, XMLStreamReader xmlReader, DumpReader dumpReader,
+                                    long currentVersion, boolean resourceExists, RestoreSession session)
+            throws RepositoryException, XMLStreamException {
+        while (!xmlReader.isStartElement() && xmlReader.hasNext()) {
+            xmlReader.next();
+        }
+
+        if (!xmlReader.hasNext()) {
+            return;
+        }
+
+        if (!xmlReader.getLocalName().equals(DumpConstants.RESOURCE)) {
+            String msg = "Invalid dump to restore at " + path;
+            log.error(msg);
+            throw new RepositoryException(msg);
+        }
+
+        String incomingParentPath = xmlReader.getAttributeValue(null, DumpConstants.RESOURCE_PATH);
+
+        String resourceName = xmlReader.getAttributeValue(null, DumpConstants.RESOURCE_NAME);
+        String ignoreConflictsStrValue = xmlReader.getAttributeValue(null, DumpConstants.IGNORE_CONFLICTS);
+
+        boolean ignoreConflicts = true;
+        
+        if (ignoreConflictsStrValue != null && Boolean.toString(false).equals(ignoreConflictsStrValue)) {
+            ignoreConflicts = false;
+        }
+
+        String isCollectionString = xmlReader.getAttributeValue(null, DumpConstants.RESOURCE_IS_COLLECTION);
+        boolean isCollection = isCollectionString.equals(DumpConstants.RESOURCE_IS_COLLECTION_TRUE);
+
+        if (path.equals(RepositoryConstants.ROOT_PATH) && !isCollection) {
+            String msg = "Illegal to restore a non-collection in place of root collection.";
+            log.error(msg);
+            throw new RepositoryException(msg);
+        }
+
+        String status = xmlReader.getAttributeValue(null, DumpConstants.RESOURCE_STATUS);
+
+        // every element of the dump moves the position of a resumed restore, whether or not it is
+        // written, as the resources written before the checkpoint may since have been deleted.
+        // Those restored before the checkpoint are only read.
+        boolean skipped = session != null && session.skip(path);
+
+        if (DumpConstants.RESOURCE_DELETED.equals(status) && resourceExists) {
+            if (!skipped) {
+                delete(path);
+
+                if (session != null && session.resourceRestored(path)) {
+                    commitRestoreBatch(session);
+                }
+            }
+            return;
+        }
+
+        ResourceImpl resourceImpl;
+        byte[] contentBytes = new byte[0];
+        
+        if (isCollection) {
+            resourceImpl = new CollectionImpl();
+        } else {
+            resourceImpl = new ResourceImpl();
+        }
+
+        boolean isCreatorExisting = false;
+        boolean isCreatedTimeExisting = false;
+        boolean isUpdaterExisting = false;
+        boolean isUpdatedTimeExisting = false;
+        long dumpingResourceVersion = -1;
+
+        do {
+            xmlReader.next();
+        } while (!xmlReader.isStartElement() && xmlReader.hasNext());
+
+        while (xmlReader.hasNext()) {
+            String localName = xmlReader.getLocalName();
+
+            // setMediaType
+            if (localName.equals(DumpConstants.MEDIA_TYPE)) {
+                String text = xmlReader.getElementText();
+                if (text.indexOf('/') < 0) {
+                    text = MediaTypesUtils.getMediaType("dummy." + text);
+                }
+                if (text != null) {
+                    resourceImpl.setMediaType(text);
+                }
+                // now go to the next element
+                do {
+                    xmlReader.next();
+                } while (!xmlReader.isStartElement() && xmlReader.hasNext());
+            } else if (localName.equals(DumpConstants.CREATOR)) {
+                String text = xmlReader.getElementText();
+                if (text != null) {
+                    resourceImpl.setAuthorUserName(text);
+                    isCreatorExisting = true;
+                }
+                // now go to the next element
+                do {
+                    xmlReader.next();
+                } while (!xmlReader.isStartElement() && xmlReader.hasNext());
+            }
+            // version: just to keep track of the server changes
+            else if (localName.equals(DumpConstants.VERSION)) {
+                String text = xmlReader.getElementText();
+                if (text != null) {
+                    dumpingResourceVersion = Long.parseLong(text);
+                }
+                // now go to the next element
+                do {
+                    xmlReader.next();
+                } while (!xmlReader.isStartElement() && xmlReader.hasNext());
+            }
+            // uuid: just to keep track of the server changes
+            else if (localName.equals(DumpConstants.UUID)) {
+                String text = xmlReader.getElementText();
+                if (text != null) {
+                    resourceImpl.setUUID(text);
+                }
+                // now go to the next element
+                do {
+                    xmlReader.next();
+                } while (!xmlReader.isStartElement() && xmlReader.hasNext());
+            }
+            // createdTime
+            else if (localName.equals(DumpConstants.CREATED_TIME)) {
+                String text = xmlReader.getElementText();
+                if (text != null) {
+                    long date = Long.parseLong(text);
+                    resourceImpl.setCreatedTime(new Date(date));
+                    isCreatedTimeExisting = true;
+                }
+                // now go to the next element
+                do {
+                    xmlReader.next();
+                } while (!xmlReader.isStartElement() && xmlReader.hasNext());
+            }
+            // setLastUpdater
+            else if (localName.equals(DumpConstants.LAST_UPDATER)) {
+                String text = xmlReader.getElementText();
+                if (text != null) {
                     resourceImpl.setLastUpdaterUserName(text);
                     isUpdaterExisting = true;
                 }
@@ -1407,96 +2165,17 @@ public class ResourceStorer {
         }
 
         // create sym links
-        String linkRestoration = resourceImpl.getProperty(InternalConstants.REGISTRY_LINK_RESTORATION);
-        if (linkRestoration != null) {
-            String[] parts = linkRestoration.split(RepositoryConstants.URL_SEPARATOR);
-            
-            if (parts.length == 4) {
-                if (parts[2] != null && parts[2].length() == 0) {
-                    parts[2] = null;
-                }
-                if (parts[0] != null && parts[1] != null && parts[3] != null) {
-                	InternalUtils.registerHandlerForRemoteLinks(RepositoryContext.getBaseInstance(), parts[0], parts[1], parts[2], parts[3]);
-                }
-            } else if (parts.length == 3) {
-                // here parts[0] the current path, path[1] is the target path.
-                if (parts[0] != null && parts[1] != null) {
-                    // first we are calculating the relative path of path[1] to path[0]
-                    String relativeTargetPath = RepositoryUtils.getRelativeAssociationPath(parts[1], parts[0]);
-                    // then we derive the absolute path with reference to the current path.
-                    String absoluteTargetPath = RepositoryUtils.getAbsoluteAssociationPath(relativeTargetPath, path);
-                    InternalUtils.registerHandlerForSymbolicLinks(RepositoryContext.getBaseInstance(), path, absoluteTargetPath, parts[2]);
-                }
-            }
-        }
+        restoreLinks(path, resourceImpl);
 
-        synchronized (this){
-            ResourceIDImpl resourceID = null;
-            ResourceDO resourceDO = null;
-            
-            if(resourceDAO.resourceExists(path)){
-                resourceID = resourceDAO.getResourceID(path);
-                resourceDO = resourceDAO.getResourceDO(resourceID);
-                
-                if (resourceDO == null) {
-                    if (isCollection) {
-                        resourceID = resourceDAO.getResourceID(path, isCollection);
-                        
-                        if (resourceID != null) {
-                            resourceDO = resourceDAO.getResourceDO(resourceID);
-                        }
-                    }
-                    
-                    if (resourceDO == null) {
-                        return;
-                    }
+        if (!skipped) {
+            synchronized (this){
+                if (!writeRestoredResource(path, resourceImpl, contentBytes, status)) {
+                    return;
                 }
             }
 
-            if(DumpConstants.RESOURCE_UPDATED.equals(status) || DumpConstants.RESOURCE_ADDED.equals(status) || DumpConstants.RESOURCE_DUMP.equals(status)) {
-                if(resourceDAO.resourceExists(path)){
-                    if (DumpConstants.RESOURCE_DUMP.equals(status)) {
-                        delete(path);
-                    } else {
-                        deleteNode(resourceID, resourceDO, true);
-                    }
-                }
-                
-                if (resourceID == null) {
-                    // need to create a resourceID
-                    String parentPath = RepositoryUtils.getParentPath(path);
-
-                    ResourceIDImpl parentResourceID = resourceDAO.getResourceID(parentPath, true);
-                    if (parentResourceID == null || !resourceDAO.resourceExists(parentResourceID)) {
-                        addEmptyCollection(parentPath);
-                        if (parentResourceID == null) {
-                            parentResourceID = resourceDAO.getResourceID(parentPath, true);
-                        }
-                    }
-                    resourceDAO.createAndApplyResourceID(path, parentResourceID, resourceImpl);
-                } else {
-                    resourceImpl.setPathID(resourceID.getPathID());
-                    resourceImpl.setPath(path);
-                    resourceImpl.setName(resourceID.getName());
-                }
-
-                // adding resource followed by content (for nonCollection)
-                if (!isCollection) {
-                    int contentId = 0;
-                    
-                    if (contentBytes.length > 0) {
-                        contentId = resourceDAO.addContentBytes(new ByteArrayInputStream(contentBytes));
-                    }
-                    
-                    resourceImpl.setDbBasedContentID(contentId);
-                }
-
-                resourceDO = resourceImpl.getResourceDO();
-                resourceDAO.addResourceDO(resourceDO);
-                resourceImpl.setVersionNumber(resourceDO.getVersion());
-
-                // adding the properties.
-                resourceDAO.addProperties(resourceImpl);
+            if (session != null && session.resourceRestored(path)) {
+                commitRestoreBatch(session);
             }
         }
 
@@ -1634,6 +2313,107 @@ public class ResourceStorer {
         }
     }
 
+    // Method to register the handlers of a symbolic or remote link restored at the given path.
+    private void restoreLinks(String path, ResourceImpl resourceImpl) throws RepositoryException {
+        String linkRestoration = resourceImpl.getProperty(InternalConstants.REGISTRY_LINK_RESTORATION);
+        if (linkRestoration != null) {
+            String[] parts = linkRestoration.split(RepositoryConstants.URL_SEPARATOR);
+            
+            if (parts.length == 4) {
+                if (parts[2] != null && parts[2].length() == 0) {
+                    parts[2] = null;
+                }
+                if (parts[0] != null && parts[1] != null && parts[3] != null) {
+                	InternalUtils.registerHandlerForRemoteLinks(RepositoryContext.getBaseInstance(), parts[0], parts[1], parts[2], parts[3]);
+                }
+            } else if (parts.length == 3) {
+                // here parts[0] the current path, path[1] is the target path.
+                if (parts[0] != null && parts[1] != null) {
+                    // first we are calculating the relative path of path[1] to path[0]
+                    String relativeTargetPath = RepositoryUtils.getRelativeAssociationPath(parts[1], parts[0]);
+                    // then we derive the absolute path with reference to the current path.
+                    String absoluteTargetPath = RepositoryUtils.getAbsoluteAssociationPath(relativeTargetPath, path);
+                    InternalUtils.registerHandlerForSymbolicLinks(RepositoryContext.getBaseInstance(), path, absoluteTargetPath, parts[2]);
+                }
+            }
+        }
+    }
+
+    // Method to write a restored resource in place of the one at the given path, returning false if
+    // the resource at the path could not be read.
+    private boolean writeRestoredResource(String path, ResourceImpl resourceImpl, byte[] contentBytes,
+                                          String status) throws RepositoryException {
+        ResourceIDImpl resourceID = null;
+        ResourceDO resourceDO = null;
+        
+        if(resourceDAO.resourceExists(path)){
+            resourceID = resourceDAO.getResourceID(path);
+            resourceDO = resourceDAO.getResourceDO(resourceID);
+            
+            if (resourceDO == null) {
+                if (resourceImpl instanceof CollectionImpl) {
+                    resourceID = resourceDAO.getResourceID(path, true);
+                    
+                    if (resourceID != null) {
+                        resourceDO = resourceDAO.getResourceDO(resourceID);
+                    }
+                }
+                
+                if (resourceDO == null) {
+                    return false;
+                }
+            }
+        }
+
+        if(DumpConstants.RESOURCE_UPDATED.equals(status) || DumpConstants.RESOURCE_ADDED.equals(status) || DumpConstants.RESOURCE_DUMP.equals(status)) {
+            if(resourceDAO.resourceExists(path)){
+                if (DumpConstants.RESOURCE_DUMP.equals(status)) {
+                    delete(path);
+                } else {
+                    deleteNode(resourceID, resourceDO, true);
+                }
+            }
+            
+            if (resourceID == null) {
+                // need to create a resourceID
+                String parentPath = RepositoryUtils.getParentPath(path);
+
+                ResourceIDImpl parentResourceID = resourceDAO.getResourceID(parentPath, true);
+                if (parentResourceID == null || !resourceDAO.resourceExists(parentResourceID)) {
+                    addEmptyCollection(parentPath);
+                    if (parentResourceID == null) {
+                        parentResourceID = resourceDAO.getResourceID(parentPath, true);
+                    }
+                }
+                resourceDAO.createAndApplyResourceID(path, parentResourceID, resourceImpl);
+            } else {
+                resourceImpl.setPathID(resourceID.getPathID());
+                resourceImpl.setPath(path);
+                resourceImpl.setName(resourceID.getName());
+            }
+
+            // adding resource followed by content (for nonCollection)
+            if (!(resourceImpl instanceof CollectionImpl)) {
+                int contentId = 0;
+                
+                if (contentBytes.length > 0) {
+                    contentId = resourceDAO.addContentBytes(new ByteArrayInputStream(contentBytes));
+                }
+                
+                resourceImpl.setDbBasedContentID(contentId);
+            }
+
+            resourceDO = resourceImpl.getResourceDO();
+            resourceDAO.addResourceDO(resourceDO);
+            resourceImpl.setVersionNumber(resourceDO.getVersion());
+
+            // adding the properties.
+            resourceDAO.addProperties(resourceImpl);
+        }
+
+        return true;
+    }
+
     // Method to do a recursive dump
     private void dumpRecursively(String path, XMLStreamWriter xmlWriter, Writer writer) throws RepositoryException, XMLStreamException {
         // adding resource meta data
@@ -1655,6 +2435,66 @@ public class ResourceStorer {
         xmlWriter.writeAttribute(DumpConstants.RESOURCE_IS_COLLECTION,
                 (resource instanceof CollectionImpl) ? DumpConstants.RESOURCE_IS_COLLECTION_TRUE : DumpConstants.RESOURCE_IS_COLLECTION_FALSE);
         
+        writeResourceFields(resource, xmlWriter);
+
+        // getting children and applying dump recursively
+        if (resource instanceof CollectionImpl) {
+            CollectionImpl collection = (CollectionImpl) resource;
+            resourceDAO.fillChildren(collection, 0, -1);
+            String childPaths[] = collection.getChildPaths();
+
+            xmlWriter.writeStartElement(DumpConstants.CHILDREN);
+            xmlWriter.writeCharacters("");
+            
+            xmlWriter.flush();
+            
+            for (String childPath : childPaths) {
+                // we would be writing the start element of the child and its name here.
+                try {
+                    String resourceName = RepositoryUtils.getResourceName(childPath);
+                    writer.write("<resource name=\"" + resourceName + "\"");
+                    writer.flush();
+                } catch (IOException e) {
+                    String msg = "Error in writing the start element for the path: " + childPath + ".";
+                    log.error(msg, e);
+                    throw new RepositoryException(msg, e);
+                }
+                
+                recursionRepository.dumpRecursively(childPath, new DumpWriter(writer));
+            }
+            xmlWriter.writeEndElement();
+        }
+        
+        xmlWriter.writeEndElement();
+        xmlWriter.flush();
+    }
+
+    // Method to write the fields of a resource to its element in a dump.
+    private void writeResourceFields(ResourceImpl resource, XMLStreamWriter xmlWriter)
+            throws RepositoryException, XMLStreamException {
+        resourceDAO.fillResourceProperties(resource);
+        byte[] content = null;
+
+        if (!(resource instanceof CollectionImpl)) {
+            resourceDAO.fillResourceContent(resource);
+            content = (byte[]) resource.getContent();
+        }
+
+        writeResourceFields(resource, content, xmlWriter);
+    }
+
+    /**
+     * Method to write the fields of a resource, whose properties have been filled, to its element
+     * in a dump. This is shared with the conversion of snapshots to dumps.
+     *
+     * @param resource  the resource.
+     * @param content   the content of the resource, or null if it has none.
+     * @param xmlWriter the writer of the dump.
+     *
+     * @throws XMLStreamException if the fields could not be written.
+     */
+    static void writeResourceFields(ResourceImpl resource, byte[] content, XMLStreamWriter xmlWriter)
+            throws XMLStreamException {
         // set media type
         String mediaType = resource.getMediaType();
         
@@ -1679,9 +2519,11 @@ public class ResourceStorer {
         // set createdTime
         Date createdTime = resource.getCreatedTime();
         
-        xmlWriter.writeStartElement(DumpConstants.CREATED_TIME);
-        xmlWriter.writeCharacters(Long.toString(createdTime.getTime()) != null ? Long.toString(createdTime.getTime()) : "");
-        xmlWriter.writeEndElement();
+        if (createdTime != null) {
+            xmlWriter.writeStartElement(DumpConstants.CREATED_TIME);
+            xmlWriter.writeCharacters(Long.toString(createdTime.getTime()));
+            xmlWriter.writeEndElement();
+        }
 
         // set updater
         String updater = resource.getLastUpdaterUserName();
@@ -1693,9 +2535,11 @@ public class ResourceStorer {
         // set LastModified
         Date lastModified = resource.getLastModified();
         
-        xmlWriter.writeStartElement(DumpConstants.LAST_MODIFIED);
-        xmlWriter.writeCharacters(Long.toString(lastModified.getTime()) != null ? Long.toString(lastModified.getTime()) : "");
-        xmlWriter.writeEndElement();
+        if (lastModified != null) {
+            xmlWriter.writeStartElement(DumpConstants.LAST_MODIFIED);
+            xmlWriter.writeCharacters(Long.toString(lastModified.getTime()));
+            xmlWriter.writeEndElement();
+        }
 
         // set UUID
         String uuid = resource.getUUID();
@@ -1712,7 +2556,6 @@ public class ResourceStorer {
         xmlWriter.writeEndElement();
 
         // fill properties
-        resourceDAO.fillResourceProperties(resource);
         Properties properties = resource.getProperties();
         if (properties != null && properties.size() > 0) {
         	xmlWriter.writeStartElement(DumpConstants.PROPERTIES);
@@ -1737,46 +2580,10 @@ public class ResourceStorer {
         }
         
         // adding contents..
-        if (!(resource instanceof CollectionImpl)) {
-            resourceDAO.fillResourceContent(resource);
-
-            byte[] content = (byte[]) resource.getContent();
-            if (content != null) {
-            	xmlWriter.writeStartElement(DumpConstants.CONTENT);
-            	xmlWriter.writeCharacters(DatatypeConverter.printBase64Binary(content) != null ? DatatypeConverter.printBase64Binary(content) : "");
-            	xmlWriter.writeEndElement();
-            }
-        }
-
-        // getting children and applying dump recursively
-        if (resource instanceof CollectionImpl) {
-            CollectionImpl collection = (CollectionImpl) resource;
-            resourceDAO.fillChildren(collection, 0, -1);
-            String childPaths[] = collection.getChildPaths();
-
-            xmlWriter.writeStartElement(DumpConstants.CHILDREN);
-            xmlWriter.writeCharacters("");
-            
-            xmlWriter.flush();
-            
-            for (String childPath : childPaths) {
-                // we would be writing the start element of the child and its name here.
-                try {
-                    String resourceName = RepositoryUtils.getResourceName(childPath);
-                    writer.write("<resource name=\"" + resourceName + "\"");
-                    writer.flush();
-                } catch (IOException e) {
-                    String msg = "Error in writing the start element for the path: " + childPath + ".";
-                    log.error(msg, e);
-                    throw new RepositoryException(msg, e);
-                }
-                
-                recursionRepository.dumpRecursively(childPath, new DumpWriter(writer));
-            }
+        if (!(resource instanceof CollectionImpl) && content != null) {
+            xmlWriter.writeStartElement(DumpConstants.CONTENT);
+            xmlWriter.writeCharacters(DatatypeConverter.printBase64Binary(content) != null ? DatatypeConverter.printBase64Binary(content) : "");
             xmlWriter.writeEndElement();
         }
-        
-        xmlWriter.writeEndElement();
-        xmlWriter.flush();
     }
 }
@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.repository.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.repository.api.Repository;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.core.utils.DumpReader;
+
+/**
+ * Restores a dump through {@link Repository#restore(String, Reader)}, committing the restored
+ * resources in batches instead of in a single transaction. After each batch, a checkpoint holding
+ * the number of resources restored so far and the path of the last of them is written to the
+ * checkpoint file, if one is given. A restore that was interrupted resumes from the checkpoint when
+ * the same dump is restored to the same path again: the dump is read from its start, but the
+ * resources up to the checkpoint are not written again.
+ * <p/>
+ * Batches can be committed only when the restore owns the transaction. When the restore is called
+ * within a transaction of the caller, it is committed together with that transaction as usual.
+ * <p/>
+ * A session restores a single dump, on the calling thread. The progress of the restore can be read
+ * from other threads while it runs.
+ */
+public class RestoreSession {
+
+    private static final Log log = LogFactory.getLog(RestoreSession.class);
+
+    private static final String CHECKPOINT_PATH = "path";
+    private static final String CHECKPOINT_COUNT = "count";
+    private static final String CHECKPOINT_LAST_PATH = "lastPath";
+
+    private final int batchSize;
+    private final File checkpointFile;
+
+    private String path;
+    private long checkpointCount;
+    private String checkpointPath;
+    private boolean batching;
+    private volatile DumpReader dumpReader;
+
+    private volatile long position;
+    private volatile long restored;
+    private volatile long skipped;
+    private volatile int batches;
+    private volatile String lastPath;
+    private volatile long committedCount;
+    private volatile String committedPath;
+    private volatile long startTime;
+    private volatile long endTime;
+    private volatile boolean completed;
+
+    private int pending;
+
+    /**
+     * Creates a session that commits batches without recording checkpoints.
+     *
+     * @param batchSize the number of resources committed together.
+     */
+    public RestoreSession(int batchSize) {
+        this(batchSize, null);
+    }
+
+    /**
+     * Creates a session that commits batches and records a checkpoint after each batch.
+     *
+     * @param batchSize      the number of resources committed together.
+     * @param checkpointFile the file to keep the checkpoint in, from which an earlier restore of
+     *                       the dump is resumed if it exists. The file is deleted once the
+     *                       restore completes.
+     */
+    public RestoreSession(int batchSize, File checkpointFile) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be positive: " + batchSize);
+        }
+
+        this.batchSize = batchSize;
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Method to restore the dump to the given path, returning once all of it has been restored.
+     *
+     * @param repository the repository to restore into.
+     * @param path       the path to restore the dump to.
+     * @param reader     the reader to read the dump from.
+     *
+     * @throws RepositoryException if the restore failed, or the checkpoint does not belong to a
+     *                             restore to the given path.
+     */
+    public void restore(Repository repository, String path, Reader reader) throws RepositoryException {
+        if (startTime != 0) {
+            throw new IllegalStateException("A restore session can only be used once.");
+        }
+
+        this.path = path;
+        readCheckpoint();
+        startTime = System.currentTimeMillis();
+
+        Object previous = CurrentContext.getAttribute(ResourceStorer.RESTORE_SESSION);
+        CurrentContext.setAttribute(ResourceStorer.RESTORE_SESSION, this);
+
+        try {
+            repository.restore(path, reader);
+        } finally {
+            if (previous != null) {
+                CurrentContext.setAttribute(ResourceStorer.RESTORE_SESSION, previous);
+            } else {
+                CurrentContext.removeAttribute(ResourceStorer.RESTORE_SESSION);
+            }
+            endTime = System.currentTimeMillis();
+        }
+
+        committedCount = position;
+        committedPath = lastPath;
+        completed = true;
+
+        if (checkpointFile != null && checkpointFile.exists() && !checkpointFile.delete()) {
+            log.warn("Unable to delete the restore checkpoint " + checkpointFile.getAbsolutePath() + ".");
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Restored " + restored + " resources to " + path + " in " + batches + " batches, skipping " +
+                    skipped + " resources restored earlier, at " + getThroughput() + " resources per second.");
+        }
+    }
+
+    /**
+     * Method to obtain the number of resources written by this session.
+     *
+     * @return the number of restored resources.
+     */
+    public long getRestoredCount() {
+        return restored;
+    }
+
+    /**
+     * Method to obtain the number of resources that were not written again, because they had been
+     * restored before the checkpoint.
+     *
+     * @return the number of skipped resources.
+     */
+    public long getSkippedCount() {
+        return skipped;
+    }
+
+    /**
+     * Method to obtain the number of batches committed so far.
+     *
+     * @return the number of batches.
+     */
+    public int getBatchCount() {
+        return batches;
+    }
+
+    /**
+     * Method to obtain the number of resources of the dump that have been committed, counting the
+     * ones restored before the checkpoint. This is the position a restore would resume from.
+     *
+     * @return the number of committed resources.
+     */
+    public long getCommittedCount() {
+        return committedCount;
+    }
+
+    /**
+     * Method to obtain the path of the last resource that has been committed.
+     *
+     * @return the path of the last committed resource, or null if none has been committed.
+     */
+    public String getCommittedPath() {
+        return committedPath;
+    }
+
+    /**
+     * Method to obtain the number of characters of the dump read so far.
+     *
+     * @return the number of characters read.
+     */
+    public long getCharactersRead() {
+        DumpReader reader = dumpReader;
+        return (reader == null) ? 0 : reader.getTotalRead();
+    }
+
+    /**
+     * Method to obtain the number of resources written per second.
+     *
+     * @return the throughput of the restore.
+     */
+    public double getThroughput() {
+        if (startTime == 0) {
+            return 0;
+        }
+
+        long elapsedTime = ((endTime != 0) ? endTime : System.currentTimeMillis()) - startTime;
+
+        if (elapsedTime == 0) {
+            return 0;
+        }
+
+        return restored * 1000.0 / elapsedTime;
+    }
+
+    /**
+     * Method to determine whether the whole dump has been restored.
+     *
+     * @return true if the restore has completed.
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    // called by the storer at the start of the restore, with the reader of the whole dump.
+    boolean isStarted() {
+        return dumpReader != null;
+    }
+
+    void start(DumpReader dumpReader, boolean ownsTransaction) {
+        this.dumpReader = dumpReader;
+        this.batching = ownsTransaction;
+
+        if (!ownsTransaction) {
+            log.warn("The restore to " + path + " runs within the transaction of the caller, so it will be " +
+                    "committed as a whole.");
+        }
+    }
+
+    // whether the next resource of the dump was restored before the checkpoint.
+    boolean skip(String resourcePath) throws RepositoryException {
+        position++;
+
+        if (position > checkpointCount) {
+            return false;
+        }
+
+        if (position == checkpointCount && !resourcePath.equals(checkpointPath)) {
+            String msg = "The dump does not match the restore checkpoint, expected " + checkpointPath +
+                    " but found " + resourcePath + " at position " + position + ".";
+            log.error(msg);
+            throw new RepositoryException(msg);
+        }
+
+        skipped++;
+        lastPath = resourcePath;
+
+        return true;
+    }
+
+    // whether a batch is complete and should be committed, after the given resource is restored.
+    boolean resourceRestored(String resourcePath) {
+        restored++;
+        lastPath = resourcePath;
+
+        return batching && ++pending >= batchSize;
+    }
+
+    void batchCommitted() throws RepositoryException {
+        pending = 0;
+        batches++;
+        committedCount = position;
+        committedPath = lastPath;
+
+        if (checkpointFile != null) {
+            writeCheckpoint();
+        }
+    }
+
+    private void readCheckpoint() throws RepositoryException {
+        if (checkpointFile == null || !checkpointFile.exists()) {
+            return;
+        }
+
+        Properties checkpoint = new Properties();
+        InputStream in = null;
+
+        try {
+            in = new FileInputStream(checkpointFile);
+            checkpoint.load(in);
+        } catch (IOException e) {
+            String msg = "Failed to read the restore checkpoint " + checkpointFile.getAbsolutePath() + ".";
+            log.error(msg, e);
+            throw new RepositoryException(msg, e);
+        } finally {
+            closeQuietly(in);
+        }
+
+        if (!path.equals(checkpoint.getProperty(CHECKPOINT_PATH))) {
+            String msg = "The restore checkpoint " + checkpointFile.getAbsolutePath() + " belongs to a restore to " +
+                    checkpoint.getProperty(CHECKPOINT_PATH) + ", not to " + path + ".";
+            log.error(msg);
+            throw new RepositoryException(msg);
+        }
+
+        try {
+            checkpointCount = Long.parseLong(checkpoint.getProperty(CHECKPOINT_COUNT));
+        } catch (NumberFormatException e) {
+            String msg = "Invalid restore checkpoint " + checkpointFile.getAbsolutePath() + ".";
+            log.error(msg, e);
+            throw new RepositoryException(msg, e);
+        }
+        checkpointPath = checkpoint.getProperty(CHECKPOINT_LAST_PATH);
+        committedCount = checkpointCount;
+        committedPath = checkpointPath;
+
+        log.info("Resuming the restore to " + path + " after " + checkpointCount + " resources, at " +
+                checkpointPath + ".");
+    }
+
+    private void writeCheckpoint() throws RepositoryException {
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty(CHECKPOINT_PATH, path);
+        checkpoint.setProperty(CHECKPOINT_COUNT, Long.toString(committedCount));
+        if (committedPath != null) {
+            checkpoint.setProperty(CHECKPOINT_LAST_PATH, committedPath);
+        }
+
+        // the checkpoint is replaced as a whole, so that a crash never leaves half of it behind.
+        File tempFile = new File(checkpointFile.getAbsolutePath() + ".tmp");
+        OutputStream out = null;
+
+        try {
+            out = new FileOutputStream(tempFile);
+            checkpoint.store(out, null);
+        } catch (IOException e) {
+            String msg = "Failed to write the restore checkpoint " + checkpointFile.getAbsolutePath() + ".";
+            log.error(msg, e);
+            throw new RepositoryException(msg, e);
+        } finally {
+            closeQuietly(out);
+        }
+
+        if (!tempFile.renameTo(checkpointFile) && !(checkpointFile.delete() && tempFile.renameTo(checkpointFile))) {
+            String msg = "Failed to write the restore checkpoint " + checkpointFile.getAbsolutePath() + ".";
+            log.error(msg);
+            throw new RepositoryException(msg);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+}
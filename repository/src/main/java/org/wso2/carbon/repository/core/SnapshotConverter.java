@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.repository.core;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Date;
+import java.util.LinkedList;
+
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.repository.api.RepositoryConstants;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.api.utils.RepositoryUtils;
+import org.wso2.carbon.repository.core.utils.MediaTypesUtils;
+import org.wso2.carbon.repository.core.utils.SnapshotReader;
+import org.wso2.carbon.repository.core.utils.SnapshotWriter;
+
+/**
+ * Converts XML dumps, as written by {@link EmbeddedRepository#dump(String, Writer)}, to snapshots
+ * and back. A dump converted to a snapshot restores to the same resources as the dump itself, and
+ * a snapshot converted to a dump holds the same fields as a dump of the resources would.
+ */
+public class SnapshotConverter {
+
+    private static final Log log = LogFactory.getLog(SnapshotConverter.class);
+
+    /**
+     * Method to convert a dump to a snapshot. The writer is not closed.
+     *
+     * @param reader the reader of the dump.
+     * @param writer the writer of the snapshot.
+     *
+     * @throws RepositoryException if the dump could not be read, or the snapshot written.
+     */
+    public static void fromDump(Reader reader, SnapshotWriter writer) throws RepositoryException {
+        try {
+            XMLStreamReader xmlReader = XMLInputFactory.newInstance().createXMLStreamReader(reader);
+
+            while (!xmlReader.isStartElement() && xmlReader.hasNext()) {
+                xmlReader.next();
+            }
+
+            if (!xmlReader.isStartElement() || !xmlReader.getLocalName().equals(DumpConstants.RESOURCE)) {
+                String msg = "Invalid dump to convert to a snapshot.";
+                log.error(msg);
+                throw new RepositoryException(msg);
+            }
+
+            readResource(xmlReader, "", writer);
+        } catch (XMLStreamException e) {
+            String msg = "Failed to read the dump to convert to a snapshot.";
+            log.error(msg, e);
+            throw new RepositoryException(msg, e);
+        }
+    }
+
+    /**
+     * Method to convert a snapshot to a dump.
+     *
+     * @param reader the reader of the snapshot.
+     * @param writer the writer of the dump.
+     *
+     * @throws RepositoryException if the snapshot could not be read, or the dump written.
+     */
+    public static void toDump(SnapshotReader reader, Writer writer) throws RepositoryException {
+        XMLStreamWriter xmlWriter = null;
+
+        try {
+            xmlWriter = XMLOutputFactory.newInstance().createXMLStreamWriter(writer);
+
+            // the paths of the collections whose children are being written.
+            LinkedList<String> openCollections = new LinkedList<String>();
+
+            for (int i = 0; i < reader.getBlockCount(); i++) {
+                for (SnapshotReader.Entry entry : reader.readBlock(i)) {
+                    String path = entry.getPath();
+
+                    while (!openCollections.isEmpty() && !isChild(openCollections.getFirst(), path)) {
+                        openCollections.removeFirst();
+                        xmlWriter.writeEndElement();
+                        xmlWriter.writeEndElement();
+                    }
+
+                    ResourceImpl resource = entry.getResource();
+                    boolean isCollection = resource instanceof CollectionImpl;
+
+                    xmlWriter.writeStartElement(DumpConstants.RESOURCE);
+                    xmlWriter.writeAttribute(DumpConstants.RESOURCE_NAME, (path.length() == 0) ?
+                            reader.getRootName() : RepositoryUtils.getResourceName(path));
+                    xmlWriter.writeAttribute(DumpConstants.RESOURCE_STATUS, DumpConstants.RESOURCE_DUMP);
+                    xmlWriter.writeAttribute(DumpConstants.RESOURCE_IS_COLLECTION,
+                            isCollection ? DumpConstants.RESOURCE_IS_COLLECTION_TRUE : DumpConstants.RESOURCE_IS_COLLECTION_FALSE);
+                    ResourceStorer.writeResourceFields(resource, entry.getContent(), xmlWriter);
+
+                    if (isCollection) {
+                        xmlWriter.writeStartElement(DumpConstants.CHILDREN);
+                        xmlWriter.writeCharacters("");
+                        openCollections.addFirst(path);
+                    } else {
+                        xmlWriter.writeEndElement();
+                    }
+                }
+            }
+
+            while (!openCollections.isEmpty()) {
+                openCollections.removeFirst();
+                xmlWriter.writeEndElement();
+                xmlWriter.writeEndElement();
+            }
+
+            xmlWriter.flush();
+        } catch (XMLStreamException e) {
+            String msg = "Failed to convert the snapshot to a dump.";
+            log.error(msg, e);
+            throw new RepositoryException(msg, e);
+        } finally {
+            if (xmlWriter != null) {
+                try {
+                    xmlWriter.close();
+                } catch (XMLStreamException e) {
+                }
+            }
+        }
+    }
+
+    // Method to check whether the relative path is that of a child of the given collection.
+    private static boolean isChild(String collectionPath, String path) {
+        int separator = path.lastIndexOf(RepositoryConstants.PATH_SEPARATOR);
+        return separator >= 0 && path.substring(0, separator).equals(collectionPath);
+    }
+
+    // Method to read a resource of a dump with its children, writing the resource before them.
+    private static void readResource(XMLStreamReader xmlReader, String path, SnapshotWriter writer)
+            throws RepositoryException, XMLStreamException {
+        boolean isCollection = DumpConstants.RESOURCE_IS_COLLECTION_TRUE.equals(
+                xmlReader.getAttributeValue(null, DumpConstants.RESOURCE_IS_COLLECTION));
+        ResourceImpl resource = isCollection ? new CollectionImpl() : new ResourceImpl();
+
+        if (path.length() == 0) {
+            // the name of the root is only kept to be written back to dumps.
+            String name = getResourceName(xmlReader);
+            if (name != null) {
+                resource.setPath(RepositoryConstants.PATH_SEPARATOR + name);
+            }
+        }
+
+        byte[] content = null;
+        boolean written = false;
+
+        while (xmlReader.next() != XMLStreamConstants.END_ELEMENT) {
+            if (!xmlReader.isStartElement()) {
+                continue;
+            }
+
+            String localName = xmlReader.getLocalName();
+
+            if (localName.equals(DumpConstants.MEDIA_TYPE)) {
+                String text = xmlReader.getElementText();
+                if (text.indexOf('/') < 0) {
+                    text = MediaTypesUtils.getMediaType("dummy." + text);
+                }
+                if (text != null) {
+                    resource.setMediaType(text);
+                }
+            } else if (localName.equals(DumpConstants.VERSION)) {
+                String text = xmlReader.getElementText();
+                if (text.length() > 0) {
+                    resource.setVersionNumber(Long.parseLong(text));
+                }
+            } else if (localName.equals(DumpConstants.CREATOR)) {
+                resource.setAuthorUserName(xmlReader.getElementText());
+            } else if (localName.equals(DumpConstants.CREATED_TIME)) {
+                String text = xmlReader.getElementText();
+                if (text.length() > 0) {
+                    resource.setCreatedTime(new Date(Long.parseLong(text)));
+                }
+            } else if (localName.equals(DumpConstants.LAST_UPDATER)) {
+                resource.setLastUpdaterUserName(xmlReader.getElementText());
+            } else if (localName.equals(DumpConstants.LAST_MODIFIED)) {
+                String text = xmlReader.getElementText();
+                if (text.length() > 0) {
+                    resource.setLastModified(new Date(Long.parseLong(text)));
+                }
+            } else if (localName.equals(DumpConstants.UUID)) {
+                resource.setUUID(xmlReader.getElementText());
+            } else if (localName.equals(DumpConstants.DESCRIPTION)) {
+                resource.setDescription(xmlReader.getElementText());
+            } else if (localName.equals(DumpConstants.PROPERTIES)) {
+                while (xmlReader.next() != XMLStreamConstants.END_ELEMENT) {
+                    if (xmlReader.isStartElement()) {
+                        String key = xmlReader.getAttributeValue(null, DumpConstants.PROPERTY_ENTRY_KEY);
+                        String text = xmlReader.getElementText();
+                        // empty values are dropped, as a restore of the dump would.
+                        if (text.length() > 0) {
+                            resource.addPropertyWithNoUpdate(key, text);
+                        }
+                    }
+                }
+            } else if (localName.equals(DumpConstants.CONTENT)) {
+                content = DatatypeConverter.parseBase64Binary(xmlReader.getElementText());
+            } else if (localName.equals(DumpConstants.CHILDREN) || localName.equals(DumpConstants.CHILDS)) {
+                if (!written) {
+                    writer.write(path, resource, isCollection ? null : content);
+                    written = true;
+                }
+
+                while (xmlReader.next() != XMLStreamConstants.END_ELEMENT) {
+                    if (xmlReader.isStartElement()) {
+                        String name = getResourceName(xmlReader);
+                        if (name == null) {
+                            String msg = "Error in deriving the child paths for collection. path: " + path + ".";
+                            log.error(msg);
+                            throw new RepositoryException(msg);
+                        }
+                        readResource(xmlReader, path + RepositoryConstants.PATH_SEPARATOR + name, writer);
+                    }
+                }
+            } else {
+                skipElement(xmlReader);
+            }
+        }
+
+        if (!written) {
+            writer.write(path, resource, isCollection ? null : content);
+        }
+    }
+
+    // Method to obtain the name of the resource of the current element, which older dumps give
+    // through its path.
+    private static String getResourceName(XMLStreamReader xmlReader) {
+        String name = xmlReader.getAttributeValue(null, DumpConstants.RESOURCE_NAME);
+
+        if (name == null) {
+            String path = xmlReader.getAttributeValue(null, DumpConstants.RESOURCE_PATH);
+            if (path != null) {
+                name = RepositoryUtils.getResourceName(path);
+            }
+        }
+
+        return name;
+    }
+
+    // Method to move past the end of the current element, ignoring what is within it.
+    private static void skipElement(XMLStreamReader xmlReader) throws XMLStreamException {
+        int depth = 1;
+
+        while (depth > 0) {
+            int event = xmlReader.next();
+
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+}
@@ -18,7 +18,9 @@ package org.wso2.carbon.repository.core;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -48,6 +50,9 @@ public class VersionResourceStorer {
 
     private static Log log = LogFactory.getLog(VersionResourceStorer.class);
 
+    // The number of descendants moved to the history tables together when taking a snapshot.
+    private static final int SNAPSHOT_BATCH_SIZE = 100;
+
     private DataAccessManager dataAccessManager;
 
     private ResourceDAO resourceDAO;
@@ -75,7 +80,7 @@ public class VersionResourceStorer {
      */
     public void createSnapshot(Resource resource, boolean isRenewing, boolean keepProperties) throws RepositoryException {
         ResourceImpl resourceImpl = (ResourceImpl) resource;
-        createVersionForResource(resourceImpl, isRenewing, keepProperties);
+        ResourceImpl renewedResourceImpl = createVersionForResource(resourceImpl, isRenewing, keepProperties);
 
         long version = resourceImpl.getVersionNumber();
         boolean isCollection = resourceImpl instanceof CollectionImpl;
@@ -84,7 +89,7 @@ public class VersionResourceStorer {
         versionList.add(version);
         
         if (isCollection) {
-            addDescendants(rootResourceID, versionList, isRenewing, keepProperties);
+            addDescendantsInBulk(rootResourceID, renewedResourceImpl, versionList, isRenewing, keepProperties);
         }
         
         InputStream versionsInputStream = new VersionInputStream(versionList);
@@ -130,41 +135,100 @@ public class VersionResourceStorer {
     }
 
     /**
-     * Here the versions of the descendants of the resource is added to the versionList array.
-     * immediate descendants will be added to the list before others
+     * Versions the descendants of a collection. The versions are added to the version list with
+     * the children of a collection first, then the descendants of each child collection. The
+     * subtree is read a level at a time and the current rows are moved to the history tables a
+     * batch of resources at a time. When renewing, each descendant is still added back to the
+     * current tables one at a time, since each copy gets its own generated version and content id.
      *
-     * @param resourceID     the resource identifier
-     * @param versionList    a list of versions.
-     * @param isRenewing     whether we are renewing.
-     * @param keepProperties whether to preserve properties.
+     * @param resourceID          the resource identifier of the collection.
+     * @param renewedResourceImpl the renewed copy of the collection, or null if it was not renewed.
+     * @param versionList         a list of versions.
+     * @param isRenewing          whether we are renewing.
+     * @param keepProperties      whether to preserve properties.
      *
      * @throws RepositoryException if the operation failed.
      */
-    public void addDescendants(ResourceIDImpl resourceID, ArrayList<Long> versionList, boolean isRenewing, boolean keepProperties) throws RepositoryException {
-        List<ResourceIDImpl> childIds = resourceDAO.getChildPathIds(resourceID);
+    private void addDescendantsInBulk(ResourceIDImpl resourceID, ResourceImpl renewedResourceImpl, ArrayList<Long> versionList,
+                                      boolean isRenewing, boolean keepProperties) throws RepositoryException {
+        // read the whole subtree before changing it, one query pair per level.
+        Map<Integer, List<ResourceImpl>> childrenByParent = new HashMap<Integer, List<ResourceImpl>>();
+        List<ResourceIDImpl> level = new ArrayList<ResourceIDImpl>();
+        level.add(resourceID);
+
+        while (!level.isEmpty()) {
+            Map<Integer, List<ResourceImpl>> children = resourceDAO.getChildResourcesMetaData(level);
+            childrenByParent.putAll(children);
+            level = new ArrayList<ResourceIDImpl>();
+
+            for (List<ResourceImpl> siblings : children.values()) {
+                for (ResourceImpl child : siblings) {
+                    if (child instanceof CollectionImpl) {
+                        level.add(child.getResourceIDImpl());
+                    }
+                }
+            }
+        }
 
-        for (ResourceIDImpl childId : childIds) {
-            ResourceImpl childResourceImpl = resourceDAO.getResourceWithNoUpdate(childId);
-            long version = childResourceImpl.getVersionNumber();
-            versionList.add(version);
+        List<ResourceImpl> descendants = new ArrayList<ResourceImpl>();
+        addDescendants(resourceID.getPathID(), childrenByParent, descendants);
 
-            createVersionForResource(childResourceImpl, isRenewing, keepProperties);
+        // the versioned collections get their current rows copied to the history as well.
+        List<Long> collectionVersions = new ArrayList<Long>();
+        if (renewedResourceImpl != null) {
+            collectionVersions.add(renewedResourceImpl.getVersionNumber());
         }
 
-        for (ResourceIDImpl childId : childIds) {
-            if (childId.isCollection()) {
-                addDescendants(childId, versionList, isRenewing, keepProperties);
+        for (int start = 0; start < descendants.size(); start += SNAPSHOT_BATCH_SIZE) {
+            List<ResourceImpl> batch = descendants.subList(start, Math.min(descendants.size(), start + SNAPSHOT_BATCH_SIZE));
+            List<ResourceDO> resourceDOs = new ArrayList<ResourceDO>(batch.size());
+
+            for (ResourceImpl descendant : batch) {
+                versionList.add(descendant.getVersionNumber());
+                resourceDOs.add(descendant.getResourceDO());
+
+                if (isRenewing) {
+                    loadForRenewal(descendant, keepProperties);
+                }
+            }
+
+            resourceVersionDAO.versionResources(resourceDOs, keepProperties);
+
+            if (isRenewing) {
+                for (ResourceImpl descendant : batch) {
+                    ResourceImpl renewedDescendant = renewResource(descendant, keepProperties);
+
+                    if (renewedDescendant instanceof CollectionImpl) {
+                        collectionVersions.add(renewedDescendant.getVersionNumber());
+                    }
+                }
             }
         }
 
-        ResourceDO resourceDO = resourceDAO.getResourceDO(resourceID);
-        if (resourceID.isCollection() && !resourceVersionDAO.isResourceHistoryExist(resourceDO.getVersion())) {
-            resourceVersionDAO.putResourceToHistory(resourceDO);
+        resourceVersionDAO.putResourcesToHistory(collectionVersions);
+    }
+
+    // Adds the descendants of the given collection in the order of the recursive version list:
+    // the children of a collection first, then the descendants of each child collection.
+    private void addDescendants(int pathId, Map<Integer, List<ResourceImpl>> childrenByParent,
+                                List<ResourceImpl> descendants) {
+        List<ResourceImpl> children = childrenByParent.get(pathId);
+
+        if (children == null) {
+            return;
+        }
+
+        descendants.addAll(children);
+
+        for (ResourceImpl child : children) {
+            if (child instanceof CollectionImpl) {
+                addDescendants(child.getPathID(), childrenByParent, descendants);
+            }
         }
     }
 
-    // Method to create version for a resource.
-    private void createVersionForResource(ResourceImpl resourceImpl, boolean isRenewing, boolean keepProperties) throws RepositoryException {
+    // Method to create version for a resource. Returns the renewed copy of the resource, if any.
+    private ResourceImpl createVersionForResource(ResourceImpl resourceImpl, boolean isRenewing, boolean keepProperties) throws RepositoryException {
         ResourceDO resourceDO = resourceImpl.getResourceDO();
         
         if (resourceDO.getVersion() <= 0) {
@@ -174,37 +238,49 @@ public class VersionResourceStorer {
         }
         
         if (isRenewing) {
-            // retrieve the old content and properties before versioning
-            if (!(resourceImpl instanceof CollectionImpl)) {
-                // we have to load the content
-                resourceDAO.fillResourceContentWithNoUpdate(resourceImpl);
-            }
-            if (StaticConfiguration.isVersioningProperties() || !keepProperties) {
-                // we need to load the properties as well
-                resourceDAO.fillResourcePropertiesWithNoUpdate(resourceImpl);
-            }
+            loadForRenewal(resourceImpl, keepProperties);
         }
         
         resourceVersionDAO.versionResource(resourceDO, keepProperties);
         
         if (isRenewing) {
-            // we add a new copy to the resource table with a newer version
-            ResourceImpl renewedResourceImpl = resourceImpl.getShallowCopy();
-            
-            if (!(renewedResourceImpl instanceof CollectionImpl)) {
-                resourceDAO.addContent(renewedResourceImpl);
-            }
-            
-            resourceDAO.addResourceWithNoUpdate(renewedResourceImpl);
-            
-            if (StaticConfiguration.isVersioningProperties() || !keepProperties) {
-                // if the properties are not versioned, we can here safely assume
-                // the properties are already there, so no need to add twice
-                resourceDAO.addProperties(renewedResourceImpl);
-            }
+            return renewResource(resourceImpl, keepProperties);
+        }
+
+        return null;
+    }
+
+    // Retrieves the old content and properties before versioning.
+    private void loadForRenewal(ResourceImpl resourceImpl, boolean keepProperties) throws RepositoryException {
+        if (!(resourceImpl instanceof CollectionImpl)) {
+            // we have to load the content
+            resourceDAO.fillResourceContentWithNoUpdate(resourceImpl);
+        }
+        if (StaticConfiguration.isVersioningProperties() || !keepProperties) {
+            // we need to load the properties as well
+            resourceDAO.fillResourcePropertiesWithNoUpdate(resourceImpl);
         }
     }
 
+    // Adds a new copy to the resource table with a newer version.
+    private ResourceImpl renewResource(ResourceImpl resourceImpl, boolean keepProperties) throws RepositoryException {
+        ResourceImpl renewedResourceImpl = resourceImpl.getShallowCopy();
+        
+        if (!(renewedResourceImpl instanceof CollectionImpl)) {
+            resourceDAO.addContent(renewedResourceImpl);
+        }
+        
+        resourceDAO.addResourceWithNoUpdate(renewedResourceImpl);
+        
+        if (StaticConfiguration.isVersioningProperties() || !keepProperties) {
+            // if the properties are not versioned, we can here safely assume
+            // the properties are already there, so no need to add twice
+            resourceDAO.addProperties(renewedResourceImpl);
+        }
+
+        return renewedResourceImpl;
+    }
+
     /**
      * Method to obtain a list of versioned paths. for a given path.
      *
@@ -46,7 +46,8 @@ import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
 
 /**
  * CachingHandler using to handle the cached results of registry operation. We are removing the the
- * data from cache for all the write operations.
+ * data from cache for all the write operations. The targets resolved for symbolic links and mounts
+ * through or to the written paths are dropped as well.
  */
 public class CachingHandler extends Handler {
 
@@ -88,9 +89,26 @@ public class CachingHandler extends Handler {
      * @param recursive      whether this operation must be recursively applied on child resources
      */
     private void clearCache(HandlerContext requestContext, String cachePath, boolean recursive) {
+        clearLinkResolutions(requestContext, cachePath, recursive);
         clearCache(requestContext, cachePath, recursive, false);
     }
 
+    /**
+     * used to drop the link and mount targets resolved through or to the written path
+     *
+     * @param requestContext registryContext
+     * @param path           written path
+     * @param recursive      whether this operation must be recursively applied on child resources
+     */
+    private void clearLinkResolutions(HandlerContext requestContext, String path,
+                                      boolean recursive) {
+        LinkResolutionCache linkResolutionCache =
+                InternalUtils.getLinkResolutionCache(requestContext.getRepository());
+        if (linkResolutionCache != null) {
+            linkResolutionCache.invalidate(CurrentContext.getTenantId(), path, recursive);
+        }
+    }
+
     /**
      * used to clear cache for the registry write operations
      *
@@ -269,9 +287,22 @@ public class CachingHandler extends Handler {
 
     public String rename(HandlerContext requestContext) throws RepositoryException {
         clearCache(requestContext, requestContext.getSourcePath(), true);
+        clearCache(requestContext, getRenamedPath(requestContext), true);
         return super.rename(requestContext);
     }
 
+    // the path a resource is renamed to, where a relative name is in the collection of the source.
+    private static String getRenamedPath(HandlerContext requestContext) {
+        String newName = requestContext.getInstanceId();
+
+        if (newName.startsWith(RepositoryConstants.PATH_SEPARATOR)) {
+            return newName;
+        }
+
+        String sourcePath = requestContext.getSourcePath();
+        return sourcePath.substring(0, sourcePath.lastIndexOf(RepositoryConstants.PATH_SEPARATOR) + 1) + newName;
+    }
+
     public void createLink(HandlerContext requestContext) throws RepositoryException {
         clearCache(requestContext, requestContext.getResourcePath().getPath(), true);
         super.createLink(requestContext);
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.repository.core.caching;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A cache of the targets resolved for paths under symbolic links and mounts, kept per tenant. It
+ * maps the path that was read to the path of a target that existed, so that reading through a
+ * link does not need to check the existence of the target before loading it. Missing targets are
+ * not cached, since a target may be created through a chain of links, a rename or a mount without
+ * a write to the path the entry is indexed by.
+ * <p/>
+ * An entry is dropped when a write touches either the path of the link or the path of the target,
+ * as reported by the {@link CachingHandler}. The paths under each target are indexed, so that a
+ * write finds the entries resolved to it without walking all of them. Invalidation otherwise
+ * follows {@link TenantPathCache}.
+ */
+public class LinkResolutionCache extends TenantPathCache<LinkResolutionCache.Entry> {
+
+    // the paths resolved to each target, sorted by target, per tenant.
+    private final Map<Integer, NavigableMap<String, Set<String>>> tenantTargets =
+            new ConcurrentHashMap<Integer, NavigableMap<String, Set<String>>>();
+
+    /**
+     * The resolved target of a path under a link.
+     */
+    public static final class Entry {
+
+        private final String targetPath;
+
+        /**
+         * Creates an entry.
+         *
+         * @param targetPath the path of the target, which existed when it was resolved.
+         */
+        public Entry(String targetPath) {
+            this.targetPath = targetPath;
+        }
+
+        /**
+         * Method to obtain the path of the target.
+         *
+         * @return the path of the target.
+         */
+        public String getTargetPath() {
+            return targetPath;
+        }
+    }
+
+    /**
+     * Creates a cache holding up to the default number of entries per tenant.
+     */
+    public LinkResolutionCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a cache holding up to the given number of entries per tenant.
+     *
+     * @param capacity the maximum number of entries per tenant.
+     */
+    public LinkResolutionCache(int capacity) {
+        super(capacity);
+    }
+
+    /**
+     * Method to obtain the resolved target of a path, if it is still the given target.
+     *
+     * @param tenantId   the tenant identifier.
+     * @param path       the path under the link.
+     * @param targetPath the path of the target the link currently points to.
+     *
+     * @return the entry, or null if the path is not cached or was resolved to another target.
+     */
+    public Entry get(int tenantId, String path, String targetPath) {
+        Entry entry = get(tenantId, path);
+        return entry != null && entry.getTargetPath().equals(targetPath) ? entry : null;
+    }
+
+    protected void entryAdded(int tenantId, String path, Entry entry) {
+        NavigableMap<String, Set<String>> targets = getTargets(tenantId);
+        Set<String> paths = targets.get(entry.getTargetPath());
+
+        if (paths == null) {
+            paths = new HashSet<String>();
+            targets.put(entry.getTargetPath(), paths);
+        }
+
+        paths.add(path);
+    }
+
+    protected void entryRemoved(int tenantId, String path, Entry entry) {
+        NavigableMap<String, Set<String>> targets = getTargets(tenantId);
+        Set<String> paths = targets.get(entry.getTargetPath());
+
+        if (paths != null) {
+            paths.remove(path);
+            if (paths.isEmpty()) {
+                targets.remove(entry.getTargetPath());
+            }
+        }
+    }
+
+    protected List<String> getDependentPaths(int tenantId, String path, boolean recursive) {
+        NavigableMap<String, Set<String>> targets = getTargets(tenantId);
+        List<String> paths = new ArrayList<String>();
+
+        for (String targetPath : getPaths(targets.navigableKeySet(), path, recursive)) {
+            paths.addAll(targets.get(targetPath));
+        }
+
+        return paths;
+    }
+
+    private NavigableMap<String, Set<String>> getTargets(int tenantId) {
+        NavigableMap<String, Set<String>> targets = tenantTargets.get(tenantId);
+
+        if (targets == null) {
+            synchronized (tenantTargets) {
+                targets = tenantTargets.get(tenantId);
+                if (targets == null) {
+                    targets = new TreeMap<String, Set<String>>();
+                    tenantTargets.put(tenantId, targets);
+                }
+            }
+        }
+
+        return targets;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.repository.core.caching;
+
+/**
+ * A small cache of the media types of the resources stored in one repository, kept per tenant.
+ * It is used to evaluate media type based filters without loading the resources.
+ * <p/>
+ * Only existing resources are cached, so that resources created implicitly (such as the parent
+ * collections of a new resource) never have a stale entry. Invalidation follows
+ * {@link TenantPathCache}.
+ */
+public class MediaTypeCache extends TenantPathCache<MediaTypeCache.Entry> {
+
+    /**
+     * The cached media type of a resource.
+     */
+    public static final class Entry {
+
+        private final String mediaType;
+        private final boolean collection;
+
+        /**
+         * Creates an entry.
+         *
+         * @param mediaType  the media type of the resource, which may be null.
+         * @param collection whether the resource is a collection.
+         */
+        public Entry(String mediaType, boolean collection) {
+            this.mediaType = mediaType;
+            this.collection = collection;
+        }
+
+        /**
+         * Method to obtain the media type of the resource.
+         *
+         * @return the media type, or null if the resource has no media type.
+         */
+        public String getMediaType() {
+            return mediaType;
+        }
+
+        /**
+         * Method to check whether the resource is a collection.
+         *
+         * @return true if the resource is a collection.
+         */
+        public boolean isCollection() {
+            return collection;
+        }
+    }
+
+    /**
+     * Creates a cache holding up to the default number of entries per tenant.
+     */
+    public MediaTypeCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a cache holding up to the given number of entries per tenant.
+     *
+     * @param capacity the maximum number of entries per tenant.
+     */
+    public MediaTypeCache(int capacity) {
+        super(capacity);
+    }
+}
@@ -0,0 +1,661 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.repository.core.caching;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.wso2.carbon.repository.api.RepositoryConstants;
+
+/**
+ * An in-memory tree of the collection paths stored in <code>REG_PATH</code>, kept per database and
+ * tenant. Each node holds one interned path segment, and the tree is stored in parallel primitive
+ * arrays indexed by a node slot. Two open-addressing tables map (parent slot, segment) and path id
+ * to a node slot, so that path to id and id to path look-ups do not need the database or any
+ * re-parsing of path strings.
+ * <p/>
+ * Rows of <code>REG_PATH</code> are never updated or deleted; moves and deletes only re-point or
+ * remove rows of <code>REG_RESOURCE</code>. A path id therefore always maps to the same path, and
+ * the tree stays consistent as long as it is told about every entry added through
+ * {@link org.wso2.carbon.repository.core.jdbc.dao.JDBCPathCache#addEntry(String, int)}. Nodes may
+ * exist without a known id when only a descendant has been resolved so far; such nodes are
+ * reported as unknown and callers fall back to the database.
+ * <p/>
+ * A tree holds a bounded number of nodes, and is cleared when it is full, after which the paths
+ * in use are resolved from the database again. At most {@link #MAX_PATH_TREES} trees are kept,
+ * dropping the least recently used one when another database or tenant needs a tree.
+ */
+public class PathTree {
+
+    /**
+     * Value returned when the tree does not know the id of a path.
+     */
+    public static final int UNKNOWN = -1;
+
+    /**
+     * The default number of nodes a tree holds before it is cleared.
+     */
+    public static final int DEFAULT_MAX_NODES = 100000;
+
+    /**
+     * The number of trees kept for the databases and tenants in use.
+     */
+    public static final int MAX_PATH_TREES = 100;
+
+    private static final int ROOT_SLOT = 0;
+    private static final int INITIAL_CAPACITY = 64;
+
+    // table markers. table entries hold (slot + 1), so 0 is free and -1 is a removed entry.
+    private static final int FREE = 0;
+    private static final int REMOVED = -1;
+
+    private static Map<String, PathTree> pathTrees = new ConcurrentHashMap<String, PathTree>();
+
+    // orders the uses of the trees, to find the least recently used one.
+    private static final AtomicLong useCount = new AtomicLong();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int maxNodes;
+    private volatile long lastUsed = useCount.incrementAndGet();
+
+    private int[] ids;
+    private int[] parents;
+    private int[] firstChildren;
+    private int[] nextSiblings;
+    private String[] segments;
+
+    private int slotCount;
+    private int freeSlot = -1;
+    private int nodeCount;
+
+    private int[] childTable;
+    private int childTableUsed;
+    private int[] idTable;
+    private int idTableUsed;
+
+    private Map<String, String> segmentPool = new HashMap<String, String>();
+
+    /**
+     * Method to obtain the path tree of the given database connection and tenant. The tree is
+     * created on first access.
+     *
+     * @param connectionId the database connection identifier.
+     * @param tenantId     the tenant identifier.
+     *
+     * @return the path tree.
+     */
+    public static PathTree getPathTree(String connectionId, int tenantId) {
+        String key = tenantId + ":" + connectionId;
+        PathTree pathTree = pathTrees.get(key);
+
+        if (pathTree == null) {
+            synchronized (pathTrees) {
+                pathTree = pathTrees.get(key);
+                if (pathTree == null) {
+                    if (pathTrees.size() >= MAX_PATH_TREES) {
+                        removeLeastRecentlyUsed();
+                    }
+                    pathTree = new PathTree();
+                    pathTrees.put(key, pathTree);
+                }
+            }
+        }
+
+        pathTree.lastUsed = useCount.incrementAndGet();
+        return pathTree;
+    }
+
+    /**
+     * Drops the path tree of the given database connection and tenant.
+     *
+     * @param connectionId the database connection identifier.
+     * @param tenantId     the tenant identifier.
+     */
+    public static void removePathTree(String connectionId, int tenantId) {
+        pathTrees.remove(tenantId + ":" + connectionId);
+    }
+
+    // Called while holding the lock on the trees.
+    private static void removeLeastRecentlyUsed() {
+        String leastRecentKey = null;
+        long leastRecentUse = Long.MAX_VALUE;
+
+        for (Map.Entry<String, PathTree> entry : pathTrees.entrySet()) {
+            if (entry.getValue().lastUsed < leastRecentUse) {
+                leastRecentUse = entry.getValue().lastUsed;
+                leastRecentKey = entry.getKey();
+            }
+        }
+
+        if (leastRecentKey != null) {
+            pathTrees.remove(leastRecentKey);
+        }
+    }
+
+    /**
+     * Creates an empty tree which only contains the root node, holding up to
+     * {@link #DEFAULT_MAX_NODES} nodes.
+     */
+    public PathTree() {
+        this(DEFAULT_MAX_NODES);
+    }
+
+    /**
+     * Creates an empty tree which only contains the root node.
+     *
+     * @param maxNodes the number of nodes after which the tree is cleared. A path added to a full
+     *                 tree is added to the cleared tree.
+     */
+    public PathTree(int maxNodes) {
+        if (maxNodes < 1) {
+            throw new IllegalArgumentException("The maximum number of nodes must be positive: " + maxNodes);
+        }
+
+        this.maxNodes = maxNodes;
+        ids = new int[INITIAL_CAPACITY];
+        parents = new int[INITIAL_CAPACITY];
+        firstChildren = new int[INITIAL_CAPACITY];
+        nextSiblings = new int[INITIAL_CAPACITY];
+        segments = new String[INITIAL_CAPACITY];
+        childTable = new int[INITIAL_CAPACITY * 2];
+        idTable = new int[INITIAL_CAPACITY * 2];
+
+        ids[ROOT_SLOT] = UNKNOWN;
+        parents[ROOT_SLOT] = -1;
+        firstChildren[ROOT_SLOT] = -1;
+        nextSiblings[ROOT_SLOT] = -1;
+        segments[ROOT_SLOT] = "";
+        slotCount = 1;
+        nodeCount = 1;
+    }
+
+    /**
+     * Method to get the path id of a given path.
+     *
+     * @param path the path.
+     *
+     * @return the path id, or {@link #UNKNOWN} if the tree does not know the path.
+     */
+    public int getPathID(String path) {
+        if (path == null) {
+            return UNKNOWN;
+        }
+
+        lock.readLock().lock();
+        try {
+            int slot = findSlot(path);
+            return slot < 0 ? UNKNOWN : ids[slot];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Method to get the path of a given path id.
+     *
+     * @param pathId the path id.
+     *
+     * @return the path, or null if the tree does not know the path id.
+     */
+    public String getPath(int pathId) {
+        lock.readLock().lock();
+        try {
+            int slot = findSlotById(pathId);
+            return slot < 0 ? null : buildPath(slot);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records the id of a given path, creating nodes for any unknown ancestors.
+     *
+     * @param path   the path.
+     * @param pathId the path id.
+     */
+    public void put(String path, int pathId) {
+        if (path == null || pathId <= 0 || !isValidPath(path)) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (nodeCount >= maxNodes) {
+                clear();
+            }
+
+            int slot = ROOT_SLOT;
+            int length = path.length();
+            int start = 1;
+
+            while (start < length) {
+                int end = path.indexOf(RepositoryConstants.PATH_SEPARATOR, start);
+                if (end == -1) {
+                    end = length;
+                }
+                int child = findChild(slot, path, start, end);
+                if (child < 0) {
+                    child = addChild(slot, path.substring(start, end));
+                }
+                slot = child;
+                start = end + 1;
+            }
+
+            int existing = findSlotById(pathId);
+            if (existing == slot) {
+                return;
+            }
+
+            if (existing >= 0) {
+                removeFromIdTable(pathId);
+                ids[existing] = UNKNOWN;
+            }
+
+            if (ids[slot] != UNKNOWN) {
+                removeFromIdTable(ids[slot]);
+            }
+
+            ids[slot] = pathId;
+            addToIdTable(pathId, slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a path and all of its descendants from the tree. The paths will be resolved from
+     * the database again when they are next looked up.
+     *
+     * @param path the path to remove.
+     */
+    public void remove(String path) {
+        if (path == null) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            int slot = findSlot(path);
+            if (slot == ROOT_SLOT) {
+                clear();
+            } else if (slot > ROOT_SLOT) {
+                unlink(slot);
+                freeSubtree(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes every path from the tree.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            for (int slot = slotCount - 1; slot > ROOT_SLOT; slot--) {
+                segments[slot] = null;
+            }
+
+            ids[ROOT_SLOT] = UNKNOWN;
+            firstChildren[ROOT_SLOT] = -1;
+            slotCount = 1;
+            nodeCount = 1;
+            freeSlot = -1;
+            childTable = new int[INITIAL_CAPACITY * 2];
+            childTableUsed = 0;
+            idTable = new int[INITIAL_CAPACITY * 2];
+            idTableUsed = 0;
+            segmentPool.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Method to obtain the number of paths held by the tree, including the root and nodes with
+     * unknown ids.
+     *
+     * @return the number of nodes.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodeCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Walks the segments of the path without creating substrings. Only paths in the form stored in
+    // REG_PATH (/c1/c2) are resolved.
+    private int findSlot(String path) {
+        if (!isValidPath(path)) {
+            return -1;
+        }
+
+        int slot = ROOT_SLOT;
+        int length = path.length();
+        int start = 1;
+
+        while (start < length) {
+            int end = path.indexOf(RepositoryConstants.PATH_SEPARATOR, start);
+            if (end == -1) {
+                end = length;
+            }
+            slot = findChild(slot, path, start, end);
+            if (slot < 0) {
+                return -1;
+            }
+            start = end + 1;
+        }
+
+        return slot;
+    }
+
+    private static boolean isValidPath(String path) {
+        int length = path.length();
+        if (length == 0 || !path.startsWith(RepositoryConstants.ROOT_PATH)) {
+            return false;
+        }
+        if (length > 1 && path.endsWith(RepositoryConstants.PATH_SEPARATOR)) {
+            return false;
+        }
+        return !path.contains("//");
+    }
+
+    private int findChild(int parent, String path, int start, int end) {
+        int mask = childTable.length - 1;
+        int index = childHash(parent, path, start, end) & mask;
+        int segmentLength = end - start;
+
+        while (true) {
+            int entry = childTable[index];
+            if (entry == FREE) {
+                return -1;
+            }
+            if (entry != REMOVED) {
+                int slot = entry - 1;
+                String segment = segments[slot];
+                if (parents[slot] == parent && segment.length() == segmentLength &&
+                        path.regionMatches(start, segment, 0, segmentLength)) {
+                    return slot;
+                }
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private int findSlotById(int pathId) {
+        int mask = idTable.length - 1;
+        int index = mix(pathId) & mask;
+
+        while (true) {
+            int entry = idTable[index];
+            if (entry == FREE) {
+                return -1;
+            }
+            if (entry != REMOVED && ids[entry - 1] == pathId) {
+                return entry - 1;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private int addChild(int parent, String segment) {
+        String pooled = segmentPool.get(segment);
+        if (pooled == null) {
+            pooled = segment;
+            segmentPool.put(pooled, pooled);
+        }
+
+        int slot;
+        if (freeSlot != -1) {
+            slot = freeSlot;
+            freeSlot = nextSiblings[slot];
+        } else {
+            if (slotCount == ids.length) {
+                growSlots();
+            }
+            slot = slotCount++;
+        }
+
+        ids[slot] = UNKNOWN;
+        parents[slot] = parent;
+        segments[slot] = pooled;
+        firstChildren[slot] = -1;
+        nextSiblings[slot] = firstChildren[parent];
+        firstChildren[parent] = slot;
+        nodeCount++;
+
+        if ((childTableUsed + 1) * 2 > childTable.length) {
+            rehashChildTable();
+        }
+        insertChildEntry(childTable, slot);
+        childTableUsed++;
+
+        return slot;
+    }
+
+    private void insertChildEntry(int[] table, int slot) {
+        int mask = table.length - 1;
+        String segment = segments[slot];
+        int index = childHash(parents[slot], segment, 0, segment.length()) & mask;
+
+        while (table[index] != FREE && table[index] != REMOVED) {
+            index = (index + 1) & mask;
+        }
+
+        table[index] = slot + 1;
+    }
+
+    private void addToIdTable(int pathId, int slot) {
+        if ((idTableUsed + 1) * 2 > idTable.length) {
+            rehashIdTable();
+        }
+
+        int mask = idTable.length - 1;
+        int index = mix(pathId) & mask;
+
+        while (idTable[index] != FREE && idTable[index] != REMOVED) {
+            index = (index + 1) & mask;
+        }
+
+        idTable[index] = slot + 1;
+        idTableUsed++;
+    }
+
+    private void removeFromIdTable(int pathId) {
+        int mask = idTable.length - 1;
+        int index = mix(pathId) & mask;
+
+        while (idTable[index] != FREE) {
+            int entry = idTable[index];
+            if (entry != REMOVED && ids[entry - 1] == pathId) {
+                idTable[index] = REMOVED;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private void removeFromChildTable(int slot) {
+        int mask = childTable.length - 1;
+        String segment = segments[slot];
+        int index = childHash(parents[slot], segment, 0, segment.length()) & mask;
+
+        while (childTable[index] != FREE) {
+            if (childTable[index] == slot + 1) {
+                childTable[index] = REMOVED;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private void unlink(int slot) {
+        int parent = parents[slot];
+
+        if (firstChildren[parent] == slot) {
+            firstChildren[parent] = nextSiblings[slot];
+            return;
+        }
+
+        for (int child = firstChildren[parent]; child != -1; child = nextSiblings[child]) {
+            if (nextSiblings[child] == slot) {
+                nextSiblings[child] = nextSiblings[slot];
+                return;
+            }
+        }
+    }
+
+    private void freeSubtree(int root) {
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = root;
+
+        while (top > 0) {
+            int slot = stack[--top];
+            for (int child = firstChildren[slot]; child != -1; child = nextSiblings[child]) {
+                if (top == stack.length) {
+                    int[] temp = new int[stack.length * 2];
+                    System.arraycopy(stack, 0, temp, 0, stack.length);
+                    stack = temp;
+                }
+                stack[top++] = child;
+            }
+
+            if (ids[slot] != UNKNOWN) {
+                removeFromIdTable(ids[slot]);
+            }
+
+            removeFromChildTable(slot);
+            ids[slot] = UNKNOWN;
+            segments[slot] = null;
+            firstChildren[slot] = -1;
+            nextSiblings[slot] = freeSlot;
+            freeSlot = slot;
+            nodeCount--;
+        }
+    }
+
+    private String buildPath(int slot) {
+        if (slot == ROOT_SLOT) {
+            return RepositoryConstants.ROOT_PATH;
+        }
+
+        int length = 0;
+        for (int current = slot; current != ROOT_SLOT; current = parents[current]) {
+            length += segments[current].length() + 1;
+        }
+
+        char[] chars = new char[length];
+        int position = length;
+
+        for (int current = slot; current != ROOT_SLOT; current = parents[current]) {
+            String segment = segments[current];
+            position -= segment.length();
+            segment.getChars(0, segment.length(), chars, position);
+            chars[--position] = RepositoryConstants.PATH_SEPARATOR.charAt(0);
+        }
+
+        return new String(chars);
+    }
+
+    private void growSlots() {
+        int capacity = ids.length * 2;
+        ids = copyOf(ids, capacity);
+        parents = copyOf(parents, capacity);
+        firstChildren = copyOf(firstChildren, capacity);
+        nextSiblings = copyOf(nextSiblings, capacity);
+
+        String[] temp = new String[capacity];
+        System.arraycopy(segments, 0, temp, 0, segments.length);
+        segments = temp;
+    }
+
+    private void rehashChildTable() {
+        int[] table = new int[tableSizeFor(nodeCount * 4)];
+        int used = 0;
+
+        for (int entry : childTable) {
+            if (entry != FREE && entry != REMOVED) {
+                insertChildEntry(table, entry - 1);
+                used++;
+            }
+        }
+
+        childTable = table;
+        childTableUsed = used;
+    }
+
+    private void rehashIdTable() {
+        int liveIds = 0;
+        for (int entry : idTable) {
+            if (entry != FREE && entry != REMOVED) {
+                liveIds++;
+            }
+        }
+
+        int[] oldTable = idTable;
+        idTable = new int[tableSizeFor((liveIds + 1) * 4)];
+        idTableUsed = 0;
+        int mask = idTable.length - 1;
+
+        for (int entry : oldTable) {
+            if (entry != FREE && entry != REMOVED) {
+                int index = mix(ids[entry - 1]) & mask;
+                while (idTable[index] != FREE) {
+                    index = (index + 1) & mask;
+                }
+                idTable[index] = entry;
+                idTableUsed++;
+            }
+        }
+    }
+
+    private static int tableSizeFor(int minimum) {
+        int size = INITIAL_CAPACITY * 2;
+        while (size < minimum) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    private static int[] copyOf(int[] array, int capacity) {
+        int[] temp = new int[capacity];
+        System.arraycopy(array, 0, temp, 0, array.length);
+        return temp;
+    }
+
+    private static int childHash(int parent, String path, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + path.charAt(i);
+        }
+        return mix(hash * 31 + parent);
+    }
+
+    private static int mix(int value) {
+        int hash = value * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
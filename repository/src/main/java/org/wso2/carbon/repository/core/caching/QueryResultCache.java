@@ -0,0 +1,412 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.repository.core.caching;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A cache of the results of custom queries, keyed by the path, version and SQL of the query, its
+ * parameters and the tenant. Each entry remembers the tables read by the query, and is dropped
+ * once any of those tables is written for the tenant.
+ * <p/>
+ * Writes are tracked per table and tenant through the statements prepared on the connections of
+ * the repository, and once more when the outermost transaction ends, since other threads may have
+ * read the old rows until then. Statements created without SQL drop the results of all the tables
+ * of the tenant. Writes made on connections taken straight from the data source, such as those of
+ * the version history compaction and the log maintenance, are reported by their writers through
+ * {@link #tableWritten(int, String)} and {@link #tableWritten(String)}. Results read while any of
+ * their tables was written, or by a thread with writes that are not yet committed, are not stored.
+ */
+public class QueryResultCache {
+
+    private static final int DEFAULT_CAPACITY = 1000;
+
+    // The table name standing for all the tables, written by statements of which the table is unknown.
+    private static final String ALL_TABLES = "*";
+
+    // The prefix of the tables of the repository, which are only written through its connections.
+    private static final String TABLE_PREFIX = "REG_";
+
+    private static final Pattern SELECT_PATTERN = Pattern.compile("^\\s*SELECT\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern WRITE_PATTERN = Pattern.compile(
+            "^\\s*(?:INSERT\\s+INTO|UPDATE|DELETE\\s+FROM|DELETE|MERGE\\s+INTO)\\s+([\\w.]+)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern SOURCE_PATTERN = Pattern.compile(
+            "(?:\\bFROM|\\bJOIN|,)\\s*([A-Za-z_][\\w.]*)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TABLE_PATTERN = Pattern.compile("\\b" + TABLE_PREFIX + "\\w+\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final QueryResultCache queryResultCache = new QueryResultCache(DEFAULT_CAPACITY);
+
+    private final Map<Key, CachedResult> entries;
+    private final Map<Integer, Map<String, AtomicLong>> tenantGenerations =
+            new ConcurrentHashMap<Integer, Map<String, AtomicLong>>();
+
+    // tables written in the current transaction of the thread, per tenant.
+    private final ThreadLocal<Map<Integer, Set<String>>> pendingTables =
+            new ThreadLocal<Map<Integer, Set<String>>>() {
+                protected Map<Integer, Set<String>> initialValue() {
+                    return new HashMap<Integer, Set<String>>();
+                }
+            };
+
+    /**
+     * The key of the results of a query.
+     */
+    public static final class Key {
+
+        private final int tenantId;
+        private final String queryPath;
+        private final long version;
+        private final String sql;
+        private final Map<String, String> parameters = new TreeMap<String, String>();
+
+        /**
+         * Creates the key of the results of a query.
+         *
+         * @param tenantId   the tenant identifier.
+         * @param queryPath  the path of the query.
+         * @param version    the version of the query.
+         * @param sql        the SQL of the query.
+         * @param parameters the parameters of the query, which may be null.
+         */
+        public Key(int tenantId, String queryPath, long version, String sql, Map<?, ?> parameters) {
+            this.tenantId = tenantId;
+            this.queryPath = queryPath;
+            this.version = version;
+            this.sql = sql;
+
+            if (parameters != null) {
+                // values of different types bind differently to the query.
+                for (Map.Entry<?, ?> parameter : parameters.entrySet()) {
+                    Object value = parameter.getValue();
+                    this.parameters.put(String.valueOf(parameter.getKey()), (value == null) ? null :
+                            value.getClass().getName() + ":" + value);
+                }
+            }
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) o;
+            return tenantId == key.tenantId && version == key.version &&
+                    queryPath.equals(key.queryPath) && sql.equals(key.sql) && parameters.equals(key.parameters);
+        }
+
+        public int hashCode() {
+            int hashCode = tenantId * 31 + queryPath.hashCode();
+            hashCode = hashCode * 31 + (int) (version ^ (version >>> 32));
+            hashCode = hashCode * 31 + sql.hashCode();
+            return hashCode * 31 + parameters.hashCode();
+        }
+    }
+
+    /**
+     * The generations of the tables read by a query, read before executing the query.
+     */
+    public static final class Stamp {
+
+        private final int tenantId;
+        private final Map<String, Long> generations;
+
+        private Stamp(int tenantId, Map<String, Long> generations) {
+            this.tenantId = tenantId;
+            this.generations = generations;
+        }
+    }
+
+    private static final class CachedResult {
+
+        private final String[] paths;
+        private final Stamp stamp;
+
+        private CachedResult(String[] paths, Stamp stamp) {
+            this.paths = paths;
+            this.stamp = stamp;
+        }
+    }
+
+    /**
+     * Method to obtain the cache shared by the query processors.
+     *
+     * @return the query result cache.
+     */
+    public static QueryResultCache getQueryResultCache() {
+        return queryResultCache;
+    }
+
+    /**
+     * Creates a cache holding the results of up to the given number of queries.
+     *
+     * @param capacity the maximum number of cached results.
+     */
+    public QueryResultCache(final int capacity) {
+        entries = new LinkedHashMap<Key, CachedResult>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedResult> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Method to obtain the tables read by a query, if the results of the query can be cached. They
+     * can only be cached if every table named in the query is a table of the repository.
+     *
+     * @param sql the query.
+     *
+     * @return the names of the tables read by the query, or null if its results cannot be cached.
+     */
+    public static Set<String> getReadTables(String sql) {
+        if (sql == null || !SELECT_PATTERN.matcher(sql).find()) {
+            return null;
+        }
+
+        Matcher sources = SOURCE_PATTERN.matcher(sql);
+
+        while (sources.find()) {
+            if (!getTableName(sources.group(1)).startsWith(TABLE_PREFIX)) {
+                return null;
+            }
+        }
+
+        // column names may be included as well, which is harmless, as they are never written.
+        Set<String> tables = new HashSet<String>();
+        Matcher names = TABLE_PATTERN.matcher(sql);
+
+        while (names.find()) {
+            tables.add(names.group().toUpperCase());
+        }
+
+        return tables.isEmpty() ? null : tables;
+    }
+
+    /**
+     * Method to obtain the cached results of a query, if none of the tables read by the query was
+     * written since the results were read.
+     *
+     * @param key the key of the query.
+     *
+     * @return the paths of the results, or null if not cached.
+     */
+    public String[] get(Key key) {
+        CachedResult result;
+
+        synchronized (entries) {
+            result = entries.get(key);
+        }
+
+        if (result == null) {
+            return null;
+        }
+
+        if (!isCurrent(result.stamp)) {
+            synchronized (entries) {
+                entries.remove(key);
+            }
+
+            return null;
+        }
+
+        return Arrays.copyOf(result.paths, result.paths.length);
+    }
+
+    /**
+     * Method to obtain the generations of the tables read by a query, to be read before executing
+     * the query and passed to {@link #put}.
+     *
+     * @param tenantId the tenant identifier.
+     * @param tables   the tables read by the query.
+     *
+     * @return the generations of the tables.
+     */
+    public Stamp getStamp(int tenantId, Set<String> tables) {
+        Map<String, Long> generations = new HashMap<String, Long>();
+        generations.put(ALL_TABLES, getGenerationCounter(tenantId, ALL_TABLES).get());
+
+        for (String table : tables) {
+            generations.put(table, getGenerationCounter(tenantId, table).get());
+        }
+
+        return new Stamp(tenantId, generations);
+    }
+
+    /**
+     * Method to cache the results of a query, unless any of the tables it read was written since
+     * the given stamp was read, or the thread has writes that are not yet committed.
+     *
+     * @param key   the key of the query.
+     * @param paths the paths of the results.
+     * @param stamp the stamp read before executing the query.
+     */
+    public void put(Key key, String[] paths, Stamp stamp) {
+        if (!pendingTables.get().isEmpty()) {
+            return;
+        }
+
+        CachedResult result = new CachedResult(Arrays.copyOf(paths, paths.length), stamp);
+
+        synchronized (entries) {
+            if (isCurrent(stamp)) {
+                entries.put(key, result);
+            }
+        }
+    }
+
+    /**
+     * Method to track a statement prepared for the given tenant. Statements writing a table
+     * invalidate the results read from the table, and statements that are neither queries nor
+     * recognized writes invalidate the results of all the tables of the tenant.
+     *
+     * @param tenantId the tenant identifier.
+     * @param sql      the statement.
+     */
+    public void statementPrepared(int tenantId, String sql) {
+        if (sql == null || SELECT_PATTERN.matcher(sql).find()) {
+            return;
+        }
+
+        Matcher write = WRITE_PATTERN.matcher(sql);
+        invalidate(tenantId, write.find() ? getTableName(write.group(1)) : ALL_TABLES);
+    }
+
+    /**
+     * Method to track a statement created for the given tenant, of which the SQL is not known
+     * until it is executed, by dropping the results of all the tables of the tenant.
+     *
+     * @param tenantId the tenant identifier.
+     */
+    public void statementCreated(int tenantId) {
+        invalidate(tenantId, ALL_TABLES);
+    }
+
+    /**
+     * Method to drop the results read from a table of a tenant, written on a connection that is
+     * not managed by the repository. The writer calls this before each write, and once more after
+     * committing it, since other threads may read the old rows until then.
+     *
+     * @param tenantId the tenant identifier.
+     * @param table    the name of the table, in upper case.
+     */
+    public void tableWritten(int tenantId, String table) {
+        getGenerationCounter(tenantId, table).incrementAndGet();
+    }
+
+    /**
+     * Method to drop the results read from a table of any tenant, written on a connection that is
+     * not managed by the repository, as with {@link #tableWritten(int, String)}.
+     *
+     * @param table the name of the table, in upper case.
+     */
+    public void tableWritten(String table) {
+        for (Integer tenantId : tenantGenerations.keySet()) {
+            tableWritten(tenantId, table);
+        }
+    }
+
+    /**
+     * Method to drop the results read from a table. The table is invalidated again when the
+     * current transaction ends.
+     *
+     * @param tenantId the tenant identifier.
+     * @param table    the name of the table, in upper case.
+     */
+    public void invalidate(int tenantId, String table) {
+        Set<String> tables = pendingTables.get().get(tenantId);
+        if (tables == null) {
+            tables = new HashSet<String>();
+            pendingTables.get().put(tenantId, tables);
+        }
+
+        tables.add(table);
+        getGenerationCounter(tenantId, table).incrementAndGet();
+    }
+
+    /**
+     * Method to invalidate the tables written by the thread once the outermost transaction has
+     * ended, either by committing or rolling back.
+     */
+    public void transactionEnded() {
+        Map<Integer, Set<String>> tables = pendingTables.get();
+        if (tables.isEmpty()) {
+            return;
+        }
+
+        pendingTables.remove();
+
+        for (Map.Entry<Integer, Set<String>> tenantTables : tables.entrySet()) {
+            for (String table : tenantTables.getValue()) {
+                getGenerationCounter(tenantTables.getKey(), table).incrementAndGet();
+            }
+        }
+    }
+
+    private boolean isCurrent(Stamp stamp) {
+        for (Map.Entry<String, Long> generation : stamp.generations.entrySet()) {
+            if (getGenerationCounter(stamp.tenantId, generation.getKey()).get() != generation.getValue()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Returns the upper case name of a table, without the schema.
+    private static String getTableName(String name) {
+        return name.substring(name.lastIndexOf('.') + 1).toUpperCase();
+    }
+
+    private AtomicLong getGenerationCounter(int tenantId, String table) {
+        Map<String, AtomicLong> generations = tenantGenerations.get(tenantId);
+
+        if (generations == null) {
+            synchronized (tenantGenerations) {
+                generations = tenantGenerations.get(tenantId);
+                if (generations == null) {
+                    generations = new ConcurrentHashMap<String, AtomicLong>();
+                    tenantGenerations.put(tenantId, generations);
+                }
+            }
+        }
+
+        AtomicLong generation = generations.get(table);
+
+        if (generation == null) {
+            synchronized (generations) {
+                generation = generations.get(table);
+                if (generation == null) {
+                    generation = new AtomicLong();
+                    generations.put(table, generation);
+                }
+            }
+        }
+
+        return generation;
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.repository.core.caching;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.wso2.carbon.repository.api.RepositoryConstants;
+
+/**
+ * Base of the caches keyed by resource path that are kept per tenant and invalidated by writes.
+ * <p/>
+ * Each tenant holds up to a fixed number of entries, evicting the least recently used ones. Writes
+ * invalidate the entries of the paths they touch as they happen, and once more when the outermost
+ * transaction ends, since other threads may have read the old state from the database until then.
+ * An entry read while an invalidation happened for the tenant is not stored. The paths of a tenant
+ * are also kept sorted, so that the entries of the descendants of a path are found without walking
+ * all the entries.
+ *
+ * @param <E> the type of the cached entries.
+ */
+public abstract class TenantPathCache<E> {
+
+    /**
+     * The number of entries kept per tenant unless another capacity is given.
+     */
+    protected static final int DEFAULT_CAPACITY = 10000;
+
+    private final int capacity;
+    private final Map<Integer, TenantEntries> tenantEntries =
+            new ConcurrentHashMap<Integer, TenantEntries>();
+    private final Map<Integer, AtomicLong> tenantGenerations =
+            new ConcurrentHashMap<Integer, AtomicLong>();
+
+    // paths invalidated in the current transaction of the thread, per tenant.
+    private final ThreadLocal<Map<Integer, Map<String, Boolean>>> pendingPaths =
+            new ThreadLocal<Map<Integer, Map<String, Boolean>>>() {
+                protected Map<Integer, Map<String, Boolean>> initialValue() {
+                    return new HashMap<Integer, Map<String, Boolean>>();
+                }
+            };
+
+    /**
+     * Creates a cache holding up to the given number of entries per tenant.
+     *
+     * @param capacity the maximum number of entries per tenant.
+     */
+    protected TenantPathCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Method to obtain the cached entry of a path.
+     *
+     * @param tenantId the tenant identifier.
+     * @param path     the path.
+     *
+     * @return the entry, or null if the path is not cached.
+     */
+    public E get(int tenantId, String path) {
+        TenantEntries entries = tenantEntries.get(tenantId);
+        if (entries == null) {
+            return null;
+        }
+
+        synchronized (entries) {
+            return entries.get(path);
+        }
+    }
+
+    /**
+     * Method to obtain the invalidation count of a tenant, to be read before reading an entry from
+     * the database and passed to {@link #put}.
+     *
+     * @param tenantId the tenant identifier.
+     *
+     * @return the number of invalidations done for the tenant.
+     */
+    public long getGeneration(int tenantId) {
+        return getGenerationCounter(tenantId).get();
+    }
+
+    /**
+     * Method to cache the entry of a path, unless the tenant had an invalidation since the given
+     * generation was read.
+     *
+     * @param tenantId   the tenant identifier.
+     * @param path       the path.
+     * @param entry      the entry to cache.
+     * @param generation the generation read before the entry was read from the database.
+     */
+    public void put(int tenantId, String path, E entry, long generation) {
+        TenantEntries entries = getEntries(tenantId);
+
+        synchronized (entries) {
+            if (getGenerationCounter(tenantId).get() == generation) {
+                E previous = entries.remove(path);
+                if (previous != null) {
+                    entryRemoved(tenantId, path, previous);
+                }
+                entries.put(path, entry);
+                entryAdded(tenantId, path, entry);
+            }
+        }
+    }
+
+    /**
+     * Method to drop the entries of a path, and if recursive, the entries of all its descendants.
+     * The path is invalidated again when the current transaction ends.
+     *
+     * @param tenantId  the tenant identifier.
+     * @param path      the path that was written.
+     * @param recursive whether to drop the entries of the descendants.
+     */
+    public void invalidate(int tenantId, String path, boolean recursive) {
+        Map<String, Boolean> paths = pendingPaths.get().get(tenantId);
+        if (paths == null) {
+            paths = new HashMap<String, Boolean>();
+            pendingPaths.get().put(tenantId, paths);
+        }
+
+        paths.put(path, recursive || Boolean.TRUE.equals(paths.get(path)));
+        remove(tenantId, path, recursive);
+    }
+
+    /**
+     * Method to invalidate the paths written by the thread once the outermost transaction has ended,
+     * either by committing or rolling back.
+     */
+    public void transactionEnded() {
+        Map<Integer, Map<String, Boolean>> paths = pendingPaths.get();
+        if (paths.isEmpty()) {
+            return;
+        }
+
+        pendingPaths.remove();
+
+        for (Map.Entry<Integer, Map<String, Boolean>> tenantPaths : paths.entrySet()) {
+            for (Map.Entry<String, Boolean> path : tenantPaths.getValue().entrySet()) {
+                remove(tenantPaths.getKey(), path.getKey(), path.getValue());
+            }
+        }
+    }
+
+    /**
+     * Method called with the lock of the tenant held once an entry has been cached.
+     *
+     * @param tenantId the tenant identifier.
+     * @param path     the path of the entry.
+     * @param entry    the entry.
+     */
+    protected void entryAdded(int tenantId, String path, E entry) {
+    }
+
+    /**
+     * Method called with the lock of the tenant held once an entry has been dropped, whether it was
+     * invalidated, replaced or evicted.
+     *
+     * @param tenantId the tenant identifier.
+     * @param path     the path of the entry.
+     * @param entry    the entry.
+     */
+    protected void entryRemoved(int tenantId, String path, E entry) {
+    }
+
+    /**
+     * Method to obtain the paths of the entries to drop when the given path is written, other than
+     * the path itself and its descendants. Called with the lock of the tenant held.
+     *
+     * @param tenantId  the tenant identifier.
+     * @param path      the path that was written.
+     * @param recursive whether the descendants of the path were written too.
+     *
+     * @return the paths of the entries to drop, which may be empty.
+     */
+    protected List<String> getDependentPaths(int tenantId, String path, boolean recursive) {
+        return new ArrayList<String>();
+    }
+
+    /**
+     * Method to obtain the paths in a sorted set that are the given path, and if recursive, its
+     * descendants.
+     *
+     * @param paths     the sorted paths.
+     * @param path      the path.
+     * @param recursive whether to include the descendants of the path.
+     *
+     * @return a view of the matching paths.
+     */
+    protected static NavigableSet<String> getPaths(NavigableSet<String> paths, String path,
+                                                  boolean recursive) {
+        if (!recursive) {
+            return paths.subSet(path, true, path, true);
+        }
+
+        String descendantPrefix = path.endsWith(RepositoryConstants.PATH_SEPARATOR) ? path :
+                path + RepositoryConstants.PATH_SEPARATOR;
+
+        // the descendants sort between the prefix and the prefix followed by the largest character.
+        NavigableSet<String> descendants = paths.subSet(descendantPrefix, true,
+                descendantPrefix + Character.MAX_VALUE, true);
+        if (!paths.contains(path)) {
+            return descendants;
+        }
+
+        NavigableSet<String> matches = new TreeSet<String>(descendants);
+        matches.add(path);
+        return matches;
+    }
+
+    private void remove(int tenantId, String path, boolean recursive) {
+        TenantEntries entries = getEntries(tenantId);
+
+        synchronized (entries) {
+            getGenerationCounter(tenantId).incrementAndGet();
+
+            List<String> removedPaths = new ArrayList<String>(getPaths(entries.sortedPaths, path, recursive));
+            removedPaths.addAll(getDependentPaths(tenantId, path, recursive));
+
+            for (String removedPath : removedPaths) {
+                E entry = entries.remove(removedPath);
+                if (entry != null) {
+                    entryRemoved(tenantId, removedPath, entry);
+                }
+            }
+        }
+    }
+
+    private TenantEntries getEntries(int tenantId) {
+        TenantEntries entries = tenantEntries.get(tenantId);
+
+        if (entries == null) {
+            synchronized (tenantEntries) {
+                entries = tenantEntries.get(tenantId);
+                if (entries == null) {
+                    entries = new TenantEntries(tenantId);
+                    tenantEntries.put(tenantId, entries);
+                }
+            }
+        }
+
+        return entries;
+    }
+
+    private AtomicLong getGenerationCounter(int tenantId) {
+        AtomicLong generation = tenantGenerations.get(tenantId);
+
+        if (generation == null) {
+            synchronized (tenantGenerations) {
+                generation = tenantGenerations.get(tenantId);
+                if (generation == null) {
+                    generation = new AtomicLong();
+                    tenantGenerations.put(tenantId, generation);
+                }
+            }
+        }
+
+        return generation;
+    }
+
+    // The entries of a tenant, in the order of their use, with their paths kept sorted.
+    private final class TenantEntries {
+
+        private final int tenantId;
+        private final NavigableSet<String> sortedPaths = new TreeSet<String>();
+        private final LinkedHashMap<String, E> entries;
+
+        private TenantEntries(int tenantId) {
+            this.tenantId = tenantId;
+            this.entries = new LinkedHashMap<String, E>(16, 0.75f, true) {
+                protected boolean removeEldestEntry(Map.Entry<String, E> eldest) {
+                    if (size() <= capacity) {
+                        return false;
+                    }
+
+                    sortedPaths.remove(eldest.getKey());
+                    entryRemoved(TenantEntries.this.tenantId, eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+            };
+        }
+
+        private E get(String path) {
+            return entries.get(path);
+        }
+
+        private void put(String path, E entry) {
+            sortedPaths.add(path);
+            entries.put(path, entry);
+        }
+
+        private E remove(String path) {
+            sortedPaths.remove(path);
+            return entries.remove(path);
+        }
+    }
+}
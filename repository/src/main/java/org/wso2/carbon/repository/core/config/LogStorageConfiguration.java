@@ -0,0 +1,268 @@
+/*
+ *  Copyright (c) 2005-2009, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.wso2.carbon.repository.core.config;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * This class represents the audit log storage settings defined in the registry.xml file. <br />
+ * &lt;logStorage&gt; &lt;partitionPeriod&gt;month&lt;/partitionPeriod&gt;
+ * &lt;retentionDays&gt;365&lt;/retentionDays&gt; &lt;rollups&gt;true&lt;/rollups&gt;
+ * &lt;interval&gt;3600&lt;/interval&gt; &lt;/logStorage&gt;
+ * <p/>
+ * Logs are written to <code>REG_LOG</code>. When a partition period is set, the logs of each period
+ * that has ended are moved to a table of their own, named after the start of the period, and logs
+ * older than the retention are removed by dropping these tables. Periods are calculated in UTC.
+ */
+public class LogStorageConfiguration {
+
+    /**
+     * The prefix of the names of the tables holding the logs of a partition period.
+     */
+    public static final String PARTITION_TABLE_PREFIX = "REG_LOG_P";
+
+    /**
+     * Partitions holding the logs of a day.
+     */
+    public static final String PERIOD_DAY = "day";
+
+    /**
+     * Partitions holding the logs of a month.
+     */
+    public static final String PERIOD_MONTH = "month";
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private String partitionPeriod;
+    private long retention = -1;
+    private boolean rollupsEnabled = false;
+    private long interval = 60 * 60;
+
+    /**
+     * Method to obtain the period of the logs held by a partition table.
+     *
+     * @return the partition period, which is either day or month, or null if logs are not
+     *         partitioned.
+     */
+    public String getPartitionPeriod() {
+        return partitionPeriod;
+    }
+
+    /**
+     * Method to set the period of the logs held by a partition table.
+     *
+     * @param partitionPeriod the partition period, which is either day or month.
+     */
+    public void setPartitionPeriod(String partitionPeriod) {
+        if (partitionPeriod != null && !PERIOD_DAY.equals(partitionPeriod) &&
+                !PERIOD_MONTH.equals(partitionPeriod)) {
+            throw new IllegalArgumentException("Invalid log partition period: " + partitionPeriod +
+                    ". The period must be day or month.");
+        }
+        this.partitionPeriod = partitionPeriod;
+    }
+
+    /**
+     * Method to determine whether logs are partitioned.
+     *
+     * @return true if the logs of each period are moved to a table of their own.
+     */
+    public boolean isPartitioned() {
+        return partitionPeriod != null;
+    }
+
+    /**
+     * Method to obtain the age above which logs are removed.
+     *
+     * @return the age in milliseconds, or -1 if logs are kept forever.
+     */
+    public long getRetention() {
+        return retention;
+    }
+
+    /**
+     * Method to set the age above which logs are removed.
+     *
+     * @param retention the age in milliseconds.
+     */
+    public void setRetention(long retention) {
+        this.retention = retention;
+    }
+
+    /**
+     * Method to determine whether hourly and daily log counts are maintained in
+     * <code>REG_LOG_ROLLUP</code>.
+     *
+     * @return true if the log counts are maintained.
+     */
+    public boolean isRollupsEnabled() {
+        return rollupsEnabled;
+    }
+
+    /**
+     * Method to set whether hourly and daily log counts are maintained in
+     * <code>REG_LOG_ROLLUP</code>.
+     *
+     * @param rollupsEnabled the rollups flag.
+     */
+    public void setRollupsEnabled(boolean rollupsEnabled) {
+        this.rollupsEnabled = rollupsEnabled;
+    }
+
+    /**
+     * Method to obtain the interval between two runs of the log partitioning and retention.
+     *
+     * @return the interval in seconds.
+     */
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     * Method to set the interval between two runs of the log partitioning and retention.
+     *
+     * @param interval the interval in seconds.
+     */
+    public void setInterval(long interval) {
+        this.interval = interval;
+    }
+
+    /**
+     * Method to obtain the start of the partition period holding the given time.
+     *
+     * @param time the time.
+     *
+     * @return the start of the partition period.
+     */
+    public Date getPartitionStart(Date time) {
+        Calendar calendar = Calendar.getInstance(UTC);
+        calendar.setTime(time);
+        truncate(calendar, true);
+
+        if (PERIOD_MONTH.equals(partitionPeriod)) {
+            calendar.set(Calendar.DAY_OF_MONTH, 1);
+        }
+        return calendar.getTime();
+    }
+
+    /**
+     * Method to obtain the start of the partition period following the one starting at the given
+     * time.
+     *
+     * @param partitionStart the start of a partition period.
+     *
+     * @return the end of the partition period.
+     */
+    public Date getPartitionEnd(Date partitionStart) {
+        Calendar calendar = Calendar.getInstance(UTC);
+        calendar.setTime(partitionStart);
+        calendar.add(PERIOD_MONTH.equals(partitionPeriod) ? Calendar.MONTH : Calendar.DAY_OF_MONTH, 1);
+        return calendar.getTime();
+    }
+
+    /**
+     * Method to obtain the name of the table holding the logs of a partition period.
+     *
+     * @param partitionStart the start of the partition period.
+     *
+     * @return the table name.
+     */
+    public String getPartitionTable(Date partitionStart) {
+        return PARTITION_TABLE_PREFIX + getPartitionFormat().format(partitionStart);
+    }
+
+    /**
+     * Method to obtain the start of the partition period of the logs held by a table.
+     *
+     * @param tableName the table name.
+     *
+     * @return the start of the partition period, or null if the table is not a partition table
+     *         of the configured period.
+     */
+    public Date parsePartitionTable(String tableName) {
+        if (!isPartitioned() || tableName == null ||
+                !tableName.toUpperCase().startsWith(PARTITION_TABLE_PREFIX)) {
+            return null;
+        }
+
+        String suffix = tableName.substring(PARTITION_TABLE_PREFIX.length());
+        SimpleDateFormat format = getPartitionFormat();
+
+        if (suffix.length() != format.toPattern().length()) {
+            return null;
+        }
+
+        try {
+            Date partitionStart = format.parse(suffix);
+            return getPartitionTable(partitionStart).equalsIgnoreCase(tableName) ? partitionStart : null;
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Method to obtain the start of the hour holding the given time.
+     *
+     * @param time the time.
+     *
+     * @return the start of the hour.
+     */
+    public static Date getHourStart(Date time) {
+        Calendar calendar = Calendar.getInstance(UTC);
+        calendar.setTime(time);
+        truncate(calendar, false);
+        return calendar.getTime();
+    }
+
+    /**
+     * Method to obtain the start of the day holding the given time.
+     *
+     * @param time the time.
+     *
+     * @return the start of the day.
+     */
+    public static Date getDayStart(Date time) {
+        Calendar calendar = Calendar.getInstance(UTC);
+        calendar.setTime(time);
+        truncate(calendar, true);
+        return calendar.getTime();
+    }
+
+    // clears the fields of the calendar below the hour, or below the day.
+    private static void truncate(Calendar calendar, boolean toDay) {
+        if (toDay) {
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+        }
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+    }
+
+    private SimpleDateFormat getPartitionFormat() {
+        SimpleDateFormat format = new SimpleDateFormat(PERIOD_MONTH.equals(partitionPeriod) ? "yyyyMM" : "yyyyMMdd");
+        format.setTimeZone(UTC);
+        format.setLenient(false);
+        return format;
+    }
+}
@@ -52,6 +52,7 @@ import org.wso2.carbon.repository.api.exceptions.RepositoryException;
 import org.wso2.carbon.repository.api.handlers.Filter;
 import org.wso2.carbon.repository.api.handlers.Handler;
 import org.wso2.carbon.repository.core.CurrentContext;
+import org.wso2.carbon.repository.core.content.FileContentStore;
 import org.wso2.carbon.repository.core.exceptions.RepositoryConfigurationException;
 import org.wso2.carbon.repository.core.exceptions.RepositoryDBException;
 import org.wso2.carbon.repository.core.exceptions.RepositoryInitException;
@@ -135,7 +136,12 @@ public class RepositoryConfigurationProcessor {
                     repositoryContext.setCacheEnabled("true".equals(enableCacheElement));
         		}
         	}
-        	
+
+        	readPathCacheWarmUp(documentElement, repositoryContext);
+        	readVersionRetention(documentElement, repositoryContext);
+        	readContentStore(documentElement, repositoryContext);
+        	readLogStorage(documentElement, repositoryContext);
+
         	SecretResolver secretResolver = SecretResolverFactory.create(documentElement, false);
         	
         	NodeList dbConfigElements = documentElement.getElementsByTagName("dbConfig");
@@ -250,6 +256,15 @@ public class RepositoryConfigurationProcessor {
                         if (staticConfig.getNodeName().equals("versioningProperties")) {
                             String versioningProperties = staticConfig.getTextContent();
                             StaticConfiguration.setVersioningProperties(versioningProperties.equals("true"));
+                        } else if (staticConfig.getNodeName().equals("maxQueryResultSize")) {
+                            String maxQueryResultSize = staticConfig.getTextContent().trim();
+
+                            try {
+                                StaticConfiguration.setMaxQueryResultSize(Integer.parseInt(maxQueryResultSize));
+                            } catch (NumberFormatException e) {
+                                throw new RepositoryConfigurationException("Invalid maximum query result size: " +
+                                        maxQueryResultSize + ".", e);
+                            }
                         } else if (staticConfig.getNodeName().equals("profilesPath")) {
 	                        String profilesPath = staticConfig.getTextContent();
 	                        
@@ -543,6 +558,219 @@ public class RepositoryConfigurationProcessor {
 
     }
 
+    // read the path cache warm-up settings from configuration, which are of the form
+    // <pathCacheWarmUp enabled="true"><fetchSize>1000</fetchSize><prefix>/_system/config</prefix></pathCacheWarmUp>
+    private static void readPathCacheWarmUp(Element configElement, RepositoryContext repositoryContext) throws RepositoryException {
+        NodeList warmUpElements = configElement.getElementsByTagName("pathCacheWarmUp");
+
+        if (warmUpElements == null || warmUpElements.getLength() == 0) {
+            return;
+        }
+
+        Element warmUpElement = (Element) warmUpElements.item(0);
+        repositoryContext.setPathCacheWarmUpEnabled(!"false".equals(warmUpElement.getAttribute("enabled")));
+
+        NodeList warmUpChildren = warmUpElement.getChildNodes();
+
+        for (int index = 0; index < warmUpChildren.getLength(); index++) {
+            Node warmUpChild = warmUpChildren.item(index);
+
+            if (warmUpChild == null || warmUpChild.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+
+            String value = warmUpChild.getTextContent().trim();
+
+            if (warmUpChild.getNodeName().equals("fetchSize")) {
+                try {
+                    repositoryContext.setPathCacheWarmUpFetchSize(Integer.parseInt(value));
+                } catch (NumberFormatException e) {
+                    String msg = "Invalid path cache warm-up fetch size: " + value;
+                    log.error(msg, e);
+                    throw new RepositoryConfigurationException(msg, e);
+                }
+            } else if (warmUpChild.getNodeName().equals("prefix")) {
+                if (!value.startsWith(RepositoryConstants.PATH_SEPARATOR)) {
+                    value = RepositoryConstants.PATH_SEPARATOR + value;
+                }
+
+                if (value.length() > 1 && value.endsWith(RepositoryConstants.PATH_SEPARATOR)) {
+                    value = value.substring(0, value.length() - 1);
+                }
+
+                repositoryContext.addPathCacheWarmUpPrefix(value);
+            }
+        }
+    }
+
+    // read the version retention settings from configuration, which are of the form
+    // <versionRetention enabled="true"><batchSize>100</batchSize><interval>86400</interval>
+    // <policy><pathPrefix>/_system/governance</pathPrefix><keepLast>10</keepLast></policy></versionRetention>
+    private static void readVersionRetention(Element configElement, RepositoryContext repositoryContext) throws RepositoryException {
+        NodeList retentionElements = configElement.getElementsByTagName("versionRetention");
+
+        if (retentionElements == null || retentionElements.getLength() == 0) {
+            return;
+        }
+
+        Element retentionElement = (Element) retentionElements.item(0);
+        repositoryContext.setVersionRetentionEnabled(!"false".equals(retentionElement.getAttribute("enabled")));
+
+        NodeList retentionChildren = retentionElement.getChildNodes();
+
+        for (int index = 0; index < retentionChildren.getLength(); index++) {
+            Node retentionChild = retentionChildren.item(index);
+
+            if (retentionChild == null || retentionChild.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+
+            String value = retentionChild.getTextContent().trim();
+
+            if (retentionChild.getNodeName().equals("batchSize")) {
+                repositoryContext.setVersionRetentionBatchSize(
+                        (int) parsePositiveNumber(value, "version retention batch size"));
+            } else if (retentionChild.getNodeName().equals("interval")) {
+                repositoryContext.setVersionRetentionInterval(
+                        parsePositiveNumber(value, "version retention interval"));
+            } else if (retentionChild.getNodeName().equals("policy")) {
+                repositoryContext.addVersionRetentionPolicy(readVersionRetentionPolicy(retentionChild));
+            }
+        }
+    }
+
+    private static VersionRetentionPolicy readVersionRetentionPolicy(Node policyElement) throws RepositoryException {
+        VersionRetentionPolicy policy = new VersionRetentionPolicy();
+        NodeList policyChildren = policyElement.getChildNodes();
+
+        for (int index = 0; index < policyChildren.getLength(); index++) {
+            Node policyChild = policyChildren.item(index);
+
+            if (policyChild == null || policyChild.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+
+            String value = policyChild.getTextContent().trim();
+
+            if (policyChild.getNodeName().equals("pathPrefix")) {
+                if (!value.startsWith(RepositoryConstants.PATH_SEPARATOR)) {
+                    value = RepositoryConstants.PATH_SEPARATOR + value;
+                }
+
+                if (value.length() > 1 && value.endsWith(RepositoryConstants.PATH_SEPARATOR)) {
+                    value = value.substring(0, value.length() - 1);
+                }
+
+                policy.setPathPrefix(value);
+            } else if (policyChild.getNodeName().equals("mediaType")) {
+                policy.setMediaType(value);
+            } else if (policyChild.getNodeName().equals("keepLast")) {
+                policy.setKeepLast((int) parsePositiveNumber(value, "number of versions to keep"));
+            } else if (policyChild.getNodeName().equals("keepNewerThanDays")) {
+                policy.setKeepNewerThan(parsePositiveNumber(value, "version age to keep") * 24 * 60 * 60 * 1000);
+            }
+        }
+
+        return policy;
+    }
+
+    // read the content store settings from configuration, which are of the form
+    // <contentStore type="filesystem"><location>${carbon.home}/repository/data/content</location></contentStore>
+    private static void readContentStore(Element configElement, RepositoryContext repositoryContext) throws RepositoryException {
+        NodeList contentStoreElements = configElement.getElementsByTagName("contentStore");
+
+        if (contentStoreElements == null || contentStoreElements.getLength() == 0) {
+            return;
+        }
+
+        Element contentStoreElement = (Element) contentStoreElements.item(0);
+        String type = contentStoreElement.getAttribute("type");
+
+        if (type == null || type.length() == 0 || type.equals("database")) {
+            return;
+        } else if (!type.equals("filesystem")) {
+            String msg = "Invalid content store type: " + type + ". The type must be database or filesystem.";
+            log.error(msg);
+            throw new RepositoryConfigurationException(msg);
+        }
+
+        String location = null;
+        NodeList locationElements = contentStoreElement.getElementsByTagName("location");
+
+        if (locationElements != null && locationElements.getLength() > 0) {
+            location = locationElements.item(0).getTextContent().trim();
+        }
+
+        if (location == null || location.length() == 0) {
+            location = CarbonUtils.getCarbonHome() + File.separator + "repository" + File.separator +
+                    "data" + File.separator + "content";
+        }
+
+        repositoryContext.setContentStore(new FileContentStore(new File(location)));
+    }
+
+    // read the audit log storage settings from configuration, which are of the form
+    // <logStorage><partitionPeriod>month</partitionPeriod><retentionDays>365</retentionDays>
+    // <rollups>true</rollups><interval>3600</interval></logStorage>
+    private static void readLogStorage(Element configElement, RepositoryContext repositoryContext) throws RepositoryException {
+        NodeList logStorageElements = configElement.getElementsByTagName("logStorage");
+
+        if (logStorageElements == null || logStorageElements.getLength() == 0) {
+            return;
+        }
+
+        LogStorageConfiguration logStorageConfiguration = new LogStorageConfiguration();
+        NodeList logStorageChildren = logStorageElements.item(0).getChildNodes();
+
+        for (int index = 0; index < logStorageChildren.getLength(); index++) {
+            Node logStorageChild = logStorageChildren.item(index);
+
+            if (logStorageChild == null || logStorageChild.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+
+            String value = logStorageChild.getTextContent().trim();
+
+            if (logStorageChild.getNodeName().equals("partitionPeriod")) {
+                if (value.length() > 0 && !value.equals("none")) {
+                    try {
+                        logStorageConfiguration.setPartitionPeriod(value);
+                    } catch (IllegalArgumentException e) {
+                        log.error(e.getMessage(), e);
+                        throw new RepositoryConfigurationException(e.getMessage(), e);
+                    }
+                }
+            } else if (logStorageChild.getNodeName().equals("retentionDays")) {
+                logStorageConfiguration.setRetention(
+                        parsePositiveNumber(value, "log retention") * 24 * 60 * 60 * 1000);
+            } else if (logStorageChild.getNodeName().equals("rollups")) {
+                logStorageConfiguration.setRollupsEnabled("true".equals(value));
+            } else if (logStorageChild.getNodeName().equals("interval")) {
+                logStorageConfiguration.setInterval(parsePositiveNumber(value, "log storage interval"));
+            }
+        }
+
+        repositoryContext.setLogStorageConfiguration(logStorageConfiguration);
+    }
+
+    private static long parsePositiveNumber(String value, String name) throws RepositoryException {
+        try {
+            long number = Long.parseLong(value);
+
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            String msg = "Invalid " + name + ": " + value;
+            log.error(msg, e);
+            throw new RepositoryConfigurationException(msg, e);
+        }
+
+        String msg = "Invalid " + name + ": " + value + ". The value must be positive.";
+        log.error(msg);
+        throw new RepositoryConfigurationException(msg);
+    }
+
     // read mounts from configuration
     private static void readMounts(Element configElement, RepositoryContext repositoryContext) throws RepositoryException {
     	
@@ -38,6 +38,9 @@ import org.wso2.carbon.repository.core.CurrentContext;
 import org.wso2.carbon.repository.core.EmbeddedRepositoryService;
 import org.wso2.carbon.repository.core.ResourceStorer;
 import org.wso2.carbon.repository.core.VersionResourceStorer;
+import org.wso2.carbon.repository.core.caching.LinkResolutionCache;
+import org.wso2.carbon.repository.core.caching.MediaTypeCache;
+import org.wso2.carbon.repository.core.content.FileContentStore;
 import org.wso2.carbon.repository.core.exceptions.RepositoryInitException;
 import org.wso2.carbon.repository.core.handlers.CustomEditManager;
 import org.wso2.carbon.repository.core.handlers.HandlerLifecycleManager;
@@ -47,6 +50,7 @@ import org.wso2.carbon.repository.core.queries.QueryProcessorManager;
 import org.wso2.carbon.repository.core.utils.InternalConstants;
 import org.wso2.carbon.repository.core.utils.LogQueue;
 import org.wso2.carbon.repository.core.utils.LogWriter;
+import org.wso2.carbon.repository.core.utils.URLFetcher;
 import org.wso2.carbon.repository.spi.dataaccess.DataAccessManager;
 
 /**
@@ -74,6 +78,12 @@ public class RepositoryContext {
 
     private static final String NODE_IDENTIFIER = UUID.randomUUID().toString();
 
+    private static final int DEFAULT_PATH_CACHE_WARM_UP_FETCH_SIZE = 1000;
+
+    private static final int DEFAULT_VERSION_RETENTION_BATCH_SIZE = 100;
+
+    private static final long DEFAULT_VERSION_RETENTION_INTERVAL = 24 * 60 * 60;
+
     private static volatile List<StatisticsCollector> statisticsCollectors = new LinkedList<StatisticsCollector>();
 
     private String resourceMediaTypes = null;
@@ -101,6 +111,24 @@ public class RepositoryContext {
     private LogWriter logWriter = null;
     private boolean enableCache = false;
 
+    private boolean pathCacheWarmUpEnabled = false;
+    private int pathCacheWarmUpFetchSize = DEFAULT_PATH_CACHE_WARM_UP_FETCH_SIZE;
+    private List<String> pathCacheWarmUpPrefixes = new ArrayList<String>();
+
+    private boolean versionRetentionEnabled = false;
+    private int versionRetentionBatchSize = DEFAULT_VERSION_RETENTION_BATCH_SIZE;
+    private long versionRetentionInterval = DEFAULT_VERSION_RETENTION_INTERVAL;
+    private List<VersionRetentionPolicy> versionRetentionPolicies = new ArrayList<VersionRetentionPolicy>();
+
+    private FileContentStore contentStore = null;
+
+    private final MediaTypeCache mediaTypeCache = new MediaTypeCache();
+    private final LinkResolutionCache linkResolutionCache = new LinkResolutionCache();
+
+    private LogStorageConfiguration logStorageConfiguration = new LogStorageConfiguration();
+
+    private URLFetcher urlFetcher = URLFetcher.DEFAULT;
+
     private List<String> systemResourcePaths = new ArrayList<String>();
     private List<Pattern> noCachePaths = new ArrayList<Pattern>();
 
@@ -394,6 +422,208 @@ public class RepositoryContext {
         repositoryService.setCacheEnabled(enableCache);
     }
 
+    /**
+     * Return whether the path cache is warmed up at start-up and tenant load.
+     *
+     * @return true if enabled, false otherwise.
+     */
+    public boolean isPathCacheWarmUpEnabled() {
+        return pathCacheWarmUpEnabled;
+    }
+
+    /**
+     * Set whether the path cache is warmed up at start-up and tenant load.
+     *
+     * @param pathCacheWarmUpEnabled the path cache warm-up flag
+     */
+    public void setPathCacheWarmUpEnabled(boolean pathCacheWarmUpEnabled) {
+        this.pathCacheWarmUpEnabled = pathCacheWarmUpEnabled;
+    }
+
+    /**
+     * Return the number of rows fetched per round-trip while warming up the path cache.
+     *
+     * @return the fetch size.
+     */
+    public int getPathCacheWarmUpFetchSize() {
+        return pathCacheWarmUpFetchSize;
+    }
+
+    /**
+     * Set the number of rows fetched per round-trip while warming up the path cache.
+     *
+     * @param pathCacheWarmUpFetchSize the fetch size
+     */
+    public void setPathCacheWarmUpFetchSize(int pathCacheWarmUpFetchSize) {
+        this.pathCacheWarmUpFetchSize = pathCacheWarmUpFetchSize;
+    }
+
+    /**
+     * Return the path prefixes to warm up. If empty, all paths of the tenant are loaded.
+     *
+     * @return the list of path prefixes.
+     */
+    public List<String> getPathCacheWarmUpPrefixes() {
+        return pathCacheWarmUpPrefixes;
+    }
+
+    /**
+     * Add a path prefix to warm up.
+     *
+     * @param prefix the path prefix
+     */
+    public void addPathCacheWarmUpPrefix(String prefix) {
+        pathCacheWarmUpPrefixes.add(prefix);
+    }
+
+    /**
+     * Return whether version history is compacted in the background according to the version
+     * retention policies.
+     *
+     * @return true if enabled, false otherwise.
+     */
+    public boolean isVersionRetentionEnabled() {
+        return versionRetentionEnabled;
+    }
+
+    /**
+     * Set whether version history is compacted in the background according to the version
+     * retention policies.
+     *
+     * @param versionRetentionEnabled the version retention flag
+     */
+    public void setVersionRetentionEnabled(boolean versionRetentionEnabled) {
+        this.versionRetentionEnabled = versionRetentionEnabled;
+    }
+
+    /**
+     * Return the number of rows removed per transaction while compacting version history.
+     *
+     * @return the batch size.
+     */
+    public int getVersionRetentionBatchSize() {
+        return versionRetentionBatchSize;
+    }
+
+    /**
+     * Set the number of rows removed per transaction while compacting version history.
+     *
+     * @param versionRetentionBatchSize the batch size
+     */
+    public void setVersionRetentionBatchSize(int versionRetentionBatchSize) {
+        this.versionRetentionBatchSize = versionRetentionBatchSize;
+    }
+
+    /**
+     * Return the interval between two compactions of the version history of a tenant.
+     *
+     * @return the interval in seconds.
+     */
+    public long getVersionRetentionInterval() {
+        return versionRetentionInterval;
+    }
+
+    /**
+     * Set the interval between two compactions of the version history of a tenant.
+     *
+     * @param versionRetentionInterval the interval in seconds
+     */
+    public void setVersionRetentionInterval(long versionRetentionInterval) {
+        this.versionRetentionInterval = versionRetentionInterval;
+    }
+
+    /**
+     * Return the version retention policies, in the order they are matched against resources.
+     *
+     * @return the list of version retention policies.
+     */
+    public List<VersionRetentionPolicy> getVersionRetentionPolicies() {
+        return versionRetentionPolicies;
+    }
+
+    /**
+     * Add a version retention policy, matched after the policies already added.
+     *
+     * @param policy the version retention policy
+     */
+    public void addVersionRetentionPolicy(VersionRetentionPolicy policy) {
+        versionRetentionPolicies.add(policy);
+    }
+
+    /**
+     * Return the cache of the media types of the resources, shared by all the repositories of this
+     * context so that a write through one of them invalidates the entries read by the others.
+     *
+     * @return the media type cache.
+     */
+    public MediaTypeCache getMediaTypeCache() {
+        return mediaTypeCache;
+    }
+
+    /**
+     * Return the cache of the targets resolved for paths under symbolic links and mounts, shared by
+     * all the repositories of this context.
+     *
+     * @return the link resolution cache.
+     */
+    public LinkResolutionCache getLinkResolutionCache() {
+        return linkResolutionCache;
+    }
+
+    /**
+     * Return the store keeping new resource content on the file system.
+     *
+     * @return the file content store, or null if new content is kept in the database.
+     */
+    public FileContentStore getContentStore() {
+        return contentStore;
+    }
+
+    /**
+     * Set the store keeping new resource content on the file system.
+     *
+     * @param contentStore the file content store, or null to keep new content in the database
+     */
+    public void setContentStore(FileContentStore contentStore) {
+        this.contentStore = contentStore;
+    }
+
+    /**
+     * Return the settings of the partitioning, retention and rollups of the audit logs.
+     *
+     * @return the log storage configuration.
+     */
+    public LogStorageConfiguration getLogStorageConfiguration() {
+        return logStorageConfiguration;
+    }
+
+    /**
+     * Set the settings of the partitioning, retention and rollups of the audit logs.
+     *
+     * @param logStorageConfiguration the log storage configuration
+     */
+    public void setLogStorageConfiguration(LogStorageConfiguration logStorageConfiguration) {
+        this.logStorageConfiguration = logStorageConfiguration;
+    }
+
+    /**
+     * Return the fetcher opening the connections that imported content is read from.
+     *
+     * @return the URL fetcher.
+     */
+    public URLFetcher getURLFetcher() {
+        return urlFetcher;
+    }
+
+    /**
+     * Set the fetcher opening the connections that imported content is read from.
+     *
+     * @param urlFetcher the URL fetcher, or null to use {@link URLFetcher#DEFAULT}
+     */
+    public void setURLFetcher(URLFetcher urlFetcher) {
+        this.urlFetcher = (urlFetcher != null) ? urlFetcher : URLFetcher.DEFAULT;
+    }
+
     /**
      * Create a new registry context object with a custom realm service
      *
@@ -470,6 +700,15 @@ public class RepositoryContext {
             this.logWriter = baseContext.logWriter;
             this.systemResourcePaths = baseContext.systemResourcePaths;
             this.noCachePaths = baseContext.noCachePaths;
+            this.pathCacheWarmUpEnabled = baseContext.pathCacheWarmUpEnabled;
+            this.pathCacheWarmUpFetchSize = baseContext.pathCacheWarmUpFetchSize;
+            this.pathCacheWarmUpPrefixes = baseContext.pathCacheWarmUpPrefixes;
+            this.versionRetentionEnabled = baseContext.versionRetentionEnabled;
+            this.versionRetentionBatchSize = baseContext.versionRetentionBatchSize;
+            this.versionRetentionInterval = baseContext.versionRetentionInterval;
+            this.versionRetentionPolicies = baseContext.versionRetentionPolicies;
+            this.logStorageConfiguration = baseContext.logStorageConfiguration;
+            this.urlFetcher = baseContext.urlFetcher;
         }
         
         this.setup = true;
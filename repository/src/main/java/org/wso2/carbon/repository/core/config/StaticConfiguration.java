@@ -28,6 +28,8 @@ public class StaticConfiguration {
     
     private static String repositoryRoot ;
 
+    private static int maxQueryResultSize = -1;
+
     /**
      * Method to obtain whether properties are versioned.
      *
@@ -63,4 +65,22 @@ public class StaticConfiguration {
     public static String getRepositoryRoot() {
     	return repositoryRoot ;
     }
+
+    /**
+     * Method to obtain the maximum number of results of a query read into memory at once.
+     *
+     * @return the maximum number of results, or -1 if there is no limit.
+     */
+    public static int getMaxQueryResultSize() {
+        return maxQueryResultSize;
+    }
+
+    /**
+     * Method to set the maximum number of results of a query read into memory at once.
+     *
+     * @param maxQueryResultSize the maximum number of results, or -1 for no limit.
+     */
+    public static void setMaxQueryResultSize(int maxQueryResultSize) {
+        StaticConfiguration.maxQueryResultSize = maxQueryResultSize;
+    }
 }
@@ -0,0 +1,157 @@
+/*
+ *  Copyright (c) 2005-2009, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.wso2.carbon.repository.core.config;
+
+import org.wso2.carbon.repository.api.RepositoryConstants;
+
+/**
+ * This class represents a version retention policy defined in the registry.xml file. <br />
+ * &lt;policy&gt; &lt;pathPrefix&gt;/_system/governance&lt;/pathPrefix&gt;
+ * &lt;mediaType&gt;application/wsdl+xml&lt;/mediaType&gt; &lt;keepLast&gt;10&lt;/keepLast&gt;
+ * &lt;keepNewerThanDays&gt;30&lt;/keepNewerThanDays&gt; &lt;/policy&gt;
+ * <p/>
+ * A policy applies to the snapshots of the resources under its path prefix with its media type.
+ * A policy without a path prefix or media type applies to all paths or media types. A snapshot
+ * is kept if it is one of the last snapshots of its resource, or if it is newer than the given
+ * age, whichever of the two limits are set. A policy without limits keeps all snapshots.
+ */
+public class VersionRetentionPolicy {
+
+    private String pathPrefix;
+    private String mediaType;
+    private int keepLast = -1;
+    private long keepNewerThan = -1;
+
+    /**
+     * Method to obtain the path prefix the policy applies to.
+     *
+     * @return the path prefix, or null if the policy applies to all paths.
+     */
+    public String getPathPrefix() {
+        return pathPrefix;
+    }
+
+    /**
+     * Method to set the path prefix the policy applies to.
+     *
+     * @param pathPrefix the path prefix.
+     */
+    public void setPathPrefix(String pathPrefix) {
+        this.pathPrefix = pathPrefix;
+    }
+
+    /**
+     * Method to obtain the media type the policy applies to.
+     *
+     * @return the media type, or null if the policy applies to all media types.
+     */
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Method to set the media type the policy applies to.
+     *
+     * @param mediaType the media type.
+     */
+    public void setMediaType(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    /**
+     * Method to obtain the number of most recent snapshots kept for each resource.
+     *
+     * @return the number of snapshots, or -1 if not limited by count.
+     */
+    public int getKeepLast() {
+        return keepLast;
+    }
+
+    /**
+     * Method to set the number of most recent snapshots kept for each resource.
+     *
+     * @param keepLast the number of snapshots.
+     */
+    public void setKeepLast(int keepLast) {
+        this.keepLast = keepLast;
+    }
+
+    /**
+     * Method to obtain the age below which snapshots are kept.
+     *
+     * @return the age in milliseconds, or -1 if not limited by age.
+     */
+    public long getKeepNewerThan() {
+        return keepNewerThan;
+    }
+
+    /**
+     * Method to set the age below which snapshots are kept.
+     *
+     * @param keepNewerThan the age in milliseconds.
+     */
+    public void setKeepNewerThan(long keepNewerThan) {
+        this.keepNewerThan = keepNewerThan;
+    }
+
+    /**
+     * Method to determine whether the policy applies to a resource.
+     *
+     * @param path      the path of the resource.
+     * @param mediaType the media type of the resource, or null if unknown.
+     *
+     * @return true if the policy applies to the resource.
+     */
+    public boolean matches(String path, String mediaType) {
+        if (this.mediaType != null && !this.mediaType.equals(mediaType)) {
+            return false;
+        }
+
+        return pathPrefix == null || path.equals(pathPrefix) ||
+                RepositoryConstants.ROOT_PATH.equals(pathPrefix) ||
+                path.startsWith(pathPrefix + RepositoryConstants.PATH_SEPARATOR);
+    }
+
+    /**
+     * Method to determine whether a snapshot is removed by the policy.
+     *
+     * @param index        the position of the snapshot among the snapshots of its resource, the
+     *                     most recent being 0.
+     * @param snapshotTime the time the snapshot was taken, or -1 if unknown.
+     * @param now          the current time.
+     *
+     * @return true if the snapshot is no longer retained.
+     */
+    public boolean isExpired(int index, long snapshotTime, long now) {
+        if (keepLast < 0 && keepNewerThan < 0) {
+            return false;
+        }
+
+        if (keepLast >= 0 && index < keepLast) {
+            return false;
+        }
+
+        if (keepNewerThan >= 0 && (snapshotTime < 0 || now - snapshotTime < keepNewerThan)) {
+            return false;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,731 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.repository.core.content;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.repository.api.RepositoryConstants;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.api.utils.RepositoryUtils;
+import org.wso2.carbon.repository.core.CurrentContext;
+import org.wso2.carbon.repository.core.config.RepositoryContext;
+import org.wso2.carbon.repository.core.exceptions.RepositoryServerContentException;
+import org.wso2.carbon.repository.core.utils.InternalUtils;
+
+/**
+ * Stores resource content as files on the local disk instead of in the content tables. The content
+ * column then holds a small reference to the file, made of the SHA-256 checksum and the length of
+ * the content, so that content stored in the database and on disk can be mixed, and the content
+ * history can share the files of the current content.
+ * <p/>
+ * Files are named by their checksum under a directory per tenant. A file is first written to a
+ * temporary file, and moved to its name when the database transaction that references it is
+ * committed, or deleted when the transaction is rolled back. Files are never modified once moved,
+ * and are not removed when the content referencing them is deleted, since other content rows may
+ * share them. Nothing reclaims the files that are no longer referenced, so the store only grows as
+ * content is updated, deleted or removed from the history; the files of a tenant must be
+ * reclaimed offline, by removing those whose checksum is not referenced by any row of
+ * <code>REG_CONTENT</code> or <code>REG_CONTENT_HISTORY</code> of the tenant.
+ * <p/>
+ * The store of a repository is the one configured in its repository context.
+ */
+public class FileContentStore {
+
+    private static final Log log = LogFactory.getLog(FileContentStore.class);
+
+    private static final String CHECKSUM_ALGORITHM = "SHA-256";
+    private static final String TEMP_DIRECTORY = "tmp";
+
+    // the reads of at least this size are memory mapped, smaller reads use the file channel.
+    private static final int MEMORY_MAP_THRESHOLD = 64 * 1024;
+
+    // the largest part of a file mapped at once, as a mapping can not exceed 2 GB.
+    private static final int MEMORY_MAP_WINDOW = 64 * 1024 * 1024;
+
+    private static final int CHECKSUM_LENGTH = 64;
+
+    private static final byte[] REFERENCE_MARKER;
+
+    static {
+        try {
+            REFERENCE_MARKER = "\u0000wso2-repository-file-content\u0000".getBytes("US-ASCII");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // files written in each open transaction of the thread, by connection, to be moved on commit.
+    private static final ThreadLocal<Map<Object, List<PendingFile>>> pendingFiles =
+            new ThreadLocal<Map<Object, List<PendingFile>>>() {
+                protected Map<Object, List<PendingFile>> initialValue() {
+                    return new IdentityHashMap<Object, List<PendingFile>>();
+                }
+            };
+
+    private final File rootDirectory;
+
+    /**
+     * The reference stored in the database for content kept on disk.
+     */
+    public static final class Reference {
+
+        private final String checksum;
+        private final long length;
+
+        /**
+         * Creates a reference.
+         *
+         * @param checksum the SHA-256 checksum of the content, in hexadecimal.
+         * @param length   the length of the content in bytes.
+         *
+         * @throws IllegalArgumentException if the checksum is not a SHA-256 checksum in lower case
+         *                                  hexadecimal, or the length is negative.
+         */
+        public Reference(String checksum, long length) {
+            // the checksum names the content file, so anything else could refer outside the store.
+            if (!isChecksum(checksum)) {
+                throw new IllegalArgumentException("Invalid checksum " + checksum);
+            }
+            if (length < 0) {
+                throw new IllegalArgumentException("Invalid length " + length);
+            }
+
+            this.checksum = checksum;
+            this.length = length;
+        }
+
+        /**
+         * Method to obtain the checksum of the content.
+         *
+         * @return the SHA-256 checksum, in hexadecimal.
+         */
+        public String getChecksum() {
+            return checksum;
+        }
+
+        /**
+         * Method to obtain the length of the content.
+         *
+         * @return the length in bytes.
+         */
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * Method to encode the reference to be stored in the content column.
+         *
+         * @return the encoded reference.
+         */
+        public byte[] getBytes() {
+            try {
+                byte[] value = (checksum + ":" + length).getBytes("US-ASCII");
+                byte[] bytes = Arrays.copyOf(REFERENCE_MARKER, REFERENCE_MARKER.length + value.length);
+                System.arraycopy(value, 0, bytes, REFERENCE_MARKER.length, value.length);
+                return bytes;
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static final class PendingFile {
+
+        private final File tempFile;
+        private final File file;
+
+        private PendingFile(File tempFile, File file) {
+            this.tempFile = tempFile;
+            this.file = file;
+        }
+    }
+
+    /**
+     * Creates a store keeping the content under the given directory.
+     *
+     * @param rootDirectory the directory, which is created if it does not exist.
+     */
+    public FileContentStore(File rootDirectory) {
+        this.rootDirectory = rootDirectory;
+    }
+
+    /**
+     * Method to obtain the directory the content is kept in.
+     *
+     * @return the root directory of the store.
+     */
+    public File getRootDirectory() {
+        return rootDirectory;
+    }
+
+    /**
+     * Method to write content to the store. The content is moved to its final place when the
+     * transaction of the given connection is committed, or right away if the connection is not in
+     * a transaction. The given content stream will be closed after completing this method.
+     *
+     * @param tenantId      the tenant identifier.
+     * @param contentStream the content.
+     * @param transaction   the connection of the current transaction, or null if none.
+     *
+     * @return the reference to store in the database.
+     * @throws RepositoryException if the content could not be written.
+     */
+    public Reference write(int tenantId, InputStream contentStream, Object transaction)
+            throws RepositoryException {
+        File tempDirectory = new File(rootDirectory, TEMP_DIRECTORY);
+        if (!tempDirectory.isDirectory() && !tempDirectory.mkdirs() && !tempDirectory.isDirectory()) {
+            throw new RepositoryServerContentException("Unable to create the content directory " +
+                    tempDirectory.getAbsolutePath() + ".");
+        }
+
+        File tempFile = null;
+        FileOutputStream out = null;
+        try {
+            MessageDigest digest = MessageDigest.getInstance(CHECKSUM_ALGORITHM);
+            tempFile = File.createTempFile("content", ".tmp", tempDirectory);
+            out = new FileOutputStream(tempFile);
+
+            byte[] contentChunk = new byte[RepositoryConstants.DEFAULT_BUFFER_SIZE];
+            long length = 0;
+            int byteCount;
+            while ((byteCount = contentStream.read(contentChunk)) != -1) {
+                digest.update(contentChunk, 0, byteCount);
+                out.write(contentChunk, 0, byteCount);
+                length += byteCount;
+            }
+
+            out.flush();
+            out.getFD().sync();
+            out.close();
+            out = null;
+
+            Reference reference = new Reference(toHex(digest.digest()), length);
+            PendingFile pendingFile = new PendingFile(tempFile, getFile(tenantId, reference));
+
+            if (transaction == null) {
+                moveToPlace(pendingFile);
+            } else {
+                List<PendingFile> files = pendingFiles.get().get(transaction);
+                if (files == null) {
+                    files = new ArrayList<PendingFile>();
+                    pendingFiles.get().put(transaction, files);
+                }
+                files.add(pendingFile);
+            }
+
+            tempFile = null;
+            return reference;
+
+        } catch (IOException e) {
+            String msg = "Failed to write content to the content store. " + e.getMessage();
+            log.error(msg, e);
+            throw new RepositoryServerContentException(msg, e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RepositoryServerContentException("The " + CHECKSUM_ALGORITHM +
+                    " algorithm is not available.", e);
+        } finally {
+            try {
+                contentStream.close();
+                if (out != null) {
+                    out.close();
+                }
+            } catch (IOException e) {
+                log.error("Failed to close streams used for writing content. " + e.getMessage(), e);
+            }
+            if (tempFile != null && !tempFile.delete()) {
+                log.warn("Unable to delete the temporary content file " + tempFile.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Method to read a range of content from the store.
+     *
+     * @param tenantId  the tenant identifier.
+     * @param reference the reference stored in the database.
+     * @param offset    the position of the first byte to read.
+     * @param length    the maximum number of bytes to read, or -1 to read up to the end.
+     *
+     * @return the range of the content. Small ranges are held in memory, larger ones are read from
+     *         the memory mapped file as the stream is read, and a stream of the whole content then
+     *         fails with an {@link IOException} at its end if the content does not match its
+     *         checksum.
+     * @throws RepositoryException if the content could not be read, or small content read in full
+     *                             does not match its checksum.
+     */
+    public InputStream read(int tenantId, Reference reference, long offset, long length)
+            throws RepositoryException {
+        File file = getPendingFile(tenantId, reference);
+        if (file == null) {
+            file = getFile(tenantId, reference);
+        }
+
+        long start = Math.min(offset, reference.getLength());
+        long end = (length == -1) ? reference.getLength() :
+                Math.min(reference.getLength(), start + length);
+        long size = end - start;
+
+        MessageDigest digest = null;
+        try {
+            if (size == reference.getLength()) {
+                digest = MessageDigest.getInstance(CHECKSUM_ALGORITHM);
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new RepositoryServerContentException("The " + CHECKSUM_ALGORITHM +
+                    " algorithm is not available.", e);
+        }
+
+        if (size >= MEMORY_MAP_THRESHOLD) {
+            // the content is read from the mapped file as the stream is read.
+            return new MappedContentStream(file, start, end, digest, reference.getChecksum());
+        }
+
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            FileChannel channel = in.getChannel();
+            byte[] bytes = new byte[(int) size];
+
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) == -1) {
+                    throw new IOException("Unexpected end of the content file.");
+                }
+            }
+
+            if (digest != null && !toHex(digest.digest(bytes)).equals(reference.getChecksum())) {
+                String msg = "The content file " + file.getAbsolutePath() + " does not match its checksum.";
+                log.error(msg);
+                throw new RepositoryServerContentException(msg);
+            }
+
+            return new ByteArrayInputStream(bytes);
+
+        } catch (IOException e) {
+            String msg = "Failed to read the content file " + file.getAbsolutePath() + ". " +
+                    e.getMessage();
+            log.error(msg, e);
+            throw new RepositoryServerContentException(msg, e);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    log.error("Failed to close the content file. " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to read a range of content as stored in the content column, which is either the
+     * content itself, or a reference to content kept in the content store of the repository. The
+     * given input stream will be closed after completing this method.
+     *
+     * @param tenantId      the tenant identifier.
+     * @param storedContent the value of the content column.
+     * @param offset        the position of the first byte to read.
+     * @param length        the maximum number of bytes to read, or -1 to read up to the end.
+     *
+     * @return the range of the content, held in memory.
+     * @throws RepositoryException if the operation failed.
+     */
+    public static InputStream getContentStream(int tenantId, InputStream storedContent, long offset,
+                                               long length) throws RepositoryException {
+        InputStream in = storedContent.markSupported() ? storedContent :
+                new BufferedInputStream(storedContent);
+        Reference reference;
+
+        try {
+            in.mark(REFERENCE_MARKER.length);
+            byte[] marker = new byte[REFERENCE_MARKER.length];
+            int read = 0;
+            int byteCount;
+            while (read < marker.length &&
+                    (byteCount = in.read(marker, read, marker.length - read)) != -1) {
+                read += byteCount;
+            }
+
+            if (read < marker.length || !Arrays.equals(marker, REFERENCE_MARKER)) {
+                in.reset();
+                return RepositoryUtils.getMemoryStream(in, offset, length);
+            }
+
+            reference = parseReference(RepositoryUtils.getByteArray(in));
+        } catch (IOException e) {
+            String msg = "Failed to read the stored content. " + e.getMessage();
+            log.error(msg, e);
+            throw new RepositoryServerContentException(msg, e);
+        }
+
+        FileContentStore contentStore = getContentStore();
+        if (contentStore == null) {
+            String msg = "The content is kept in a file content store, but no file content " +
+                    "store is configured.";
+            log.error(msg);
+            throw new RepositoryServerContentException(msg);
+        }
+
+        return contentStore.read(tenantId, reference, offset, length);
+    }
+
+    /**
+     * Method to obtain the content store of the repository the current operation runs on, which is
+     * that of the base repository context when the operation is not run on an embedded repository.
+     *
+     * @return the content store, or null if content is kept in the database.
+     */
+    public static FileContentStore getContentStore() {
+        RepositoryContext repositoryContext = (CurrentContext.getRespository() != null) ?
+                InternalUtils.getRepositoryContext(CurrentContext.getRespository()) :
+                RepositoryContext.getBaseInstance();
+
+        return (repositoryContext != null) ? repositoryContext.getContentStore() : null;
+    }
+
+    /**
+     * Method to check whether the leading bytes of the content column are those of a reference to
+     * content kept in a content store, rather than the content itself.
+     *
+     * @param head the leading bytes of the content column, of which the first {@link
+     *             #getReferenceMarkerLength()} are examined.
+     *
+     * @return true if the column holds a reference.
+     */
+    public static boolean isReference(byte[] head) {
+        return head.length >= REFERENCE_MARKER.length &&
+                Arrays.equals(Arrays.copyOf(head, REFERENCE_MARKER.length), REFERENCE_MARKER);
+    }
+
+    /**
+     * Method to obtain the number of leading bytes of the content column needed to tell a
+     * reference from the content itself.
+     *
+     * @return the number of bytes.
+     */
+    public static int getReferenceMarkerLength() {
+        return REFERENCE_MARKER.length;
+    }
+
+    /**
+     * Method to obtain the value to store in the content column for the given content. If the
+     * repository has a file content store, the content is written to it and a reference to it is
+     * returned, otherwise the content itself is returned.
+     *
+     * @param tenantId      the tenant identifier.
+     * @param contentStream the content.
+     * @param connection    the connection the content column is written with.
+     *
+     * @return the value to store in the content column.
+     * @throws RepositoryException if the content could not be written to the content store.
+     */
+    public static InputStream toStoredContent(int tenantId, InputStream contentStream,
+                                              Connection connection) throws RepositoryException {
+        FileContentStore contentStore = getContentStore();
+        if (contentStore == null) {
+            return contentStream;
+        }
+
+        Object transaction;
+        try {
+            transaction = (connection != null && !connection.getAutoCommit()) ? connection : null;
+        } catch (SQLException e) {
+            String msg = "Failed to read the transaction state of the connection. " + e.getMessage();
+            log.error(msg, e);
+            throw new RepositoryServerContentException(msg, e);
+        }
+
+        return new ByteArrayInputStream(
+                contentStore.write(tenantId, contentStream, transaction).getBytes());
+    }
+
+    /**
+     * Method to move the files written in the transaction of the given connection to their final
+     * place. It is to be called just before the transaction is committed, so that the committed
+     * references never point to missing files.
+     *
+     * @param transaction the connection of the transaction.
+     *
+     * @throws RepositoryException if a file could not be moved.
+     */
+    public static void transactionCommitting(Object transaction) throws RepositoryException {
+        List<PendingFile> files = pendingFiles.get().remove(transaction);
+
+        if (files != null) {
+            for (int i = 0; i < files.size(); i++) {
+                try {
+                    moveToPlace(files.get(i));
+                } catch (RepositoryException e) {
+                    discard(files.subList(i + 1, files.size()));
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to delete the files written in the transaction of the given connection, when the
+     * transaction is rolled back.
+     *
+     * @param transaction the connection of the transaction.
+     */
+    public static void transactionRolledBack(Object transaction) {
+        List<PendingFile> files = pendingFiles.get().remove(transaction);
+
+        if (files != null) {
+            discard(files);
+        }
+    }
+
+    private static void moveToPlace(PendingFile pendingFile) throws RepositoryException {
+        File directory = pendingFile.file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new RepositoryServerContentException("Unable to create the content directory " +
+                    directory.getAbsolutePath() + ".");
+        }
+
+        if (pendingFile.file.exists() || pendingFile.tempFile.renameTo(pendingFile.file)) {
+            // a file with the same name has the same content, so the new one is not needed.
+            if (pendingFile.tempFile.exists() && !pendingFile.tempFile.delete()) {
+                log.warn("Unable to delete the temporary content file " +
+                        pendingFile.tempFile.getAbsolutePath());
+            }
+            return;
+        }
+
+        if (!pendingFile.file.exists()) {
+            String msg = "Unable to move the content file " + pendingFile.tempFile.getAbsolutePath() +
+                    " to " + pendingFile.file.getAbsolutePath() + ".";
+            log.error(msg);
+            throw new RepositoryServerContentException(msg);
+        }
+    }
+
+    private static void discard(List<PendingFile> files) {
+        for (PendingFile pendingFile : files) {
+            if (!pendingFile.tempFile.delete()) {
+                log.warn("Unable to delete the temporary content file " +
+                        pendingFile.tempFile.getAbsolutePath());
+            }
+        }
+    }
+
+    // Returns the temporary file of content written in a transaction of the thread, which is not
+    // yet in its final place.
+    private File getPendingFile(int tenantId, Reference reference) {
+        File file = getFile(tenantId, reference);
+
+        for (List<PendingFile> files : pendingFiles.get().values()) {
+            for (PendingFile pendingFile : files) {
+                if (pendingFile.file.equals(file)) {
+                    return pendingFile.tempFile;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private File getFile(int tenantId, Reference reference) {
+        String checksum = reference.getChecksum();
+        return new File(new File(new File(rootDirectory, Integer.toString(tenantId)),
+                checksum.substring(0, 2)), checksum);
+    }
+
+    private static Reference parseReference(byte[] value) throws RepositoryException {
+        try {
+            String reference = new String(value, "US-ASCII");
+            int separator = reference.indexOf(':');
+            if (separator == -1) {
+                throw new IllegalArgumentException("Missing length");
+            }
+
+            return new Reference(reference.substring(0, separator),
+                    Long.parseLong(reference.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            String msg = "The content is corrupt. It holds an invalid reference to the file content store.";
+            log.error(msg, e);
+            throw new RepositoryServerContentException(msg, e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean isChecksum(String checksum) {
+        if (checksum == null || checksum.length() != CHECKSUM_LENGTH) {
+            return false;
+        }
+
+        for (int i = 0; i < checksum.length(); i++) {
+            char c = checksum.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+            hex.append(Character.forDigit(b & 0xf, 16));
+        }
+
+        return hex.toString();
+    }
+
+    // Reads a range of a content file through memory mappings of consecutive parts of the file, so
+    // that content of any size is read without copying it to the heap. Each part is mapped as it is
+    // reached, and the file is closed right after, since a mapping stays valid once it is made.
+    private static final class MappedContentStream extends InputStream {
+
+        private final File file;
+        private final long end;
+        private final String checksum;
+        private MessageDigest digest;
+        private MappedByteBuffer window;
+        private long position;
+
+        private MappedContentStream(File file, long start, long end, MessageDigest digest, String checksum) {
+            this.file = file;
+            this.position = start;
+            this.end = end;
+            this.digest = digest;
+            this.checksum = checksum;
+        }
+
+        public int read() throws IOException {
+            if (!nextWindow()) {
+                return -1;
+            }
+
+            byte b = window.get();
+            position++;
+            if (digest != null) {
+                digest.update(b);
+            }
+
+            return b & 0xFF;
+        }
+
+        public int read(byte[] bytes, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            if (!nextWindow()) {
+                return -1;
+            }
+
+            int count = Math.min(len, window.remaining());
+            window.get(bytes, off, count);
+            position += count;
+            if (digest != null) {
+                digest.update(bytes, off, count);
+            }
+
+            return count;
+        }
+
+        public long skip(long n) throws IOException {
+            long count = Math.max(0, Math.min(n, end - position));
+
+            if (count > 0) {
+                // the checksum can only be verified if every byte is read.
+                digest = null;
+                position += count;
+                if (window != null && count <= window.remaining()) {
+                    window.position(window.position() + (int) count);
+                } else {
+                    window = null;
+                }
+            }
+
+            return count;
+        }
+
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+
+        public void close() {
+            window = null;
+        }
+
+        // Maps the next part of the file once the current one is read, and verifies the checksum
+        // at the end. Returns false at the end of the range.
+        private boolean nextWindow() throws IOException {
+            if (position >= end) {
+                if (digest != null) {
+                    boolean matches = toHex(digest.digest()).equals(checksum);
+                    digest = null;
+
+                    if (!matches) {
+                        String msg = "The content file " + file.getAbsolutePath() + " does not match its checksum.";
+                        log.error(msg);
+                        throw new IOException(msg);
+                    }
+                }
+
+                return false;
+            }
+
+            if (window != null && window.hasRemaining()) {
+                return true;
+            }
+
+            RandomAccessFile in = new RandomAccessFile(file, "r");
+            try {
+                window = in.getChannel().map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MEMORY_MAP_WINDOW, end - position));
+            } finally {
+                in.close();
+            }
+
+            if (!window.hasRemaining()) {
+                throw new IOException("Unexpected end of the content file " + file.getAbsolutePath() + ".");
+            }
+
+            return true;
+        }
+    }
+}
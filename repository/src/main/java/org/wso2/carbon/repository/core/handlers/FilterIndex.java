@@ -0,0 +1,364 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.repository.core.handlers;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.wso2.carbon.repository.api.Collection;
+import org.wso2.carbon.repository.api.Resource;
+import org.wso2.carbon.repository.api.ResourcePath;
+import org.wso2.carbon.repository.api.handlers.Filter;
+import org.wso2.carbon.repository.api.handlers.HandlerContext;
+import org.wso2.carbon.repository.core.handlers.builtin.MediaTypeMatcher;
+import org.wso2.carbon.repository.core.handlers.builtin.URLMatcher;
+
+/**
+ * An index over the filters registered for one handler method, used to select the filters that
+ * can match a request without evaluating all of them.
+ * <p/>
+ * For the methods that match {@link URLMatcher} patterns against the complete resource path, a
+ * pattern without regular expression constructs is put in an exact path table, and any other
+ * pattern is put in a prefix table under its literal prefix. A {@link MediaTypeMatcher} is put in
+ * a media type table, which is used when the media type it would compare against is already
+ * available in the request context. Inverted matchers, sub classes of the built-in matchers and
+ * all other filters are always selected. URL matchers without a pattern for the method never
+ * match and are never selected.
+ * <p/>
+ * The selected filters are returned in their original order, and are still evaluated by the
+ * caller, so the index only decides which filters need not be evaluated. An index is built from
+ * the filters at the time of building, and has to be rebuilt when filters are added or removed.
+ */
+public class FilterIndex {
+
+    // methods for which the URL matcher matches against the complete path of the resource.
+    private static final Set<String> PATH_METHODS = new TreeSet<String>(Arrays.asList(Filter.GET,
+            Filter.PUT, Filter.IMPORT, Filter.DELETE, Filter.PUT_CHILD, Filter.IMPORT_CHILD,
+            Filter.INVOKE_ASPECT, Filter.CREATE_LINK, Filter.REMOVE_LINK, Filter.RESOURCE_EXISTS,
+            Filter.CREATE_VERSION, Filter.GET_VERSIONS, Filter.EXECUTE_QUERY, Filter.DUMP,
+            Filter.RESTORE));
+
+    private static final String REGEX_META_CHARACTERS = "\\^$.|?*+()[]{}";
+    private static final String REGEX_QUANTIFIERS = "?*+{";
+
+    private final String method;
+    private final Map<Filter, ?> source;
+    private final Filter[] filters;
+
+    private final BitSet unindexed = new BitSet();
+    private final BitSet urlFilters = new BitSet();
+    private final BitSet mediaTypeFilters = new BitSet();
+    private final Map<String, BitSet> exactPaths = new HashMap<String, BitSet>();
+    private final Map<String, BitSet> pathPrefixes = new HashMap<String, BitSet>();
+    private final Map<String, BitSet> mediaTypes = new HashMap<String, BitSet>();
+    private final int[] prefixLengths;
+
+    /**
+     * Builds the index for the filters of the given method.
+     *
+     * @param method     the handler method, one of the method names defined in {@link Filter}.
+     * @param handlerMap the map of filters to handlers of the method, in the order of evaluation.
+     */
+    public FilterIndex(String method, Map<Filter, ?> handlerMap) {
+        this.method = method;
+        this.source = handlerMap;
+        this.filters = handlerMap.keySet().toArray(new Filter[handlerMap.size()]);
+
+        boolean pathMethod = PATH_METHODS.contains(method);
+        Set<Integer> lengths = new TreeSet<Integer>();
+
+        for (int i = 0; i < filters.length; i++) {
+            Filter filter = filters[i];
+
+            if (filter == null) {
+                continue;
+            }
+
+            if (pathMethod && filter.getClass() == URLMatcher.class && !isInverted(filter)) {
+                String pattern = ((URLMatcher) filter).getPatternString(method);
+
+                if (pattern == null) {
+                    continue;
+                }
+
+                boolean[] exact = new boolean[1];
+                String prefix = getLiteralPrefix(pattern, exact);
+
+                if (exact[0]) {
+                    put(exactPaths, prefix, i);
+                    urlFilters.set(i);
+                    continue;
+                } else if (prefix != null && prefix.length() > 0) {
+                    put(pathPrefixes, prefix, i);
+                    lengths.add(prefix.length());
+                    urlFilters.set(i);
+                    continue;
+                }
+            } else if (filter.getClass() == MediaTypeMatcher.class && !isInverted(filter) &&
+                    ((MediaTypeMatcher) filter).getMediaType() != null) {
+                put(mediaTypes, ((MediaTypeMatcher) filter).getMediaType(), i);
+                mediaTypeFilters.set(i);
+                continue;
+            }
+
+            unindexed.set(i);
+        }
+
+        prefixLengths = new int[lengths.size()];
+        int i = 0;
+
+        for (Integer length : lengths) {
+            prefixLengths[i++] = length;
+        }
+    }
+
+    /**
+     * Method to check whether this index was built from the given map of filters.
+     *
+     * @param handlerMap the map of filters to handlers.
+     *
+     * @return true if the index was built from the given map.
+     */
+    public boolean isBuiltFrom(Map<Filter, ?> handlerMap) {
+        return source == handlerMap;
+    }
+
+    /**
+     * Method to select the filters that can match the given request. The media types of the
+     * resources in the request context are read as the filters are iterated, so that changes made
+     * by the handlers invoked earlier in the chain are taken into account.
+     *
+     * @param requestContext the request context.
+     *
+     * @return the filters that can match, in their original order.
+     */
+    public Iterable<Filter> select(final HandlerContext requestContext) {
+        return new Iterable<Filter>() {
+            public Iterator<Filter> iterator() {
+                return new SelectionIterator(requestContext);
+            }
+        };
+    }
+
+    /**
+     * Method to compute the literal prefix of a regular expression, which every string matching
+     * the whole expression starts with. Expressions with alternations have no literal prefix.
+     *
+     * @param regex the regular expression.
+     * @param exact a single element array, set to true if the expression only matches its
+     *              literal prefix.
+     *
+     * @return the literal prefix, or null if the expression has no literal prefix.
+     */
+    public static String getLiteralPrefix(String regex, boolean[] exact) {
+        exact[0] = false;
+
+        if (regex.indexOf('|') >= 0) {
+            return null;
+        }
+
+        StringBuilder prefix = new StringBuilder();
+        int i = regex.startsWith("^") ? 1 : 0;
+
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+
+            if (c == '$' && i == regex.length() - 1) {
+                break;
+            } else if (c == '\\') {
+                if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    return prefix.toString();
+                }
+
+                if (isQuantified(regex, i + 2)) {
+                    return prefix.toString();
+                }
+
+                prefix.append(regex.charAt(i + 1));
+                i += 2;
+            } else if (REGEX_META_CHARACTERS.indexOf(c) >= 0) {
+                return prefix.toString();
+            } else {
+                if (isQuantified(regex, i + 1)) {
+                    return prefix.toString();
+                }
+
+                prefix.append(c);
+                i++;
+            }
+        }
+
+        exact[0] = true;
+        return prefix.toString();
+    }
+
+    // whether the character before the given position is followed by a quantifier.
+    private static boolean isQuantified(String regex, int position) {
+        return position < regex.length() && REGEX_QUANTIFIERS.indexOf(regex.charAt(position)) >= 0;
+    }
+
+    private static boolean isInverted(Filter filter) {
+        return Boolean.parseBoolean(filter.getInvert());
+    }
+
+    private static void put(Map<String, BitSet> table, String key, int position) {
+        BitSet positions = table.get(key);
+
+        if (positions == null) {
+            positions = new BitSet();
+            table.put(key, positions);
+        }
+
+        positions.set(position);
+    }
+
+    // the URL matchers that can match the given path.
+    private BitSet selectByPath(ResourcePath resourcePath) {
+        if (resourcePath == null) {
+            return urlFilters;
+        }
+
+        String path = resourcePath.getCompletePath();
+        BitSet selected = new BitSet();
+        BitSet exact = exactPaths.get(path);
+
+        if (exact != null) {
+            selected.or(exact);
+        }
+
+        for (int length : prefixLengths) {
+            if (length > path.length()) {
+                break;
+            }
+
+            BitSet prefixed = pathPrefixes.get(path.substring(0, length));
+
+            if (prefixed != null) {
+                selected.or(prefixed);
+            }
+        }
+
+        return selected;
+    }
+
+    // the object holding the media type that media type matchers of the method compare against,
+    // or null if the matchers may have to retrieve it.
+    private Object getMediaTypeSource(HandlerContext requestContext) {
+        if (Filter.GET.equals(method)) {
+            ResourcePath resourcePath = requestContext.getResourcePath();
+
+            if (resourcePath != null && resourcePath.parameterExists("new")) {
+                return resourcePath;
+            }
+
+            return requestContext.getResource();
+        } else if (Filter.PUT.equals(method) || Filter.IMPORT.equals(method)) {
+            Resource resource = requestContext.getResource();
+            return resource != null ? resource : Boolean.FALSE;
+        } else if (Filter.DELETE.equals(method) || Filter.REMOVE_LINK.equals(method) ||
+                Filter.CREATE_LINK.equals(method) || Filter.INVOKE_ASPECT.equals(method)) {
+            return requestContext.getResource();
+        } else if (Filter.PUT_CHILD.equals(method) || Filter.IMPORT_CHILD.equals(method)) {
+            return requestContext.getParentCollection();
+        }
+
+        return null;
+    }
+
+    private static String getMediaType(Object mediaTypeSource) {
+        if (mediaTypeSource instanceof ResourcePath) {
+            return ((ResourcePath) mediaTypeSource).getParameterValue("mediaType");
+        } else if (mediaTypeSource instanceof Collection) {
+            return ((Collection) mediaTypeSource).getMediaType();
+        } else if (mediaTypeSource instanceof Resource) {
+            return ((Resource) mediaTypeSource).getMediaType();
+        }
+
+        return null;
+    }
+
+    private class SelectionIterator implements Iterator<Filter> {
+
+        private final HandlerContext requestContext;
+        private final BitSet pathSelected;
+        private int position = -1;
+        private int nextPosition = -1;
+
+        private SelectionIterator(HandlerContext requestContext) {
+            this.requestContext = requestContext;
+            this.pathSelected = urlFilters.isEmpty() ? urlFilters :
+                    selectByPath(requestContext.getResourcePath());
+        }
+
+        // the next filter is only looked for once the caller is done with the previous one, as the
+        // handlers of the previous filter may change the resources in the request context.
+        private int advance(int from) {
+            for (int i = from; i < filters.length; i++) {
+                if (unindexed.get(i) || pathSelected.get(i)) {
+                    return i;
+                }
+
+                if (mediaTypeFilters.get(i) && isMediaTypeSelected(i)) {
+                    return i;
+                }
+            }
+
+            return filters.length;
+        }
+
+        private boolean isMediaTypeSelected(int i) {
+            Object mediaTypeSource = getMediaTypeSource(requestContext);
+
+            if (mediaTypeSource == null) {
+                return true;
+            }
+
+            String mediaType = getMediaType(mediaTypeSource);
+            BitSet selected = mediaType != null ? mediaTypes.get(mediaType) : null;
+
+            return selected != null && selected.get(i);
+        }
+
+        public boolean hasNext() {
+            if (nextPosition < 0) {
+                nextPosition = advance(position + 1);
+            }
+
+            return nextPosition < filters.length;
+        }
+
+        public Filter next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            position = nextPosition;
+            nextPosition = -1;
+            return filters[position];
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -92,30 +92,37 @@ public class HandlerLifecycleManager extends HandlerManager {
         handlerManagers = new Hashtable<String, HandlerManager>();
         
         HandlerManager defaultHandlerManager = new HandlerManager();
+        defaultHandlerManager.setLifecyclePhase(DEFAULT_SYSTEM_HANDLER_PHASE);
         defaultHandlerManager.setEvaluateAllHandlers(false);
         handlerManagers.put(DEFAULT_SYSTEM_HANDLER_PHASE, defaultHandlerManager);
         
         HandlerManager defaultTenantSpecificHandlerManager = new UserDefinedHandlerManager();
+        defaultTenantSpecificHandlerManager.setLifecyclePhase(TENANT_SPECIFIC_SYSTEM_HANDLER_PHASE);
         defaultTenantSpecificHandlerManager.setEvaluateAllHandlers(false);
         handlerManagers.put(TENANT_SPECIFIC_SYSTEM_HANDLER_PHASE, defaultTenantSpecificHandlerManager);
         
         HandlerManager userDefinedSystemHandlerManager = new HandlerManager();
+        userDefinedSystemHandlerManager.setLifecyclePhase(USER_DEFINED_SYSTEM_HANDLER_PHASE);
         userDefinedSystemHandlerManager.setEvaluateAllHandlers(false);
         handlerManagers.put(USER_DEFINED_SYSTEM_HANDLER_PHASE, userDefinedSystemHandlerManager);
         
         HandlerManager userDefinedHandlerManager = new UserDefinedHandlerManager();
+        userDefinedHandlerManager.setLifecyclePhase(USER_DEFINED_HANDLER_PHASE);
         userDefinedHandlerManager.setEvaluateAllHandlers(false);
         handlerManagers.put(USER_DEFINED_HANDLER_PHASE, userDefinedHandlerManager);
         
         HandlerManager reportingHandlerManager = new HandlerManager();
+        reportingHandlerManager.setLifecyclePhase(DEFAULT_REPORTING_HANDLER_PHASE);
         reportingHandlerManager.setEvaluateAllHandlers(true);
         handlerManagers.put(DEFAULT_REPORTING_HANDLER_PHASE, reportingHandlerManager);
 
         HandlerManager commitHandlerManager = new UserDefinedHandlerManager();
+        commitHandlerManager.setLifecyclePhase(COMMIT_HANDLER_PHASE);
         commitHandlerManager.setEvaluateAllHandlers(true);
         handlerManagers.put(COMMIT_HANDLER_PHASE, commitHandlerManager);
         
         HandlerManager rollbackHandlerManager = new UserDefinedHandlerManager();
+        rollbackHandlerManager.setLifecyclePhase(ROLLBACK_HANDLER_PHASE);
         rollbackHandlerManager.setEvaluateAllHandlers(true);
         handlerManagers.put(ROLLBACK_HANDLER_PHASE, rollbackHandlerManager);
 
@@ -942,6 +949,25 @@ public class HandlerLifecycleManager extends HandlerManager {
         return userDefinedValue || defaultValue;
     }
 
+    /**
+     * Method to determine whether any handler of the default, tenant-specific, user-defined system
+     * or user-defined phases would be invoked for the RESOURCE_EXISTS method. Reporting handlers
+     * only observe requests, and are not considered.
+     *
+     * @param requestContext Details of the request.
+     *
+     * @return true if the filter of at least one RESOURCE_EXISTS handler matches the request.
+     * @throws RepositoryException This exception is thrown for all exceptions occurred inside
+     *                           filters.
+     */
+    @Override
+    public boolean isResourceExistsHandled(HandlerContext requestContext) throws RepositoryException {
+        return handlerManagers.get(DEFAULT_SYSTEM_HANDLER_PHASE).isResourceExistsHandled(requestContext) ||
+                handlerManagers.get(TENANT_SPECIFIC_SYSTEM_HANDLER_PHASE).isResourceExistsHandled(requestContext) ||
+                handlerManagers.get(USER_DEFINED_SYSTEM_HANDLER_PHASE).isResourceExistsHandled(requestContext) ||
+                handlerManagers.get(USER_DEFINED_HANDLER_PHASE).isResourceExistsHandled(requestContext);
+    }
+
     public RepositoryContext getRegistryContext(HandlerContext requestContext) {
         RepositoryContext defaultValue = getRegistryContext(handlerManagers.get(DEFAULT_SYSTEM_HANDLER_PHASE), requestContext);
         boolean isProcessingComplete = requestContext.isProcessingComplete();
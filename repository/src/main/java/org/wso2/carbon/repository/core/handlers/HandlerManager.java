@@ -22,6 +22,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -34,6 +35,9 @@ import org.wso2.carbon.repository.api.handlers.Handler;
 import org.wso2.carbon.repository.api.handlers.HandlerContext;
 import org.wso2.carbon.repository.api.utils.RepositoryUtils;
 import org.wso2.carbon.repository.core.handlers.builtin.SimulationFilter;
+import org.wso2.carbon.repository.core.statistics.HandlerStatistics;
+import org.wso2.carbon.repository.core.tracing.Span;
+import org.wso2.carbon.repository.core.tracing.Tracer;
 
 /**
  * Manages the handlers and their invocations. Handlers, which are required to be invoked must be
@@ -52,7 +56,10 @@ import org.wso2.carbon.repository.core.handlers.builtin.SimulationFilter;
  * the map corresponding to the invoked method and evaluates filters of registered handlers. For
  * each filter which evaluates to true, its associated handler will be invoked. This process
  * continues either till there is no more handlers or till the processingComplete parameter of the
- * RequestContext is set to true.
+ * RequestContext is set to true. Filters which cannot match the request are skipped using a
+ * {@link FilterIndex} built for each method, without changing the order of evaluation. Filter
+ * evaluations and handler invocations are timed through {@link HandlerStatistics} when enabled,
+ * and each handler invocation of a traced operation gets its own span from the {@link Tracer}.
  * <p/>
  * There is only one instance of this class exists per registry instance.
  */
@@ -102,6 +109,12 @@ public class HandlerManager {
 
     private boolean evaluateAllHandlers = false;
 
+    // the handler lifecycle phase of this handler manager, used when collecting statistics and traces.
+    private String lifecyclePhase;
+
+    // indices over the filters of each method, built on first use after the handlers change.
+    private final Map<String, FilterIndex> filterIndices = new ConcurrentHashMap<String, FilterIndex>();
+
     /**
      * Registers handlers with the handler manager. Each handler should be registered with a Filter.
      * If a handler should be engaged only to a subset of allowed methods, those methods can be
@@ -121,6 +134,8 @@ public class HandlerManager {
      * @param handler Handler instance to be registered.
      */
     public synchronized void addHandler(String[] methods, Filter filter, Handler handler) {
+        filterIndices.clear();
+
         if (methods == null || RepositoryUtils.containsString(Filter.GET, methods)) {
             Set<Handler> handlers = getHandlerMap.get(filter);
             
@@ -579,6 +594,8 @@ public class HandlerManager {
      * @param handler Handler instance to be registered.
      */
     public synchronized void addHandlerWithPriority(String[] methods, Filter filter, Handler handler) {
+        filterIndices.clear();
+
         // creating temporarily references to the old handler
         Map<Filter, Set<Handler>> getHandlerMapTempRef = getHandlerMap;
         Map<Filter, Set<Handler>> putHandlerMapTempRef = putHandlerMap;
@@ -746,6 +763,8 @@ public class HandlerManager {
      * @param handler the handler to remove
      */
     public synchronized void removeHandler(Handler handler) {
+        filterIndices.clear();
+
         for (Map.Entry<Filter, Set<Handler>> entry : getHandlerMap.entrySet()) {
             if (entry.getValue() != null) {
                 entry.getValue().remove(handler);
@@ -995,6 +1014,8 @@ public class HandlerManager {
      * @param handler Handler instance to be unregistered.
      */
     public synchronized void removeHandler(String[] methods, Filter filter, Handler handler) {
+        filterIndices.clear();
+
         if (methods == null || RepositoryUtils.containsString(Filter.GET, methods)) {
             Set<Handler> handlers = getHandlerMap.get(filter);
             if (handlers != null) {
@@ -1297,14 +1318,33 @@ public class HandlerManager {
      *                           handlers or filters.
      */
     public void createVersion(HandlerContext requestContext) throws RepositoryException {
-        Set<Filter> filters = createVersionHandlerMap.keySet();
+        HandlerStatistics.Dispatch dispatch = HandlerStatistics.startDispatch(Filter.CREATE_VERSION, lifecyclePhase, requestContext);
+        
+        try {
+            createVersion(requestContext, dispatch);
+        } finally {
+            HandlerStatistics.endDispatch(dispatch);
+        }
+    }
+
+    // Invokes the filters and handlers of CREATE_VERSION method, timing them if the dispatch is sampled.
+    private void createVersion(HandlerContext requestContext, HandlerStatistics.Dispatch dispatch)
+            throws RepositoryException {
+        Iterable<Filter> filters = selectFilters(Filter.CREATE_VERSION, createVersionHandlerMap, requestContext);
         
         for (Filter filter : filters) {
-            if (filter != null && filter.handleCreateVersion(requestContext)) {
+            long startTime = HandlerStatistics.now(dispatch);
+            boolean handled = filter != null && filter.handleCreateVersion(requestContext);
+            HandlerStatistics.filterEvaluated(dispatch, filter, startTime);
+            
+            if (handled) {
                 Set<Handler> handlerSet = createVersionHandlerMap.get(filter);
                 Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
                 
                 for (Handler handler : handlers) {
+                    long handlerStartTime = HandlerStatistics.now(dispatch);
+                    Span handlerSpan = Tracer.enterHandler(handler, "createVersion", lifecyclePhase);
+                    
                     try {
                         handler.createVersion(requestContext);
                         
@@ -1313,6 +1353,7 @@ public class HandlerManager {
                         }
                     } catch (RepositoryException e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -1324,6 +1365,7 @@ public class HandlerManager {
                         throw e;
                     } catch (Throwable e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         
                         if (SimulationFilter.isSimulation()) {
@@ -1333,6 +1375,9 @@ public class HandlerManager {
                         // We will be concatenating the incoming exception's message so that it will
                         // be carried forward, and displayed at the client-side.
                         throw new RepositoryException(AN_EXCEPTION_OCCURRED_WHILE_EXECUTING_HANDLER_CHAIN + e.getMessage(), e);
+                    } finally {
+                        HandlerStatistics.handlerInvoked(dispatch, handler, handlerStartTime);
+                        Tracer.exit(handlerSpan);
                     }
                     if (isProcessingComplete(requestContext)) {
                         break;
@@ -1355,14 +1400,33 @@ public class HandlerManager {
      *                           handlers or filters.
      */
     public void restoreVersion(HandlerContext requestContext) throws RepositoryException {
-        Set<Filter> filters = restoreVersionHandlerMap.keySet();
+        HandlerStatistics.Dispatch dispatch = HandlerStatistics.startDispatch(Filter.RESTORE_VERSION, lifecyclePhase, requestContext);
+        
+        try {
+            restoreVersion(requestContext, dispatch);
+        } finally {
+            HandlerStatistics.endDispatch(dispatch);
+        }
+    }
+
+    // Invokes the filters and handlers of RESTORE_VERSION method, timing them if the dispatch is sampled.
+    private void restoreVersion(HandlerContext requestContext, HandlerStatistics.Dispatch dispatch)
+            throws RepositoryException {
+        Iterable<Filter> filters = selectFilters(Filter.RESTORE_VERSION, restoreVersionHandlerMap, requestContext);
         
         for (Filter filter : filters) {
-            if (filter != null && filter.handleRestoreVersion(requestContext)) {
+            long startTime = HandlerStatistics.now(dispatch);
+            boolean handled = filter != null && filter.handleRestoreVersion(requestContext);
+            HandlerStatistics.filterEvaluated(dispatch, filter, startTime);
+            
+            if (handled) {
                 Set<Handler> handlerSet = restoreVersionHandlerMap.get(filter);
                 Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
                 
                 for (Handler handler : handlers) {
+                    long handlerStartTime = HandlerStatistics.now(dispatch);
+                    Span handlerSpan = Tracer.enterHandler(handler, "restoreVersion", lifecyclePhase);
+                    
                     try {
                         handler.restoreVersion(requestContext);
                         
@@ -1371,6 +1435,7 @@ public class HandlerManager {
                         }
                     } catch (RepositoryException e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         
                         if (SimulationFilter.isSimulation()) {
@@ -1383,6 +1448,7 @@ public class HandlerManager {
                         throw e;
                     } catch (Throwable e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -1392,6 +1458,9 @@ public class HandlerManager {
                         // We will be concatenating the incoming exception's message so that it will
                         // be carried forward, and displayed at the client-side.
                         throw new RepositoryException(AN_EXCEPTION_OCCURRED_WHILE_EXECUTING_HANDLER_CHAIN + e.getMessage(), e);
+                    } finally {
+                        HandlerStatistics.handlerInvoked(dispatch, handler, handlerStartTime);
+                        Tracer.exit(handlerSpan);
                     }
                     if (isProcessingComplete(requestContext)) {
                         break;
@@ -1415,15 +1484,34 @@ public class HandlerManager {
      *                           handlers or filters.
      */
     public String[] getVersions(HandlerContext requestContext) throws RepositoryException {
+        HandlerStatistics.Dispatch dispatch = HandlerStatistics.startDispatch(Filter.GET_VERSIONS, lifecyclePhase, requestContext);
+        
+        try {
+            return getVersions(requestContext, dispatch);
+        } finally {
+            HandlerStatistics.endDispatch(dispatch);
+        }
+    }
+
+    // Invokes the filters and handlers of GET_VERSIONS method, timing them if the dispatch is sampled.
+    private String[] getVersions(HandlerContext requestContext, HandlerStatistics.Dispatch dispatch)
+            throws RepositoryException {
         String[] versions = null;
-        Set<Filter> filters = getVersionsHandlerMap.keySet();
+        Iterable<Filter> filters = selectFilters(Filter.GET_VERSIONS, getVersionsHandlerMap, requestContext);
         
         for (Filter filter : filters) {
-            if (filter != null && filter.handleGetVersions(requestContext)) {
+            long startTime = HandlerStatistics.now(dispatch);
+            boolean handled = filter != null && filter.handleGetVersions(requestContext);
+            HandlerStatistics.filterEvaluated(dispatch, filter, startTime);
+            
+            if (handled) {
                 Set<Handler> handlerSet = getVersionsHandlerMap.get(filter);
                 Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
                 
                 for (Handler handler : handlers) {
+                    long handlerStartTime = HandlerStatistics.now(dispatch);
+                    Span handlerSpan = Tracer.enterHandler(handler, "getVersions", lifecyclePhase);
+                    
                     try {
                         versions = handler.getVersions(requestContext);
                         
@@ -1432,6 +1520,7 @@ public class HandlerManager {
                         }
                     } catch (RepositoryException e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -1444,6 +1533,7 @@ public class HandlerManager {
                         throw e;
                     } catch (Throwable e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -1453,6 +1543,9 @@ public class HandlerManager {
                         // We will be concatenating the incoming exception's message so that it will
                         // be carried forward, and displayed at the client-side.
                         throw new RepositoryException(AN_EXCEPTION_OCCURRED_WHILE_EXECUTING_HANDLER_CHAIN + e.getMessage(), e);
+                    } finally {
+                        HandlerStatistics.handlerInvoked(dispatch, handler, handlerStartTime);
+                        Tracer.exit(handlerSpan);
                     }
                     if (isProcessingComplete(requestContext)) {
                         break;
@@ -1478,16 +1571,35 @@ public class HandlerManager {
      *                           handlers or filters.
      */
     public Collection executeQuery(HandlerContext requestContext) throws RepositoryException {
+        HandlerStatistics.Dispatch dispatch = HandlerStatistics.startDispatch(Filter.EXECUTE_QUERY, lifecyclePhase, requestContext);
+        
+        try {
+            return executeQuery(requestContext, dispatch);
+        } finally {
+            HandlerStatistics.endDispatch(dispatch);
+        }
+    }
+
+    // Invokes the filters and handlers of EXECUTE_QUERY method, timing them if the dispatch is sampled.
+    private Collection executeQuery(HandlerContext requestContext, HandlerStatistics.Dispatch dispatch)
+            throws RepositoryException {
         Collection collection = null;
         List<String> results = new LinkedList<String>();
-        Set<Filter> filters = executeQueryHandlerMap.keySet();
+        Iterable<Filter> filters = selectFilters(Filter.EXECUTE_QUERY, executeQueryHandlerMap, requestContext);
         
         for (Filter filter : filters) {
-            if (filter != null && filter.handleExecuteQuery(requestContext)) {
+            long startTime = HandlerStatistics.now(dispatch);
+            boolean handled = filter != null && filter.handleExecuteQuery(requestContext);
+            HandlerStatistics.filterEvaluated(dispatch, filter, startTime);
+            
+            if (handled) {
                 Set<Handler> handlerSet = executeQueryHandlerMap.get(filter);
                 Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
                 
                 for (Handler handler : handlers) {
+                    long handlerStartTime = HandlerStatistics.now(dispatch);
+                    Span handlerSpan = Tracer.enterHandler(handler, "executeQuery", lifecyclePhase);
+                    
                     try {
                         collection = handler.executeQuery(requestContext);
                         if (collection != null) {
@@ -1506,6 +1618,7 @@ public class HandlerManager {
                         }
                     } catch (RepositoryException e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -1518,6 +1631,7 @@ public class HandlerManager {
                         throw e;
                     } catch (Throwable e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -1527,6 +1641,9 @@ public class HandlerManager {
                         // We will be concatenating the incoming exception's message so that it will
                         // be carried forward, and displayed at the client-side.
                         throw new RepositoryException(AN_EXCEPTION_OCCURRED_WHILE_EXECUTING_HANDLER_CHAIN + e.getMessage(), e);
+                    } finally {
+                        HandlerStatistics.handlerInvoked(dispatch, handler, handlerStartTime);
+                        Tracer.exit(handlerSpan);
                     }
                     if (isProcessingComplete(requestContext)) {
                         break;
@@ -1558,15 +1675,34 @@ public class HandlerManager {
      *                           handlers or filters.
      */
     public Collection searchContent(HandlerContext requestContext) throws RepositoryException {
+        HandlerStatistics.Dispatch dispatch = HandlerStatistics.startDispatch(Filter.SEARCH_CONTENT, lifecyclePhase, requestContext);
+        
+        try {
+            return searchContent(requestContext, dispatch);
+        } finally {
+            HandlerStatistics.endDispatch(dispatch);
+        }
+    }
+
+    // Invokes the filters and handlers of SEARCH_CONTENT method, timing them if the dispatch is sampled.
+    private Collection searchContent(HandlerContext requestContext, HandlerStatistics.Dispatch dispatch)
+            throws RepositoryException {
         Collection collection = null;
-        Set<Filter> filters = searchContentHandlerMap.keySet();
+        Iterable<Filter> filters = selectFilters(Filter.SEARCH_CONTENT, searchContentHandlerMap, requestContext);
         
         for (Filter filter : filters) {
-            if (filter != null && filter.handleSearchContent(requestContext)) {
+            long startTime = HandlerStatistics.now(dispatch);
+            boolean handled = filter != null && filter.handleSearchContent(requestContext);
+            HandlerStatistics.filterEvaluated(dispatch, filter, startTime);
+            
+            if (handled) {
                 Set<Handler> handlerSet = searchContentHandlerMap.get(filter);
                 Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
                 
                 for (Handler handler : handlers) {
+                    long handlerStartTime = HandlerStatistics.now(dispatch);
+                    Span handlerSpan = Tracer.enterHandler(handler, "searchContent", lifecyclePhase);
+                    
                     try {
                         collection = handler.searchContent(requestContext);
                         
@@ -1575,6 +1711,7 @@ public class HandlerManager {
                         }
                     } catch (RepositoryException e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -1587,6 +1724,7 @@ public class HandlerManager {
                         throw e;
                     } catch (Throwable e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -1596,6 +1734,9 @@ public class HandlerManager {
                         // We will be concatenating the incoming exception's message so that it will
                         // be carried forward, and displayed at the client-side.
                         throw new RepositoryException(AN_EXCEPTION_OCCURRED_WHILE_EXECUTING_HANDLER_CHAIN + e.getMessage(), e);
+                    } finally {
+                        HandlerStatistics.handlerInvoked(dispatch, handler, handlerStartTime);
+                        Tracer.exit(handlerSpan);
                     }
                     
                     if (isProcessingComplete(requestContext)) {
@@ -1622,15 +1763,34 @@ public class HandlerManager {
      *                           handlers or filters.
      */
     public Resource get(HandlerContext requestContext) throws RepositoryException {
+        HandlerStatistics.Dispatch dispatch = HandlerStatistics.startDispatch(Filter.GET, lifecyclePhase, requestContext);
+        
+        try {
+            return get(requestContext, dispatch);
+        } finally {
+            HandlerStatistics.endDispatch(dispatch);
+        }
+    }
+
+    // Invokes the filters and handlers of GET method, timing them if the dispatch is sampled.
+    private Resource get(HandlerContext requestContext, HandlerStatistics.Dispatch dispatch)
+            throws RepositoryException {
         Resource resource = null;
-        Set<Filter> filters = getHandlerMap.keySet();
+        Iterable<Filter> filters = selectFilters(Filter.GET, getHandlerMap, requestContext);
         
         for (Filter filter : filters) {
-            if (filter != null && filter.handleGet(requestContext)) {
+            long startTime = HandlerStatistics.now(dispatch);
+            boolean handled = filter != null && filter.handleGet(requestContext);
+            HandlerStatistics.filterEvaluated(dispatch, filter, startTime);
+            
+            if (handled) {
                 Set<Handler> handlerSet = getHandlerMap.get(filter);
                 Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
                 
                 for (Handler handler : handlers) {
+                    long handlerStartTime = HandlerStatistics.now(dispatch);
+                    Span handlerSpan = Tracer.enterHandler(handler, "get", lifecyclePhase);
+                    
                     try {
                         resource = handler.get(requestContext);
                         
@@ -1639,6 +1799,7 @@ public class HandlerManager {
                         }
                     } catch (RepositoryException e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -1651,6 +1812,7 @@ public class HandlerManager {
                         throw e;
                     } catch (Throwable e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -1660,6 +1822,9 @@ public class HandlerManager {
                         // We will be concatenating the incoming exception's message so that it will
                         // be carried forward, and displayed at the client-side.
                         throw new RepositoryException(AN_EXCEPTION_OCCURRED_WHILE_EXECUTING_HANDLER_CHAIN + e.getMessage(), e);
+                    } finally {
+                        HandlerStatistics.handlerInvoked(dispatch, handler, handlerStartTime);
+                        Tracer.exit(handlerSpan);
                     }
                     
                     if (isProcessingComplete(requestContext)) {
@@ -1687,14 +1852,33 @@ public class HandlerManager {
      *                           handlers or filters.
      */
     public String put(HandlerContext requestContext) throws RepositoryException {
-        Set<Filter> filters = putHandlerMap.keySet();
+        HandlerStatistics.Dispatch dispatch = HandlerStatistics.startDispatch(Filter.PUT, lifecyclePhase, requestContext);
+        
+        try {
+            return put(requestContext, dispatch);
+        } finally {
+            HandlerStatistics.endDispatch(dispatch);
+        }
+    }
+
+    // Invokes the filters and handlers of PUT method, timing them if the dispatch is sampled.
+    private String put(HandlerContext requestContext, HandlerStatistics.Dispatch dispatch)
+            throws RepositoryException {
+        Iterable<Filter> filters = selectFilters(Filter.PUT, putHandlerMap, requestContext);
         
         for (Filter filter : filters) {
-            if (filter != null && filter.handlePut(requestContext)) {
+            long startTime = HandlerStatistics.now(dispatch);
+            boolean handled = filter != null && filter.handlePut(requestContext);
+            HandlerStatistics.filterEvaluated(dispatch, filter, startTime);
+            
+            if (handled) {
                 Set<Handler> handlerSet = putHandlerMap.get(filter);
                 Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
                 
                 for (Handler handler : handlers) {
+                    long handlerStartTime = HandlerStatistics.now(dispatch);
+                    Span handlerSpan = Tracer.enterHandler(handler, "put", lifecyclePhase);
+                    
                     try {
                         handler.put(requestContext);
                         
@@ -1703,6 +1887,7 @@ public class HandlerManager {
                         }
                     } catch (RepositoryException e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -1715,6 +1900,7 @@ public class HandlerManager {
                         throw e;
                     } catch (Throwable e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -1724,6 +1910,9 @@ public class HandlerManager {
                         // We will be concatenating the incoming exception's message so that it will
                         // be carried forward, and displayed at the client-side.
                         throw new RepositoryException(AN_EXCEPTION_OCCURRED_WHILE_EXECUTING_HANDLER_CHAIN + e.getMessage(), e);
+                    } finally {
+                        HandlerStatistics.handlerInvoked(dispatch, handler, handlerStartTime);
+                        Tracer.exit(handlerSpan);
                     }
                     
                     if (isProcessingComplete(requestContext)) {
@@ -1755,14 +1944,33 @@ public class HandlerManager {
      *                           handlers or filters.
      */
     public String importResource(HandlerContext requestContext) throws RepositoryException {
-        Set<Filter> filters = importHandlerMap.keySet();
+        HandlerStatistics.Dispatch dispatch = HandlerStatistics.startDispatch(Filter.IMPORT, lifecyclePhase, requestContext);
+        
+        try {
+            return importResource(requestContext, dispatch);
+        } finally {
+            HandlerStatistics.endDispatch(dispatch);
+        }
+    }
+
+    // Invokes the filters and handlers of IMPORT method, timing them if the dispatch is sampled.
+    private String importResource(HandlerContext requestContext, HandlerStatistics.Dispatch dispatch)
+            throws RepositoryException {
+        Iterable<Filter> filters = selectFilters(Filter.IMPORT, importHandlerMap, requestContext);
         
         for (Filter filter : filters) {
-            if (filter != null && filter.handleImportResource(requestContext)) {
+            long startTime = HandlerStatistics.now(dispatch);
+            boolean handled = filter != null && filter.handleImportResource(requestContext);
+            HandlerStatistics.filterEvaluated(dispatch, filter, startTime);
+            
+            if (handled) {
                 Set<Handler> handlerSet = importHandlerMap.get(filter);
                 Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
                 
                 for (Handler handler : handlers) {
+                    long handlerStartTime = HandlerStatistics.now(dispatch);
+                    Span handlerSpan = Tracer.enterHandler(handler, "importResource", lifecyclePhase);
+                    
                     try {
                         handler.importResource(requestContext);
                         
@@ -1771,6 +1979,7 @@ public class HandlerManager {
                         }
                     } catch (RepositoryException e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -1783,6 +1992,7 @@ public class HandlerManager {
                         throw e;
                     } catch (Throwable e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -1792,6 +2002,9 @@ public class HandlerManager {
                         // We will be concatenating the incoming exception's message so that it will
                         // be carried forward, and displayed at the client-side.
                         throw new RepositoryException(AN_EXCEPTION_OCCURRED_WHILE_EXECUTING_HANDLER_CHAIN + e.getMessage(), e);
+                    } finally {
+                        HandlerStatistics.handlerInvoked(dispatch, handler, handlerStartTime);
+                        Tracer.exit(handlerSpan);
                     }
                     
                     if (isProcessingComplete(requestContext)) {
@@ -1821,14 +2034,33 @@ public class HandlerManager {
      *                           handlers or filters.
      */
     public void delete(HandlerContext requestContext) throws RepositoryException {
-        Set<Filter> filters = deleteHandlerMap.keySet();
+        HandlerStatistics.Dispatch dispatch = HandlerStatistics.startDispatch(Filter.DELETE, lifecyclePhase, requestContext);
+        
+        try {
+            delete(requestContext, dispatch);
+        } finally {
+            HandlerStatistics.endDispatch(dispatch);
+        }
+    }
+
+    // Invokes the filters and handlers of DELETE method, timing them if the dispatch is sampled.
+    private void delete(HandlerContext requestContext, HandlerStatistics.Dispatch dispatch)
+            throws RepositoryException {
+        Iterable<Filter> filters = selectFilters(Filter.DELETE, deleteHandlerMap, requestContext);
         
         for (Filter filter : filters) {
-            if (filter != null && filter.handleDelete(requestContext)) {
+            long startTime = HandlerStatistics.now(dispatch);
+            boolean handled = filter != null && filter.handleDelete(requestContext);
+            HandlerStatistics.filterEvaluated(dispatch, filter, startTime);
+            
+            if (handled) {
                 Set<Handler> handlerSet = deleteHandlerMap.get(filter);
                 Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
                 
                 for (Handler handler : handlers) {
+                    long handlerStartTime = HandlerStatistics.now(dispatch);
+                    Span handlerSpan = Tracer.enterHandler(handler, "delete", lifecyclePhase);
+                    
                     try {
                         handler.delete(requestContext);
                         
@@ -1837,6 +2069,7 @@ public class HandlerManager {
                         }
                     } catch (RepositoryException e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -1849,6 +2082,7 @@ public class HandlerManager {
                         throw e;
                     } catch (Throwable e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -1858,6 +2092,9 @@ public class HandlerManager {
                         // We will be concatenating the incoming exception's message so that it will
                         // be carried forward, and displayed at the client-side.
                         throw new RepositoryException(AN_EXCEPTION_OCCURRED_WHILE_EXECUTING_HANDLER_CHAIN + e.getMessage(), e);
+                    } finally {
+                        HandlerStatistics.handlerInvoked(dispatch, handler, handlerStartTime);
+                        Tracer.exit(handlerSpan);
                     }
                     
                     if (isProcessingComplete(requestContext)) {
@@ -1881,14 +2118,33 @@ public class HandlerManager {
      *                           handlers or filters.
      */
     public void putChild(HandlerContext requestContext) throws RepositoryException {
-        Set<Filter> filters = putChildHandlerMap.keySet();
+        HandlerStatistics.Dispatch dispatch = HandlerStatistics.startDispatch(Filter.PUT_CHILD, lifecyclePhase, requestContext);
+        
+        try {
+            putChild(requestContext, dispatch);
+        } finally {
+            HandlerStatistics.endDispatch(dispatch);
+        }
+    }
+
+    // Invokes the filters and handlers of PUT_CHILD method, timing them if the dispatch is sampled.
+    private void putChild(HandlerContext requestContext, HandlerStatistics.Dispatch dispatch)
+            throws RepositoryException {
+        Iterable<Filter> filters = selectFilters(Filter.PUT_CHILD, putChildHandlerMap, requestContext);
         
         for (Filter filter : filters) {
-            if (filter != null && filter.handlePutChild(requestContext)) {
+            long startTime = HandlerStatistics.now(dispatch);
+            boolean handled = filter != null && filter.handlePutChild(requestContext);
+            HandlerStatistics.filterEvaluated(dispatch, filter, startTime);
+            
+            if (handled) {
                 Set<Handler> handlerSet = putChildHandlerMap.get(filter);
                 Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
                 
                 for (Handler handler : handlers) {
+                    long handlerStartTime = HandlerStatistics.now(dispatch);
+                    Span handlerSpan = Tracer.enterHandler(handler, "putChild", lifecyclePhase);
+                    
                     try {
                         handler.putChild(requestContext);
                         
@@ -1897,6 +2153,7 @@ public class HandlerManager {
                         }
                     } catch (RepositoryException e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         
                         if (SimulationFilter.isSimulation()) {
@@ -1909,6 +2166,7 @@ public class HandlerManager {
                         throw e;
                     } catch (Throwable e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -1918,6 +2176,9 @@ public class HandlerManager {
                         // We will be concatenating the incoming exception's message so that it will
                         // be carried forward, and displayed at the client-side.
                         throw new RepositoryException(AN_EXCEPTION_OCCURRED_WHILE_EXECUTING_HANDLER_CHAIN + e.getMessage(), e);
+                    } finally {
+                        HandlerStatistics.handlerInvoked(dispatch, handler, handlerStartTime);
+                        Tracer.exit(handlerSpan);
                     }
                     
                     if (isProcessingComplete(requestContext)) {
@@ -1941,14 +2202,33 @@ public class HandlerManager {
      *                           handlers or filters.
      */
     public void importChild(HandlerContext requestContext) throws RepositoryException {
-        Set<Filter> filters = importChildHandlerMap.keySet();
+        HandlerStatistics.Dispatch dispatch = HandlerStatistics.startDispatch(Filter.IMPORT_CHILD, lifecyclePhase, requestContext);
+        
+        try {
+            importChild(requestContext, dispatch);
+        } finally {
+            HandlerStatistics.endDispatch(dispatch);
+        }
+    }
+
+    // Invokes the filters and handlers of IMPORT_CHILD method, timing them if the dispatch is sampled.
+    private void importChild(HandlerContext requestContext, HandlerStatistics.Dispatch dispatch)
+            throws RepositoryException {
+        Iterable<Filter> filters = selectFilters(Filter.IMPORT_CHILD, importChildHandlerMap, requestContext);
         
         for (Filter filter : filters) {
-            if (filter != null && filter.handleImportChild(requestContext)) {
+            long startTime = HandlerStatistics.now(dispatch);
+            boolean handled = filter != null && filter.handleImportChild(requestContext);
+            HandlerStatistics.filterEvaluated(dispatch, filter, startTime);
+            
+            if (handled) {
                 Set<Handler> handlerSet = importChildHandlerMap.get(filter);
                 Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
                 
                 for (Handler handler : handlers) {
+                    long handlerStartTime = HandlerStatistics.now(dispatch);
+                    Span handlerSpan = Tracer.enterHandler(handler, "importChild", lifecyclePhase);
+                    
                     try {
                         handler.importChild(requestContext);
                         
@@ -1957,6 +2237,7 @@ public class HandlerManager {
                         }
                     } catch (RepositoryException e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -1969,6 +2250,7 @@ public class HandlerManager {
                         throw e;
                     } catch (Throwable e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -1978,6 +2260,9 @@ public class HandlerManager {
                         // We will be concatenating the incoming exception's message so that it will
                         // be carried forward, and displayed at the client-side.
                         throw new RepositoryException(AN_EXCEPTION_OCCURRED_WHILE_EXECUTING_HANDLER_CHAIN + e.getMessage(), e);
+                    } finally {
+                        HandlerStatistics.handlerInvoked(dispatch, handler, handlerStartTime);
+                        Tracer.exit(handlerSpan);
                     }
                     
                     if (isProcessingComplete(requestContext)) {
@@ -2002,15 +2287,34 @@ public class HandlerManager {
      *                           handlers or filters.
      */
     public String copy(HandlerContext requestContext) throws RepositoryException {
+        HandlerStatistics.Dispatch dispatch = HandlerStatistics.startDispatch(Filter.COPY, lifecyclePhase, requestContext);
+        
+        try {
+            return copy(requestContext, dispatch);
+        } finally {
+            HandlerStatistics.endDispatch(dispatch);
+        }
+    }
+
+    // Invokes the filters and handlers of COPY method, timing them if the dispatch is sampled.
+    private String copy(HandlerContext requestContext, HandlerStatistics.Dispatch dispatch)
+            throws RepositoryException {
         String copiedPath = null;
-        Set<Filter> filters = copyHandlerMap.keySet();
+        Iterable<Filter> filters = selectFilters(Filter.COPY, copyHandlerMap, requestContext);
         
         for (Filter filter : filters) {
-            if (filter != null && filter.handleCopy(requestContext)) {
+            long startTime = HandlerStatistics.now(dispatch);
+            boolean handled = filter != null && filter.handleCopy(requestContext);
+            HandlerStatistics.filterEvaluated(dispatch, filter, startTime);
+            
+            if (handled) {
                 Set<Handler> handlerSet = copyHandlerMap.get(filter);
                 Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
                 
                 for (Handler handler : handlers) {
+                    long handlerStartTime = HandlerStatistics.now(dispatch);
+                    Span handlerSpan = Tracer.enterHandler(handler, "copy", lifecyclePhase);
+                    
                     try {
                         copiedPath = handler.copy(requestContext);
                         if (!requestContext.isExecutionStatusSet(handler)) {
@@ -2018,6 +2322,7 @@ public class HandlerManager {
                         }
                     } catch (RepositoryException e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -2030,6 +2335,7 @@ public class HandlerManager {
                         throw e;
                     } catch (Throwable e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -2039,6 +2345,9 @@ public class HandlerManager {
                         // We will be concatenating the incoming exception's message so that it will
                         // be carried forward, and displayed at the client-side.
                         throw new RepositoryException(AN_EXCEPTION_OCCURRED_WHILE_EXECUTING_HANDLER_CHAIN + e.getMessage(), e);
+                    } finally {
+                        HandlerStatistics.handlerInvoked(dispatch, handler, handlerStartTime);
+                        Tracer.exit(handlerSpan);
                     }
                     
                     if (isProcessingComplete(requestContext)) {
@@ -2065,15 +2374,34 @@ public class HandlerManager {
      *                           handlers or filters.
      */
     public String move(HandlerContext requestContext) throws RepositoryException {
+        HandlerStatistics.Dispatch dispatch = HandlerStatistics.startDispatch(Filter.MOVE, lifecyclePhase, requestContext);
+        
+        try {
+            return move(requestContext, dispatch);
+        } finally {
+            HandlerStatistics.endDispatch(dispatch);
+        }
+    }
+
+    // Invokes the filters and handlers of MOVE method, timing them if the dispatch is sampled.
+    private String move(HandlerContext requestContext, HandlerStatistics.Dispatch dispatch)
+            throws RepositoryException {
         String movedPath = null;
-        Set<Filter> filters = moveHandlerMap.keySet();
+        Iterable<Filter> filters = selectFilters(Filter.MOVE, moveHandlerMap, requestContext);
         
         for (Filter filter : filters) {
-            if (filter != null && filter.handleMove(requestContext)) {
+            long startTime = HandlerStatistics.now(dispatch);
+            boolean handled = filter != null && filter.handleMove(requestContext);
+            HandlerStatistics.filterEvaluated(dispatch, filter, startTime);
+            
+            if (handled) {
                 Set<Handler> handlerSet = moveHandlerMap.get(filter);
                 Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
                 
                 for (Handler handler : handlers) {
+                    long handlerStartTime = HandlerStatistics.now(dispatch);
+                    Span handlerSpan = Tracer.enterHandler(handler, "move", lifecyclePhase);
+                    
                     try {
                         movedPath = handler.move(requestContext);
                         
@@ -2082,6 +2410,7 @@ public class HandlerManager {
                         }
                     } catch (RepositoryException e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -2094,6 +2423,7 @@ public class HandlerManager {
                         throw e;
                     } catch (Throwable e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -2103,6 +2433,9 @@ public class HandlerManager {
                         // We will be concatenating the incoming exception's message so that it will
                         // be carried forward, and displayed at the client-side.
                         throw new RepositoryException(AN_EXCEPTION_OCCURRED_WHILE_EXECUTING_HANDLER_CHAIN + e.getMessage(), e);
+                    } finally {
+                        HandlerStatistics.handlerInvoked(dispatch, handler, handlerStartTime);
+                        Tracer.exit(handlerSpan);
                     }
                     
                     if (isProcessingComplete(requestContext)) {
@@ -2129,15 +2462,34 @@ public class HandlerManager {
      *                           handlers or filters.
      */
     public String rename(HandlerContext requestContext) throws RepositoryException {
+        HandlerStatistics.Dispatch dispatch = HandlerStatistics.startDispatch(Filter.RENAME, lifecyclePhase, requestContext);
+        
+        try {
+            return rename(requestContext, dispatch);
+        } finally {
+            HandlerStatistics.endDispatch(dispatch);
+        }
+    }
+
+    // Invokes the filters and handlers of RENAME method, timing them if the dispatch is sampled.
+    private String rename(HandlerContext requestContext, HandlerStatistics.Dispatch dispatch)
+            throws RepositoryException {
         String renamedPath = null;
-        Set<Filter> filters = renameHandlerMap.keySet();
+        Iterable<Filter> filters = selectFilters(Filter.RENAME, renameHandlerMap, requestContext);
         
         for (Filter filter : filters) {
-            if (filter != null && filter.handleRename(requestContext)) {
+            long startTime = HandlerStatistics.now(dispatch);
+            boolean handled = filter != null && filter.handleRename(requestContext);
+            HandlerStatistics.filterEvaluated(dispatch, filter, startTime);
+            
+            if (handled) {
                 Set<Handler> handlerSet = renameHandlerMap.get(filter);
                 Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
                 
                 for (Handler handler : handlers) {
+                    long handlerStartTime = HandlerStatistics.now(dispatch);
+                    Span handlerSpan = Tracer.enterHandler(handler, "rename", lifecyclePhase);
+                    
                     try {
                         renamedPath = handler.rename(requestContext);
                         
@@ -2146,6 +2498,7 @@ public class HandlerManager {
                         }
                     } catch (RepositoryException e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -2158,6 +2511,7 @@ public class HandlerManager {
                         throw e;
                     } catch (Throwable e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -2167,6 +2521,9 @@ public class HandlerManager {
                         // We will be concatenating the incoming exception's message so that it will
                         // be carried forward, and displayed at the client-side.
                         throw new RepositoryException(AN_EXCEPTION_OCCURRED_WHILE_EXECUTING_HANDLER_CHAIN + e.getMessage(), e);
+                    } finally {
+                        HandlerStatistics.handlerInvoked(dispatch, handler, handlerStartTime);
+                        Tracer.exit(handlerSpan);
                     }
                     
                     if (isProcessingComplete(requestContext)) {
@@ -2192,15 +2549,34 @@ public class HandlerManager {
      *                           handlers or filters.
      */
     public void createLink(HandlerContext requestContext) throws RepositoryException {
-        Set<Filter> filters = createLinkHandlerMap.keySet();
+        HandlerStatistics.Dispatch dispatch = HandlerStatistics.startDispatch(Filter.CREATE_LINK, lifecyclePhase, requestContext);
+        
+        try {
+            createLink(requestContext, dispatch);
+        } finally {
+            HandlerStatistics.endDispatch(dispatch);
+        }
+    }
+
+    // Invokes the filters and handlers of CREATE_LINK method, timing them if the dispatch is sampled.
+    private void createLink(HandlerContext requestContext, HandlerStatistics.Dispatch dispatch)
+            throws RepositoryException {
+        Iterable<Filter> filters = selectFilters(Filter.CREATE_LINK, createLinkHandlerMap, requestContext);
         
         for (Filter filter : filters) {
-            if (filter != null && filter.handleCreateLink(requestContext)) {
+            long startTime = HandlerStatistics.now(dispatch);
+            boolean handled = filter != null && filter.handleCreateLink(requestContext);
+            HandlerStatistics.filterEvaluated(dispatch, filter, startTime);
+            
+            if (handled) {
                 Set<Handler> handlerSet = createLinkHandlerMap.get(filter);
                 
                 Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
                 
                 for (Handler handler : handlers) {
+                    long handlerStartTime = HandlerStatistics.now(dispatch);
+                    Span handlerSpan = Tracer.enterHandler(handler, "createLink", lifecyclePhase);
+                    
                     try {
                         handler.createLink(requestContext);
                         
@@ -2209,6 +2585,7 @@ public class HandlerManager {
                         }
                     } catch (RepositoryException e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
                             return;
@@ -2219,6 +2596,7 @@ public class HandlerManager {
                         throw e;
                     } catch (Throwable e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -2228,6 +2606,9 @@ public class HandlerManager {
                         // We will be concatenating the incoming exception's message so that it will
                         // be carried forward, and displayed at the client-side.
                         throw new RepositoryException(AN_EXCEPTION_OCCURRED_WHILE_EXECUTING_HANDLER_CHAIN + e.getMessage(), e);
+                    } finally {
+                        HandlerStatistics.handlerInvoked(dispatch, handler, handlerStartTime);
+                        Tracer.exit(handlerSpan);
                     }
                     
                     if (isProcessingComplete(requestContext)) {
@@ -2251,14 +2632,33 @@ public class HandlerManager {
      *                           handlers or filters.
      */
     public void removeLink(HandlerContext requestContext) throws RepositoryException {
-        Set<Filter> filters = removeLinkHandlerMap.keySet();
+        HandlerStatistics.Dispatch dispatch = HandlerStatistics.startDispatch(Filter.REMOVE_LINK, lifecyclePhase, requestContext);
+        
+        try {
+            removeLink(requestContext, dispatch);
+        } finally {
+            HandlerStatistics.endDispatch(dispatch);
+        }
+    }
+
+    // Invokes the filters and handlers of REMOVE_LINK method, timing them if the dispatch is sampled.
+    private void removeLink(HandlerContext requestContext, HandlerStatistics.Dispatch dispatch)
+            throws RepositoryException {
+        Iterable<Filter> filters = selectFilters(Filter.REMOVE_LINK, removeLinkHandlerMap, requestContext);
         
         for (Filter filter : filters) {
-            if (filter != null && filter.handleRemoveLink(requestContext)) {
+            long startTime = HandlerStatistics.now(dispatch);
+            boolean handled = filter != null && filter.handleRemoveLink(requestContext);
+            HandlerStatistics.filterEvaluated(dispatch, filter, startTime);
+            
+            if (handled) {
                 Set<Handler> handlerSet = removeLinkHandlerMap.get(filter);
                 Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
                 
                 for (Handler handler : handlers) {
+                    long handlerStartTime = HandlerStatistics.now(dispatch);
+                    Span handlerSpan = Tracer.enterHandler(handler, "removeLink", lifecyclePhase);
+                    
                     try {
                         handler.removeLink(requestContext);
                         
@@ -2267,6 +2667,7 @@ public class HandlerManager {
                         }
                     } catch (RepositoryException e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -2279,6 +2680,7 @@ public class HandlerManager {
                         throw e;
                     } catch (Throwable e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -2288,6 +2690,9 @@ public class HandlerManager {
                         // We will be concatenating the incoming exception's message so that it will
                         // be carried forward, and displayed at the client-side.
                         throw new RepositoryException(AN_EXCEPTION_OCCURRED_WHILE_EXECUTING_HANDLER_CHAIN + e.getMessage(), e);
+                    } finally {
+                        HandlerStatistics.handlerInvoked(dispatch, handler, handlerStartTime);
+                        Tracer.exit(handlerSpan);
                     }
                     
                     if (isProcessingComplete(requestContext)) {
@@ -2302,6 +2707,26 @@ public class HandlerManager {
         }
     }
 
+    /**
+     * Method to determine whether any handler would be invoked for the RESOURCE_EXISTS method. No
+     * handler is invoked by this method.
+     *
+     * @param requestContext Details of the request.
+     *
+     * @return true if the filter of at least one RESOURCE_EXISTS handler matches the request.
+     * @throws RepositoryException This exception is thrown for all exceptions occurred inside
+     *                           filters.
+     */
+    public boolean isResourceExistsHandled(HandlerContext requestContext) throws RepositoryException {
+        for (Filter filter : selectFilters(Filter.RESOURCE_EXISTS, resourceExistsHandlerMap, requestContext)) {
+            if (filter != null && filter.handleResourceExists(requestContext)) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+
     /**
      * Manages the handler invocations of RESOURCE_EXISTS method.
      *
@@ -2312,15 +2737,34 @@ public class HandlerManager {
      *                           handlers or filters.
      */
     public boolean resourceExists(HandlerContext requestContext) throws RepositoryException {
+        HandlerStatistics.Dispatch dispatch = HandlerStatistics.startDispatch(Filter.RESOURCE_EXISTS, lifecyclePhase, requestContext);
+        
+        try {
+            return resourceExists(requestContext, dispatch);
+        } finally {
+            HandlerStatistics.endDispatch(dispatch);
+        }
+    }
+
+    // Invokes the filters and handlers of RESOURCE_EXISTS method, timing them if the dispatch is sampled.
+    private boolean resourceExists(HandlerContext requestContext, HandlerStatistics.Dispatch dispatch)
+            throws RepositoryException {
         boolean resourceExist = false;
-        Set<Filter> filters = resourceExistsHandlerMap.keySet();
+        Iterable<Filter> filters = selectFilters(Filter.RESOURCE_EXISTS, resourceExistsHandlerMap, requestContext);
         
         for (Filter filter : filters) {
-            if (filter != null && filter.handleResourceExists(requestContext)) {
+            long startTime = HandlerStatistics.now(dispatch);
+            boolean handled = filter != null && filter.handleResourceExists(requestContext);
+            HandlerStatistics.filterEvaluated(dispatch, filter, startTime);
+            
+            if (handled) {
                 Set<Handler> handlerSet = resourceExistsHandlerMap.get(filter);
                 Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
                 
                 for (Handler handler : handlers) {
+                    long handlerStartTime = HandlerStatistics.now(dispatch);
+                    Span handlerSpan = Tracer.enterHandler(handler, "resourceExists", lifecyclePhase);
+                    
                     try {
                         resourceExist = handler.resourceExists(requestContext);
                         
@@ -2329,6 +2773,7 @@ public class HandlerManager {
                         }
                     } catch (RepositoryException e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -2341,6 +2786,7 @@ public class HandlerManager {
                         throw e;
                     } catch (Throwable e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -2350,6 +2796,9 @@ public class HandlerManager {
                         // We will be concatenating the incoming exception's message so that it will
                         // be carried forward, and displayed at the client-side.
                         throw new RepositoryException(AN_EXCEPTION_OCCURRED_WHILE_EXECUTING_HANDLER_CHAIN + e.getMessage(), e);
+                    } finally {
+                        HandlerStatistics.handlerInvoked(dispatch, handler, handlerStartTime);
+                        Tracer.exit(handlerSpan);
                     }
                     
                     if (isProcessingComplete(requestContext)) {
@@ -2376,15 +2825,34 @@ public class HandlerManager {
      *                           handlers or filters.
      */
     public Element dump(HandlerContext requestContext) throws RepositoryException {
+        HandlerStatistics.Dispatch dispatch = HandlerStatistics.startDispatch(Filter.DUMP, lifecyclePhase, requestContext);
+        
+        try {
+            return dump(requestContext, dispatch);
+        } finally {
+            HandlerStatistics.endDispatch(dispatch);
+        }
+    }
+
+    // Invokes the filters and handlers of DUMP method, timing them if the dispatch is sampled.
+    private Element dump(HandlerContext requestContext, HandlerStatistics.Dispatch dispatch)
+            throws RepositoryException {
     	Element dumpedElement = null;
-        Set<Filter> filters = dumpMap.keySet();
+        Iterable<Filter> filters = selectFilters(Filter.DUMP, dumpMap, requestContext);
         
         for (Filter filter : filters) {
-            if (filter != null && filter.handleDump(requestContext)) {
+            long startTime = HandlerStatistics.now(dispatch);
+            boolean handled = filter != null && filter.handleDump(requestContext);
+            HandlerStatistics.filterEvaluated(dispatch, filter, startTime);
+            
+            if (handled) {
                 Set<Handler> handlerSet = dumpMap.get(filter);
                 Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
                 
                 for (Handler handler : handlers) {
+                    long handlerStartTime = HandlerStatistics.now(dispatch);
+                    Span handlerSpan = Tracer.enterHandler(handler, "dump", lifecyclePhase);
+                    
                     try {
                         handler.dump(requestContext);
                         
@@ -2393,6 +2861,7 @@ public class HandlerManager {
                         }
                     } catch (RepositoryException e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -2405,6 +2874,7 @@ public class HandlerManager {
                         throw e;
                     } catch (Throwable e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -2414,6 +2884,9 @@ public class HandlerManager {
                         // We will be concatenating the incoming exception's message so that it will
                         // be carried forward, and displayed at the client-side.
                         throw new RepositoryException(AN_EXCEPTION_OCCURRED_WHILE_EXECUTING_HANDLER_CHAIN + e.getMessage(), e);
+                    } finally {
+                        HandlerStatistics.handlerInvoked(dispatch, handler, handlerStartTime);
+                        Tracer.exit(handlerSpan);
                     }
                     
                     if (isProcessingComplete(requestContext)) {
@@ -2439,14 +2912,33 @@ public class HandlerManager {
      *                           handlers or filters.
      */
     public void restore(HandlerContext requestContext) throws RepositoryException {
-        Set<Filter> filters = restoreMap.keySet();
+        HandlerStatistics.Dispatch dispatch = HandlerStatistics.startDispatch(Filter.RESTORE, lifecyclePhase, requestContext);
+        
+        try {
+            restore(requestContext, dispatch);
+        } finally {
+            HandlerStatistics.endDispatch(dispatch);
+        }
+    }
+
+    // Invokes the filters and handlers of RESTORE method, timing them if the dispatch is sampled.
+    private void restore(HandlerContext requestContext, HandlerStatistics.Dispatch dispatch)
+            throws RepositoryException {
+        Iterable<Filter> filters = selectFilters(Filter.RESTORE, restoreMap, requestContext);
         
         for (Filter filter : filters) {
-            if (filter != null && filter.handleRestore(requestContext)) {
+            long startTime = HandlerStatistics.now(dispatch);
+            boolean handled = filter != null && filter.handleRestore(requestContext);
+            HandlerStatistics.filterEvaluated(dispatch, filter, startTime);
+            
+            if (handled) {
                 Set<Handler> handlerSet = restoreMap.get(filter);
                 Handler[] handlers = handlerSet.toArray(new Handler[handlerSet.size()]);
                 
                 for (Handler handler : handlers) {
+                    long handlerStartTime = HandlerStatistics.now(dispatch);
+                    Span handlerSpan = Tracer.enterHandler(handler, "restore", lifecyclePhase);
+                    
                     try {
                         handler.restore(requestContext);
                         
@@ -2455,6 +2947,7 @@ public class HandlerManager {
                         }
                     } catch (RepositoryException e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -2467,6 +2960,7 @@ public class HandlerManager {
                         throw e;
                     } catch (Throwable e) {
                         requestContext.setExecutionStatus(handler, e);
+                        Tracer.setError(handlerSpan, e);
                         
                         // Don't throw exceptions in simulation mode, but exit lifecycle phase
                         if (SimulationFilter.isSimulation()) {
@@ -2476,6 +2970,9 @@ public class HandlerManager {
                         // We will be concatenating the incoming exception's message so that it will
                         // be carried forward, and displayed at the client-side.
                         throw new RepositoryException(AN_EXCEPTION_OCCURRED_WHILE_EXECUTING_HANDLER_CHAIN + e.getMessage(), e);
+                    } finally {
+                        HandlerStatistics.handlerInvoked(dispatch, handler, handlerStartTime);
+                        Tracer.exit(handlerSpan);
                     }
                     
                     if (isProcessingComplete(requestContext)) {
@@ -2490,6 +2987,45 @@ public class HandlerManager {
         }
     }
 
+    // Method to select the filters of the given method that can match the request, in the order of
+    // evaluation.
+    private Iterable<Filter> selectFilters(String method, Map<Filter, Set<Handler>> handlerMap,
+                                           HandlerContext requestContext) {
+        FilterIndex filterIndex = filterIndices.get(method);
+
+        if (filterIndex == null || !filterIndex.isBuiltFrom(handlerMap)) {
+            synchronized (this) {
+                filterIndex = filterIndices.get(method);
+
+                if (filterIndex == null || !filterIndex.isBuiltFrom(handlerMap)) {
+                    filterIndex = new FilterIndex(method, handlerMap);
+                    filterIndices.put(method, filterIndex);
+                }
+            }
+        }
+
+        return filterIndex.select(requestContext);
+    }
+
+    /**
+     * Sets the handler lifecycle phase of this handler manager, which is reported with the
+     * latencies collected by {@link HandlerStatistics}.
+     *
+     * @param lifecyclePhase the name of the handler lifecycle phase.
+     */
+    public void setLifecyclePhase(String lifecyclePhase) {
+        this.lifecyclePhase = lifecyclePhase;
+    }
+
+    /**
+     * Gets the handler lifecycle phase of this handler manager.
+     *
+     * @return the name of the handler lifecycle phase, or null if not set.
+     */
+    public String getLifecyclePhase() {
+        return lifecyclePhase;
+    }
+
     public void setEvaluateAllHandlers(boolean evaluateAllHandlers) {
         this.evaluateAllHandlers = evaluateAllHandlers;
     }
@@ -43,6 +43,7 @@ public class UserDefinedHandlerManager extends HandlerManager {
         
         if (hm == null) {
             hm = new HandlerManager();
+            hm.setLifecyclePhase(getLifecyclePhase());
             userHandlerManagers.put(CurrentContext.getCallerTenantId(), hm);
         }
         
@@ -174,6 +175,11 @@ public class UserDefinedHandlerManager extends HandlerManager {
         return getUserHandlerManager().resourceExists(requestContext);
     }
 
+    @Override
+    public boolean isResourceExistsHandled(HandlerContext requestContext) throws RepositoryException {
+        return getUserHandlerManager().isResourceExistsHandled(requestContext);
+    }
+
     @Override
     public Element dump(HandlerContext requestContext) throws RepositoryException {
         return getUserHandlerManager().dump(requestContext);
@@ -184,6 +190,15 @@ public class UserDefinedHandlerManager extends HandlerManager {
         getUserHandlerManager().restore(requestContext);
     }
 
+    @Override
+    public void setLifecyclePhase(String lifecyclePhase) {
+        super.setLifecyclePhase(lifecyclePhase);
+        
+        for (HandlerManager hm : userHandlerManagers.values()) {
+            hm.setLifecyclePhase(lifecyclePhase);
+        }
+    }
+
     @Override
     public void setEvaluateAllHandlers(boolean evaluateAllHandlers) {
         getUserHandlerManager().setEvaluateAllHandlers(evaluateAllHandlers);
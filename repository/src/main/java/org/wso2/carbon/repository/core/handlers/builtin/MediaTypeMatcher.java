@@ -25,6 +25,7 @@ import org.wso2.carbon.repository.api.handlers.Filter;
 import org.wso2.carbon.repository.api.handlers.HandlerContext;
 import org.wso2.carbon.repository.api.utils.RepositoryUtils;
 import org.wso2.carbon.repository.core.EmbeddedRepository;
+import org.wso2.carbon.repository.core.caching.MediaTypeCache;
 import org.wso2.carbon.repository.core.exceptions.RepositoryServerContentException;
 import org.wso2.carbon.repository.core.exceptions.RepositoryServerException;
 import org.wso2.carbon.repository.core.utils.InternalUtils;
@@ -106,8 +107,9 @@ public class MediaTypeMatcher extends Filter {
 
     /**
      * Matches if the media type of the current resource is equal to the handler's media type. If a
-     * resource is not set in the RequestContext, this method will retrieve the resource for given
-     * path from the database and set it in the RequestContext.
+     * resource is not set in the RequestContext, this method will look up the media type of the
+     * resource at the given path, and only if it matches, retrieve the resource from the database
+     * and set it in the RequestContext.
      * <p/>
      * Media type matcher supports special case for generating UIs for creating new resources. URLs
      * of the form <resource-path>;new:<view-name>;mediaType:<media-type> For this URLs, media type
@@ -130,29 +132,14 @@ public class MediaTypeMatcher extends Filter {
         }
 
         Resource resource = requestContext.getResource();
-        if (resource == null) {
-            VersionedPath versionedPath =
-                    InternalUtils.getVersionedPath(requestContext.getResourcePath());
-
-            if (versionedPath.getVersion() == -1) {            	
-            	Repository registry = requestContext.getRepository();
-            	
-            	if(registry instanceof EmbeddedRepository) {
-	                resource = ((EmbeddedRepository) requestContext.getRepository()).getRepository().
-	                        get(requestContext.getResourcePath().getPath());
-            	} else {
-            		throw new RepositoryServerException("The registry is not an Embedded or Cachebacked registry");
-            	}
-
-                requestContext.setResource(resource);
-            }
+        if (resource != null) {
+            return matches(resource.getMediaType());
         }
 
-        if (resource != null) {
-            String mType = resource.getMediaType();
-            if (mType != null && (invert != mType.equals(mediaType))) {
-                return true;
-            }
+        VersionedPath versionedPath = InternalUtils.getVersionedPath(requestContext.getResourcePath());
+
+        if (versionedPath.getVersion() == -1) {
+            return matchesResource(requestContext, requestContext.getResourcePath().getPath());
         }
 
         return false;
@@ -208,29 +195,13 @@ public class MediaTypeMatcher extends Filter {
      * @throws RepositoryException
      */
     public boolean handleDelete(HandlerContext requestContext) throws RepositoryException {
-
         Resource resource = requestContext.getResource();
         
-        if (resource == null) {        	
-        	Repository registry = requestContext.getRepository();
-        	
-        	if(registry instanceof EmbeddedRepository) {
-                resource = ((EmbeddedRepository) requestContext.getRepository()).getRepository().get(requestContext.getResourcePath().getPath());
-        	} else {
-        		throw new RepositoryServerException("The registry is not an Embedded or Cachebacked registry");
-        	}
-
-            requestContext.setResource(resource);
-        }
-
         if (resource != null) {
-            String mType = resource.getMediaType();
-            if (mType != null && (invert != mType.equals(mediaType))) {
-                return true;
-            }
+            return matches(resource.getMediaType());
         }
 
-        return false;
+        return matchesResource(requestContext, requestContext.getResourcePath().getPath());
     }
 
     /**
@@ -266,25 +237,7 @@ public class MediaTypeMatcher extends Filter {
      * @throws RepositoryException
      */
     public boolean handleCopy(HandlerContext requestContext) throws RepositoryException {
-    	Repository registry = requestContext.getRepository();
-    	Resource resource = null ;
-    	
-    	if(registry instanceof EmbeddedRepository) {
-            resource = ((EmbeddedRepository) requestContext.getRepository()).getRepository().get(requestContext.getSourcePath());
-    	} else {
-    		throw new RepositoryServerException("The registry is not an Embedded or Cachebacked registry");
-    	}
-
-        requestContext.setResource(resource);
-
-        if (resource != null) {
-            String mType = resource.getMediaType();
-            if (mType != null && (invert != mType.equals(mediaType))) {
-                return true;
-            }
-        }
-
-        return false;
+        return matchesResource(requestContext, requestContext.getSourcePath());
     }
 
     /**
@@ -320,35 +273,14 @@ public class MediaTypeMatcher extends Filter {
      * @throws RepositoryException
      */
     public boolean handleInvokeAspect(HandlerContext requestContext) throws RepositoryException {
-        Resource resource = requestContext.getResource();
-        
-        if (resource == null) {
-        	Repository registry = requestContext.getRepository();
-        	
-        	if(registry instanceof EmbeddedRepository) {
-                resource = ((EmbeddedRepository) requestContext.getRepository()).getRepository().get(requestContext.getResourcePath().getPath());
-        	} else {
-        		throw new RepositoryServerException("The registry is not an Embedded or Cachebacked registry");
-        	}
-
-            requestContext.setResource(resource);
-        }
-
-        if (resource != null) {
-            String mType = resource.getMediaType();
-            if (mType != null && (invert != mType.equals(mediaType))) {
-                return true;
-            }
-        }
-
-        return false;
+        return handleDelete(requestContext);
     }
 
     /**
      * Matches if the media type of the parent collection of the current resource is equal to the
      * handler's media type. If the parent collection is not set in the RequestContext, this method
-     * will retrieve the parent collection of the current resource from the database and set it in
-     * the RequestContext.
+     * will look up the media type of the parent collection, and only if it matches, retrieve the
+     * parent collection from the database and set it in the RequestContext.
      *
      * @param requestContext RequestContext for the current request
      *
@@ -357,49 +289,14 @@ public class MediaTypeMatcher extends Filter {
      * @throws RepositoryException
      */
     public boolean handlePutChild(HandlerContext requestContext) throws RepositoryException {
-        Collection parentCollection = requestContext.getParentCollection();
-        
-        if (parentCollection == null) {
-            String parentPath = requestContext.getParentPath();
-            if (parentPath == null) {
-                parentPath = RepositoryUtils.getParentPath(requestContext.getResourcePath().getPath());
-                requestContext.setParentPath(parentPath);
-            }
-
-            VersionedPath versionedPath = InternalUtils.getVersionedPath(requestContext.getResourcePath());
-
-            if (versionedPath.getVersion() == -1) {
-            	Resource parentResource = ((EmbeddedRepository) requestContext.getRepository()).getRepository().get(parentPath);
-            	
-                if (parentResource != null) {
-                    if (parentResource instanceof Collection) {
-                        parentCollection = (Collection) parentResource;
-                        requestContext.setParentCollection(parentCollection);
-                    } else {
-                        // parent should be a collection, already exists a non-collection
-                        String msg = "There already exist non collection resource." + parentPath + "Child can only be added to collections";
-                        throw new RepositoryServerContentException(msg);
-                    }
-                }
-            }
-        }
-
-        if (parentCollection != null) {
-            String parentMediaType = parentCollection.getMediaType();
-            
-            if (parentMediaType != null && (invert != parentMediaType.equals(mediaType))) {
-                return true;
-            }
-        }
-
-        return false;
+        return matchesParent(requestContext);
     }
 
     /**
      * Matches if the media type of the parent collection of the current resource is equal to the
      * handler's media type. If the parent collection is not set in the RequestContext, this method
-     * will retrieve the parent collection of the current resource from the database and set it in
-     * the RequestContext.
+     * will look up the media type of the parent collection, and only if it matches, retrieve the
+     * parent collection from the database and set it in the RequestContext.
      *
      * @param requestContext RequestContext for the current request
      *
@@ -408,41 +305,93 @@ public class MediaTypeMatcher extends Filter {
      * @throws RepositoryException
      */
     public boolean handleImportChild(HandlerContext requestContext) throws RepositoryException {
+        return matchesParent(requestContext);
+    }
+
+    // Method to match the media type of the parent collection of the current resource.
+    private boolean matchesParent(HandlerContext requestContext) throws RepositoryException {
         Collection parentCollection = requestContext.getParentCollection();
         
-        if (parentCollection == null) {
-            String parentPath = requestContext.getParentPath();
-            
-            if (parentPath == null) {
-                parentPath = RepositoryUtils.getParentPath(requestContext.getResourcePath().getPath());
-                requestContext.setParentPath(parentPath);
-            }
-
-            VersionedPath versionedPath = InternalUtils.getVersionedPath(requestContext.getResourcePath());
-
-            if (versionedPath.getVersion() == -1) {
-            	Repository registry = requestContext.getRepository();
-            	
-            	if(registry instanceof EmbeddedRepository) {
-            		parentCollection = (Collection) ((EmbeddedRepository) requestContext.getRepository()).getRepository().
-	                        get(parentPath);
-            	} else {
-            		throw new RepositoryServerException("The registry is not an Embedded or Cachebacked registry");
-            	}
-            	
-                requestContext.setParentCollection(parentCollection);
-            }
+        if (parentCollection != null) {
+            return matches(parentCollection.getMediaType());
         }
 
-        if (parentCollection != null) {
-            String parentMediaType = parentCollection.getMediaType();
-            
-            if (parentMediaType != null && (invert != parentMediaType.equals(mediaType))) {
-                return true;
-            }
+        String parentPath = requestContext.getParentPath();
+        
+        if (parentPath == null) {
+            parentPath = RepositoryUtils.getParentPath(requestContext.getResourcePath().getPath());
+            requestContext.setParentPath(parentPath);
         }
 
-        return false;
+        VersionedPath versionedPath = InternalUtils.getVersionedPath(requestContext.getResourcePath());
+
+        if (versionedPath.getVersion() != -1) {
+            return false;
+        }
+
+        MediaTypeCache.Entry entry = getMediaTypeEntry(requestContext, parentPath);
+        
+        if (entry == null) {
+            return false;
+        }
+
+        if (!entry.isCollection()) {
+            // parent should be a collection, already exists a non-collection
+            String msg = "There already exist non collection resource." + parentPath + "Child can only be added to collections";
+            throw new RepositoryServerContentException(msg);
+        }
+
+        if (!matches(entry.getMediaType())) {
+            return false;
+        }
+
+        // the handlers run after a match expect the parent collection to be set.
+        Resource parentResource = getRepository(requestContext).getRepository().get(parentPath);
+        if (!(parentResource instanceof Collection)) {
+            return false;
+        }
+
+        parentCollection = (Collection) parentResource;
+        requestContext.setParentCollection(parentCollection);
+
+        return matches(parentCollection.getMediaType());
+    }
+
+    // Method to match the media type of the resource at the given path, setting the resource in
+    // the RequestContext if it matches, as the handlers run after a match expect it to be set.
+    private boolean matchesResource(HandlerContext requestContext, String path) throws RepositoryException {
+        MediaTypeCache.Entry entry = getMediaTypeEntry(requestContext, path);
+
+        if (entry == null || !matches(entry.getMediaType())) {
+            return false;
+        }
+
+        Resource resource = getRepository(requestContext).getRepository().get(path);
+        requestContext.setResource(resource);
+
+        return resource != null && matches(resource.getMediaType());
+    }
+
+    // Method to match a media type with the media type of this matcher.
+    private boolean matches(String mType) {
+        return mType != null && (invert != mType.equals(mediaType));
+    }
+
+    // Method to look up the media type of the resource at the given path, without loading the
+    // resource.
+    private static MediaTypeCache.Entry getMediaTypeEntry(HandlerContext requestContext, String path)
+            throws RepositoryException {
+        return getRepository(requestContext).getRepository().getMediaTypeEntry(path);
+    }
+
+    private static EmbeddedRepository getRepository(HandlerContext requestContext) throws RepositoryException {
+        Repository registry = requestContext.getRepository();
+
+        if (registry instanceof EmbeddedRepository) {
+            return (EmbeddedRepository) registry;
+        } else {
+            throw new RepositoryServerException("The registry is not an Embedded or Cachebacked registry");
+        }
     }
 
     /**
@@ -21,6 +21,7 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -45,6 +46,7 @@ import org.wso2.carbon.repository.core.CurrentContext;
 import org.wso2.carbon.repository.core.EmbeddedRepository;
 import org.wso2.carbon.repository.core.EmbeddedRepositoryService;
 import org.wso2.carbon.repository.core.ResourceImpl;
+import org.wso2.carbon.repository.core.caching.LinkResolutionCache;
 import org.wso2.carbon.repository.core.Transaction;
 import org.wso2.carbon.repository.core.config.RepositoryContext;
 import org.wso2.carbon.repository.core.config.StaticConfiguration;
@@ -366,14 +368,34 @@ public class MountHandler extends Handler {
         
         try {
             Repository remoteRegistry = getRepository(requestContext);
-            beginNestedOperation(actualPath, fullPath);
+            
+            // The existence of a target resolved earlier is not checked again. Only existing
+            // targets are cached, since a missing target would fail to load anyway.
+            int tenantId = CurrentContext.getTenantId();
+            LinkResolutionCache linkResolutionCache =
+                    InternalUtils.getLinkResolutionCache(requestContext.getRepository());
+            LinkResolutionCache.Entry resolution = (linkResolutionCache != null) ?
+                    linkResolutionCache.get(tenantId, fullPath, actualPath) : null;
             
             boolean resourceExists = false;
             
-            try {
-                resourceExists = remoteRegistry.resourceExists(actualPath);
-            } finally {
-                endNestedOperation();
+            if (resolution != null) {
+                resourceExists = true;
+            } else {
+                long generation = (linkResolutionCache != null) ?
+                        linkResolutionCache.getGeneration(tenantId) : 0;
+                beginNestedOperation(actualPath, fullPath);
+                
+                try {
+                    resourceExists = remoteRegistry.resourceExists(actualPath);
+                } finally {
+                    endNestedOperation();
+                }
+                
+                if (resourceExists && linkResolutionCache != null) {
+                    linkResolutionCache.put(tenantId, fullPath,
+                            new LinkResolutionCache.Entry(actualPath), generation);
+                }
             }
             
             if (resourceExists) {
@@ -386,6 +408,11 @@ public class MountHandler extends Handler {
                         // which will cause problems, in the mounted scenario.
                         tempResource.getContent();
                     }
+                } catch (RepositoryException e) {
+                    if (resolution != null) {
+                        linkResolutionCache.invalidate(tenantId, fullPath, false);
+                    }
+                    throw e;
                 } finally {
                     endNestedOperation();
                 }
@@ -393,30 +420,44 @@ public class MountHandler extends Handler {
                 if (tempResource instanceof Collection) {
                     String[] paths = (String[]) tempResource.getContent();
                     Set<String> nonLinkPaths = new HashSet<String>();
-                    try {
-                        // We need to set inExecution to false, in order to run the resourceExists
-                        // operation. Since inExecution is ThreadLocal, there is no harm in doing
-                        // this, as long as you set this to true after completing the operation.
-                        setInExecution(false);
+                    
+                    if (paths != null && paths.length > 0) {
+                        // The existence of all children is checked on the mounted repository with
+                        // a single batched call, instead of one call per child.
+                        Map<String, String> localPathMap = new HashMap<String, String>();
+                        String[] actualPaths = new String[paths.length];
                         
-                        if(paths != null) {
-                            for (int i = 0; i < paths.length; i++) {
-                                if (subPath != null && subPath.length() != 0) {
-                                    paths[i] = this.mountPoint + paths[i].substring(subPath.length());
-                                } else {
-                                    paths[i] = this.mountPoint + paths[i];
-                                }
-                                
-                                HandlerContext childContext = new HandlerContext(requestContext.getRepository());
-                                childContext.setResourcePath(new ResourcePath(paths[i]));
-                                
-                                if (resourceExists(childContext, false)) {
-                                    nonLinkPaths.add(paths[i]);
-                                }
+                        for (int i = 0; i < paths.length; i++) {
+                            actualPaths[i] = paths[i];
+                            
+                            if (subPath != null && subPath.length() != 0) {
+                                paths[i] = this.mountPoint + paths[i].substring(subPath.length());
+                            } else {
+                                paths[i] = this.mountPoint + paths[i];
+                            }
+                            
+                            localPathMap.put(actualPaths[i], paths[i]);
+                        }
+                        
+                        Set<String> existingPaths = Collections.emptySet();
+                        
+                        try {
+                            beginNestedOperation(localPathMap);
+                            
+                            try {
+                                existingPaths = InternalUtils.getExistingPaths(remoteRegistry, actualPaths);
+                            } finally {
+                                endNestedOperation();
+                            }
+                        } catch (Exception e) {
+                            log.error("Unable to test existence of resources", e);
+                        }
+                        
+                        for (int i = 0; i < paths.length; i++) {
+                            if (existingPaths.contains(actualPaths[i])) {
+                                nonLinkPaths.add(paths[i]);
                             }
                         }
-                    } finally {
-                        setInExecution(true);
                     }
                     
                     ((ResourceImpl) tempResource).setContentWithNoUpdate(nonLinkPaths.toArray(new String[nonLinkPaths.size()]));
@@ -26,12 +26,14 @@ import org.wso2.carbon.repository.api.Repository;
 import org.wso2.carbon.repository.api.RepositoryConstants;
 import org.wso2.carbon.repository.api.Resource;
 import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.api.exceptions.RepositoryResourceNotFoundException;
 import org.wso2.carbon.repository.api.handlers.Handler;
 import org.wso2.carbon.repository.api.handlers.HandlerContext;
 import org.wso2.carbon.repository.core.CollectionImpl;
 import org.wso2.carbon.repository.core.CurrentContext;
 import org.wso2.carbon.repository.core.EmbeddedRepository;
 import org.wso2.carbon.repository.core.ResourceImpl;
+import org.wso2.carbon.repository.core.caching.LinkResolutionCache;
 import org.wso2.carbon.repository.core.config.RepositoryContext;
 import org.wso2.carbon.repository.core.exceptions.RepositoryServerContentException;
 import org.wso2.carbon.repository.core.handlers.HandlerLifecycleManager;
@@ -43,7 +45,8 @@ import org.wso2.carbon.repository.core.utils.InternalUtils;
  * This handler is used to create a symbolic link from one resource to another and perform registry
  * operations on the symbolic link and have them applied on the actual resource as if the actual
  * resource itself was being used. The symbolic link handler plays a key role to make it possible to
- * create and work with symbolic links via the user interface.
+ * create and work with symbolic links via the user interface. Whether the target of a path under
+ * the link exists is remembered, so that reading through the link loads the target only once.
  */
 public class SymLinkHandler extends Handler {
 
@@ -132,10 +135,36 @@ public class SymLinkHandler extends Handler {
         String subPath = fullPath.substring(this.mountPoint.length(), fullPath.length());
         String actualPath = this.targetPoint + subPath;
         
-        Resource tempResource;
+        Resource tempResource = null;
+        Repository repository = requestContext.getRepository();
+        int tenantId = CurrentContext.getTenantId();
+        LinkResolutionCache linkResolutionCache = InternalUtils.getLinkResolutionCache(repository);
+        LinkResolutionCache.Entry resolution = (linkResolutionCache != null) ?
+                linkResolutionCache.get(tenantId, fullPath, actualPath) : null;
         
-        if (requestContext.getRepository().resourceExists(actualPath)) {
-            tempResource = requestContext.getRepository().get(actualPath);
+        if (resolution == null) {
+            long generation = (linkResolutionCache != null) ?
+                    linkResolutionCache.getGeneration(tenantId) : 0;
+            
+            // only existing targets are cached, so that a missing target is checked on every read.
+            if (repository.resourceExists(actualPath)) {
+                tempResource = repository.get(actualPath);
+                
+                if (linkResolutionCache != null) {
+                    linkResolutionCache.put(tenantId, fullPath, new LinkResolutionCache.Entry(actualPath),
+                            generation);
+                }
+            }
+        } else {
+            // the target is known to exist, so it is loaded without checking its existence first.
+            try {
+                tempResource = repository.get(actualPath);
+            } catch (RepositoryResourceNotFoundException e) {
+                linkResolutionCache.invalidate(tenantId, fullPath, false);
+            }
+        }
+        
+        if (tempResource != null) {
             if (tempResource instanceof Collection) {
                 String[] paths = (String[]) tempResource.getContent();
                 for (int i = 0; i < paths.length; i++) {
@@ -394,6 +394,87 @@ public class URLMatcher extends Filter {
         		(invert != restorePattern.matcher(requestContext.getResourcePath().getCompletePath()).matches());
     }
 
+    /**
+     * Method to obtain the pattern used to match the requests of the given method.
+     *
+     * @param method the handler method, one of the method names defined in {@link Filter}.
+     *
+     * @return the pattern, or null if no pattern is set for the method.
+     */
+    public String getPatternString(String method) {
+        if (Filter.GET.equals(method)) {
+            return getPatternStr;
+        } else if (Filter.EXECUTE_QUERY.equals(method)) {
+            return executeQueryPatternStr;
+        } else if (Filter.PUT.equals(method)) {
+            return putPatternStr;
+        } else if (Filter.IMPORT.equals(method)) {
+            return importPatternStr;
+        } else if (Filter.DELETE.equals(method)) {
+            return deletePatternStr;
+        } else if (Filter.PUT_CHILD.equals(method)) {
+            return putChildPatternStr;
+        } else if (Filter.IMPORT_CHILD.equals(method)) {
+            return importChildPatternStr;
+        } else if (Filter.INVOKE_ASPECT.equals(method)) {
+            return invokeAspectPatternStr;
+        } else if (Filter.MOVE.equals(method)) {
+            return movePatternStr;
+        } else if (Filter.COPY.equals(method)) {
+            return copyPatternStr;
+        } else if (Filter.RENAME.equals(method)) {
+            return renamePatternStr;
+        } else if (Filter.CREATE_LINK.equals(method)) {
+            return createLinkPatternStr;
+        } else if (Filter.REMOVE_LINK.equals(method)) {
+            return removeLinkPatternStr;
+        } else if (Filter.RESOURCE_EXISTS.equals(method)) {
+            return resourceExistsPatternStr;
+        } else if (Filter.GET_REGISTRY_CONTEXT.equals(method)) {
+            return getRegistryContextPatternStr;
+        } else if (Filter.ADD_ASSOCIATION.equals(method)) {
+            return addAssociationPatternStr;
+        } else if (Filter.REMOVE_ASSOCIATION.equals(method)) {
+            return removeAssociationPatternStr;
+        } else if (Filter.GET_ALL_ASSOCIATIONS.equals(method)) {
+            return getAllAssociationsPatternStr;
+        } else if (Filter.GET_ASSOCIATIONS.equals(method)) {
+            return getAssociationsPatternStr;
+        } else if (Filter.APPLY_TAG.equals(method)) {
+            return applyTagPatternStr;
+        } else if (Filter.GET_TAGS.equals(method)) {
+            return getTagsPatternStr;
+        } else if (Filter.REMOVE_TAG.equals(method)) {
+            return removeTagPatternStr;
+        } else if (Filter.ADD_COMMENT.equals(method)) {
+            return addCommentPatternStr;
+        } else if (Filter.EDIT_COMMENT.equals(method)) {
+            return editCommentPatternStr;
+        } else if (Filter.REMOVE_COMMENT.equals(method)) {
+            return removeCommentPatternStr;
+        } else if (Filter.GET_COMMENTS.equals(method)) {
+            return getCommentsPatternStr;
+        } else if (Filter.RATE_RESOURCE.equals(method)) {
+            return rateResourcePatternStr;
+        } else if (Filter.GET_AVERAGE_RATING.equals(method)) {
+            return getAverageRatingPatternStr;
+        } else if (Filter.GET_RATING.equals(method)) {
+            return getRatingPatternStr;
+        } else if (Filter.CREATE_VERSION.equals(method)) {
+            return createVersionPatternStr;
+        } else if (Filter.GET_VERSIONS.equals(method)) {
+            return getVersionsPatternStr;
+        } else if (Filter.RESTORE_VERSION.equals(method)) {
+            return restoreVersionPatternStr;
+        } else if (Filter.DUMP.equals(method)) {
+            return dumpPatternStr;
+        } else if (Filter.RESTORE.equals(method)) {
+            return restorePatternStr;
+        }
+
+        return null;
+    }
+
     private Pattern createPattern(String pattern) {
         return Pattern.compile(pattern);
     }
@@ -64,6 +64,8 @@ import org.wso2.carbon.repository.core.handlers.builtin.SQLQueryHandler;
 import org.wso2.carbon.repository.core.handlers.builtin.SimulationFilter;
 import org.wso2.carbon.repository.core.handlers.builtin.SimulationHandler;
 import org.wso2.carbon.repository.core.handlers.builtin.URLMatcher;
+import org.wso2.carbon.repository.core.jdbc.dao.PathCacheWarmer;
+import org.wso2.carbon.repository.core.jdbc.dao.VersionHistoryCompactor;
 import org.wso2.carbon.repository.core.utils.InternalConstants;
 import org.wso2.carbon.repository.core.utils.InternalUtils;
 import org.wso2.carbon.repository.core.utils.LogQueue;
@@ -258,6 +260,9 @@ public class RepositoryServiceComponent {
                 if (handlerManager instanceof HandlerLifecycleManager) {
                     ((HandlerLifecycleManager)handlerManager).init(tenantId);
                 }
+
+                PathCacheWarmer.warmUp(InternalUtils.getRepositoryContext(systemRegistry), tenantId);
+                VersionHistoryCompactor.schedule(InternalUtils.getRepositoryContext(systemRegistry), tenantId);
             }
             
             systemRegistry = registryService.getRepository(CarbonConstants.REGISTRY_SYSTEM_USERNAME, tenantId);
@@ -42,6 +42,7 @@ import org.wso2.carbon.repository.core.CurrentContext;
 import org.wso2.carbon.repository.core.DatabaseConstants;
 import org.wso2.carbon.repository.core.Transaction;
 import org.wso2.carbon.repository.core.config.DataBaseConfiguration;
+import org.wso2.carbon.repository.core.config.LogStorageConfiguration;
 import org.wso2.carbon.repository.core.config.Mount;
 import org.wso2.carbon.repository.core.config.RemoteConfiguration;
 import org.wso2.carbon.repository.core.config.RepositoryContext;
@@ -50,6 +51,9 @@ import org.wso2.carbon.repository.core.jdbc.dataaccess.JDBCDataAccessManager;
 import org.wso2.carbon.repository.core.jdbc.dataaccess.JDBCDatabaseTransaction;
 import org.wso2.carbon.repository.core.utils.InternalConstants;
 import org.wso2.carbon.repository.core.utils.InternalUtils;
+import org.wso2.carbon.repository.core.utils.LogCount;
+import org.wso2.carbon.repository.core.utils.LogCursor;
+import org.wso2.carbon.repository.core.utils.LogIterator;
 import org.wso2.carbon.repository.core.utils.LogRecord;
 import org.wso2.carbon.repository.spi.dao.LogsDAO;
 import org.wso2.carbon.repository.spi.dataaccess.DataAccessManager;
@@ -60,6 +64,10 @@ import org.wso2.carbon.repository.spi.dataaccess.DataAccessManager;
 public class JDBCLogsDAO implements LogsDAO {
 
     private static final Log log = LogFactory.getLog(JDBCLogsDAO.class);
+
+    // The largest number of rows fetched at once while counting logs.
+    private static final int MAX_COUNT_FETCH_SIZE = 1000;
+
     private String enableApiPagination = System.getProperty("enable.registry.api.paginating");
     private Map<String, DataBaseConfiguration> dbConfigs = new HashMap<String, DataBaseConfiguration>();
     private Map<String, String> pathMap = new HashMap<String, String>();
@@ -148,6 +156,12 @@ public class JDBCLogsDAO implements LogsDAO {
             if (conn.getTransactionIsolation() != Connection.TRANSACTION_READ_COMMITTED) {
                 conn.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
             }
+
+            boolean rollupsEnabled = getLogStorageConfiguration().isRollupsEnabled();
+            if (rollupsEnabled) {
+                LogStorageManager.createRollupTable(conn);
+            }
+
             conn.setAutoCommit(false);
             String sql = "INSERT INTO REG_LOG (REG_PATH, REG_USER_ID, REG_LOGGED_TIME, "
                     + "REG_ACTION, REG_ACTION_DATA, REG_TENANT_ID) "
@@ -168,6 +182,9 @@ public class JDBCLogsDAO implements LogsDAO {
             if (log.isDebugEnabled()) {
                 log.debug("Successfully added " + status.length + " log records.");
             }
+            if (rollupsEnabled) {
+                LogStorageManager.updateRollups(conn, logRecords);
+            }
             conn.commit();
 
         } catch (SQLException e) {
@@ -384,9 +401,10 @@ public class JDBCLogsDAO implements LogsDAO {
         }
         try {
             if (enableApiPagination == null || enableApiPagination.equals("true")) {
-                s = conn.prepareStatement(sql, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_UPDATABLE);
+                s = conn.prepareStatement(fromLogTables(sql, conn, from, to), ResultSet.TYPE_SCROLL_INSENSITIVE,
+                        ResultSet.CONCUR_UPDATABLE);
             } else {
-                s = conn.prepareStatement(sql);
+                s = conn.prepareStatement(fromLogTables(sql, conn, from, to));
             }
             int paramNumber = 1;
 
@@ -557,7 +575,7 @@ public class JDBCLogsDAO implements LogsDAO {
         try {
 			DataSource dataSource = ((JDBCDataAccessManager)dataAccessManager).getDataSource();
             conn = dataSource.getConnection();
-            s = conn.prepareStatement(sql);
+            s = conn.prepareStatement(fromLogTables(sql, conn, from, to));
 
             int paramNumber = 1;
 
@@ -720,7 +738,7 @@ public class JDBCLogsDAO implements LogsDAO {
 
         try {
             conn = dataSource.getConnection();
-            s = conn.prepareStatement(sql);
+            s = conn.prepareStatement(fromLogTables(sql, conn, from, to));
 
             int paramNumber = 1;
 
@@ -797,6 +815,302 @@ public class JDBCLogsDAO implements LogsDAO {
         }
     }
 
+    public Activity[] getLogs(String resourcePath, int action, String userName, Date from, Date to, boolean descending,
+                              LogCursor cursor, int pageLen, DataAccessManager dataAccessManager)
+            throws RepositoryException {
+        if (!(dataAccessManager instanceof JDBCDataAccessManager)) {
+            String msg = "Failed to get logs. Invalid data access manager.";
+            log.error(msg);
+            throw new RepositoryException(msg);
+        }
+
+        DataSource dataSource = ((JDBCDataAccessManager) dataAccessManager).getDataSource();
+
+        if (resourcePath != null) {
+            // logs of paths inside a mount are read from the mount.
+            for (String sourcePath : dbConfigs.keySet()) {
+                if (resourcePath.startsWith(sourcePath)) {
+                    resourcePath = pathMap.get(sourcePath) + resourcePath.substring(sourcePath.length());
+                    dataSource = new JDBCDataAccessManager(dbConfigs.get(sourcePath)).getDataSource();
+                    break;
+                }
+            }
+        }
+
+        String sql = "SELECT REG_LOG_ID, REG_PATH, REG_USER_ID, REG_LOGGED_TIME, REG_ACTION, REG_ACTION_DATA FROM REG_LOG";
+        sql = addWherePart(resourcePath, false, sql, userName, from, to, action);
+
+        // the page starts after the last log read, which is found through the order of the logs
+        // instead of skipping the logs before it, and is limited through the statement, which
+        // every database supports.
+        String order = descending ? " DESC" : "";
+        String comparison = descending ? "<" : ">";
+
+        if (cursor.getLoggedTime() != null) {
+            sql = sql + " AND (REG_LOGGED_TIME" + comparison + "? OR (REG_LOGGED_TIME=? AND REG_LOG_ID" +
+                    comparison + "?))";
+        }
+
+        sql = sql + " ORDER BY REG_LOGGED_TIME" + order + ", REG_LOG_ID" + order;
+
+        Connection conn = null;
+        PreparedStatement s = null;
+        ResultSet results = null;
+
+        try {
+            conn = dataSource.getConnection();
+            s = conn.prepareStatement(fromLogTables(sql, conn, from, to));
+
+            if (pageLen > 0) {
+                s.setMaxRows(pageLen);
+                s.setFetchSize(pageLen);
+            }
+
+            int paramNumber = setWhereParameters(s, resourcePath, userName, from, to, action);
+
+            if (cursor.getLoggedTime() != null) {
+                s.setTimestamp(paramNumber++, cursor.getLoggedTime());
+                s.setTimestamp(paramNumber++, cursor.getLoggedTime());
+                s.setInt(paramNumber, cursor.getLogId());
+            }
+
+            results = s.executeQuery();
+
+            List<Activity> resultList = new ArrayList<Activity>();
+
+            while (results.next()) {
+                Activity logEntry = getLogEntry(results);
+                logEntry.setLogId(results.getInt(DatabaseConstants.LOG_ID_FIELD));
+                resultList.add(logEntry);
+                cursor.moveTo(results.getTimestamp(DatabaseConstants.LOGGED_TIME_FIELD),
+                        results.getInt(DatabaseConstants.LOG_ID_FIELD));
+            }
+
+            return resultList.toArray(new Activity[resultList.size()]);
+        } catch (SQLException e) {
+            String msg = "Failed to get logs. " + e.getMessage();
+            log.error(msg, e);
+            throw new RepositoryDBException(msg, e);
+        } finally {
+            try {
+                try {
+                    if (results != null) {
+                        results.close();
+                    }
+                } finally {
+                    try {
+                        if (s != null) {
+                            s.close();
+                        }
+                    } finally {
+                        if (conn != null) {
+                            conn.close();
+                        }
+                    }
+                }
+            } catch (SQLException ex) {
+                String msg = InternalConstants.RESULT_SET_PREPARED_STATEMENT_CLOSE_ERROR;
+                log.error(msg, ex);
+            }
+        }
+    }
+
+    public LogIterator getLogIterator(String resourcePath, int action, String userName, Date from, Date to,
+                                      boolean descending, int pageLen, DataAccessManager dataAccessManager) {
+        return new LogIterator(this, resourcePath, action, userName, from, to, descending, pageLen,
+                dataAccessManager);
+    }
+
+    public int getLogsCount(String resourcePath, int action, String userName, Date from, Date to, int limit)
+            throws RepositoryException {
+        if (limit < 0) {
+            return getLogsCount(resourcePath, action, userName, from, to, false);
+        }
+
+        JDBCDatabaseTransaction.ManagedRegistryConnection conn = JDBCDatabaseTransaction.getConnection();
+
+        String sql = "SELECT REG_LOG_ID FROM REG_LOG";
+        sql = addWherePart(resourcePath, false, sql, userName, from, to, action);
+
+        PreparedStatement s = null;
+        ResultSet results = null;
+        int count = 0;
+
+        try {
+            s = conn.prepareStatement(fromLogTables(sql, conn, from, to));
+            // at most the limit of rows are read, which every database supports.
+            s.setMaxRows(limit);
+            s.setFetchSize(Math.min(limit, MAX_COUNT_FETCH_SIZE));
+            setWhereParameters(s, resourcePath, userName, from, to, action);
+
+            results = s.executeQuery();
+
+            while (results.next()) {
+                count++;
+            }
+        } catch (SQLException e) {
+            String msg = "Failed to get logs. " + e.getMessage();
+            log.error(msg, e);
+            throw new RepositoryDBException(msg, e);
+        } finally {
+            try {
+                try {
+                    if (results != null) {
+                        results.close();
+                    }
+                } finally {
+                    if (s != null) {
+                        s.close();
+                    }
+                }
+            } catch (SQLException ex) {
+                String msg = InternalConstants.RESULT_SET_PREPARED_STATEMENT_CLOSE_ERROR;
+                log.error(msg, ex);
+            }
+        }
+
+        return count;
+    }
+
+    public List<LogCount> getLogCounts(String groupBy, boolean hourly, Date from, Date to,
+                                       DataAccessManager dataAccessManager) throws RepositoryException {
+        if (!getLogStorageConfiguration().isRollupsEnabled()) {
+            String msg = "Failed to get log counts. Log rollups are not enabled.";
+            log.error(msg);
+            throw new RepositoryException(msg);
+        }
+
+        if (!(dataAccessManager instanceof JDBCDataAccessManager)) {
+            String msg = "Failed to get log counts. Invalid data access manager.";
+            log.error(msg);
+            throw new RepositoryException(msg);
+        }
+
+        String sql = "SELECT REG_PERIOD_START, REG_VALUE, SUM(REG_COUNT) AS REG_LOG_COUNT FROM REG_LOG_ROLLUP " +
+                "WHERE REG_TENANT_ID=? AND REG_PERIOD=? AND REG_DIMENSION=?";
+
+        if (from != null) {
+            sql = sql + " AND REG_PERIOD_START>=?";
+        }
+
+        if (to != null) {
+            sql = sql + " AND REG_PERIOD_START<?";
+        }
+
+        // counts of the same hour or day inserted by different nodes are added up.
+        sql = sql + " GROUP BY REG_PERIOD_START, REG_VALUE ORDER BY REG_PERIOD_START, REG_VALUE";
+
+        Connection conn = null;
+        PreparedStatement s = null;
+        ResultSet results = null;
+
+        try {
+            conn = ((JDBCDataAccessManager) dataAccessManager).getDataSource().getConnection();
+            LogStorageManager.createRollupTable(conn);
+            s = conn.prepareStatement(sql);
+
+            int paramNumber = 1;
+            s.setInt(paramNumber++, CurrentContext.getTenantId());
+            s.setString(paramNumber++, LogStorageManager.getRollupPeriod(hourly));
+            s.setString(paramNumber++, groupBy);
+
+            // the counts of the periods holding the dates are included.
+            if (from != null) {
+                Date periodStart = hourly ? LogStorageConfiguration.getHourStart(from) :
+                        LogStorageConfiguration.getDayStart(from);
+                s.setTimestamp(paramNumber++, new Timestamp(periodStart.getTime()));
+            }
+
+            if (to != null) {
+                s.setTimestamp(paramNumber, new Timestamp(to.getTime()));
+            }
+
+            results = s.executeQuery();
+
+            List<LogCount> resultList = new ArrayList<LogCount>();
+
+            while (results.next()) {
+                resultList.add(new LogCount(new Date(results.getTimestamp("REG_PERIOD_START").getTime()),
+                        results.getString("REG_VALUE"), results.getLong(DatabaseConstants.LOG_COUNT_FIELD)));
+            }
+
+            return resultList;
+        } catch (SQLException e) {
+            String msg = "Failed to get log counts. " + e.getMessage();
+            log.error(msg, e);
+            throw new RepositoryDBException(msg, e);
+        } finally {
+            try {
+                try {
+                    if (results != null) {
+                        results.close();
+                    }
+                } finally {
+                    try {
+                        if (s != null) {
+                            s.close();
+                        }
+                    } finally {
+                        if (conn != null) {
+                            conn.close();
+                        }
+                    }
+                }
+            } catch (SQLException ex) {
+                String msg = InternalConstants.RESULT_SET_PREPARED_STATEMENT_CLOSE_ERROR;
+                log.error(msg, ex);
+            }
+        }
+    }
+
+    // Utility method to read the logs of a query from the partition tables that may hold logs
+    // between the given dates, as well as from REG_LOG.
+    private String fromLogTables(String sql, Connection conn, Date from, Date to) throws SQLException {
+        String source = LogStorageManager.getLogSource(conn, getLogStorageConfiguration(), from, to);
+        return sql.replace(" FROM REG_LOG ", " FROM " + source + " ");
+    }
+
+    private LogStorageConfiguration getLogStorageConfiguration() {
+        RepositoryContext registryContext = RepositoryContext.getBaseInstance();
+        return (registryContext != null) ? registryContext.getLogStorageConfiguration() : new LogStorageConfiguration();
+    }
+
+    // Utility method to set the parameters of the 'WHERE' part added by addWherePart, returning the
+    // number of the next parameter.
+    private int setWhereParameters(PreparedStatement s, String resourcePath, String userName, Date from, Date to,
+                                   int action) throws SQLException {
+        int paramNumber = 1;
+
+        if (resourcePath != null) {
+            s.setString(paramNumber, resourcePath);
+            paramNumber++;
+        }
+
+        if (userName != null) {
+            s.setString(paramNumber, userName);
+            paramNumber++;
+        }
+
+        if (from != null) {
+            s.setTimestamp(paramNumber, new Timestamp(from.getTime()));
+            paramNumber++;
+        }
+
+        if (to != null) {
+            s.setTimestamp(paramNumber, new Timestamp(to.getTime()));
+            paramNumber++;
+        }
+
+        if (action != -1) {
+            s.setInt(paramNumber, action);
+            paramNumber++;
+        }
+
+        s.setInt(paramNumber, CurrentContext.getTenantId());
+
+        return paramNumber + 1;
+    }
+
     public int getLogsCount(String resourcePath, int action, String userName, Date from,
                             Date to, boolean descending) throws RepositoryException {
         int count = 0;
@@ -813,7 +1127,7 @@ public class JDBCLogsDAO implements LogsDAO {
         ResultSet results = null;
         
         try {
-            s = conn.prepareStatement(sql);
+            s = conn.prepareStatement(fromLogTables(sql, conn, from, to));
 
             int paramNumber = 1;
 
@@ -929,9 +1243,10 @@ public class JDBCLogsDAO implements LogsDAO {
         
         try {
             if (enableApiPagination == null || enableApiPagination.equals("true")) {
-                s = conn.prepareStatement(sql, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_UPDATABLE);
+                s = conn.prepareStatement(fromLogTables(sql, conn, from, to), ResultSet.TYPE_SCROLL_INSENSITIVE,
+                        ResultSet.CONCUR_UPDATABLE);
             } else {
-                s = conn.prepareStatement(sql);
+                s = conn.prepareStatement(fromLogTables(sql, conn, from, to));
             }
             
             int paramNumber = 1;
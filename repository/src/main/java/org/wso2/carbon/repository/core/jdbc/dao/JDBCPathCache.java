@@ -33,6 +33,7 @@ import org.wso2.carbon.repository.api.exceptions.RepositoryException;
 import org.wso2.carbon.repository.core.CurrentContext;
 import org.wso2.carbon.repository.core.DatabaseConstants;
 import org.wso2.carbon.repository.core.caching.PathCache;
+import org.wso2.carbon.repository.core.caching.PathTree;
 import org.wso2.carbon.repository.core.caching.RepositoryCacheEntry;
 import org.wso2.carbon.repository.core.caching.RepositoryCacheKey;
 import org.wso2.carbon.repository.core.config.RepositoryContext;
@@ -154,6 +155,10 @@ public class JDBCPathCache extends PathCache {
                     
                     RepositoryCacheKey key = InternalUtils.buildRegistryCacheKey(connectionId, CurrentContext.getTenantId(), path);
                     getCache().put(key, e);
+                    
+                    if (connectionId != null) {
+                        PathTree.getPathTree(connectionId, CurrentContext.getTenantId()).put(path, pathId);
+                    }
                 } catch (SQLException e) {
                     String msg = "Failed to commit transaction. Inserting " + path + ". " + e.getMessage();
                     log.error(msg, e);
@@ -238,11 +243,19 @@ public class JDBCPathCache extends PathCache {
             throw new SQLException("Connection is null");
         }
         
+        PathTree pathTree = PathTree.getPathTree(connectionId, CurrentContext.getTenantId());
+        String path = pathTree.getPath(id);
+        
+        if (path != null) {
+            return path;
+        }
+        
         RepositoryCacheKey key = InternalUtils.buildRegistryCacheKey(connectionId, CurrentContext.getTenantId(), Integer.toString(id));
         Cache<RepositoryCacheKey, RepositoryCacheEntry> cache = getCache();
         RepositoryCacheEntry result = cache.get(key);
         
         if (result != null) {
+            pathTree.put(result.getPath(), id);
             return result.getPath();
         } else {
             PreparedStatement ps = null;
@@ -259,6 +272,7 @@ public class JDBCPathCache extends PathCache {
                 if (results.next()) {
                     result = new RepositoryCacheEntry(results.getString(DatabaseConstants.PATH_VALUE_FIELD));
                     cache.put(key, result);
+                    pathTree.put(result.getPath(), id);
                     return result.getPath();
                 }
             } finally {
@@ -299,6 +313,13 @@ public class JDBCPathCache extends PathCache {
             throw new SQLException("Connection is null");
         }
         
+        PathTree pathTree = PathTree.getPathTree(connectionId, CurrentContext.getTenantId());
+        int knownPathId = pathTree.getPathID(path);
+        
+        if (knownPathId != PathTree.UNKNOWN) {
+            return knownPathId;
+        }
+        
         RepositoryCacheKey key = InternalUtils.buildRegistryCacheKey(connectionId, CurrentContext.getTenantId(), path);
         Cache<RepositoryCacheKey,RepositoryCacheEntry> cache = getCache();
         RepositoryCacheEntry result = (RepositoryCacheEntry) cache.get(key);
@@ -318,6 +339,7 @@ public class JDBCPathCache extends PathCache {
         // actually working - Senaka.
 
         if (result != null) {
+            pathTree.put(path, result.getPathId());
             return result.getPathId();
         } else {
             ResultSet results = null;
@@ -336,6 +358,7 @@ public class JDBCPathCache extends PathCache {
                     if (pathId > 0) {
                         RepositoryCacheEntry e = new RepositoryCacheEntry(pathId);
                         cache.put(key, e);
+                        pathTree.put(path, pathId);
                         return pathId;
                     }
                 }
@@ -19,19 +19,26 @@
 
 package org.wso2.carbon.repository.core.jdbc.dao;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.sql.Blob;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -49,6 +56,7 @@ import org.wso2.carbon.repository.core.ResourceIDImpl;
 import org.wso2.carbon.repository.core.ResourceImpl;
 import org.wso2.carbon.repository.core.Transaction;
 import org.wso2.carbon.repository.core.config.StaticConfiguration;
+import org.wso2.carbon.repository.core.content.FileContentStore;
 import org.wso2.carbon.repository.core.dataobjects.ResourceDO;
 import org.wso2.carbon.repository.core.exceptions.RepositoryConcurrentModificationException;
 import org.wso2.carbon.repository.core.exceptions.RepositoryDBException;
@@ -72,8 +80,17 @@ public class JDBCResourceDAO implements ResourceDAO {
     private static final Object ADD_CONTENT_LOCK = new Object();
     private static final Object ADD_PROPERTY_LOCK = new Object();
 
+    // The maximum number of parameters bound to a single IN list.
+    static final int IN_LIST_BATCH_SIZE = 100;
+
     private static final String SELECT_NAME_VALUE_PROP_P = "SELECT REG_NAME, REG_VALUE FROM REG_PROPERTY P, ";
 
+    // The largest content read along with the meta data and the properties of a resource.
+    static final int INLINE_CONTENT_LIMIT = 4096;
+
+    private static final String PROPERTY_NAME_FIELD = "REG_PROPERTY_NAME";
+    private static final String CONTENT_LENGTH_FIELD = "REG_CONTENT_LENGTH";
+
     public ResourceIDImpl getResourceID(String path) throws RepositoryException {
         JDBCDatabaseTransaction.ManagedRegistryConnection conn =
                 JDBCDatabaseTransaction.getConnection();
@@ -180,6 +197,219 @@ public class JDBCResourceDAO implements ResourceDAO {
         return resourceID != null && resourceExists(resourceID);
     }
 
+    public Set<String> getExistingPaths(List<String> paths) throws RepositoryException {
+        JDBCDatabaseTransaction.ManagedRegistryConnection conn = JDBCDatabaseTransaction.getConnection();
+        Set<String> existingPaths = new HashSet<String>();
+
+        try {
+            // step1: the paths that are collections, found by joining with the path table.
+            for (int start = 0; start < paths.size(); start += IN_LIST_BATCH_SIZE) {
+                List<String> batch = paths.subList(start, Math.min(paths.size(), start + IN_LIST_BATCH_SIZE));
+                String sql = "SELECT P.REG_PATH_VALUE FROM REG_PATH P, REG_RESOURCE R WHERE P.REG_PATH_VALUE IN (" +
+                        getParameterList(batch.size()) + ") AND P.REG_TENANT_ID=? AND R.REG_PATH_ID=P.REG_PATH_ID " +
+                        "AND R.REG_NAME IS NULL AND R.REG_TENANT_ID=?";
+
+                PreparedStatement ps = null;
+                ResultSet results = null;
+
+                try {
+                    ps = conn.prepareStatement(sql);
+                    int index = 1;
+
+                    for (String path : batch) {
+                        ps.setString(index++, path);
+                    }
+
+                    ps.setInt(index++, CurrentContext.getTenantId());
+                    ps.setInt(index, CurrentContext.getTenantId());
+
+                    results = ps.executeQuery();
+
+                    while (results.next()) {
+                        existingPaths.add(results.getString(DatabaseConstants.PATH_VALUE_FIELD));
+                    }
+                } finally {
+                    try {
+                        try {
+                            if (results != null) {
+                                results.close();
+                            }
+                        } finally {
+                            if (ps != null) {
+                                ps.close();
+                            }
+                        }
+                    } catch (SQLException ex) {
+                        String msg = InternalConstants.RESULT_SET_PREPARED_STATEMENT_CLOSE_ERROR;
+                        log.error(msg, ex);
+                    }
+                }
+            }
+
+            // step2: the remaining paths can only be resources, which are looked up by name under
+            // each parent collection.
+            Map<String, Map<String, String>> pathsByParent = new HashMap<String, Map<String, String>>();
+
+            for (String path : paths) {
+                if (existingPaths.contains(path) || path.equals(RepositoryConstants.ROOT_PATH)) {
+                    continue;
+                }
+
+                String parentPath = RepositoryUtils.getParentPath(path);
+                Map<String, String> pathsByName = pathsByParent.get(parentPath);
+
+                if (pathsByName == null) {
+                    pathsByName = new HashMap<String, String>();
+                    pathsByParent.put(parentPath, pathsByName);
+                }
+
+                pathsByName.put(RepositoryUtils.getResourceName(path), path);
+            }
+
+            JDBCPathCache pathCache = JDBCPathCache.getPathCache();
+
+            for (Map.Entry<String, Map<String, String>> entry : pathsByParent.entrySet()) {
+                int parentPathID = pathCache.getPathID(conn, entry.getKey());
+
+                if (parentPathID == -1) {
+                    continue;
+                }
+
+                Map<String, String> pathsByName = entry.getValue();
+                List<String> names = new ArrayList<String>(pathsByName.keySet());
+
+                for (int start = 0; start < names.size(); start += IN_LIST_BATCH_SIZE) {
+                    List<String> batch = names.subList(start, Math.min(names.size(), start + IN_LIST_BATCH_SIZE));
+                    String sql = "SELECT REG_NAME FROM REG_RESOURCE WHERE REG_PATH_ID=? AND REG_NAME IN (" +
+                            getParameterList(batch.size()) + ") AND REG_TENANT_ID=?";
+
+                    PreparedStatement ps = null;
+                    ResultSet results = null;
+
+                    try {
+                        ps = conn.prepareStatement(sql);
+                        int index = 1;
+                        ps.setInt(index++, parentPathID);
+
+                        for (String name : batch) {
+                            ps.setString(index++, name);
+                        }
+
+                        ps.setInt(index, CurrentContext.getTenantId());
+
+                        results = ps.executeQuery();
+
+                        while (results.next()) {
+                            existingPaths.add(pathsByName.get(results.getString(DatabaseConstants.NAME_FIELD)));
+                        }
+                    } finally {
+                        try {
+                            try {
+                                if (results != null) {
+                                    results.close();
+                                }
+                            } finally {
+                                if (ps != null) {
+                                    ps.close();
+                                }
+                            }
+                        } catch (SQLException ex) {
+                            String msg = InternalConstants.RESULT_SET_PREPARED_STATEMENT_CLOSE_ERROR;
+                            log.error(msg, ex);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            String msg = "Failed to check the existence of " + paths.size() + " resources. " + e.getMessage();
+            log.error(msg, e);
+            throw new RepositoryDBException(msg, e);
+        }
+
+        return existingPaths;
+    }
+
+    public List<String> getPathsUpdatedSince(String rootPath, Date since) throws RepositoryException {
+        JDBCDatabaseTransaction.ManagedRegistryConnection conn = JDBCDatabaseTransaction.getConnection();
+        boolean isRoot = rootPath.equals(RepositoryConstants.ROOT_PATH);
+
+        // the paths are narrowed down with LIKE, and matched exactly below, since '_' is a wild
+        // card in LIKE patterns. A resource at the root path is found through its parent path.
+        String sql = "SELECT P.REG_PATH_VALUE, R.REG_NAME FROM REG_RESOURCE R, REG_PATH P " +
+                "WHERE R.REG_PATH_ID=P.REG_PATH_ID AND R.REG_TENANT_ID=? AND P.REG_TENANT_ID=? AND " +
+                "R.REG_LAST_UPDATED_TIME>?";
+
+        if (!isRoot) {
+            sql = sql + " AND (P.REG_PATH_VALUE=? OR P.REG_PATH_VALUE=? OR P.REG_PATH_VALUE LIKE ?)";
+        }
+
+        sql = sql + " ORDER BY R.REG_LAST_UPDATED_TIME";
+
+        List<String> paths = new ArrayList<String>();
+        PreparedStatement ps = null;
+        ResultSet results = null;
+
+        try {
+            ps = conn.prepareStatement(sql);
+            ps.setInt(1, CurrentContext.getTenantId());
+            ps.setInt(2, CurrentContext.getTenantId());
+            ps.setTimestamp(3, new Timestamp(since.getTime()));
+
+            if (!isRoot) {
+                ps.setString(4, rootPath);
+                ps.setString(5, RepositoryUtils.getParentPath(rootPath));
+                ps.setString(6, rootPath + RepositoryConstants.PATH_SEPARATOR + "%");
+            }
+
+            results = ps.executeQuery();
+
+            while (results.next()) {
+                String pathValue = results.getString(DatabaseConstants.PATH_VALUE_FIELD);
+                String name = results.getString(DatabaseConstants.NAME_FIELD);
+                String path = (name == null) ? pathValue : pathValue +
+                        (pathValue.equals(RepositoryConstants.ROOT_PATH) ? "" : RepositoryConstants.PATH_SEPARATOR) +
+                        name;
+
+                if (isRoot || path.equals(rootPath) || path.startsWith(rootPath + RepositoryConstants.PATH_SEPARATOR)) {
+                    paths.add(path);
+                }
+            }
+        } catch (SQLException e) {
+            String msg = "Failed to get the resources updated in " + rootPath + " since " + since + ". " +
+                    e.getMessage();
+            log.error(msg, e);
+            throw new RepositoryDBException(msg, e);
+        } finally {
+            try {
+                try {
+                    if (results != null) {
+                        results.close();
+                    }
+                } finally {
+                    if (ps != null) {
+                        ps.close();
+                    }
+                }
+            } catch (SQLException ex) {
+                String msg = InternalConstants.RESULT_SET_PREPARED_STATEMENT_CLOSE_ERROR;
+                log.error(msg, ex);
+            }
+        }
+
+        return paths;
+    }
+
+    // Returns a comma separated list of the given number of SQL parameter markers.
+    static String getParameterList(int count) {
+        StringBuilder parameters = new StringBuilder();
+
+        for (int i = 0; i < count; i++) {
+            parameters.append(i == 0 ? "?" : ", ?");
+        }
+
+        return parameters.toString();
+    }
+
     public long getVersion(ResourceIDImpl resourceID) throws RepositoryException {
         JDBCDatabaseTransaction.ManagedRegistryConnection conn =
                 JDBCDatabaseTransaction.getConnection();
@@ -258,6 +488,197 @@ public class JDBCResourceDAO implements ResourceDAO {
         return resourceImpl;
     }
 
+    public ResourceImpl getFilledResource(String path) throws RepositoryException {
+        ResourceIDImpl resourceIDImpl = getResourceID(path);
+        ResourceImpl resourceImpl = null;
+        
+        if (resourceIDImpl != null) {
+            resourceImpl = getResourceWithProperties(resourceIDImpl);
+
+            if (resourceImpl == null && resourceIDImpl.isCollection()) {
+                // we should check the resourceID for a non-collection too.
+                resourceIDImpl = getResourceID(path, false);
+                if (resourceIDImpl != null) {
+                    resourceImpl = getResourceWithProperties(resourceIDImpl);
+                }
+            }
+        }
+        
+        if (resourceImpl instanceof CollectionImpl) {
+            int tempTenantId = CurrentContext.getTenantId();
+
+            if (tempTenantId != MultitenantConstants.INVALID_TENANT_ID &&
+                    tempTenantId != MultitenantConstants.SUPER_TENANT_ID) {
+                fillChildren((CollectionImpl) resourceImpl, 0, -1, JDBCDatabaseTransaction.getConnection());
+            }
+        }
+        
+        return resourceImpl;
+    }
+
+    /**
+     * Method to read the meta data and the properties of a resource, and its content if it is
+     * small, in a single query. The query is a UNION ALL of a row holding the resource and its
+     * content, and a row per property, so that the content is not repeated on the property rows.
+     * The content is only read inline on databases known to have a function giving the length of
+     * a content; otherwise, or if the content is larger than {@link #INLINE_CONTENT_LIMIT}, it is
+     * read by a separate query.
+     *
+     * @param resourceID the resource id.
+     *
+     * @return the resource, with its properties and content filled, or null if it does not exist.
+     * @throws RepositoryException throws if the operation failed.
+     */
+    private ResourceImpl getResourceWithProperties(ResourceIDImpl resourceID) throws RepositoryException {
+        JDBCDatabaseTransaction.ManagedRegistryConnection conn = JDBCDatabaseTransaction.getConnection();
+
+        ResourceImpl resourceImpl = null;
+        PreparedStatement ps = null;
+        ResultSet results = null;
+        boolean contentFilled = false;
+        
+        try {
+            boolean isCollection = resourceID.isCollection();
+            String contentLengthFunction = isCollection ? null :
+                    getContentLengthFunction(conn.getMetaData().getDatabaseProductName());
+
+            StringBuilder columns = new StringBuilder("SELECT R.REG_MEDIA_TYPE, R.REG_CREATOR, " +
+                    "R.REG_CREATED_TIME, R.REG_LAST_UPDATOR, R.REG_LAST_UPDATED_TIME, R.REG_VERSION, " +
+                    "R.REG_DESCRIPTION, R.REG_CONTENT_ID, R.REG_UUID, P.REG_NAME AS " + PROPERTY_NAME_FIELD +
+                    ", P.REG_VALUE");
+
+            if (contentLengthFunction != null) {
+                columns.append(", ").append(contentLengthFunction).append("(C.REG_CONTENT_DATA) AS ")
+                        .append(CONTENT_LENGTH_FIELD).append(", CASE WHEN ").append(contentLengthFunction)
+                        .append("(C.REG_CONTENT_DATA) <= ").append(INLINE_CONTENT_LIMIT)
+                        .append(" THEN C.REG_CONTENT_DATA ELSE NULL END AS REG_CONTENT_DATA");
+            }
+
+            String where = isCollection ? " WHERE R.REG_PATH_ID=? AND R.REG_NAME IS NULL AND R.REG_TENANT_ID=?" :
+                    " WHERE R.REG_PATH_ID=? AND R.REG_NAME=? AND R.REG_TENANT_ID=?";
+
+            // both parts select the same columns. A join on 1=0 gives the columns of the other
+            // part as nulls of the right type.
+            StringBuilder sql = new StringBuilder(columns);
+            sql.append(" FROM REG_RESOURCE R LEFT OUTER JOIN REG_PROPERTY P ON 1=0");
+            if (contentLengthFunction != null) {
+                sql.append(" LEFT OUTER JOIN REG_CONTENT C ON C.REG_CONTENT_ID=R.REG_CONTENT_ID AND " +
+                        "C.REG_TENANT_ID=R.REG_TENANT_ID");
+            }
+            sql.append(where);
+
+            sql.append(" UNION ALL ").append(columns);
+            sql.append(" FROM REG_RESOURCE R INNER JOIN REG_RESOURCE_PROPERTY RP ON ");
+
+            if (StaticConfiguration.isVersioningProperties()) {
+                sql.append("RP.REG_VERSION=R.REG_VERSION");
+            } else if (isCollection) {
+                sql.append("RP.REG_PATH_ID=R.REG_PATH_ID AND RP.REG_RESOURCE_NAME IS NULL");
+            } else {
+                sql.append("RP.REG_PATH_ID=R.REG_PATH_ID AND RP.REG_RESOURCE_NAME=R.REG_NAME");
+            }
+
+            sql.append(" AND RP.REG_TENANT_ID=R.REG_TENANT_ID INNER JOIN REG_PROPERTY P ON " +
+                    "P.REG_ID=RP.REG_PROPERTY_ID AND P.REG_TENANT_ID=R.REG_TENANT_ID");
+            if (contentLengthFunction != null) {
+                sql.append(" LEFT OUTER JOIN REG_CONTENT C ON 1=0");
+            }
+            sql.append(where);
+
+            ps = conn.prepareStatement(sql.toString());
+            int index = 1;
+            for (int i = 0; i < 2; i++) {
+                ps.setInt(index++, resourceID.getPathID());
+
+                if (!isCollection) {
+                    ps.setString(index++, resourceID.getName());
+                }
+
+                ps.setInt(index++, CurrentContext.getTenantId());
+            }
+
+            results = ps.executeQuery();
+
+            while (results.next()) {
+                if (resourceImpl == null) {
+                    resourceImpl = isCollection ? new CollectionImpl() : new ResourceImpl();
+
+                    // this is always the current version of the resource
+                    resourceImpl.setPathID(resourceID.getPathID());
+                    resourceImpl.setPath(resourceID.getPath());
+                    resourceImpl.setName(resourceID.getName());
+                    fillResourceMetaData(resourceImpl, results);
+                }
+
+                String name = results.getString(PROPERTY_NAME_FIELD);
+
+                if (name != null) {
+                    resourceImpl.addPropertyWithNoUpdate(name, results.getString(DatabaseConstants.VALUE_FIELD));
+                } else if (contentLengthFunction != null && resourceImpl.getDbBasedContentID() > 0) {
+                    // the row of the resource, holding the content.
+                    results.getLong(CONTENT_LENGTH_FIELD);
+
+                    if (results.wasNull()) {
+                        // there is no content row.
+                        resourceImpl.setContentWithNoUpdate(null);
+                        contentFilled = true;
+                    } else {
+                        InputStream rawInputStream = results.getBinaryStream(DatabaseConstants.CONTENT_DATA_FIELD);
+
+                        if (rawInputStream != null) {
+                            resourceImpl.setContentStreamWithNoUpdate(FileContentStore.getContentStream(
+                                    CurrentContext.getTenantId(), rawInputStream, 0, -1));
+                            contentFilled = true;
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            String msg = "Failed to get the resource at path " + resourceID.getPath() + ". " +
+                    e.getMessage();
+            log.error(msg, e);
+            throw new RepositoryDBException(msg, e);
+        } finally {
+            close(results, ps);
+        }
+
+        if (resourceImpl != null && !contentFilled && !(resourceImpl instanceof CollectionImpl) &&
+                resourceImpl.getDbBasedContentID() > 0) {
+            fillResourceContentWithNoUpdate(resourceImpl);
+        }
+
+        return resourceImpl;
+    }
+
+    /**
+     * Method to obtain the function giving the length in bytes of a content on the given database.
+     * A content is only read along with the meta data and the properties of a resource on
+     * databases where the function is known.
+     *
+     * @param dbProductName the database product name, as given by the connection meta data.
+     *
+     * @return the function, or null if it is not known for the database.
+     */
+    protected String getContentLengthFunction(String dbProductName) {
+        if (dbProductName == null) {
+            return null;
+        }
+
+        String productName = dbProductName.toLowerCase();
+
+        if (productName.contains("oracle")) {
+            return "DBMS_LOB.GETLENGTH";
+        } else if (productName.contains("microsoft")) {
+            return "DATALENGTH";
+        } else if (productName.contains("mysql") || productName.contains("mariadb") ||
+                productName.contains("h2") || productName.contains("derby") ||
+                productName.contains("postgresql") || productName.startsWith("db2")) {
+            return "LENGTH";
+        }
+
+        return null;
+    }
+
     public CollectionImpl get(String path, int start, int pageLen) throws RepositoryException {
         ResourceIDImpl resourceID = getResourceID(path);
         
@@ -312,6 +733,352 @@ public class JDBCResourceDAO implements ResourceDAO {
         fillResourcePropertiesWithNoUpdate(collection);
     }
 
+    public Map<String, ResourceImpl> getResources(List<String> paths) throws RepositoryException {
+        JDBCDatabaseTransaction.ManagedRegistryConnection conn = JDBCDatabaseTransaction.getConnection();
+        Map<String, ResourceImpl> resources = new HashMap<String, ResourceImpl>();
+        int tenantId = CurrentContext.getTenantId();
+
+        try {
+            // step1: the paths that are collections, read by joining with the path table.
+            for (int start = 0; start < paths.size(); start += IN_LIST_BATCH_SIZE) {
+                List<String> batch = paths.subList(start, Math.min(paths.size(), start + IN_LIST_BATCH_SIZE));
+                String sql = "SELECT P.REG_PATH_ID, P.REG_PATH_VALUE, R.REG_MEDIA_TYPE, R.REG_CREATOR, " +
+                        "R.REG_CREATED_TIME, R.REG_LAST_UPDATOR, R.REG_LAST_UPDATED_TIME, R.REG_VERSION, " +
+                        "R.REG_DESCRIPTION, R.REG_CONTENT_ID, R.REG_UUID FROM REG_PATH P, REG_RESOURCE R " +
+                        "WHERE P.REG_PATH_VALUE IN (" + getParameterList(batch.size()) + ") AND " +
+                        "P.REG_TENANT_ID=? AND R.REG_PATH_ID=P.REG_PATH_ID AND R.REG_NAME IS NULL AND " +
+                        "R.REG_TENANT_ID=?";
+
+                PreparedStatement ps = null;
+                ResultSet results = null;
+
+                try {
+                    ps = conn.prepareStatement(sql);
+                    int index = 1;
+
+                    for (String path : batch) {
+                        ps.setString(index++, path);
+                    }
+
+                    ps.setInt(index++, tenantId);
+                    ps.setInt(index, tenantId);
+
+                    results = ps.executeQuery();
+
+                    while (results.next()) {
+                        ResourceImpl collectionImpl = new CollectionImpl();
+                        collectionImpl.setPathID(results.getInt(DatabaseConstants.PATH_ID_FIELD));
+                        collectionImpl.setPath(results.getString(DatabaseConstants.PATH_VALUE_FIELD));
+                        collectionImpl.setName(null);
+                        fillResourceMetaData(collectionImpl, results);
+                        resources.put(collectionImpl.getPath(), collectionImpl);
+                    }
+                } finally {
+                    close(results, ps);
+                }
+            }
+
+            // step2: the remaining paths can only be resources, which are read by name under each
+            // parent collection.
+            Map<String, Map<String, String>> pathsByParent = new HashMap<String, Map<String, String>>();
+
+            for (String path : paths) {
+                if (resources.containsKey(path) || path.equals(RepositoryConstants.ROOT_PATH)) {
+                    continue;
+                }
+
+                String parentPath = RepositoryUtils.getParentPath(path);
+                Map<String, String> pathsByName = pathsByParent.get(parentPath);
+
+                if (pathsByName == null) {
+                    pathsByName = new HashMap<String, String>();
+                    pathsByParent.put(parentPath, pathsByName);
+                }
+
+                pathsByName.put(RepositoryUtils.getResourceName(path), path);
+            }
+
+            JDBCPathCache pathCache = JDBCPathCache.getPathCache();
+            Map<Integer, Map<String, ResourceImpl>> resourcesByParent = new HashMap<Integer, Map<String, ResourceImpl>>();
+
+            for (Map.Entry<String, Map<String, String>> entry : pathsByParent.entrySet()) {
+                int parentPathID = pathCache.getPathID(conn, entry.getKey());
+
+                if (parentPathID == -1) {
+                    continue;
+                }
+
+                Map<String, String> pathsByName = entry.getValue();
+                List<String> names = new ArrayList<String>(pathsByName.keySet());
+                Map<String, ResourceImpl> resourcesByName = new HashMap<String, ResourceImpl>();
+
+                for (int start = 0; start < names.size(); start += IN_LIST_BATCH_SIZE) {
+                    List<String> batch = names.subList(start, Math.min(names.size(), start + IN_LIST_BATCH_SIZE));
+                    String sql = "SELECT REG_NAME, REG_MEDIA_TYPE, REG_CREATOR, REG_CREATED_TIME, " +
+                            "REG_LAST_UPDATOR, REG_LAST_UPDATED_TIME, REG_VERSION, REG_DESCRIPTION, " +
+                            "REG_CONTENT_ID, REG_UUID FROM REG_RESOURCE WHERE REG_PATH_ID=? AND REG_NAME IN (" +
+                            getParameterList(batch.size()) + ") AND REG_TENANT_ID=?";
+
+                    PreparedStatement ps = null;
+                    ResultSet results = null;
+
+                    try {
+                        ps = conn.prepareStatement(sql);
+                        int index = 1;
+                        ps.setInt(index++, parentPathID);
+
+                        for (String name : batch) {
+                            ps.setString(index++, name);
+                        }
+
+                        ps.setInt(index, tenantId);
+
+                        results = ps.executeQuery();
+
+                        while (results.next()) {
+                            String name = results.getString(DatabaseConstants.NAME_FIELD);
+                            ResourceImpl resourceImpl = new ResourceImpl();
+                            resourceImpl.setPathID(parentPathID);
+                            resourceImpl.setPath(pathsByName.get(name));
+                            resourceImpl.setName(name);
+                            fillResourceMetaData(resourceImpl, results);
+                            resources.put(resourceImpl.getPath(), resourceImpl);
+                            resourcesByName.put(name, resourceImpl);
+                        }
+                    } finally {
+                        close(results, ps);
+                    }
+                }
+
+                if (!resourcesByName.isEmpty()) {
+                    resourcesByParent.put(parentPathID, resourcesByName);
+                }
+            }
+
+            // step3: the properties and the content.
+            List<ResourceImpl> resourceList = new ArrayList<ResourceImpl>(resources.values());
+            fillProperties(conn, resourceList, resourcesByParent);
+            fillContents(conn, resourceList);
+        } catch (SQLException e) {
+            String msg = "Failed to get " + paths.size() + " resources. " + e.getMessage();
+            log.error(msg, e);
+            throw new RepositoryDBException(msg, e);
+        }
+
+        if (tenantId != MultitenantConstants.INVALID_TENANT_ID &&
+                tenantId != MultitenantConstants.SUPER_TENANT_ID) {
+            // as done by fillResource, for each collection.
+            for (ResourceImpl resourceImpl : resources.values()) {
+                if (resourceImpl instanceof CollectionImpl) {
+                    fillChildren((CollectionImpl) resourceImpl, 0, -1, conn);
+                }
+            }
+        }
+
+        return resources;
+    }
+
+    // Fills the properties of the given current resources, with a query per batch of collections,
+    // and a query per batch of resources sharing a parent collection.
+    private void fillProperties(Connection conn, List<ResourceImpl> resources,
+                                Map<Integer, Map<String, ResourceImpl>> resourcesByParent)
+            throws SQLException, RepositoryException {
+        int tenantId = CurrentContext.getTenantId();
+
+        if (StaticConfiguration.isVersioningProperties()) {
+            Map<Long, ResourceImpl> resourcesByVersion = new HashMap<Long, ResourceImpl>();
+
+            for (ResourceImpl resourceImpl : resources) {
+                resourcesByVersion.put(resourceImpl.getVersionNumber(), resourceImpl);
+            }
+
+            List<Long> versions = new ArrayList<Long>(resourcesByVersion.keySet());
+
+            for (int start = 0; start < versions.size(); start += IN_LIST_BATCH_SIZE) {
+                List<Long> batch = versions.subList(start, Math.min(versions.size(), start + IN_LIST_BATCH_SIZE));
+                String sql = "SELECT RP.REG_VERSION, P.REG_NAME, P.REG_VALUE FROM REG_PROPERTY P, " +
+                        "REG_RESOURCE_PROPERTY RP WHERE P.REG_ID=RP.REG_PROPERTY_ID AND RP.REG_VERSION IN (" +
+                        getParameterList(batch.size()) + ") AND P.REG_TENANT_ID=? AND RP.REG_TENANT_ID=?";
+
+                PreparedStatement ps = null;
+                ResultSet results = null;
+
+                try {
+                    ps = conn.prepareStatement(sql);
+                    int index = 1;
+
+                    for (Long version : batch) {
+                        ps.setLong(index++, version);
+                    }
+
+                    ps.setInt(index++, tenantId);
+                    ps.setInt(index, tenantId);
+
+                    results = ps.executeQuery();
+
+                    while (results.next()) {
+                        resourcesByVersion.get(results.getLong(DatabaseConstants.VERSION_FIELD)).addPropertyWithNoUpdate(
+                                results.getString(DatabaseConstants.NAME_FIELD),
+                                results.getString(DatabaseConstants.VALUE_FIELD));
+                    }
+                } finally {
+                    close(results, ps);
+                }
+            }
+
+            return;
+        }
+
+        Map<Integer, ResourceImpl> collectionsByPathId = new HashMap<Integer, ResourceImpl>();
+
+        for (ResourceImpl resourceImpl : resources) {
+            if (resourceImpl instanceof CollectionImpl) {
+                collectionsByPathId.put(resourceImpl.getPathID(), resourceImpl);
+            }
+        }
+
+        List<Integer> pathIds = new ArrayList<Integer>(collectionsByPathId.keySet());
+
+        for (int start = 0; start < pathIds.size(); start += IN_LIST_BATCH_SIZE) {
+            List<Integer> batch = pathIds.subList(start, Math.min(pathIds.size(), start + IN_LIST_BATCH_SIZE));
+            String sql = "SELECT RP.REG_PATH_ID, P.REG_NAME, P.REG_VALUE FROM REG_PROPERTY P, " +
+                    "REG_RESOURCE_PROPERTY RP WHERE P.REG_ID=RP.REG_PROPERTY_ID AND RP.REG_PATH_ID IN (" +
+                    getParameterList(batch.size()) + ") AND RP.REG_RESOURCE_NAME IS NULL AND " +
+                    "P.REG_TENANT_ID=? AND RP.REG_TENANT_ID=?";
+
+            PreparedStatement ps = null;
+            ResultSet results = null;
+
+            try {
+                ps = conn.prepareStatement(sql);
+                int index = 1;
+
+                for (Integer pathId : batch) {
+                    ps.setInt(index++, pathId);
+                }
+
+                ps.setInt(index++, tenantId);
+                ps.setInt(index, tenantId);
+
+                results = ps.executeQuery();
+
+                while (results.next()) {
+                    collectionsByPathId.get(results.getInt(DatabaseConstants.PATH_ID_FIELD)).addPropertyWithNoUpdate(
+                            results.getString(DatabaseConstants.NAME_FIELD),
+                            results.getString(DatabaseConstants.VALUE_FIELD));
+                }
+            } finally {
+                close(results, ps);
+            }
+        }
+
+        for (Map.Entry<Integer, Map<String, ResourceImpl>> entry : resourcesByParent.entrySet()) {
+            Map<String, ResourceImpl> resourcesByName = entry.getValue();
+            List<String> names = new ArrayList<String>(resourcesByName.keySet());
+
+            for (int start = 0; start < names.size(); start += IN_LIST_BATCH_SIZE) {
+                List<String> batch = names.subList(start, Math.min(names.size(), start + IN_LIST_BATCH_SIZE));
+                String sql = "SELECT RP.REG_RESOURCE_NAME, P.REG_NAME, P.REG_VALUE FROM REG_PROPERTY P, " +
+                        "REG_RESOURCE_PROPERTY RP WHERE P.REG_ID=RP.REG_PROPERTY_ID AND RP.REG_PATH_ID=? " +
+                        "AND RP.REG_RESOURCE_NAME IN (" + getParameterList(batch.size()) + ") AND " +
+                        "P.REG_TENANT_ID=? AND RP.REG_TENANT_ID=?";
+
+                PreparedStatement ps = null;
+                ResultSet results = null;
+
+                try {
+                    ps = conn.prepareStatement(sql);
+                    int index = 1;
+                    ps.setInt(index++, entry.getKey());
+
+                    for (String name : batch) {
+                        ps.setString(index++, name);
+                    }
+
+                    ps.setInt(index++, tenantId);
+                    ps.setInt(index, tenantId);
+
+                    results = ps.executeQuery();
+
+                    while (results.next()) {
+                        resourcesByName.get(results.getString(DatabaseConstants.RESOURCE_NAME_FIELD)).addPropertyWithNoUpdate(
+                                results.getString(DatabaseConstants.NAME_FIELD),
+                                results.getString(DatabaseConstants.VALUE_FIELD));
+                    }
+                } finally {
+                    close(results, ps);
+                }
+            }
+        }
+    }
+
+    // Fills the content of the given non-collection resources, with a query per batch of content ids.
+    private void fillContents(Connection conn, List<ResourceImpl> resources)
+            throws SQLException, RepositoryException {
+        int tenantId = CurrentContext.getTenantId();
+        Map<Integer, List<ResourceImpl>> resourcesByContentId = new HashMap<Integer, List<ResourceImpl>>();
+
+        for (ResourceImpl resourceImpl : resources) {
+            if (!(resourceImpl instanceof CollectionImpl) && resourceImpl.getDbBasedContentID() > 0) {
+                addChild(resourcesByContentId, resourceImpl.getDbBasedContentID(), resourceImpl);
+            }
+        }
+
+        List<Integer> contentIds = new ArrayList<Integer>(resourcesByContentId.keySet());
+
+        for (int start = 0; start < contentIds.size(); start += IN_LIST_BATCH_SIZE) {
+            List<Integer> batch = contentIds.subList(start, Math.min(contentIds.size(), start + IN_LIST_BATCH_SIZE));
+            String sql = "SELECT REG_CONTENT_ID, REG_CONTENT_DATA FROM REG_CONTENT WHERE REG_CONTENT_ID IN (" +
+                    getParameterList(batch.size()) + ") AND REG_TENANT_ID=?";
+
+            PreparedStatement ps = null;
+            ResultSet results = null;
+            Set<Integer> filledContentIds = new HashSet<Integer>();
+
+            try {
+                ps = conn.prepareStatement(sql);
+                int index = 1;
+
+                for (Integer contentId : batch) {
+                    ps.setInt(index++, contentId);
+                }
+
+                ps.setInt(index, tenantId);
+
+                results = ps.executeQuery();
+
+                while (results.next()) {
+                    int contentId = results.getInt(DatabaseConstants.CONTENT_ID_FIELD);
+                    InputStream rawInputStream = results.getBinaryStream(DatabaseConstants.CONTENT_DATA_FIELD);
+
+                    if (rawInputStream == null) {
+                        continue;
+                    }
+
+                    // the content is read into memory once, and shared by the resources referring it.
+                    byte[] content = RepositoryUtils.getByteArray(
+                            FileContentStore.getContentStream(tenantId, rawInputStream, 0, -1));
+
+                    for (ResourceImpl resourceImpl : resourcesByContentId.get(contentId)) {
+                        resourceImpl.setContentStreamWithNoUpdate(new ByteArrayInputStream(content));
+                    }
+
+                    filledContentIds.add(contentId);
+                }
+            } finally {
+                close(results, ps);
+            }
+
+            for (Integer contentId : batch) {
+                if (!filledContentIds.contains(contentId)) {
+                    for (ResourceImpl resourceImpl : resourcesByContentId.get(contentId)) {
+                        resourceImpl.setContentWithNoUpdate(null);
+                    }
+                }
+            }
+        }
+    }
+
     public void fillResourcePropertiesWithNoUpdate(ResourceImpl resourceImpl) throws RepositoryException {
         JDBCDatabaseTransaction.ManagedRegistryConnection conn = JDBCDatabaseTransaction.getConnection();
         PreparedStatement ps = null;
@@ -548,6 +1315,10 @@ public class JDBCResourceDAO implements ResourceDAO {
     }
 
     public InputStream getContentStream(int contentID) throws RepositoryException {
+        return getContentStream(contentID, 0, -1);
+    }
+
+    public InputStream getContentStream(int contentID, long offset, long length) throws RepositoryException {
         JDBCDatabaseTransaction.ManagedRegistryConnection conn = JDBCDatabaseTransaction.getConnection();
         PreparedStatement ps = null;
         ResultSet result = null;
@@ -560,10 +1331,20 @@ public class JDBCResourceDAO implements ResourceDAO {
             result = ps.executeQuery();
             
             if (result.next()) {
+                // a whole content is streamed, while any range, including one from the start, is
+                // positioned by the database.
+                if (offset > 0 || length >= 0) {
+                    InputStream rangeStream = getContentRange(result, offset, length);
+                    if (rangeStream != null) {
+                        return rangeStream;
+                    }
+                }
+
                 InputStream rawInputStream =
                         result.getBinaryStream(DatabaseConstants.CONTENT_DATA_FIELD);
                 if (rawInputStream != null) {
-                    return RepositoryUtils.getMemoryStream(rawInputStream);
+                    return FileContentStore.getContentStream(CurrentContext.getTenantId(),
+                            rawInputStream, offset, length);
                 }
             }
         } catch (SQLException ex) {
@@ -589,6 +1370,50 @@ public class JDBCResourceDAO implements ResourceDAO {
         return null;
     }
 
+    // Reads a range of the content column as a blob, so that the database positions the read and
+    // the bytes before the offset are not transferred. Returns null if the driver can not read the
+    // column as a blob or the column holds a reference to a content store, in which case the
+    // range is read from the stream of the column.
+    private static InputStream getContentRange(ResultSet result, long offset, long length)
+            throws RepositoryException {
+        Blob blob;
+        long size;
+
+        try {
+            blob = result.getBlob(DatabaseConstants.CONTENT_DATA_FIELD);
+            if (blob == null) {
+                return null;
+            }
+
+            size = blob.length();
+            int headLength = (int) Math.min(size, FileContentStore.getReferenceMarkerLength());
+            if (FileContentStore.isReference(blob.getBytes(1, headLength))) {
+                return null;
+            }
+        } catch (SQLException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Unable to read the content as a blob, reading the range from the stream.", e);
+            }
+            return null;
+        }
+
+        long rangeLength = (length == -1 || length > size - offset) ? size - offset : length;
+
+        if (offset >= size || rangeLength <= 0) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        try {
+            return RepositoryUtils.getMemoryStream(blob.getBinaryStream(offset + 1, rangeLength));
+        } catch (SQLFeatureNotSupportedException e) {
+            return null;
+        } catch (SQLException e) {
+            String msg = "Failed to read the content range, offset: " + offset + ", length: " + length + ".";
+            log.error(msg, e);
+            throw new RepositoryDBException(msg, e);
+        }
+    }
+
     public void update(ResourceImpl resourceImpl) throws RepositoryException {
         // there is no difference of adding a resource and updating as it is always
         // a new entry to the resource table
@@ -1804,6 +2629,14 @@ public class JDBCResourceDAO implements ResourceDAO {
     }
 
     public void addContent(ResourceImpl resourceImpl) throws RepositoryException {
+        if (resourceImpl.getContent() instanceof InputStream && FileContentStore.getContentStore() != null) {
+            // the stream is copied into the content store as it is read, and cannot be read again.
+            int contentID = addContentBytes((InputStream) resourceImpl.getContent());
+            resourceImpl.setContentWithNoUpdate(null);
+            resourceImpl.setDbBasedContentID(contentID);
+            return;
+        }
+
         if (!(resourceImpl.getContent() instanceof byte[])) {
             if (log.isDebugEnabled()) {
                 String msg = "Content of the resource " + resourceImpl.getPath() + " is null or " +
@@ -1822,6 +2655,7 @@ public class JDBCResourceDAO implements ResourceDAO {
     public int addContentBytes(InputStream contentStream) throws RepositoryException {
         JDBCDatabaseTransaction.ManagedRegistryConnection conn = JDBCDatabaseTransaction.getConnection();
         int contentID = -1;
+        contentStream = FileContentStore.toStoredContent(CurrentContext.getTenantId(), contentStream, conn);
 
         try {
             String sql = "INSERT INTO REG_CONTENT (REG_CONTENT_DATA, REG_TENANT_ID) VALUES (?, ?)";
@@ -2108,6 +2942,190 @@ public class JDBCResourceDAO implements ResourceDAO {
         return childPathList;
     }
 
+    public Map<Integer, List<ResourceImpl>> getChildResourcesMetaData(List<ResourceIDImpl> collectionIDs)
+            throws RepositoryException {
+        JDBCDatabaseTransaction.ManagedRegistryConnection conn = JDBCDatabaseTransaction.getConnection();
+        Map<Integer, List<ResourceImpl>> resourcesByParent = new HashMap<Integer, List<ResourceImpl>>();
+        Map<Integer, List<ResourceImpl>> collectionsByParent = new HashMap<Integer, List<ResourceImpl>>();
+        Map<Integer, String> parentPaths = new HashMap<Integer, String>();
+
+        for (ResourceIDImpl collectionID : collectionIDs) {
+            parentPaths.put(collectionID.getPathID(), collectionID.getPath());
+        }
+
+        List<Integer> parentPathIds = new ArrayList<Integer>(parentPaths.keySet());
+
+        try {
+            for (int start = 0; start < parentPathIds.size(); start += IN_LIST_BATCH_SIZE) {
+                List<Integer> batch = parentPathIds.subList(start, Math.min(parentPathIds.size(), start + IN_LIST_BATCH_SIZE));
+
+                // step1: get the child resources.
+                String sql = "SELECT REG_PATH_ID, REG_NAME, REG_MEDIA_TYPE, REG_CREATOR, REG_CREATED_TIME, " +
+                        "REG_LAST_UPDATOR, REG_LAST_UPDATED_TIME, REG_VERSION, REG_DESCRIPTION, " +
+                        "REG_CONTENT_ID, REG_UUID FROM REG_RESOURCE WHERE REG_PATH_ID IN (" +
+                        getParameterList(batch.size()) + ") AND REG_NAME IS NOT NULL AND REG_TENANT_ID=?";
+
+                PreparedStatement ps = null;
+                ResultSet results = null;
+
+                try {
+                    ps = conn.prepareStatement(sql);
+                    int index = 1;
+
+                    for (Integer pathId : batch) {
+                        ps.setInt(index++, pathId);
+                    }
+
+                    ps.setInt(index, CurrentContext.getTenantId());
+
+                    results = ps.executeQuery();
+
+                    while (results.next()) {
+                        int parentPathId = results.getInt(DatabaseConstants.PATH_ID_FIELD);
+                        String childName = results.getString(DatabaseConstants.NAME_FIELD);
+                        String parentPath = parentPaths.get(parentPathId);
+                        String childPath = parentPath +
+                                (parentPath.equals(RepositoryConstants.PATH_SEPARATOR) ? "" :
+                                        RepositoryConstants.PATH_SEPARATOR) +
+                                childName;
+
+                        ResourceImpl resourceImpl = new ResourceImpl();
+                        resourceImpl.setPathID(parentPathId);
+                        resourceImpl.setPath(childPath);
+                        resourceImpl.setName(childName);
+                        fillResourceMetaData(resourceImpl, results);
+                        addChild(resourcesByParent, parentPathId, resourceImpl);
+                    }
+                } finally {
+                    try {
+                        try {
+                            if (results != null) {
+                                results.close();
+                            }
+                        } finally {
+                            if (ps != null) {
+                                ps.close();
+                            }
+                        }
+                    } catch (SQLException ex) {
+                        String msg = InternalConstants.RESULT_SET_PREPARED_STATEMENT_CLOSE_ERROR;
+                        log.error(msg, ex);
+                    }
+                }
+
+                // step2: get the child collections.
+                sql = "SELECT P.REG_PATH_PARENT_ID, P.REG_PATH_ID, P.REG_PATH_VALUE, R.REG_MEDIA_TYPE, " +
+                        "R.REG_CREATOR, R.REG_CREATED_TIME, R.REG_LAST_UPDATOR, R.REG_LAST_UPDATED_TIME, " +
+                        "R.REG_VERSION, R.REG_DESCRIPTION, R.REG_CONTENT_ID, R.REG_UUID " +
+                        "FROM REG_PATH P, REG_RESOURCE R WHERE P.REG_PATH_PARENT_ID IN (" +
+                        getParameterList(batch.size()) + ") AND P.REG_TENANT_ID=? AND " +
+                        "R.REG_PATH_ID=P.REG_PATH_ID AND R.REG_NAME IS NULL AND R.REG_TENANT_ID=?";
+
+                ps = null;
+                results = null;
+
+                try {
+                    ps = conn.prepareStatement(sql);
+                    int index = 1;
+
+                    for (Integer pathId : batch) {
+                        ps.setInt(index++, pathId);
+                    }
+
+                    ps.setInt(index++, CurrentContext.getTenantId());
+                    ps.setInt(index, CurrentContext.getTenantId());
+
+                    results = ps.executeQuery();
+
+                    while (results.next()) {
+                        int parentPathId = results.getInt(DatabaseConstants.PATH_PARENT_ID_FIELD);
+
+                        ResourceImpl collectionImpl = new CollectionImpl();
+                        collectionImpl.setPathID(results.getInt(DatabaseConstants.PATH_ID_FIELD));
+                        collectionImpl.setPath(results.getString(DatabaseConstants.PATH_VALUE_FIELD));
+                        collectionImpl.setName(null);
+                        fillResourceMetaData(collectionImpl, results);
+                        addChild(collectionsByParent, parentPathId, collectionImpl);
+                    }
+                } finally {
+                    try {
+                        try {
+                            if (results != null) {
+                                results.close();
+                            }
+                        } finally {
+                            if (ps != null) {
+                                ps.close();
+                            }
+                        }
+                    } catch (SQLException ex) {
+                        String msg = InternalConstants.RESULT_SET_PREPARED_STATEMENT_CLOSE_ERROR;
+                        log.error(msg, ex);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            String msg = "Failed to get the children of " + collectionIDs.size() + " collections. " + e.getMessage();
+            log.error(msg, e);
+            throw new RepositoryDBException(msg, e);
+        }
+
+        // the collections follow the resources of the same parent.
+        for (Map.Entry<Integer, List<ResourceImpl>> entry : collectionsByParent.entrySet()) {
+            List<ResourceImpl> children = resourcesByParent.get(entry.getKey());
+
+            if (children == null) {
+                resourcesByParent.put(entry.getKey(), entry.getValue());
+            } else {
+                children.addAll(entry.getValue());
+            }
+        }
+
+        return resourcesByParent;
+    }
+
+    // Fills the meta data columns common to the current resource queries.
+    private static void fillResourceMetaData(ResourceImpl resourceImpl, ResultSet result) throws SQLException {
+        resourceImpl.setMediaType(result.getString(DatabaseConstants.MEDIA_TYPE_FIELD));
+        resourceImpl.setAuthorUserName(result.getString(DatabaseConstants.CREATOR_FIELD));
+        resourceImpl.setCreatedTime(result.getTimestamp(DatabaseConstants.CREATED_TIME_FIELD));
+        resourceImpl.setLastUpdaterUserName(result.getString(DatabaseConstants.LAST_UPDATER_FIELD));
+        resourceImpl.setLastModified(result.getTimestamp(DatabaseConstants.LAST_UPDATED_TIME_FIELD));
+        resourceImpl.setVersionNumber(result.getInt(DatabaseConstants.VERSION_FIELD));
+        resourceImpl.setDescription(result.getString(DatabaseConstants.DESCRIPTION_FIELD));
+        resourceImpl.setDbBasedContentID(result.getInt(DatabaseConstants.CONTENT_ID_FIELD));
+        resourceImpl.setUUID(result.getString(DatabaseConstants.UUID_FIELD));
+    }
+
+    private static void close(ResultSet results, PreparedStatement ps) {
+        try {
+            try {
+                if (results != null) {
+                    results.close();
+                }
+            } finally {
+                if (ps != null) {
+                    ps.close();
+                }
+            }
+        } catch (SQLException ex) {
+            String msg = InternalConstants.RESULT_SET_PREPARED_STATEMENT_CLOSE_ERROR;
+            log.error(msg, ex);
+        }
+    }
+
+    private static void addChild(Map<Integer, List<ResourceImpl>> childrenByParent, int parentPathId,
+                                 ResourceImpl child) {
+        List<ResourceImpl> children = childrenByParent.get(parentPathId);
+
+        if (children == null) {
+            children = new ArrayList<ResourceImpl>();
+            childrenByParent.put(parentPathId, children);
+        }
+
+        children.add(child);
+    }
+
     public String getPathFromId(int pathId) throws RepositoryException {
         try {
             return JDBCPathCache.getPathCache().getPath(JDBCDatabaseTransaction.getConnection(), pathId);
@@ -45,6 +45,7 @@ import org.wso2.carbon.repository.core.ResourceImpl;
 import org.wso2.carbon.repository.core.Transaction;
 import org.wso2.carbon.repository.core.config.RepositoryContext;
 import org.wso2.carbon.repository.core.config.StaticConfiguration;
+import org.wso2.carbon.repository.core.content.FileContentStore;
 import org.wso2.carbon.repository.core.dataobjects.ResourceDO;
 import org.wso2.carbon.repository.core.exceptions.RepositoryConcurrentModificationException;
 import org.wso2.carbon.repository.core.exceptions.RepositoryDBException;
@@ -154,8 +155,8 @@ public class JDBCResourceVersionDAO implements ResourceVersionDAO {
             result1 = ps1.executeQuery();
             if (result1.next()) {
                 resourceImpl.setContentStreamWithNoUpdate(
-                        RepositoryUtils.getMemoryStream(
-                                result1.getBinaryStream(DatabaseConstants.CONTENT_DATA_FIELD)));
+                        FileContentStore.getContentStream(CurrentContext.getTenantId(),
+                                result1.getBinaryStream(DatabaseConstants.CONTENT_DATA_FIELD), 0, -1));
             }
         }
         catch (SQLException ex) {
@@ -1050,7 +1051,7 @@ public class JDBCResourceVersionDAO implements ResourceVersionDAO {
                 InputStream rawStream =
                         result.getBinaryStream(DatabaseConstants.CONTENT_DATA_FIELD);
                 if (rawStream != null) {
-                    return RepositoryUtils.getMemoryStream(rawStream);
+                    return FileContentStore.getContentStream(CurrentContext.getTenantId(), rawStream, 0, -1);
                 }
             }
         } catch (SQLException e) {
@@ -1160,6 +1161,88 @@ public class JDBCResourceVersionDAO implements ResourceVersionDAO {
         }
     }
 
+    public void versionResources(List<ResourceDO> resourceDOs, boolean keepProperties) throws RepositoryException {
+        List<Long> versions = new ArrayList<Long>(resourceDOs.size());
+        List<Integer> contentIds = new ArrayList<Integer>();
+
+        for (ResourceDO resourceDO : resourceDOs) {
+            versions.add(resourceDO.getVersion());
+
+            if (resourceDO.getName() != null && resourceDO.getContentID() > 0) {
+                contentIds.add(resourceDO.getContentID());
+            }
+        }
+
+        // the content streams are deleted last to avoid violation of foreign key constrains
+        executeUpdate("INSERT INTO REG_CONTENT_HISTORY (REG_CONTENT_ID, REG_CONTENT_DATA, REG_TENANT_ID) " +
+                "SELECT C.REG_CONTENT_ID, C.REG_CONTENT_DATA, C.REG_TENANT_ID FROM REG_CONTENT C " +
+                "WHERE C.REG_CONTENT_ID IN (", ") AND C.REG_TENANT_ID=? AND NOT EXISTS " +
+                "(SELECT H.REG_CONTENT_ID FROM REG_CONTENT_HISTORY H WHERE " +
+                "H.REG_CONTENT_ID=C.REG_CONTENT_ID AND H.REG_TENANT_ID=C.REG_TENANT_ID)", contentIds);
+
+        putResourcesToHistory(versions);
+
+        // remove the modified non-versioned resources
+        if (!StaticConfiguration.isVersioningProperties() && !keepProperties) {
+            for (ResourceDO resourceDO : resourceDOs) {
+                resourceDAO.removeProperties(resourceDO);
+            }
+        }
+
+        executeUpdate("DELETE FROM REG_RESOURCE WHERE REG_VERSION IN (", ") AND REG_TENANT_ID=?", versions);
+        executeUpdate("DELETE FROM REG_CONTENT WHERE REG_CONTENT_ID IN (", ") AND REG_TENANT_ID=?", contentIds);
+    }
+
+    public void putResourcesToHistory(List<Long> versions) throws RepositoryException {
+        executeUpdate("INSERT INTO REG_RESOURCE_HISTORY (REG_PATH_ID, REG_NAME, REG_VERSION, " +
+                "REG_MEDIA_TYPE, REG_CREATOR, REG_CREATED_TIME, REG_LAST_UPDATOR, " +
+                "REG_LAST_UPDATED_TIME, REG_DESCRIPTION, REG_CONTENT_ID, REG_TENANT_ID, REG_UUID) " +
+                "SELECT R.REG_PATH_ID, R.REG_NAME, R.REG_VERSION, R.REG_MEDIA_TYPE, R.REG_CREATOR, " +
+                "R.REG_CREATED_TIME, R.REG_LAST_UPDATOR, R.REG_LAST_UPDATED_TIME, R.REG_DESCRIPTION, " +
+                "R.REG_CONTENT_ID, R.REG_TENANT_ID, R.REG_UUID FROM REG_RESOURCE R " +
+                "WHERE R.REG_VERSION IN (", ") AND R.REG_TENANT_ID=? AND NOT EXISTS " +
+                "(SELECT H.REG_VERSION FROM REG_RESOURCE_HISTORY H WHERE " +
+                "H.REG_VERSION=R.REG_VERSION AND H.REG_TENANT_ID=R.REG_TENANT_ID)", versions);
+    }
+
+    // Runs an update with the ids bound to an IN list between the two parts of the statement, followed
+    // by the tenant id, once for each batch of ids.
+    private void executeUpdate(String sqlPrefix, String sqlSuffix, List<? extends Number> ids)
+            throws RepositoryException {
+        JDBCDatabaseTransaction.ManagedRegistryConnection conn = JDBCDatabaseTransaction.getConnection();
+
+        for (int start = 0; start < ids.size(); start += JDBCResourceDAO.IN_LIST_BATCH_SIZE) {
+            List<? extends Number> batch = ids.subList(start, Math.min(ids.size(), start + JDBCResourceDAO.IN_LIST_BATCH_SIZE));
+            String sql = sqlPrefix + JDBCResourceDAO.getParameterList(batch.size()) + sqlSuffix;
+            PreparedStatement ps = null;
+
+            try {
+                ps = conn.prepareStatement(sql);
+                int index = 1;
+
+                for (Number id : batch) {
+                    ps.setLong(index++, id.longValue());
+                }
+
+                ps.setInt(index, CurrentContext.getTenantId());
+                ps.executeUpdate();
+            } catch (SQLException ex) {
+                String msg = "Failed to version " + batch.size() + " resources. " + ex.getMessage();
+                log.error(msg, ex);
+                throw new RepositoryDBException(msg, ex);
+            } finally {
+                try {
+                    if (ps != null) {
+                        ps.close();
+                    }
+                } catch (SQLException ex) {
+                    String msg = InternalConstants.RESULT_SET_PREPARED_STATEMENT_CLOSE_ERROR;
+                    log.error(msg, ex);
+                }
+            }
+        }
+    }
+
     // Create a version of the resource content.
     private void versionContent(int contentID) throws RepositoryException {
         if (!isContentHistoryExist(contentID)) {
@@ -1173,6 +1256,7 @@ public class JDBCResourceVersionDAO implements ResourceVersionDAO {
             // copy the content to the content_history table
             JDBCDatabaseTransaction.ManagedRegistryConnection conn = JDBCDatabaseTransaction.getConnection();
             PreparedStatement ps = null;
+            contentStream = FileContentStore.toStoredContent(CurrentContext.getTenantId(), contentStream, conn);
             
             try {
                 String sql = "INSERT INTO REG_CONTENT_HISTORY (REG_CONTENT_ID, REG_CONTENT_DATA, REG_TENANT_ID) VALUES (?, ?, ?)";
@@ -0,0 +1,912 @@
+/*
+ *  Copyright (c) 2005-2009, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.wso2.carbon.repository.core.jdbc.dao;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.repository.core.caching.QueryResultCache;
+import org.wso2.carbon.repository.core.config.LogStorageConfiguration;
+import org.wso2.carbon.repository.core.config.RepositoryContext;
+import org.wso2.carbon.repository.core.jdbc.dataaccess.JDBCDataAccessManager;
+import org.wso2.carbon.repository.core.utils.LogCount;
+import org.wso2.carbon.repository.core.utils.LogRecord;
+
+/**
+ * Maintains the tables holding the audit logs according to the log storage configuration.
+ * <p/>
+ * When logs are partitioned, the logs of each partition period that has ended are moved from
+ * <code>REG_LOG</code> to a table of their own, which is created by this class, so that
+ * <code>REG_LOG</code> only holds the logs of the current period. Queries on logs read the
+ * partition tables whose period overlaps the queried dates together with <code>REG_LOG</code>.
+ * Logs older than the retention are removed, by dropping whole partition tables where possible.
+ * Logs are moved and removed an hour of logs at a time, each hour in its own transaction.
+ * <p/>
+ * When rollups are enabled, the number of logs per resource path, user and action are counted
+ * for each hour and day in <code>REG_LOG_ROLLUP</code> while the logs are written, so that
+ * activity summaries need not read the logs themselves. Each batch of logs adds rows of its own,
+ * which are summed when read, so that nodes writing logs at the same time never update the same
+ * rows. The rows of an hour or day are replaced by their sum once no more logs are expected for it.
+ * <p/>
+ * The maintenance is run by one node of a cluster at a time, which holds a lease on the row of
+ * <code>REG_LOG_MAINTENANCE</code> while it runs, and renews it as it goes. The clocks of the nodes
+ * are expected to differ by much less than {@link #LOCK_LEASE} milliseconds.
+ * <p/>
+ * Other nodes of a cluster learn about new partition tables within
+ * {@link #TABLE_REFRESH_INTERVAL} milliseconds, and may miss the logs of a period that was
+ * just moved until then.
+ */
+public class LogStorageManager {
+
+    private static final Log log = LogFactory.getLog(LogStorageManager.class);
+
+    /**
+     * The time after which the partition tables of a database are looked up again.
+     */
+    public static final long TABLE_REFRESH_INTERVAL = 60 * 1000;
+
+    /**
+     * The time for which a node holds the maintenance of the logs without renewing its lease.
+     */
+    public static final long LOCK_LEASE = 10 * 60 * 1000;
+
+    private static final String LOG_TABLE = "REG_LOG";
+
+    private static final String ROLLUP_TABLE = "REG_LOG_ROLLUP";
+
+    private static final String MAINTENANCE_TABLE = "REG_LOG_MAINTENANCE";
+
+    private static final int MAINTENANCE_ID = 1;
+
+    private static final String LOG_COLUMNS =
+            "REG_LOG_ID, REG_PATH, REG_USER_ID, REG_LOGGED_TIME, REG_ACTION, REG_ACTION_DATA, REG_TENANT_ID";
+
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private static final long DAY = 24 * HOUR;
+
+    // the time after the end of an hour or day after which no more logs are expected for it.
+    private static final long ROLLUP_SETTLE_TIME = DAY;
+
+    // the number of summed counts replaced in each transaction.
+    private static final int ROLLUP_COMPACTION_BATCH = 100;
+
+    private static final String PERIOD_HOUR = "H";
+
+    private static final String PERIOD_DAY = "D";
+
+    // the partition tables of each database, keyed by the URL of the database.
+    private static final Map<String, PartitionTables> partitionTables =
+            new ConcurrentHashMap<String, PartitionTables>();
+
+    // the URLs of the databases known to have the rollup table.
+    private static final Set<String> rollupDatabases =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    // the URLs of the databases known to have the maintenance table.
+    private static final Set<String> maintenanceDatabases =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private static final Set<DataSource> scheduledDataSources =
+            Collections.newSetFromMap(new ConcurrentHashMap<DataSource, Boolean>());
+
+    private static final ScheduledExecutorService executor =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "RegistryLogStorageManager");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    // The partition tables of a database, keyed by the start of their period.
+    private static class PartitionTables {
+
+        private final SortedMap<Date, String> tables;
+        private final long loadTime = System.currentTimeMillis();
+
+        private PartitionTables(SortedMap<Date, String> tables) {
+            this.tables = tables;
+        }
+    }
+
+    // The hour or day, dimension and value the logs are counted for.
+    private static class RollupKey {
+
+        private final int tenantId;
+        private final String period;
+        private final long periodStart;
+        private final String dimension;
+        private final String value;
+
+        private RollupKey(int tenantId, String period, long periodStart, String dimension, String value) {
+            this.tenantId = tenantId;
+            this.period = period;
+            this.periodStart = periodStart;
+            this.dimension = dimension;
+            this.value = value;
+        }
+
+        public boolean equals(Object other) {
+            if (!(other instanceof RollupKey)) {
+                return false;
+            }
+
+            RollupKey key = (RollupKey) other;
+            return tenantId == key.tenantId && periodStart == key.periodStart && period.equals(key.period) &&
+                    dimension.equals(key.dimension) && value.equals(key.value);
+        }
+
+        public int hashCode() {
+            int hash = tenantId;
+            hash = hash * 31 + (int) (periodStart ^ (periodStart >>> 32));
+            hash = hash * 31 + period.hashCode();
+            hash = hash * 31 + dimension.hashCode();
+            return hash * 31 + value.hashCode();
+        }
+    }
+
+    /**
+     * Method to schedule the periodic partitioning, retention and rollup compaction of the logs in the database of
+     * the given repository, if enabled in the repository configuration. A database that is already
+     * scheduled is not scheduled again.
+     *
+     * @param repositoryContext the repository context holding the configuration and data source.
+     */
+    public static void schedule(final RepositoryContext repositoryContext) {
+        if (repositoryContext == null || !(repositoryContext.getDataAccessManager() instanceof JDBCDataAccessManager)) {
+            return;
+        }
+
+        final LogStorageConfiguration configuration = repositoryContext.getLogStorageConfiguration();
+
+        if (configuration == null || (!configuration.isPartitioned() && configuration.getRetention() < 0 &&
+                !configuration.isRollupsEnabled())) {
+            return;
+        }
+
+        final DataSource dataSource =
+                ((JDBCDataAccessManager) repositoryContext.getDataAccessManager()).getDataSource();
+
+        if (!scheduledDataSources.add(dataSource)) {
+            return;
+        }
+
+        executor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                maintain(dataSource, configuration);
+            }
+        }, 0, configuration.getInterval(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * Method to obtain the table, or the union of tables, to read the logs between the given dates
+     * from. This is <code>REG_LOG</code> together with the partition tables whose period overlaps
+     * the dates.
+     *
+     * @param conn          the connection used to read the logs.
+     * @param configuration the log storage configuration.
+     * @param from          the starting date, or null.
+     * @param to            the ending date, or null.
+     *
+     * @return the table name, or a derived table named <code>REG_LOG</code>.
+     * @throws SQLException if an error occurred while looking up the partition tables.
+     */
+    public static String getLogSource(Connection conn, LogStorageConfiguration configuration, Date from, Date to)
+            throws SQLException {
+        if (configuration == null || !configuration.isPartitioned()) {
+            return LOG_TABLE;
+        }
+
+        StringBuilder source = null;
+
+        for (Map.Entry<Date, String> partition : getPartitionTables(conn, configuration).entrySet()) {
+            Date start = partition.getKey();
+            Date end = configuration.getPartitionEnd(start);
+
+            if ((from != null && !end.after(from)) || (to != null && !start.before(to))) {
+                continue;
+            }
+
+            if (source == null) {
+                source = new StringBuilder("(SELECT ").append(LOG_COLUMNS).append(" FROM ").append(LOG_TABLE);
+            }
+            source.append(" UNION ALL SELECT ").append(LOG_COLUMNS).append(" FROM ").append(partition.getValue());
+        }
+
+        return (source == null) ? LOG_TABLE : source.append(") ").append(LOG_TABLE).toString();
+    }
+
+    /**
+     * Method to create the rollup table if the database does not have it yet. This should be
+     * called outside of a transaction, since some databases commit on creating tables.
+     *
+     * @param conn the connection to the database.
+     *
+     * @throws SQLException if an error occurred while creating the table.
+     */
+    public static void createRollupTable(Connection conn) throws SQLException {
+        String url = conn.getMetaData().getURL();
+
+        if (rollupDatabases.contains(url)) {
+            return;
+        }
+
+        if (!tableExists(conn, ROLLUP_TABLE)) {
+            try {
+                executeUpdate(conn, "CREATE TABLE " + ROLLUP_TABLE + " (REG_PERIOD CHAR(1) NOT NULL, " +
+                        "REG_PERIOD_START " + getTimestampType(conn) + " NOT NULL, REG_DIMENSION CHAR(1) NOT NULL, " +
+                        "REG_VALUE " + getVarcharType(conn) + "(2000) NOT NULL, REG_COUNT INTEGER NOT NULL, " +
+                        "REG_TENANT_ID INTEGER NOT NULL)");
+                executeUpdate(conn, "CREATE INDEX REG_LOG_ROLLUP_IND ON " + ROLLUP_TABLE +
+                        " (REG_TENANT_ID, REG_PERIOD, REG_DIMENSION, REG_PERIOD_START)");
+            } catch (SQLException e) {
+                // another node may have created the table in the meantime.
+                if (!tableExists(conn, ROLLUP_TABLE)) {
+                    throw e;
+                }
+            }
+        }
+
+        rollupDatabases.add(url);
+    }
+
+    /**
+     * Method to add the given logs to the hourly and daily counts per resource path, user and
+     * action. The counts of the logs are inserted as rows of their own, to be summed with the
+     * other rows of the same hour or day when read, in the transaction of the connection.
+     *
+     * @param conn       the connection to the database.
+     * @param logRecords the logs written.
+     *
+     * @throws SQLException if an error occurred while adding the counts.
+     */
+    public static void updateRollups(Connection conn, LogRecord[] logRecords) throws SQLException {
+        Map<RollupKey, Integer> counts = new LinkedHashMap<RollupKey, Integer>();
+
+        for (LogRecord logRecord : logRecords) {
+            long hour = LogStorageConfiguration.getHourStart(logRecord.getTimestamp()).getTime();
+            long day = LogStorageConfiguration.getDayStart(logRecord.getTimestamp()).getTime();
+            String[][] dimensions = {
+                    {LogCount.BY_PATH, logRecord.getResourcePath()},
+                    {LogCount.BY_USER, logRecord.getUserName()},
+                    {LogCount.BY_ACTION, Integer.toString(logRecord.getAction())}};
+
+            for (String[] dimension : dimensions) {
+                if (dimension[1] == null || dimension[1].length() == 0) {
+                    continue;
+                }
+                addCount(counts, new RollupKey(logRecord.getTenantId(), PERIOD_HOUR, hour, dimension[0], dimension[1]));
+                addCount(counts, new RollupKey(logRecord.getTenantId(), PERIOD_DAY, day, dimension[0], dimension[1]));
+            }
+        }
+
+        // rows are only ever inserted, as an update could match the rows inserted by another node.
+        insertRollups(conn, counts);
+    }
+
+    /**
+     * Method to obtain the period of the hourly or daily counts.
+     *
+     * @param hourly whether the hourly or daily counts are read.
+     *
+     * @return the period stored in the <code>REG_PERIOD</code> column of the counts.
+     */
+    public static String getRollupPeriod(boolean hourly) {
+        return hourly ? PERIOD_HOUR : PERIOD_DAY;
+    }
+
+    private static void addCount(Map<RollupKey, Integer> counts, RollupKey key) {
+        Integer count = counts.get(key);
+        counts.put(key, (count == null) ? 1 : count + 1);
+    }
+
+    private static void insertRollups(Connection conn, Map<RollupKey, Integer> counts) throws SQLException {
+        if (counts.isEmpty()) {
+            return;
+        }
+
+        PreparedStatement insert = conn.prepareStatement("INSERT INTO " + ROLLUP_TABLE + " (REG_PERIOD, " +
+                "REG_PERIOD_START, REG_DIMENSION, REG_VALUE, REG_COUNT, REG_TENANT_ID) VALUES (?, ?, ?, ?, ?, ?)");
+
+        try {
+            for (Map.Entry<RollupKey, Integer> count : counts.entrySet()) {
+                RollupKey key = count.getKey();
+                insert.setString(1, key.period);
+                insert.setTimestamp(2, new Timestamp(key.periodStart));
+                insert.setString(3, key.dimension);
+                insert.setString(4, key.value);
+                insert.setInt(5, count.getValue());
+                insert.setInt(6, key.tenantId);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        } finally {
+            insert.close();
+        }
+    }
+
+    /**
+     * Method to remove the expired logs, and to move the logs of the partition periods that have
+     * ended to their partition tables, once. This is what the scheduled maintenance runs.
+     *
+     * @param dataSource    the data source of the database holding the logs.
+     * @param configuration the log storage configuration.
+     */
+    public static void maintain(DataSource dataSource, LogStorageConfiguration configuration) {
+        long startTime = System.currentTimeMillis();
+        long removed = 0;
+        long moved = 0;
+        long compacted = 0;
+
+        try {
+            Connection conn = dataSource.getConnection();
+
+            try {
+                Date now = new Date(startTime);
+                String owner = UUID.randomUUID().toString();
+
+                if (!acquireLock(conn, owner)) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("The logs are being maintained by another node.");
+                    }
+                    return;
+                }
+
+                try {
+                    invalidateCachedResults();
+
+                    if (configuration.getRetention() > 0) {
+                        Date cutoff = new Date(now.getTime() - configuration.getRetention());
+                        removed = removeLogs(conn, configuration, cutoff, owner);
+                    }
+
+                    if (configuration.isPartitioned()) {
+                        moved = moveLogs(conn, configuration, configuration.getPartitionStart(now), owner);
+                    }
+
+                    if (configuration.isRollupsEnabled()) {
+                        compacted = compactRollups(conn, now, owner);
+                    }
+                } finally {
+                    releaseLock(conn, owner);
+                }
+            } finally {
+                try {
+                    if (!conn.getAutoCommit()) {
+                        // the hours completed so far are kept.
+                        conn.rollback();
+                        conn.setAutoCommit(true);
+                    }
+                    conn.close();
+                } catch (SQLException e) {
+                    log.error("Failed to close the database connection used in log partitioning.", e);
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Failed to partition the logs.", e);
+        } catch (RuntimeException e) {
+            log.error("Failed to partition the logs.", e);
+        }
+
+        if ((removed > 0 || moved > 0 || compacted > 0) && log.isInfoEnabled()) {
+            log.info("Moved " + moved + " logs to partition tables, removed " + removed +
+                    " expired logs and summed " + compacted + " log counts in " +
+                    (System.currentTimeMillis() - startTime) + " ms.");
+        }
+    }
+
+    // removes the logs, partition tables and hourly counts older than the cutoff.
+    private static long removeLogs(Connection conn, LogStorageConfiguration configuration, Date cutoff,
+                                   String owner) throws SQLException {
+        conn.setAutoCommit(true);
+
+        for (Map.Entry<Date, String> partition : getPartitionTables(conn, configuration).entrySet()) {
+            if (!configuration.getPartitionEnd(partition.getKey()).after(cutoff)) {
+                renewLock(conn, owner);
+                executeUpdate(conn, "DROP TABLE " + partition.getValue());
+                partitionTables.remove(conn.getMetaData().getURL());
+            }
+        }
+
+        if (tableExists(conn, ROLLUP_TABLE)) {
+            PreparedStatement s = conn.prepareStatement("DELETE FROM " + ROLLUP_TABLE +
+                    " WHERE REG_PERIOD=? AND REG_PERIOD_START<?");
+            try {
+                s.setString(1, PERIOD_HOUR);
+                s.setTimestamp(2, new Timestamp(cutoff.getTime()));
+                s.executeUpdate();
+            } finally {
+                s.close();
+            }
+            invalidateCachedResults();
+        }
+
+        // the remaining expired logs, which are in REG_LOG, or in the partition tables of the
+        // period holding the cutoff.
+        long removed = 0;
+        String partition = configuration.isPartitioned() ?
+                getPartitionTables(conn, configuration).get(configuration.getPartitionStart(cutoff)) : null;
+
+        for (String table : new String[] {LOG_TABLE, partition}) {
+            if (table == null) {
+                continue;
+            }
+
+            Timestamp first;
+            conn.setAutoCommit(false);
+
+            while ((first = getFirstLoggedTime(conn, table, cutoff)) != null) {
+                renewLock(conn, owner);
+                Timestamp end = new Timestamp(Math.min(
+                        LogStorageConfiguration.getHourStart(first).getTime() + HOUR, cutoff.getTime()));
+                removed += deleteLogs(conn, table, end);
+                commit(conn);
+            }
+
+            conn.setAutoCommit(true);
+        }
+
+        return removed;
+    }
+
+    // moves the logs before the given time from REG_LOG to the partition tables of their period.
+    private static long moveLogs(Connection conn, LogStorageConfiguration configuration, Date before,
+                                 String owner) throws SQLException {
+        long moved = 0;
+        Timestamp first;
+
+        while ((first = getFirstLoggedTime(conn, LOG_TABLE, before)) != null) {
+            renewLock(conn, owner);
+            Date partitionStart = configuration.getPartitionStart(first);
+            String table = configuration.getPartitionTable(partitionStart);
+
+            if (!getPartitionTables(conn, configuration).containsKey(partitionStart)) {
+                conn.setAutoCommit(true);
+                createPartitionTable(conn, table);
+                partitionTables.remove(conn.getMetaData().getURL());
+            }
+
+            Timestamp start = new Timestamp(LogStorageConfiguration.getHourStart(first).getTime());
+            Timestamp end = new Timestamp(Math.min(start.getTime() + HOUR, before.getTime()));
+            conn.setAutoCommit(false);
+
+            // the lease is checked again in the transaction of the move, so that no other node
+            // copies the same logs before they are deleted.
+            renewLock(conn, owner);
+
+            PreparedStatement s = conn.prepareStatement("INSERT INTO " + table + " (" + LOG_COLUMNS + ") SELECT " +
+                    LOG_COLUMNS + " FROM " + LOG_TABLE + " WHERE REG_LOGGED_TIME<?");
+            try {
+                s.setTimestamp(1, end);
+                s.executeUpdate();
+            } finally {
+                s.close();
+            }
+
+            moved += deleteLogs(conn, LOG_TABLE, end);
+            commit(conn);
+        }
+
+        conn.setAutoCommit(true);
+        return moved;
+    }
+
+    // replaces the rows counting the logs of each hour and day that has settled, since the last
+    // run, by their sum.
+    private static long compactRollups(Connection conn, Date now, String owner) throws SQLException {
+        if (!tableExists(conn, ROLLUP_TABLE)) {
+            return 0;
+        }
+
+        Timestamp compacted = getRollupsCompacted(conn);
+        Timestamp settled = new Timestamp(now.getTime() - ROLLUP_SETTLE_TIME);
+        long count = 0;
+
+        for (String period : new String[] {PERIOD_HOUR, PERIOD_DAY}) {
+            long length = PERIOD_HOUR.equals(period) ? HOUR : DAY;
+            Timestamp from = (compacted != null) ? new Timestamp(compacted.getTime() - length) : null;
+            Timestamp to = new Timestamp(settled.getTime() - length);
+
+            List<Map.Entry<RollupKey, Integer>> sums =
+                    new ArrayList<Map.Entry<RollupKey, Integer>>(getSplitRollups(conn, period, from, to).entrySet());
+
+            for (int i = 0; i < sums.size(); i += ROLLUP_COMPACTION_BATCH) {
+                List<Map.Entry<RollupKey, Integer>> batch =
+                        sums.subList(i, Math.min(sums.size(), i + ROLLUP_COMPACTION_BATCH));
+                Map<RollupKey, Integer> counts = new LinkedHashMap<RollupKey, Integer>();
+                conn.setAutoCommit(false);
+                renewLock(conn, owner);
+
+                PreparedStatement s = conn.prepareStatement("DELETE FROM " + ROLLUP_TABLE + " WHERE REG_TENANT_ID=? " +
+                        "AND REG_PERIOD=? AND REG_DIMENSION=? AND REG_PERIOD_START=? AND REG_VALUE=?");
+                try {
+                    for (Map.Entry<RollupKey, Integer> sum : batch) {
+                        RollupKey key = sum.getKey();
+                        s.setInt(1, key.tenantId);
+                        s.setString(2, key.period);
+                        s.setString(3, key.dimension);
+                        s.setTimestamp(4, new Timestamp(key.periodStart));
+                        s.setString(5, key.value);
+                        s.executeUpdate();
+                        counts.put(key, sum.getValue());
+                    }
+                } finally {
+                    s.close();
+                }
+
+                insertRollups(conn, counts);
+                commit(conn);
+                count += counts.size();
+            }
+        }
+
+        conn.setAutoCommit(false);
+        renewLock(conn, owner);
+        PreparedStatement s = conn.prepareStatement("UPDATE " + MAINTENANCE_TABLE +
+                " SET REG_ROLLUPS_COMPACTED=? WHERE REG_ID=?");
+        try {
+            s.setTimestamp(1, settled);
+            s.setInt(2, MAINTENANCE_ID);
+            s.executeUpdate();
+        } finally {
+            s.close();
+        }
+        commit(conn);
+        conn.setAutoCommit(true);
+
+        return count;
+    }
+
+    // returns the sums of the counts of the given period that are held in more than one row.
+    private static Map<RollupKey, Integer> getSplitRollups(Connection conn, String period, Timestamp from,
+                                                           Timestamp to) throws SQLException {
+        PreparedStatement s = conn.prepareStatement("SELECT REG_TENANT_ID, REG_DIMENSION, REG_PERIOD_START, " +
+                "REG_VALUE, SUM(REG_COUNT) AS REG_LOG_COUNT FROM " + ROLLUP_TABLE + " WHERE REG_PERIOD=? " +
+                ((from != null) ? "AND REG_PERIOD_START>=? " : "") + "AND REG_PERIOD_START<? " +
+                "GROUP BY REG_TENANT_ID, REG_DIMENSION, REG_PERIOD_START, REG_VALUE HAVING COUNT(*)>1");
+        ResultSet results = null;
+
+        try {
+            int paramNumber = 1;
+            s.setString(paramNumber++, period);
+            if (from != null) {
+                s.setTimestamp(paramNumber++, from);
+            }
+            s.setTimestamp(paramNumber, to);
+            results = s.executeQuery();
+
+            Map<RollupKey, Integer> sums = new LinkedHashMap<RollupKey, Integer>();
+            while (results.next()) {
+                sums.put(new RollupKey(results.getInt("REG_TENANT_ID"), period,
+                        results.getTimestamp("REG_PERIOD_START").getTime(), results.getString("REG_DIMENSION"),
+                        results.getString("REG_VALUE")), results.getInt("REG_LOG_COUNT"));
+            }
+            return sums;
+        } finally {
+            try {
+                if (results != null) {
+                    results.close();
+                }
+            } finally {
+                s.close();
+            }
+        }
+    }
+
+    private static Timestamp getRollupsCompacted(Connection conn) throws SQLException {
+        PreparedStatement s = conn.prepareStatement("SELECT REG_ROLLUPS_COMPACTED FROM " + MAINTENANCE_TABLE +
+                " WHERE REG_ID=?");
+        ResultSet results = null;
+
+        try {
+            s.setInt(1, MAINTENANCE_ID);
+            results = s.executeQuery();
+            return results.next() ? results.getTimestamp(1) : null;
+        } finally {
+            try {
+                if (results != null) {
+                    results.close();
+                }
+            } finally {
+                s.close();
+            }
+        }
+    }
+
+    // commits the work, and drops the query results that may have been read before the commit.
+    private static void commit(Connection conn) throws SQLException {
+        conn.commit();
+        invalidateCachedResults();
+    }
+
+    // the logs of all the tenants are maintained on a connection that is not managed by the
+    // repository, so its writes are reported to the cache.
+    private static void invalidateCachedResults() {
+        QueryResultCache.getQueryResultCache().tableWritten(LOG_TABLE);
+        QueryResultCache.getQueryResultCache().tableWritten(ROLLUP_TABLE);
+    }
+
+    // takes the lease on the maintenance of the logs if no other node holds it.
+    private static boolean acquireLock(Connection conn, String owner) throws SQLException {
+        createMaintenanceTable(conn);
+        conn.setAutoCommit(true);
+
+        PreparedStatement s = conn.prepareStatement("UPDATE " + MAINTENANCE_TABLE + " SET REG_OWNER=?, " +
+                "REG_LOCKED_UNTIL=? WHERE REG_ID=? AND REG_LOCKED_UNTIL<?");
+        try {
+            long now = System.currentTimeMillis();
+            s.setString(1, owner);
+            s.setTimestamp(2, new Timestamp(now + LOCK_LEASE));
+            s.setInt(3, MAINTENANCE_ID);
+            s.setTimestamp(4, new Timestamp(now));
+            return s.executeUpdate() > 0;
+        } finally {
+            s.close();
+        }
+    }
+
+    // extends the lease, failing if it was lost to another node.
+    private static void renewLock(Connection conn, String owner) throws SQLException {
+        PreparedStatement s = conn.prepareStatement("UPDATE " + MAINTENANCE_TABLE + " SET REG_LOCKED_UNTIL=? " +
+                "WHERE REG_ID=? AND REG_OWNER=?");
+        try {
+            s.setTimestamp(1, new Timestamp(System.currentTimeMillis() + LOCK_LEASE));
+            s.setInt(2, MAINTENANCE_ID);
+            s.setString(3, owner);
+
+            if (s.executeUpdate() == 0) {
+                throw new SQLException("The maintenance of the logs was taken over by another node.");
+            }
+        } finally {
+            s.close();
+        }
+    }
+
+    // gives up the lease, after rolling back any work left uncommitted.
+    private static void releaseLock(Connection conn, String owner) {
+        try {
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+
+            PreparedStatement s = conn.prepareStatement("UPDATE " + MAINTENANCE_TABLE + " SET REG_LOCKED_UNTIL=? " +
+                    "WHERE REG_ID=? AND REG_OWNER=?");
+            try {
+                s.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+                s.setInt(2, MAINTENANCE_ID);
+                s.setString(3, owner);
+                s.executeUpdate();
+            } finally {
+                s.close();
+            }
+        } catch (SQLException e) {
+            // the lease expires in time.
+            log.error("Failed to release the lock on the maintenance of the logs.", e);
+        }
+    }
+
+    private static void createMaintenanceTable(Connection conn) throws SQLException {
+        String url = conn.getMetaData().getURL();
+
+        if (maintenanceDatabases.contains(url)) {
+            return;
+        }
+
+        conn.setAutoCommit(true);
+
+        if (!tableExists(conn, MAINTENANCE_TABLE)) {
+            try {
+                String timestamp = getTimestampType(conn);
+                executeUpdate(conn, "CREATE TABLE " + MAINTENANCE_TABLE + " (REG_ID INTEGER NOT NULL, REG_OWNER " +
+                        getVarcharType(conn) + "(36), REG_LOCKED_UNTIL " + timestamp + " NOT NULL, " +
+                        "REG_ROLLUPS_COMPACTED " + timestamp + " NULL, PRIMARY KEY (REG_ID))");
+            } catch (SQLException e) {
+                // another node may have created the table in the meantime.
+                if (!tableExists(conn, MAINTENANCE_TABLE)) {
+                    throw e;
+                }
+            }
+        }
+
+        if (getLockRowCount(conn) == 0) {
+            PreparedStatement s = conn.prepareStatement("INSERT INTO " + MAINTENANCE_TABLE +
+                    " (REG_ID, REG_LOCKED_UNTIL) VALUES (?, ?)");
+            try {
+                s.setInt(1, MAINTENANCE_ID);
+                s.setTimestamp(2, new Timestamp(DAY));
+                s.executeUpdate();
+            } catch (SQLException e) {
+                // another node may have added the row in the meantime.
+                if (getLockRowCount(conn) == 0) {
+                    throw e;
+                }
+            } finally {
+                s.close();
+            }
+        }
+
+        maintenanceDatabases.add(url);
+    }
+
+    private static int getLockRowCount(Connection conn) throws SQLException {
+        PreparedStatement s = conn.prepareStatement("SELECT COUNT(*) FROM " + MAINTENANCE_TABLE + " WHERE REG_ID=?");
+        ResultSet results = null;
+
+        try {
+            s.setInt(1, MAINTENANCE_ID);
+            results = s.executeQuery();
+            return results.next() ? results.getInt(1) : 0;
+        } finally {
+            try {
+                if (results != null) {
+                    results.close();
+                }
+            } finally {
+                s.close();
+            }
+        }
+    }
+
+    private static Timestamp getFirstLoggedTime(Connection conn, String table, Date before) throws SQLException {
+        PreparedStatement s = conn.prepareStatement("SELECT MIN(REG_LOGGED_TIME) FROM " + table +
+                " WHERE REG_LOGGED_TIME<?");
+        ResultSet results = null;
+
+        try {
+            s.setTimestamp(1, new Timestamp(before.getTime()));
+            results = s.executeQuery();
+            return results.next() ? results.getTimestamp(1) : null;
+        } finally {
+            try {
+                if (results != null) {
+                    results.close();
+                }
+            } finally {
+                s.close();
+            }
+        }
+    }
+
+    private static int deleteLogs(Connection conn, String table, Timestamp before) throws SQLException {
+        PreparedStatement s = conn.prepareStatement("DELETE FROM " + table + " WHERE REG_LOGGED_TIME<?");
+
+        try {
+            s.setTimestamp(1, before);
+            return s.executeUpdate();
+        } finally {
+            s.close();
+        }
+    }
+
+    private static void createPartitionTable(Connection conn, String table) throws SQLException {
+        try {
+            String varchar = getVarcharType(conn);
+            executeUpdate(conn, "CREATE TABLE " + table + " (REG_LOG_ID INTEGER NOT NULL, REG_PATH " + varchar +
+                    "(2000), REG_USER_ID " + varchar + "(31) NOT NULL, REG_LOGGED_TIME " + getTimestampType(conn) +
+                    " NOT NULL, REG_ACTION INTEGER NOT NULL, REG_ACTION_DATA " + varchar + "(500), " +
+                    "REG_TENANT_ID INTEGER DEFAULT 0)");
+            executeUpdate(conn, "CREATE INDEX " + table + "_IND ON " + table +
+                    " (REG_TENANT_ID, REG_LOGGED_TIME, REG_LOG_ID)");
+        } catch (SQLException e) {
+            // another node may have created the table in the meantime.
+            if (!tableExists(conn, table)) {
+                throw e;
+            }
+        }
+    }
+
+    private static SortedMap<Date, String> getPartitionTables(Connection conn, LogStorageConfiguration configuration)
+            throws SQLException {
+        String url = conn.getMetaData().getURL();
+        PartitionTables tables = partitionTables.get(url);
+
+        if (tables != null && System.currentTimeMillis() - tables.loadTime < TABLE_REFRESH_INTERVAL) {
+            return tables.tables;
+        }
+
+        SortedMap<Date, String> tableMap = new TreeMap<Date, String>();
+        ResultSet results = getTables(conn, LogStorageConfiguration.PARTITION_TABLE_PREFIX + "%");
+
+        try {
+            while (results.next()) {
+                String table = results.getString("TABLE_NAME");
+                Date partitionStart = configuration.parsePartitionTable(table);
+
+                if (partitionStart != null) {
+                    tableMap.put(partitionStart, table);
+                }
+            }
+        } finally {
+            results.close();
+        }
+
+        partitionTables.put(url, new PartitionTables(Collections.unmodifiableSortedMap(tableMap)));
+        return tableMap;
+    }
+
+    private static boolean tableExists(Connection conn, String table) throws SQLException {
+        ResultSet results = getTables(conn, table);
+
+        try {
+            while (results.next()) {
+                if (table.equalsIgnoreCase(results.getString("TABLE_NAME"))) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            results.close();
+        }
+    }
+
+    private static ResultSet getTables(Connection conn, String pattern) throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+
+        if (metaData.storesLowerCaseIdentifiers()) {
+            pattern = pattern.toLowerCase();
+        }
+        return metaData.getTables(null, null, pattern, new String[] {"TABLE"});
+    }
+
+    private static void executeUpdate(Connection conn, String sql) throws SQLException {
+        Statement s = conn.createStatement();
+
+        try {
+            s.executeUpdate(sql);
+        } finally {
+            s.close();
+        }
+    }
+
+    private static String getTimestampType(Connection conn) throws SQLException {
+        // TIMESTAMP is a row version rather than a date on SQL Server.
+        return conn.getMetaData().getDatabaseProductName().contains("Microsoft") ? "DATETIME" : "TIMESTAMP";
+    }
+
+    private static String getVarcharType(Connection conn) throws SQLException {
+        return conn.getMetaData().getDatabaseProductName().equals("Oracle") ? "VARCHAR2" : "VARCHAR";
+    }
+}
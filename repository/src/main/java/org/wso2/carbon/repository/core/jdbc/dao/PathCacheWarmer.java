@@ -0,0 +1,351 @@
+/*
+ *  Copyright (c) 2005-2009, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.wso2.carbon.repository.core.jdbc.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.repository.api.RepositoryConstants;
+import org.wso2.carbon.repository.core.DatabaseConstants;
+import org.wso2.carbon.repository.core.caching.PathTree;
+import org.wso2.carbon.repository.core.config.RepositoryContext;
+import org.wso2.carbon.repository.core.jdbc.dataaccess.JDBCDataAccessManager;
+import org.wso2.carbon.repository.core.utils.InternalConstants;
+import org.wso2.carbon.repository.core.utils.InternalUtils;
+
+/**
+ * Pre-loads the {@link PathTree} of a tenant by streaming the <code>REG_PATH</code> table in the
+ * background. The tree is the first level consulted by {@link JDBCPathCache}, so a warm tree
+ * saves one database round-trip per path segment on the first accesses after start-up or tenant
+ * load.
+ * <p/>
+ * Warm-up only adds entries. Lookups that arrive before it completes miss the tree and take the
+ * usual cache and database route, and since <code>REG_PATH</code> rows are never updated, entries
+ * loaded here can never conflict with entries added by those lookups.
+ */
+public class PathCacheWarmer {
+
+    private static final Log log = LogFactory.getLog(PathCacheWarmer.class);
+
+    // not a backslash, which some databases treat as an escape within string literals too.
+    private static final char LIKE_ESCAPE = '!';
+
+    private static final Map<Integer, Progress> progressMap = new ConcurrentHashMap<Integer, Progress>();
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "RegistryPathCacheWarmer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Progress of the warm-up of a single tenant.
+     */
+    public static class Progress {
+
+        private final int tenantId;
+        private final AtomicLong loadedPaths = new AtomicLong();
+        private volatile long startTime;
+        private volatile long endTime;
+        private volatile boolean running;
+        private volatile boolean failed;
+
+        private Progress(int tenantId) {
+            this.tenantId = tenantId;
+        }
+
+        /**
+         * Method to obtain the tenant that is being warmed up.
+         *
+         * @return the tenant id.
+         */
+        public int getTenantId() {
+            return tenantId;
+        }
+
+        /**
+         * Method to obtain the number of paths loaded so far.
+         *
+         * @return the number of loaded paths.
+         */
+        public long getLoadedPaths() {
+            return loadedPaths.get();
+        }
+
+        /**
+         * Method to obtain the time spent on the warm-up so far, or in total if it has completed.
+         *
+         * @return the elapsed time in milliseconds, or 0 if the warm-up has not started.
+         */
+        public long getElapsedTime() {
+            if (startTime == 0) {
+                return 0;
+            }
+
+            return (running ? System.currentTimeMillis() : endTime) - startTime;
+        }
+
+        /**
+         * Method to determine whether the warm-up is still in progress.
+         *
+         * @return true if the warm-up has been scheduled or is running.
+         */
+        public boolean isRunning() {
+            return running;
+        }
+
+        /**
+         * Method to determine whether the warm-up ended with an error.
+         *
+         * @return true if the warm-up failed.
+         */
+        public boolean isFailed() {
+            return failed;
+        }
+    }
+
+    /**
+     * Method to schedule the warm-up of the given tenant's paths, if enabled in the repository
+     * configuration. The method returns immediately, and a tenant that is already being warmed up
+     * is not scheduled again.
+     *
+     * @param repositoryContext the repository context holding the configuration and data source.
+     * @param tenantId          the tenant whose paths are loaded.
+     */
+    public static void warmUp(RepositoryContext repositoryContext, final int tenantId) {
+        if (repositoryContext == null || !repositoryContext.isPathCacheWarmUpEnabled()) {
+            return;
+        }
+
+        if (!(repositoryContext.getDataAccessManager() instanceof JDBCDataAccessManager)) {
+            log.debug("Path cache warm-up is only supported with a JDBC data access manager.");
+            return;
+        }
+
+        final DataSource dataSource = ((JDBCDataAccessManager) repositoryContext.getDataAccessManager()).getDataSource();
+        final List<String> prefixes = repositoryContext.getPathCacheWarmUpPrefixes();
+        final int fetchSize = repositoryContext.getPathCacheWarmUpFetchSize();
+        final Progress progress = new Progress(tenantId);
+
+        synchronized (progressMap) {
+            Progress current = progressMap.get(tenantId);
+
+            if (current != null && current.isRunning()) {
+                return;
+            }
+
+            progress.running = true;
+            progressMap.put(tenantId, progress);
+        }
+
+        executor.execute(new Runnable() {
+            public void run() {
+                progress.startTime = System.currentTimeMillis();
+
+                try {
+                    loadPaths(dataSource, tenantId, prefixes, fetchSize, progress);
+                } catch (SQLException e) {
+                    progress.failed = true;
+                    log.error("Failed to warm up the path cache of tenant " + tenantId + ".", e);
+                } catch (RuntimeException e) {
+                    progress.failed = true;
+                    log.error("Failed to warm up the path cache of tenant " + tenantId + ".", e);
+                } finally {
+                    progress.endTime = System.currentTimeMillis();
+                    progress.running = false;
+                }
+
+                if (!progress.isFailed() && log.isInfoEnabled()) {
+                    log.info("Loaded " + progress.getLoadedPaths() + " paths of tenant " + tenantId +
+                            " into the path cache in " + progress.getElapsedTime() + " ms.");
+                }
+            }
+        });
+    }
+
+    /**
+     * Method to obtain the progress of the last warm-up of a tenant.
+     *
+     * @param tenantId the tenant id.
+     *
+     * @return the progress, or null if no warm-up was scheduled for the tenant.
+     */
+    public static Progress getProgress(int tenantId) {
+        return progressMap.get(tenantId);
+    }
+
+    // Streams REG_PATH rows of the tenant that are under the prefixes into its path tree.
+    private static void loadPaths(DataSource dataSource, int tenantId, List<String> prefixes, int fetchSize, Progress progress) throws SQLException {
+        Connection conn = dataSource.getConnection();
+        PreparedStatement ps = null;
+        ResultSet results = null;
+        boolean autoCommit = conn.getAutoCommit();
+        boolean readOnly = conn.isReadOnly();
+        boolean committed = false;
+
+        try {
+            // some drivers only honour the fetch size within a transaction.
+            conn.setAutoCommit(false);
+            conn.setReadOnly(true);
+
+            String connectionId = InternalUtils.getConnectionId(conn);
+
+            if (connectionId == null) {
+                log.warn("Unable to identify the database connection. Skipping path cache warm-up.");
+                return;
+            }
+
+            PathTree pathTree = PathTree.getPathTree(connectionId, tenantId);
+            List<String> sqlPrefixes = getSQLPrefixes(prefixes);
+
+            StringBuilder sql = new StringBuilder(
+                    "SELECT REG_PATH_ID, REG_PATH_VALUE FROM REG_PATH WHERE REG_TENANT_ID=?");
+            for (int i = 0; i < sqlPrefixes.size(); i++) {
+                sql.append(i == 0 ? " AND (" : " OR ");
+                sql.append("REG_PATH_VALUE=? OR REG_PATH_VALUE LIKE ? ESCAPE '" + LIKE_ESCAPE + "'");
+            }
+            if (!sqlPrefixes.isEmpty()) {
+                sql.append(")");
+            }
+
+            ps = conn.prepareStatement(sql.toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setInt(1, tenantId);
+
+            int index = 2;
+            for (String prefix : sqlPrefixes) {
+                ps.setString(index++, prefix);
+                ps.setString(index++, escapeLikePattern(prefix + RepositoryConstants.PATH_SEPARATOR) + "%");
+            }
+
+            results = ps.executeQuery();
+
+            while (results.next()) {
+                String path = results.getString(DatabaseConstants.PATH_VALUE_FIELD);
+
+                // checked again, since LIKE ignores case under some database collations.
+                if (path != null && isUnderPrefixes(path, sqlPrefixes)) {
+                    pathTree.put(path, results.getInt(DatabaseConstants.PATH_ID_FIELD));
+                    progress.loadedPaths.incrementAndGet();
+                }
+            }
+
+            conn.commit();
+            committed = true;
+        } finally {
+            try {
+                try {
+                    if (results != null) {
+                        results.close();
+                    }
+                } finally {
+                    try {
+                        if (ps != null) {
+                            ps.close();
+                        }
+                    } finally {
+                        // the connection goes back to the pool in the state it was borrowed in.
+                        try {
+                            if (!committed && !conn.getAutoCommit()) {
+                                conn.rollback();
+                            }
+                            conn.setAutoCommit(autoCommit);
+                            conn.setReadOnly(readOnly);
+                        } finally {
+                            conn.close();
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                String msg = InternalConstants.RESULT_SET_PREPARED_STATEMENT_CLOSE_ERROR + e.getMessage();
+                log.error(msg, e);
+            }
+        }
+    }
+
+    // Returns the prefixes to filter on, without trailing separators, or an empty list if all
+    // paths are loaded.
+    private static List<String> getSQLPrefixes(List<String> prefixes) {
+        List<String> sqlPrefixes = new ArrayList<String>();
+
+        if (prefixes == null) {
+            return sqlPrefixes;
+        }
+
+        for (String prefix : prefixes) {
+            if (RepositoryConstants.ROOT_PATH.equals(prefix)) {
+                return new ArrayList<String>();
+            }
+
+            if (prefix.endsWith(RepositoryConstants.PATH_SEPARATOR)) {
+                prefix = prefix.substring(0, prefix.length() - 1);
+            }
+            sqlPrefixes.add(prefix);
+        }
+
+        return sqlPrefixes;
+    }
+
+    // '_' is a wild card in LIKE patterns and is common in repository paths, so it is escaped with
+    // the other special characters.
+    private static String escapeLikePattern(String value) {
+        StringBuilder pattern = new StringBuilder(value.length() + 8);
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == LIKE_ESCAPE || c == '%' || c == '_') {
+                pattern.append(LIKE_ESCAPE);
+            }
+            pattern.append(c);
+        }
+
+        return pattern.toString();
+    }
+
+    private static boolean isUnderPrefixes(String path, List<String> prefixes) {
+        if (prefixes == null || prefixes.isEmpty()) {
+            return true;
+        }
+
+        for (String prefix : prefixes) {
+            if (path.equals(prefix) || path.startsWith(prefix + RepositoryConstants.PATH_SEPARATOR)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
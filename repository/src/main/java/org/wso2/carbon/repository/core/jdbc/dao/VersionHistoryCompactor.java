@@ -0,0 +1,789 @@
+/*
+ *  Copyright (c) 2005-2009, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.wso2.carbon.repository.core.jdbc.dao;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.repository.api.RepositoryConstants;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.core.DatabaseConstants;
+import org.wso2.carbon.repository.core.caching.QueryResultCache;
+import org.wso2.carbon.repository.core.config.RepositoryContext;
+import org.wso2.carbon.repository.core.config.VersionRetentionPolicy;
+import org.wso2.carbon.repository.core.jdbc.dataaccess.JDBCDataAccessManager;
+import org.wso2.carbon.repository.core.utils.InternalConstants;
+import org.wso2.carbon.repository.core.utils.VersionRetriever;
+
+/**
+ * Applies the version retention policies of the repository configuration to the version history
+ * of a tenant in the background.
+ * <p/>
+ * A compaction runs in three phases. First the snapshots that are no longer retained by the policy
+ * matching their resource are removed from <code>REG_SNAPSHOT</code>. Then the archived resource
+ * versions that are no longer referenced by any snapshot are removed from
+ * <code>REG_RESOURCE_HISTORY</code> together with their versioned properties. Last the archived
+ * contents no longer referenced by any archived version are removed. Each phase removes rows in
+ * small batches, each in its own transaction, so that the compactor never holds locks on large
+ * parts of the history tables.
+ * <p/>
+ * The history rows of the current version of a resource are never removed, and neither are the
+ * rows archived while the compaction runs, so compaction can run while the repository is in use.
+ */
+public class VersionHistoryCompactor {
+
+    private static final Log log = LogFactory.getLog(VersionHistoryCompactor.class);
+
+    // the tables written by the compaction, of which the cached query results are dropped.
+    private static final String[] WRITTEN_TABLES = {"REG_SNAPSHOT", "REG_RESOURCE_PROPERTY", "REG_PROPERTY",
+            "REG_RESOURCE_HISTORY", "REG_CONTENT_HISTORY"};
+
+    private static final Map<Integer, Progress> progressMap = new ConcurrentHashMap<Integer, Progress>();
+
+    private static final Map<Integer, ScheduledFuture<?>> scheduledTenants =
+            new ConcurrentHashMap<Integer, ScheduledFuture<?>>();
+
+    private static final ScheduledExecutorService executor =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "RegistryVersionHistoryCompactor");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /**
+     * Progress of the last compaction of a single tenant.
+     */
+    public static class Progress {
+
+        private final int tenantId;
+        private final AtomicLong removedSnapshots = new AtomicLong();
+        private final AtomicLong removedVersions = new AtomicLong();
+        private final AtomicLong removedContents = new AtomicLong();
+        private final AtomicLong committedBatches = new AtomicLong();
+        private volatile String phase = "scheduled";
+        private volatile long startTime;
+        private volatile long endTime;
+        private volatile boolean running;
+        private volatile boolean failed;
+
+        private Progress(int tenantId) {
+            this.tenantId = tenantId;
+        }
+
+        /**
+         * Method to obtain the tenant that is being compacted.
+         *
+         * @return the tenant id.
+         */
+        public int getTenantId() {
+            return tenantId;
+        }
+
+        /**
+         * Method to obtain the number of snapshots removed so far.
+         *
+         * @return the number of removed snapshots.
+         */
+        public long getRemovedSnapshots() {
+            return removedSnapshots.get();
+        }
+
+        /**
+         * Method to obtain the number of archived resource versions removed so far.
+         *
+         * @return the number of removed versions.
+         */
+        public long getRemovedVersions() {
+            return removedVersions.get();
+        }
+
+        /**
+         * Method to obtain the number of archived contents removed so far.
+         *
+         * @return the number of removed contents.
+         */
+        public long getRemovedContents() {
+            return removedContents.get();
+        }
+
+        /**
+         * Method to obtain the number of batches committed so far.
+         *
+         * @return the number of committed batches.
+         */
+        public long getCommittedBatches() {
+            return committedBatches.get();
+        }
+
+        /**
+         * Method to obtain the phase the compaction is in.
+         *
+         * @return the name of the current phase.
+         */
+        public String getPhase() {
+            return phase;
+        }
+
+        /**
+         * Method to obtain the time spent on the compaction so far, or in total if it has
+         * completed.
+         *
+         * @return the elapsed time in milliseconds, or 0 if the compaction has not started.
+         */
+        public long getElapsedTime() {
+            if (startTime == 0) {
+                return 0;
+            }
+
+            return (running ? System.currentTimeMillis() : endTime) - startTime;
+        }
+
+        /**
+         * Method to obtain the number of rows removed per second.
+         *
+         * @return the throughput of the compaction.
+         */
+        public double getThroughput() {
+            long elapsedTime = getElapsedTime();
+
+            if (elapsedTime == 0) {
+                return 0;
+            }
+
+            return (getRemovedSnapshots() + getRemovedVersions() + getRemovedContents()) * 1000.0 / elapsedTime;
+        }
+
+        /**
+         * Method to determine whether the compaction is still in progress.
+         *
+         * @return true if the compaction has been submitted or is running.
+         */
+        public boolean isRunning() {
+            return running;
+        }
+
+        /**
+         * Method to determine whether the compaction ended with an error.
+         *
+         * @return true if the compaction failed.
+         */
+        public boolean isFailed() {
+            return failed;
+        }
+    }
+
+    // A snapshot with the details needed to apply a policy to it.
+    private static class SnapshotInfo {
+
+        private final long snapshotId;
+        private final long rootVersion;
+        private String mediaType;
+        private long time = -1;
+
+        private SnapshotInfo(long snapshotId, long rootVersion) {
+            this.snapshotId = snapshotId;
+            this.rootVersion = rootVersion;
+        }
+    }
+
+    /**
+     * Method to schedule periodic compaction of the given tenant's version history, if enabled
+     * in the repository configuration. A tenant that is already scheduled is not scheduled again.
+     *
+     * @param repositoryContext the repository context holding the configuration and data source.
+     * @param tenantId          the tenant whose version history is compacted.
+     */
+    public static void schedule(final RepositoryContext repositoryContext, final int tenantId) {
+        if (!isSupported(repositoryContext)) {
+            return;
+        }
+
+        synchronized (scheduledTenants) {
+            if (scheduledTenants.containsKey(tenantId)) {
+                return;
+            }
+
+            long interval = repositoryContext.getVersionRetentionInterval();
+            scheduledTenants.put(tenantId, executor.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    compactNow(repositoryContext, tenantId);
+                }
+            }, interval, interval, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * Method to stop the periodic compaction of a tenant, for example when the tenant is unloaded.
+     * A compaction that is in progress is completed.
+     *
+     * @param tenantId the tenant id.
+     */
+    public static void unschedule(int tenantId) {
+        ScheduledFuture<?> future = scheduledTenants.remove(tenantId);
+
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * Method to compact the given tenant's version history in the background right away. The
+     * method returns immediately, and a tenant that is already being compacted is not compacted
+     * again.
+     *
+     * @param repositoryContext the repository context holding the configuration and data source.
+     * @param tenantId          the tenant whose version history is compacted.
+     *
+     * @return the progress of the compaction, or null if compaction is not enabled.
+     */
+    public static Progress compact(final RepositoryContext repositoryContext, final int tenantId) {
+        if (!isSupported(repositoryContext)) {
+            return null;
+        }
+
+        final Progress progress = createProgress(tenantId);
+
+        if (progress != null) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    runCompaction(repositoryContext, progress);
+                }
+            });
+            return progress;
+        }
+
+        return progressMap.get(tenantId);
+    }
+
+    /**
+     * Method to obtain the progress of the last compaction of a tenant.
+     *
+     * @param tenantId the tenant id.
+     *
+     * @return the progress, or null if no compaction was run for the tenant.
+     */
+    public static Progress getProgress(int tenantId) {
+        return progressMap.get(tenantId);
+    }
+
+    private static boolean isSupported(RepositoryContext repositoryContext) {
+        if (repositoryContext == null || !repositoryContext.isVersionRetentionEnabled() ||
+                repositoryContext.getVersionRetentionPolicies().isEmpty()) {
+            return false;
+        }
+
+        if (!(repositoryContext.getDataAccessManager() instanceof JDBCDataAccessManager)) {
+            log.debug("Version history compaction is only supported with a JDBC data access manager.");
+            return false;
+        }
+
+        return true;
+    }
+
+    private static void compactNow(RepositoryContext repositoryContext, int tenantId) {
+        Progress progress = createProgress(tenantId);
+
+        if (progress != null) {
+            runCompaction(repositoryContext, progress);
+        }
+    }
+
+    // Returns null if the tenant is already being compacted.
+    private static Progress createProgress(int tenantId) {
+        Progress progress = new Progress(tenantId);
+
+        synchronized (progressMap) {
+            Progress current = progressMap.get(tenantId);
+
+            if (current != null && current.isRunning()) {
+                return null;
+            }
+
+            progress.running = true;
+            progressMap.put(tenantId, progress);
+        }
+
+        return progress;
+    }
+
+    private static void runCompaction(RepositoryContext repositoryContext, Progress progress) {
+        int tenantId = progress.getTenantId();
+        DataSource dataSource = ((JDBCDataAccessManager) repositoryContext.getDataAccessManager()).getDataSource();
+        progress.startTime = System.currentTimeMillis();
+
+        try {
+            Connection conn = dataSource.getConnection();
+            boolean autoCommit = conn.getAutoCommit();
+            boolean completed = false;
+
+            try {
+                conn.setAutoCommit(false);
+                compact(conn, tenantId, repositoryContext.getVersionRetentionPolicies(),
+                        repositoryContext.getVersionRetentionBatchSize(), progress);
+                completed = true;
+            } finally {
+                try {
+                    if (!completed) {
+                        // the batches committed so far are kept.
+                        conn.rollback();
+                    }
+                    // the connection goes back to the pool as it was borrowed.
+                    conn.setAutoCommit(autoCommit);
+                } catch (SQLException e) {
+                    log.error("Failed to reset the database connection used in version history compaction.", e);
+                } finally {
+                    try {
+                        conn.close();
+                    } catch (SQLException e) {
+                        log.error("Failed to close the database connection used in version history compaction.", e);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            progress.failed = true;
+            log.error("Failed to compact the version history of tenant " + tenantId + ".", e);
+        } catch (RepositoryException e) {
+            progress.failed = true;
+            log.error("Failed to compact the version history of tenant " + tenantId + ".", e);
+        } catch (RuntimeException e) {
+            progress.failed = true;
+            log.error("Failed to compact the version history of tenant " + tenantId + ".", e);
+        } finally {
+            progress.endTime = System.currentTimeMillis();
+            progress.phase = "completed";
+            progress.running = false;
+        }
+
+        if (!progress.isFailed() && log.isInfoEnabled()) {
+            log.info("Removed " + progress.getRemovedSnapshots() + " snapshots, " +
+                    progress.getRemovedVersions() + " versions and " + progress.getRemovedContents() +
+                    " contents from the version history of tenant " + tenantId + " in " +
+                    progress.getElapsedTime() + " ms (" + Math.round(progress.getThroughput()) + " rows/s).");
+        }
+    }
+
+    private static void compact(Connection conn, int tenantId, List<VersionRetentionPolicy> policies,
+                                int batchSize, Progress progress) throws SQLException, RepositoryException {
+        long now = System.currentTimeMillis();
+
+        // phase 1: remove the snapshots no longer retained.
+        progress.phase = "snapshots";
+        Map<String, List<SnapshotInfo>> snapshotsByPath = getSnapshots(conn, tenantId);
+        fillSnapshotDetails(conn, tenantId, snapshotsByPath);
+        commit(conn, tenantId);
+
+        List<Long> expiredSnapshots = new ArrayList<Long>();
+
+        for (Map.Entry<String, List<SnapshotInfo>> entry : snapshotsByPath.entrySet()) {
+            List<SnapshotInfo> snapshots = entry.getValue();
+            VersionRetentionPolicy policy = getPolicy(policies, entry.getKey(), snapshots.get(0).mediaType);
+
+            if (policy == null) {
+                continue;
+            }
+
+            for (int index = 0; index < snapshots.size(); index++) {
+                SnapshotInfo snapshot = snapshots.get(index);
+
+                if (policy.isExpired(index, snapshot.time, now)) {
+                    expiredSnapshots.add(snapshot.snapshotId);
+                }
+            }
+        }
+
+        snapshotsByPath = null;
+
+        for (int start = 0; start < expiredSnapshots.size(); start += batchSize) {
+            List<Long> batch = expiredSnapshots.subList(start, Math.min(expiredSnapshots.size(), start + batchSize));
+            executeUpdate(conn, "DELETE FROM REG_SNAPSHOT WHERE REG_SNAPSHOT_ID IN (", ") AND REG_TENANT_ID=?", batch, tenantId);
+            commit(conn, tenantId);
+            progress.removedSnapshots.addAndGet(batch.size());
+            progress.committedBatches.incrementAndGet();
+        }
+
+        // phase 2: remove the archived versions no longer referenced. The candidates are read
+        // before the references, so that rows archived by snapshots taken in between are not
+        // candidates.
+        progress.phase = "versions";
+        List<Long> candidateVersions = getArchivedVersions(conn, tenantId);
+        commit(conn, tenantId);
+        Set<Long> referencedVersions = getReferencedVersions(conn, tenantId);
+        commit(conn, tenantId);
+
+        List<Long> unreferencedVersions = new ArrayList<Long>();
+
+        for (Long version : candidateVersions) {
+            if (!referencedVersions.contains(version)) {
+                unreferencedVersions.add(version);
+            }
+        }
+
+        candidateVersions = null;
+        referencedVersions = null;
+
+        for (int start = 0; start < unreferencedVersions.size(); start += batchSize) {
+            List<Long> batch = removeCurrentVersions(conn, tenantId,
+                    unreferencedVersions.subList(start, Math.min(unreferencedVersions.size(), start + batchSize)));
+
+            if (!batch.isEmpty()) {
+                List<Long> propertyIds = getPropertyIds(conn, tenantId, batch);
+                executeUpdate(conn, "DELETE FROM REG_RESOURCE_PROPERTY WHERE REG_VERSION IN (",
+                        ") AND REG_TENANT_ID=?", batch, tenantId);
+
+                for (int propertyStart = 0; propertyStart < propertyIds.size(); propertyStart += batchSize) {
+                    executeUpdate(conn, "DELETE FROM REG_PROPERTY WHERE REG_ID IN (", ") AND REG_TENANT_ID=?",
+                            propertyIds.subList(propertyStart, Math.min(propertyIds.size(), propertyStart + batchSize)), tenantId);
+                }
+
+                executeUpdate(conn, "DELETE FROM REG_RESOURCE_HISTORY WHERE REG_VERSION IN (",
+                        ") AND REG_TENANT_ID=?", batch, tenantId);
+            }
+
+            commit(conn, tenantId);
+            progress.removedVersions.addAndGet(batch.size());
+            progress.committedBatches.incrementAndGet();
+        }
+
+        unreferencedVersions = null;
+
+        // phase 3: reclaim the archived contents no longer referenced by any archived version.
+        progress.phase = "contents";
+        List<Long> unreferencedContents = getUnreferencedContents(conn, tenantId);
+        commit(conn, tenantId);
+
+        for (int start = 0; start < unreferencedContents.size(); start += batchSize) {
+            List<Long> batch = unreferencedContents.subList(start, Math.min(unreferencedContents.size(), start + batchSize));
+            int removed = executeUpdate(conn, "DELETE FROM REG_CONTENT_HISTORY WHERE REG_CONTENT_ID IN (",
+                    ") AND REG_TENANT_ID=? AND NOT EXISTS (SELECT H.REG_VERSION FROM REG_RESOURCE_HISTORY H " +
+                            "WHERE H.REG_CONTENT_ID=REG_CONTENT_HISTORY.REG_CONTENT_ID AND " +
+                            "H.REG_TENANT_ID=REG_CONTENT_HISTORY.REG_TENANT_ID)", batch, tenantId);
+            commit(conn, tenantId);
+            progress.removedContents.addAndGet(removed);
+            progress.committedBatches.incrementAndGet();
+        }
+    }
+
+    // The first policy matching the resource applies.
+    private static VersionRetentionPolicy getPolicy(List<VersionRetentionPolicy> policies, String path, String mediaType) {
+        for (VersionRetentionPolicy policy : policies) {
+            if (policy.matches(path, mediaType)) {
+                return policy;
+            }
+        }
+
+        return null;
+    }
+
+    // Reads the snapshots of the tenant grouped by resource path, the most recent first. Only the
+    // first version of each snapshot, which is the version of the resource itself, is read.
+    private static Map<String, List<SnapshotInfo>> getSnapshots(Connection conn, int tenantId) throws SQLException, RepositoryException {
+        Map<String, List<SnapshotInfo>> snapshotsByPath = new HashMap<String, List<SnapshotInfo>>();
+        PreparedStatement ps = null;
+        ResultSet results = null;
+
+        try {
+            String sql = "SELECT S.REG_SNAPSHOT_ID, S.REG_RESOURCE_NAME, S.REG_RESOURCE_VIDS, P.REG_PATH_VALUE " +
+                    "FROM REG_SNAPSHOT S, REG_PATH P WHERE S.REG_TENANT_ID=? AND " +
+                    "P.REG_PATH_ID=S.REG_PATH_ID AND P.REG_TENANT_ID=S.REG_TENANT_ID";
+
+            ps = conn.prepareStatement(sql);
+            ps.setInt(1, tenantId);
+            results = ps.executeQuery();
+
+            while (results.next()) {
+                long snapshotId = results.getLong(DatabaseConstants.SNAPSHOT_ID_FIELD);
+                String name = results.getString(DatabaseConstants.RESOURCE_NAME_FIELD);
+                String path = results.getString(DatabaseConstants.PATH_VALUE_FIELD);
+
+                if (name != null) {
+                    path = path + (path.equals(RepositoryConstants.ROOT_PATH) ? "" : RepositoryConstants.PATH_SEPARATOR) + name;
+                }
+
+                InputStream versionsStream = results.getBinaryStream(DatabaseConstants.RESOURCE_VIDS_FIELD);
+                long rootVersion = versionsStream == null ? -1 : new VersionRetriever(versionsStream).getVersion(0);
+
+                List<SnapshotInfo> snapshots = snapshotsByPath.get(path);
+
+                if (snapshots == null) {
+                    snapshots = new ArrayList<SnapshotInfo>();
+                    snapshotsByPath.put(path, snapshots);
+                }
+
+                snapshots.add(new SnapshotInfo(snapshotId, rootVersion));
+            }
+        } finally {
+            close(results, ps);
+        }
+
+        for (List<SnapshotInfo> snapshots : snapshotsByPath.values()) {
+            Collections.sort(snapshots, new Comparator<SnapshotInfo>() {
+                public int compare(SnapshotInfo first, SnapshotInfo second) {
+                    return first.snapshotId > second.snapshotId ? -1 : (first.snapshotId == second.snapshotId ? 0 : 1);
+                }
+            });
+        }
+
+        return snapshotsByPath;
+    }
+
+    // Fills the media type and time of each snapshot from the archived version of its resource.
+    // The time of a snapshot is the last time its resource was updated before the snapshot.
+    private static void fillSnapshotDetails(Connection conn, int tenantId, Map<String, List<SnapshotInfo>> snapshotsByPath)
+            throws SQLException {
+        Map<Long, SnapshotInfo> snapshotsByVersion = new HashMap<Long, SnapshotInfo>();
+
+        for (List<SnapshotInfo> snapshots : snapshotsByPath.values()) {
+            for (SnapshotInfo snapshot : snapshots) {
+                if (snapshot.rootVersion > 0) {
+                    snapshotsByVersion.put(snapshot.rootVersion, snapshot);
+                }
+            }
+        }
+
+        List<Long> versions = new ArrayList<Long>(snapshotsByVersion.keySet());
+
+        for (int start = 0; start < versions.size(); start += JDBCResourceDAO.IN_LIST_BATCH_SIZE) {
+            List<Long> batch = versions.subList(start, Math.min(versions.size(), start + JDBCResourceDAO.IN_LIST_BATCH_SIZE));
+            String sql = "SELECT REG_VERSION, REG_MEDIA_TYPE, REG_LAST_UPDATED_TIME FROM REG_RESOURCE_HISTORY " +
+                    "WHERE REG_VERSION IN (" + JDBCResourceDAO.getParameterList(batch.size()) + ") AND REG_TENANT_ID=?";
+            PreparedStatement ps = null;
+            ResultSet results = null;
+
+            try {
+                ps = prepareStatement(conn, sql, batch, tenantId);
+                results = ps.executeQuery();
+
+                while (results.next()) {
+                    SnapshotInfo snapshot = snapshotsByVersion.get(results.getLong(DatabaseConstants.VERSION_FIELD));
+                    Timestamp lastUpdatedTime = results.getTimestamp(DatabaseConstants.LAST_UPDATED_TIME_FIELD);
+
+                    snapshot.mediaType = results.getString(DatabaseConstants.MEDIA_TYPE_FIELD);
+                    snapshot.time = lastUpdatedTime == null ? -1 : lastUpdatedTime.getTime();
+                }
+            } finally {
+                close(results, ps);
+            }
+        }
+    }
+
+    private static List<Long> getArchivedVersions(Connection conn, int tenantId) throws SQLException {
+        return getIds(conn, "SELECT REG_VERSION FROM REG_RESOURCE_HISTORY WHERE REG_TENANT_ID=?", tenantId);
+    }
+
+    private static List<Long> getUnreferencedContents(Connection conn, int tenantId) throws SQLException {
+        return getIds(conn, "SELECT C.REG_CONTENT_ID FROM REG_CONTENT_HISTORY C WHERE C.REG_TENANT_ID=? AND " +
+                "NOT EXISTS (SELECT H.REG_VERSION FROM REG_RESOURCE_HISTORY H WHERE " +
+                "H.REG_CONTENT_ID=C.REG_CONTENT_ID AND H.REG_TENANT_ID=C.REG_TENANT_ID)", tenantId);
+    }
+
+    private static Set<Long> getReferencedVersions(Connection conn, int tenantId) throws SQLException, RepositoryException {
+        Set<Long> referencedVersions = new HashSet<Long>();
+        PreparedStatement ps = null;
+        ResultSet results = null;
+
+        try {
+            String sql = "SELECT REG_RESOURCE_VIDS FROM REG_SNAPSHOT WHERE REG_TENANT_ID=?";
+
+            ps = conn.prepareStatement(sql);
+            ps.setInt(1, tenantId);
+            results = ps.executeQuery();
+
+            while (results.next()) {
+                InputStream versionsStream = results.getBinaryStream(DatabaseConstants.RESOURCE_VIDS_FIELD);
+
+                if (versionsStream == null) {
+                    continue;
+                }
+
+                VersionRetriever versionRetriever = new VersionRetriever(versionsStream);
+
+                for (int versionIndex = 0; ; versionIndex++) {
+                    long version = versionRetriever.getVersion(versionIndex);
+
+                    if (version == -1) {
+                        break;
+                    }
+
+                    referencedVersions.add(version);
+                }
+            }
+        } finally {
+            close(results, ps);
+        }
+
+        return referencedVersions;
+    }
+
+    // Removes the versions that are still the current version of a resource from the batch.
+    private static List<Long> removeCurrentVersions(Connection conn, int tenantId, List<Long> versions) throws SQLException {
+        String sql = "SELECT REG_VERSION FROM REG_RESOURCE WHERE REG_VERSION IN (" +
+                JDBCResourceDAO.getParameterList(versions.size()) + ") AND REG_TENANT_ID=?";
+        Set<Long> currentVersions = new HashSet<Long>();
+        PreparedStatement ps = null;
+        ResultSet results = null;
+
+        try {
+            ps = prepareStatement(conn, sql, versions, tenantId);
+            results = ps.executeQuery();
+
+            while (results.next()) {
+                currentVersions.add(results.getLong(DatabaseConstants.VERSION_FIELD));
+            }
+        } finally {
+            close(results, ps);
+        }
+
+        if (currentVersions.isEmpty()) {
+            return versions;
+        }
+
+        List<Long> archivedVersions = new ArrayList<Long>(versions);
+        archivedVersions.removeAll(currentVersions);
+        return archivedVersions;
+    }
+
+    private static List<Long> getPropertyIds(Connection conn, int tenantId, List<Long> versions) throws SQLException {
+        String sql = "SELECT REG_PROPERTY_ID FROM REG_RESOURCE_PROPERTY WHERE REG_VERSION IN (" +
+                JDBCResourceDAO.getParameterList(versions.size()) + ") AND REG_TENANT_ID=?";
+        List<Long> propertyIds = new ArrayList<Long>();
+        PreparedStatement ps = null;
+        ResultSet results = null;
+
+        try {
+            ps = prepareStatement(conn, sql, versions, tenantId);
+            results = ps.executeQuery();
+
+            while (results.next()) {
+                propertyIds.add(results.getLong(1));
+            }
+        } finally {
+            close(results, ps);
+        }
+
+        return propertyIds;
+    }
+
+    private static List<Long> getIds(Connection conn, String sql, int tenantId) throws SQLException {
+        List<Long> ids = new ArrayList<Long>();
+        PreparedStatement ps = null;
+        ResultSet results = null;
+
+        try {
+            ps = conn.prepareStatement(sql);
+            ps.setInt(1, tenantId);
+            results = ps.executeQuery();
+
+            while (results.next()) {
+                ids.add(results.getLong(1));
+            }
+        } finally {
+            close(results, ps);
+        }
+
+        return ids;
+    }
+
+    private static int executeUpdate(Connection conn, String sqlPrefix, String sqlSuffix, List<Long> ids, int tenantId)
+            throws SQLException {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        PreparedStatement ps = null;
+        invalidateCachedResults(tenantId);
+
+        try {
+            ps = prepareStatement(conn, sqlPrefix + JDBCResourceDAO.getParameterList(ids.size()) + sqlSuffix,
+                    ids, tenantId);
+            return ps.executeUpdate();
+        } finally {
+            close(null, ps);
+        }
+    }
+
+    // Commits the batch, and drops the query results that may have been read before the commit.
+    private static void commit(Connection conn, int tenantId) throws SQLException {
+        conn.commit();
+        invalidateCachedResults(tenantId);
+    }
+
+    // The connection is not managed by the repository, so its writes are reported to the cache.
+    private static void invalidateCachedResults(int tenantId) {
+        for (String table : WRITTEN_TABLES) {
+            QueryResultCache.getQueryResultCache().tableWritten(tenantId, table);
+        }
+    }
+
+    // Binds the ids followed by the tenant id.
+    private static PreparedStatement prepareStatement(Connection conn, String sql, List<Long> ids, int tenantId)
+            throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(sql);
+        int index = 1;
+
+        for (Long id : ids) {
+            ps.setLong(index++, id);
+        }
+
+        ps.setInt(index, tenantId);
+        return ps;
+    }
+
+    private static void close(ResultSet results, PreparedStatement ps) {
+        try {
+            try {
+                if (results != null) {
+                    results.close();
+                }
+            } finally {
+                if (ps != null) {
+                    ps.close();
+                }
+            }
+        } catch (SQLException e) {
+            String msg = InternalConstants.RESULT_SET_PREPARED_STATEMENT_CLOSE_ERROR + e.getMessage();
+            log.error(msg, e);
+        }
+    }
+}
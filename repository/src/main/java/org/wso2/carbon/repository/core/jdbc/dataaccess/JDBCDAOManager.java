@@ -22,6 +22,7 @@ package org.wso2.carbon.repository.core.jdbc.dataaccess;
 import org.wso2.carbon.repository.core.jdbc.dao.JDBCLogsDAO;
 import org.wso2.carbon.repository.core.jdbc.dao.JDBCResourceDAO;
 import org.wso2.carbon.repository.core.jdbc.dao.JDBCResourceVersionDAO;
+import org.wso2.carbon.repository.core.tracing.Tracer;
 import org.wso2.carbon.repository.spi.dao.LogsDAO;
 import org.wso2.carbon.repository.spi.dao.ResourceDAO;
 import org.wso2.carbon.repository.spi.dao.ResourceVersionDAO;
@@ -29,7 +30,8 @@ import org.wso2.carbon.repository.spi.dataaccess.DAOManager;
 
 /**
  * An implementation of {@link DAOManager} to obtain access to the object representations of various
- * data stored on a back-end JDBC-based database.
+ * data stored on a back-end JDBC-based database. If tracing is enabled when the manager is created,
+ * the calls to the DAOs are traced through the {@link Tracer}.
  */
 public class JDBCDAOManager implements DAOManager {
 
@@ -38,9 +40,9 @@ public class JDBCDAOManager implements DAOManager {
     private ResourceVersionDAO resourceVersionDAO;
 
     public JDBCDAOManager() {
-        this.resourceDAO = new JDBCResourceDAO();
-        this.logsDAO = new JDBCLogsDAO();
-        this.resourceVersionDAO = new JDBCResourceVersionDAO(this);
+        this.resourceDAO = Tracer.wrap(ResourceDAO.class, new JDBCResourceDAO());
+        this.logsDAO = Tracer.wrap(LogsDAO.class, new JDBCLogsDAO());
+        this.resourceVersionDAO = Tracer.wrap(ResourceVersionDAO.class, new JDBCResourceVersionDAO(this));
     }
 
     public LogsDAO getLogsDAO() {
@@ -65,10 +65,14 @@ import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.repository.core.CurrentContext;
 import org.wso2.carbon.repository.core.Transaction;
+import org.wso2.carbon.repository.core.caching.QueryResultCache;
 import org.wso2.carbon.repository.core.statistics.DBQueryStatisticsLog;
 import org.wso2.carbon.repository.core.statistics.StatisticsLog;
 import org.wso2.carbon.repository.core.statistics.StatisticsRecord;
+import org.wso2.carbon.repository.core.tracing.Span;
+import org.wso2.carbon.repository.core.tracing.Tracer;
 import org.wso2.carbon.repository.core.utils.InternalUtils;
 import org.wso2.carbon.repository.spi.dataaccess.DatabaseTransaction;
 
@@ -443,18 +447,22 @@ public class JDBCDatabaseTransaction implements DatabaseTransaction {
 
     /**
      * Class that will wrap a prepared statement in debug mode, to obtain statistic records related
-     * to prepared statements.
+     * to prepared statements, or while an operation is traced, to trace the executions of the
+     * prepared statements.
      */
     private static class MonitoredPreparedStatement implements PreparedStatement {
 
         private PreparedStatement preparedStatement;
 
+        private String sql;
+
         private ConnectionStatistics connectionStatistics = null;
 
         private ExecutorService executor = null;
 
-        public MonitoredPreparedStatement(PreparedStatement preparedStatement, ConnectionStatistics connectionStatistics, ExecutorService executor) {
+        public MonitoredPreparedStatement(PreparedStatement preparedStatement, String sql, ConnectionStatistics connectionStatistics, ExecutorService executor) {
             this.preparedStatement = preparedStatement;
+            this.sql = sql;
             this.connectionStatistics = connectionStatistics;
             this.executor = executor;
             recordStatementPrepared();
@@ -498,14 +506,31 @@ public class JDBCDatabaseTransaction implements DatabaseTransaction {
                 recordStatistics(preparedStatement.toString());
             }
             
-            return preparedStatement.executeQuery();
+            Span span = Tracer.startStatement(sql);
+            try {
+                return preparedStatement.executeQuery();
+            } catch (SQLException e) {
+                Tracer.setError(span, e);
+                throw e;
+            } finally {
+                Tracer.end(span);
+            }
         }
 
         public int executeUpdate() throws SQLException {
             if (dbQueryLog.isDebugEnabled()) {
                 recordStatistics(preparedStatement.toString());
             }
-            return preparedStatement.executeUpdate();
+            
+            Span span = Tracer.startStatement(sql);
+            try {
+                return preparedStatement.executeUpdate();
+            } catch (SQLException e) {
+                Tracer.setError(span, e);
+                throw e;
+            } finally {
+                Tracer.end(span);
+            }
         }
 
         private void recordStatistics(String statement) {
@@ -641,7 +666,15 @@ public class JDBCDatabaseTransaction implements DatabaseTransaction {
         }
 
         public boolean execute() throws SQLException {
-            return preparedStatement.execute();
+            Span span = Tracer.startStatement(sql);
+            try {
+                return preparedStatement.execute();
+            } catch (SQLException e) {
+                Tracer.setError(span, e);
+                throw e;
+            } finally {
+                Tracer.end(span);
+            }
         }
 
         public void addBatch() throws SQLException {
@@ -802,7 +835,15 @@ public class JDBCDatabaseTransaction implements DatabaseTransaction {
         }
 
         public int[] executeBatch() throws SQLException {
-            return preparedStatement.executeBatch();
+            Span span = Tracer.startStatement(sql);
+            try {
+                return preparedStatement.executeBatch();
+            } catch (SQLException e) {
+                Tracer.setError(span, e);
+                throw e;
+            } finally {
+                Tracer.end(span);
+            }
         }
 
         public Connection getConnection() throws SQLException {
@@ -1472,16 +1513,23 @@ public class JDBCDatabaseTransaction implements DatabaseTransaction {
         ////////////////////////////////////////////////////////
 
         public Statement createStatement() throws SQLException {
+            QueryResultCache.getQueryResultCache().statementCreated(CurrentContext.getTenantId());
             return connection.createStatement();
         }
 
         public PreparedStatement prepareStatement(String s) throws SQLException {
+            QueryResultCache.getQueryResultCache().statementPrepared(CurrentContext.getTenantId(), s);
+
             if (statsLog.isDebugEnabled() || dbQueryLog.isDebugEnabled()) {
                 if (executor == null) {
                     initializeStatisticsLogging();
                 }
                 return new MonitoredPreparedStatement(connection.prepareStatement(s),
-                        connectionStatistics, executor);
+                        s, connectionStatistics, executor);
+            }
+
+            if (Tracer.isRecording()) {
+                return new MonitoredPreparedStatement(connection.prepareStatement(s), s, null, null);
             }
             
             return connection.prepareStatement(s);
@@ -1540,16 +1588,23 @@ public class JDBCDatabaseTransaction implements DatabaseTransaction {
         }
 
         public Statement createStatement(int i, int i1) throws SQLException {
+            QueryResultCache.getQueryResultCache().statementCreated(CurrentContext.getTenantId());
             return connection.createStatement(i, i1);
         }
 
         public PreparedStatement prepareStatement(String s, int i, int i1) throws SQLException {
+            QueryResultCache.getQueryResultCache().statementPrepared(CurrentContext.getTenantId(), s);
+
             if (statsLog.isDebugEnabled() || dbQueryLog.isDebugEnabled()) {
                 if (executor == null) {
                     initializeStatisticsLogging();
                 }
                 return new MonitoredPreparedStatement(connection.prepareStatement(s, i, i1),
-                        connectionStatistics, executor);
+                        s, connectionStatistics, executor);
+            }
+
+            if (Tracer.isRecording()) {
+                return new MonitoredPreparedStatement(connection.prepareStatement(s, i, i1), s, null, null);
             }
             
             return connection.prepareStatement(s, i, i1);
@@ -1588,16 +1643,23 @@ public class JDBCDatabaseTransaction implements DatabaseTransaction {
         }
 
         public Statement createStatement(int i, int i1, int i2) throws SQLException {
+            QueryResultCache.getQueryResultCache().statementCreated(CurrentContext.getTenantId());
             return connection.createStatement(i, i1, i2);
         }
 
         public PreparedStatement prepareStatement(String s, int i, int i1, int i2) throws SQLException {
+            QueryResultCache.getQueryResultCache().statementPrepared(CurrentContext.getTenantId(), s);
+
             if (statsLog.isDebugEnabled() || dbQueryLog.isDebugEnabled()) {
                 if (executor == null) {
                     initializeStatisticsLogging();
                 }
                 return new MonitoredPreparedStatement(connection.prepareStatement(s, i, i1, i2),
-                        connectionStatistics, executor);
+                        s, connectionStatistics, executor);
+            }
+
+            if (Tracer.isRecording()) {
+                return new MonitoredPreparedStatement(connection.prepareStatement(s, i, i1, i2), s, null, null);
             }
             
             return connection.prepareStatement(s, i, i1, i2);
@@ -1608,34 +1670,52 @@ public class JDBCDatabaseTransaction implements DatabaseTransaction {
         }
 
         public PreparedStatement prepareStatement(String s, int i) throws SQLException {
+            QueryResultCache.getQueryResultCache().statementPrepared(CurrentContext.getTenantId(), s);
+
             if (statsLog.isDebugEnabled() || dbQueryLog.isDebugEnabled()) {
                 if (executor == null) {
                     initializeStatisticsLogging();
                 }
                 return new MonitoredPreparedStatement(connection.prepareStatement(s, i),
-                        connectionStatistics, executor);
+                        s, connectionStatistics, executor);
+            }
+
+            if (Tracer.isRecording()) {
+                return new MonitoredPreparedStatement(connection.prepareStatement(s, i), s, null, null);
             }
             return connection.prepareStatement(s, i);
         }
 
         public PreparedStatement prepareStatement(String s, int[] integers) throws SQLException {
+            QueryResultCache.getQueryResultCache().statementPrepared(CurrentContext.getTenantId(), s);
+
             if (statsLog.isDebugEnabled() || dbQueryLog.isDebugEnabled()) {
                 if (executor == null) {
                     initializeStatisticsLogging();
                 }
                 return new MonitoredPreparedStatement(connection.prepareStatement(s, integers),
-                        connectionStatistics, executor);
+                        s, connectionStatistics, executor);
+            }
+
+            if (Tracer.isRecording()) {
+                return new MonitoredPreparedStatement(connection.prepareStatement(s, integers), s, null, null);
             }
             return connection.prepareStatement(s, integers);
         }
 
         public PreparedStatement prepareStatement(String s, String[] strings) throws SQLException {
+            QueryResultCache.getQueryResultCache().statementPrepared(CurrentContext.getTenantId(), s);
+
             if (statsLog.isDebugEnabled() || dbQueryLog.isDebugEnabled()) {
                 if (executor == null) {
                     initializeStatisticsLogging();
                 }
                 return new MonitoredPreparedStatement(connection.prepareStatement(s, strings),
-                        connectionStatistics, executor);
+                        s, connectionStatistics, executor);
+            }
+
+            if (Tracer.isRecording()) {
+                return new MonitoredPreparedStatement(connection.prepareStatement(s, strings), s, null, null);
             }
             return connection.prepareStatement(s, strings);
         }
@@ -29,6 +29,8 @@ import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.repository.api.TransactionManager;
 import org.wso2.carbon.repository.api.exceptions.RepositoryException;
 import org.wso2.carbon.repository.core.Transaction;
+import org.wso2.carbon.repository.core.caching.QueryResultCache;
+import org.wso2.carbon.repository.core.content.FileContentStore;
 import org.wso2.carbon.repository.core.exceptions.RepositoryDBException;
 import org.wso2.carbon.repository.spi.dataaccess.DataAccessManager;
 
@@ -124,12 +126,14 @@ public class JDBCTransactionManager implements TransactionManager {
         JDBCDatabaseTransaction.ManagedRegistryConnection conn = JDBCDatabaseTransaction.getConnection();
         
         try {
+            FileContentStore.transactionRolledBack(conn);
             conn.rollback();
         } catch (SQLException e) {
             String msg = "Failed to rollback transaction.";
             log.error(msg, e);
             throw new RepositoryDBException(msg, e);
         } finally {
+            QueryResultCache.getQueryResultCache().transactionEnded();
             endTransaction();
             dataAccessManager.getDatabaseTransaction().decNestedDepth();
         }
@@ -158,17 +162,66 @@ public class JDBCTransactionManager implements TransactionManager {
         JDBCDatabaseTransaction.ManagedRegistryConnection conn = JDBCDatabaseTransaction.getConnection();
         
         try {
+            // content files are moved in place first, so that committed content is never missing.
+            try {
+                FileContentStore.transactionCommitting(conn);
+            } catch (RepositoryException e) {
+                conn.rollback();
+                throw e;
+            }
             conn.commit();
         } catch (SQLException e) {
             String msg = "Failed to commit transaction.";
             log.error(msg, e);
             throw new RepositoryDBException(msg, e);
         } finally {
+            QueryResultCache.getQueryResultCache().transactionEnded();
             endTransaction();
             dataAccessManager.getDatabaseTransaction().decNestedDepth();
         }
     }
 
+    /**
+     * Commits the work done so far in the current transaction, leaving the transaction open for
+     * the work that follows, whatever its nested depth is. This is meant for long running
+     * operations that own the outermost transaction, such as batched restores.
+     *
+     * @throws RepositoryException if the transaction has been rollbacked, or the commit failed.
+     */
+    public void commitPendingWork() throws RepositoryException {
+        if (dataAccessManager.getDatabaseTransaction().isRollbacked()) {
+            String msg = "The transaction is already rollbacked, you can not commit a transaction already rollbacked, nested depth: " +
+                            dataAccessManager.getDatabaseTransaction().getNestedDepth() + ".";
+
+            log.debug(msg);
+            throw new RepositoryDBException(msg);
+        }
+
+        JDBCDatabaseTransaction.ManagedRegistryConnection conn = JDBCDatabaseTransaction.getConnection();
+
+        if (conn == null) {
+            String msg = "Failed to commit the pending work, no transaction has been started.";
+            log.error(msg);
+            throw new RepositoryDBException(msg);
+        }
+
+        try {
+            try {
+                FileContentStore.transactionCommitting(conn);
+            } catch (RepositoryException e) {
+                conn.rollback();
+                throw e;
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            String msg = "Failed to commit the pending work of the transaction.";
+            log.error(msg, e);
+            throw new RepositoryDBException(msg, e);
+        } finally {
+            QueryResultCache.getQueryResultCache().transactionEnded();
+        }
+    }
+
     private void endTransaction() throws RepositoryException {
         if (Transaction.isStarted()) {
             JDBCDatabaseTransaction.ManagedRegistryConnection conn = JDBCDatabaseTransaction.getConnection();
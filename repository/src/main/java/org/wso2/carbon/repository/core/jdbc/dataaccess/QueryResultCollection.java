@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.repository.core.jdbc.dataaccess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.wso2.carbon.repository.api.RepositoryConstants;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.core.ChrootWrapper;
+import org.wso2.carbon.repository.core.CollectionImpl;
+
+/**
+ * A collection of the results of a query, which are read page by page as they are requested
+ * through {@link #getChildPaths(int, int)}, instead of all at once when the query is executed.
+ * Each page executes the query again, ordered by the key of the results and starting after the
+ * last key of the page before it, so reading the pages in turn reads each result once. Reading
+ * all the children, their count, or the content of the collection reads all the results into
+ * memory, and setting the content of the collection replaces the results of the query.
+ * <p/>
+ * Paths that handlers returned for the query are returned before the results of the query, and
+ * a chroot set on the collection filters and converts the paths as each page is read.
+ */
+public class QueryResultCollection extends CollectionImpl implements SQLQueryProcessor.ResultFilter {
+
+    private final SQLQueryProcessor queryProcessor;
+    private final String sqlString;
+    private final Map<Object, Object> parameters;
+    private final String resultType;
+
+    private String[] precedingPaths = new String[0];
+    private Set<String> precedingPathSet = new HashSet<String>();
+    private ChrootWrapper chrootWrapper = null;
+
+    // the keys of the results before the positions of the query results read so far.
+    private final TreeMap<Integer, Object[]> positions = new TreeMap<Integer, Object[]>();
+
+    /**
+     * Creates a collection of the results of the given query.
+     *
+     * @param queryProcessor the query processor executing the query.
+     * @param sqlString      the query.
+     * @param parameters     the parameters of the query, which are copied.
+     * @param resultType     the result type of the query.
+     */
+    QueryResultCollection(SQLQueryProcessor queryProcessor, String sqlString, Map<?, ?> parameters,
+                          String resultType) {
+        this.queryProcessor = queryProcessor;
+        this.sqlString = sqlString;
+        this.parameters = (parameters != null) ? new HashMap<Object, Object>(parameters) : null;
+        this.resultType = resultType;
+        positions.put(0, null);
+    }
+
+    /**
+     * Method to set the paths returned before the results of the query, such as those returned
+     * by handlers. The results of the query that have one of these paths are left out.
+     *
+     * @param paths the absolute paths.
+     *
+     * @throws RepositoryException if the operation failed.
+     */
+    public void setPrecedingPaths(String[] paths) throws RepositoryException {
+        if (content != null) {
+            List<String> results = new ArrayList<String>(Arrays.asList(filterPaths(paths)));
+            results.addAll(Arrays.asList((String[]) content));
+            setContent(fixPaths(results.toArray(new String[results.size()])));
+            return;
+        }
+
+        precedingPaths = paths;
+        precedingPathSet = new HashSet<String>(Arrays.asList(paths));
+        positions.clear();
+        positions.put(0, null);
+    }
+
+    /**
+     * Method to set the chroot the results are returned through. Only results within its base
+     * prefix are returned, with paths relative to it.
+     *
+     * @param chrootWrapper the chroot wrapper.
+     *
+     * @throws RepositoryException if the operation failed.
+     */
+    public void setChrootWrapper(ChrootWrapper chrootWrapper) throws RepositoryException {
+        if (this.chrootWrapper != null) {
+            return;
+        }
+
+        if (content != null) {
+            // the results were read before, with absolute paths.
+            String[] paths = (String[]) content;
+            this.chrootWrapper = chrootWrapper;
+            setContent(filterPaths(paths));
+            return;
+        }
+
+        this.chrootWrapper = chrootWrapper;
+        positions.clear();
+        positions.put(0, null);
+    }
+
+    @Override
+    public String[] getChildPaths(int start, int num) throws RepositoryException {
+        if (content != null) {
+            return super.getChildPaths(start, num);
+        }
+
+        return fixPaths(readResults(start, num));
+    }
+
+    @Override
+    public int getChildCount() throws RepositoryException {
+        getContent();
+        return super.getChildCount();
+    }
+
+    @Override
+    public Object getContent() throws RepositoryException {
+        if (content == null) {
+            setChildren(readResults(0, -1));
+        }
+
+        return super.getContent();
+    }
+
+    /**
+     * Method to filter the path of a result of the query, leaving out the preceding paths and the
+     * paths outside the chroot.
+     *
+     * @param path the absolute path of the result.
+     *
+     * @return the path to return for the result, or null to leave the result out.
+     */
+    public String filter(String path) {
+        if (precedingPathSet.contains(path)) {
+            return null;
+        }
+
+        return getOutPath(path);
+    }
+
+    // Method to read the results from the given position, the preceding paths first.
+    private String[] readResults(int start, int num) throws RepositoryException {
+        String[] preceding = filterPaths(precedingPaths);
+        List<String> paths = new ArrayList<String>();
+
+        if (start < preceding.length) {
+            int end = (num < 0) ? preceding.length : Math.min(preceding.length, start + num);
+            paths.addAll(Arrays.asList(preceding).subList(start, end));
+        }
+
+        int remaining = (num < 0) ? -1 : num - paths.size();
+        if (remaining == 0) {
+            return paths.toArray(new String[paths.size()]);
+        }
+
+        // the page of query results starts after the nearest position already read.
+        int position = Math.max(0, start - preceding.length);
+        Map.Entry<Integer, Object[]> known = positions.floorEntry(position);
+        boolean filtered = precedingPaths.length > 0 || chrootWrapper != null;
+
+        setContextInformation();
+
+        try {
+            SQLQueryProcessor.ResultPage page = queryProcessor.getResultPage(sqlString, parameters,
+                    resultType, known.getValue(), position - known.getKey(), remaining,
+                    filtered ? this : null);
+
+            if (page.getPaths().length > 0) {
+                positions.put(position + page.getPaths().length, page.getLastKey());
+            }
+
+            paths.addAll(Arrays.asList(page.getPaths()));
+        } finally {
+            clearContextInformation();
+        }
+
+        return paths.toArray(new String[paths.size()]);
+    }
+
+    // Method to filter and convert paths through the chroot.
+    private String[] filterPaths(String[] paths) {
+        List<String> filteredPaths = new ArrayList<String>();
+
+        for (String path : paths) {
+            String outPath = getOutPath(path);
+            if (outPath != null) {
+                filteredPaths.add(outPath);
+            }
+        }
+
+        return filteredPaths.toArray(new String[filteredPaths.size()]);
+    }
+
+    // Method to convert a path through the chroot, or return null if it is outside the chroot.
+    private String getOutPath(String path) {
+        String basePrefix = (chrootWrapper != null) ? chrootWrapper.getBasePrefix() : null;
+
+        if (basePrefix == null || basePrefix.length() == 0) {
+            return path;
+        }
+
+        if (!path.startsWith(basePrefix + RepositoryConstants.PATH_SEPARATOR)) {
+            return null;
+        }
+
+        return chrootWrapper.getOutPath(path);
+    }
+}
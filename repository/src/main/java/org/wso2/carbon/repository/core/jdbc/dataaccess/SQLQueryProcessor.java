@@ -41,6 +41,9 @@ import org.wso2.carbon.repository.api.utils.RepositoryUtils;
 import org.wso2.carbon.repository.core.CollectionImpl;
 import org.wso2.carbon.repository.core.CurrentContext;
 import org.wso2.carbon.repository.core.DatabaseConstants;
+import org.wso2.carbon.repository.core.Transaction;
+import org.wso2.carbon.repository.core.caching.QueryResultCache;
+import org.wso2.carbon.repository.core.config.StaticConfiguration;
 import org.wso2.carbon.repository.core.exceptions.RepositoryDBException;
 import org.wso2.carbon.repository.core.utils.InternalConstants;
 import org.wso2.carbon.repository.spi.dao.ResourceDAO;
@@ -52,7 +55,12 @@ import org.wso2.carbon.repository.spi.dataaccess.DataAccessManager;
 public class SQLQueryProcessor implements QueryProcessor {
 
     private static final Log log = LogFactory.getLog(SQLQueryProcessor.class);
+
+    // The largest number of rows fetched at once while reading a page of results.
+    private static final int MAX_FETCH_SIZE = 1000;
+
     private ResourceDAO resourceDAO;
+    private DataAccessManager dataAccessManager;
 
     /**
      * DataSource of the registry database. URL handlers can access this to construct resources by
@@ -72,6 +80,7 @@ public class SQLQueryProcessor implements QueryProcessor {
             log.error("Invalid data access manager.");
         }
         
+        this.dataAccessManager = dataAccessManager;
         this.resourceDAO = dataAccessManager.getDAOManager().getResourceDAO();
     }
 
@@ -82,6 +91,9 @@ public class SQLQueryProcessor implements QueryProcessor {
         String sqlString;
         ResultSet results = null;
         PreparedStatement s = null;
+        QueryResultCache queryResultCache = QueryResultCache.getQueryResultCache();
+        QueryResultCache.Key cacheKey = null;
+        QueryResultCache.Stamp cacheStamp = null;
 
         try {
 
@@ -114,50 +126,48 @@ public class SQLQueryProcessor implements QueryProcessor {
                         + ".Expected java.lang.String or byte[]");
             }
 
-            conn = JDBCDatabaseTransaction.getConnection();
-
-            // adding the tenant ids for the query
-            TenantAwareSQLTransformer transformer = new TenantAwareSQLTransformer(sqlString);
-            String transformedQuery = transformer.getTransformedQuery();
-            int transformedParameterCount = transformer.getAdditionalParameterCount();
-//            int trailingParameterCount = transformer.getTrailingParameterCount();
+            String resultType = query.getProperty(RepositoryConstants.RESULT_TYPE_PROPERTY_NAME);
 
-            s = conn.prepareStatement(transformedQuery);
-            /*s = conn.prepareStatement(transformedQuery, ResultSet.TYPE_FORWARD_ONLY,
-                    ResultSet.CONCUR_READ_ONLY);*/
+            if (resultType == null) {
+                resultType = RepositoryConstants.RESOURCES_RESULT_TYPE;
+                query.setProperty(RepositoryConstants.RESULT_TYPE_PROPERTY_NAME, resultType);
+            }
 
-            int nextParameterIndex = 0;
+            Object resultPaging = (parameters != null) ?
+                    parameters.get(InternalConstants.RESULT_PAGING_PROPERTY_NAME) : null;
 
-            // adding the additional parameters caused due to adding the tenant id,
-            for (int i = 0; i < transformedParameterCount; i++) {
-                nextParameterIndex++;
-                s.setInt(nextParameterIndex, CurrentContext.getTenantId());
+            if (resultPaging == null) {
+                resultPaging = query.getProperty(InternalConstants.RESULT_PAGING_PROPERTY_NAME);
             }
 
-            if (parameters != null) {
-                List<String> exclusions = Arrays.asList("content", "query", "mediaType", RepositoryConstants.RESULT_TYPE_PROPERTY_NAME);
-                
-                for (Object parameterNumberObject : parameters.keySet()) {
-                    String parameterNumber = (String) parameterNumberObject;
-                    
-                    if (exclusions.contains(parameterNumber)) {
-                        continue;
-                    }
-                    
-                    Object parameterValue = parameters.get(parameterNumber);
-                    s.setObject(Integer.parseInt(parameterNumber) + nextParameterIndex, parameterValue);
-                }
+            if (InternalConstants.LAZY_RESULT_PAGING.equals(resultPaging) && isPageable(resultType)) {
+                // the query is executed when the results are requested.
+                return new QueryResultCollection(this, sqlString, parameters, resultType);
             }
 
-            results = s.executeQuery();
+            Set<String> tables = (query.getPath() != null && Boolean.toString(true).equals(
+                    query.getProperty(InternalConstants.CACHE_RESULTS_PROPERTY_NAME))) ?
+                    QueryResultCache.getReadTables(sqlString) : null;
 
-            String resultType = query.getProperty(RepositoryConstants.RESULT_TYPE_PROPERTY_NAME);
+            if (tables != null) {
+                int tenantId = CurrentContext.getTenantId();
+                cacheKey = new QueryResultCache.Key(tenantId, query.getPath(), query.getVersionNumber(),
+                        sqlString, parameters);
+                String[] cachedPaths = queryResultCache.get(cacheKey);
 
-            if (resultType == null) {
-                resultType = RepositoryConstants.RESOURCES_RESULT_TYPE;
-                query.setProperty(RepositoryConstants.RESULT_TYPE_PROPERTY_NAME, resultType);
+                if (cachedPaths != null) {
+                    return new CollectionImpl(cachedPaths);
+                }
+
+                // read before executing the query, so that concurrent writes keep its results out.
+                cacheStamp = queryResultCache.getStamp(tenantId, tables);
             }
 
+            conn = JDBCDatabaseTransaction.getConnection();
+            s = prepareQuery(conn, sqlString, parameters);
+
+            results = s.executeQuery();
+
             if (resultType.equals(RepositoryConstants.RESOURCES_RESULT_TYPE)) {
                 // Result is a normal resource, which is stored in the Resources table or a
                 // collection of normal resources.
@@ -216,9 +226,378 @@ public class SQLQueryProcessor implements QueryProcessor {
             resultCollection.setContent(filteredContent);
         }
 
+        if (cacheKey != null) {
+            queryResultCache.put(cacheKey, resultCollection.getChildPaths(), cacheStamp);
+        }
+
         return resultCollection;
     }
 
+    /**
+     * The results of a query read by {@link #getResultPage}, with the key of the last result.
+     */
+    static final class ResultPage {
+
+        private final String[] paths;
+        private final Object[] lastKey;
+
+        private ResultPage(String[] paths, Object[] lastKey) {
+            this.paths = paths;
+            this.lastKey = lastKey;
+        }
+
+        /**
+         * Method to obtain the paths of the results of the page.
+         *
+         * @return the paths of the results.
+         */
+        String[] getPaths() {
+            return paths;
+        }
+
+        /**
+         * Method to obtain the key of the last result of the page, to read the next page after it.
+         *
+         * @return the key of the last result, or null if no result was read.
+         */
+        Object[] getLastKey() {
+            return lastKey;
+        }
+    }
+
+    /**
+     * Filters the results of a query read page by page.
+     */
+    interface ResultFilter {
+
+        /**
+         * Method to filter the path of a result.
+         *
+         * @param path the path of the result.
+         *
+         * @return the path to return for the result, or null to leave the result out.
+         * @throws RepositoryException if the operation failed.
+         */
+        String filter(String path) throws RepositoryException;
+    }
+
+    /**
+     * Method to read a page of the results of a query. The results are read in the order of their
+     * key columns, and the page starts after the given key, which the database finds from its
+     * index instead of the results before it being read again. Rows with the same key, which the
+     * eager result types leave out as duplicates, are read as one result.
+     *
+     * @param sqlString  the query.
+     * @param parameters the parameters of the query.
+     * @param resultType the result type of the query.
+     * @param afterKey   the key of the last result before the page, or null to start from the first.
+     * @param skip       the number of results to skip after the given key before the page starts.
+     * @param num        the number of results of the page, or -1 to read all the remaining results.
+     * @param filter     the filter of the paths of the results, or null to keep all of them.
+     *
+     * @return the page of results.
+     * @throws RepositoryException if the query failed, or if the page does not fit within the
+     *                             maximum query result size.
+     */
+    ResultPage getResultPage(String sqlString, Map<?, ?> parameters, String resultType, Object[] afterKey,
+                             int skip, int num, ResultFilter filter) throws RepositoryException {
+        JDBCDataAccessManager jdbcDataAccessManager = (JDBCDataAccessManager) dataAccessManager;
+        String[] keyColumns = getKeyColumns(resultType);
+        boolean transactionSucceeded = false;
+        PreparedStatement s = null;
+        ResultSet results = null;
+
+        beginTransaction(jdbcDataAccessManager);
+
+        try {
+            s = prepareQuery(JDBCDatabaseTransaction.getConnection(), sqlString, parameters, keyColumns, afterKey);
+
+            if (num > 0) {
+                s.setFetchSize(Math.min(skip + num, MAX_FETCH_SIZE));
+            }
+
+            results = s.executeQuery();
+
+            List<String> paths = new ArrayList<String>();
+            Object[] lastKey = afterKey;
+            int skipped = 0;
+
+            while ((num < 0 || paths.size() < num) && results.next()) {
+                Object[] key = new Object[keyColumns.length];
+                for (int i = 0; i < keyColumns.length; i++) {
+                    key[i] = results.getObject(keyColumns[i]);
+                }
+
+                // rows with the same key are next to each other, and have the same path.
+                if (lastKey != null && Arrays.equals(key, lastKey)) {
+                    continue;
+                }
+
+                lastKey = key;
+
+                // the paths of skipped results are only needed if some are left out.
+                if (skipped < skip && filter == null &&
+                        !RepositoryConstants.RESOURCES_RESULT_TYPE.equals(resultType)) {
+                    skipped++;
+                    continue;
+                }
+
+                String path = getResultPath(results, resultType);
+
+                if (path != null && filter != null) {
+                    path = filter.filter(path);
+                }
+
+                if (path == null) {
+                    continue;
+                }
+
+                if (skipped < skip) {
+                    skipped++;
+                    continue;
+                }
+
+                paths.add(path);
+                checkResultSize(paths.size());
+            }
+
+            transactionSucceeded = true;
+
+            return new ResultPage(paths.toArray(new String[paths.size()]), lastKey);
+        } catch (SQLException e) {
+            String msg = "Failed to read " + num + " results of the query " + sqlString + ". " +
+                    e.getMessage();
+            log.error(msg, e);
+            throw new RepositoryDBException(msg, e);
+        } finally {
+            try {
+                try {
+                    if (results != null) {
+                        results.close();
+                    }
+                } finally {
+                    if (s != null) {
+                        s.close();
+                    }
+                }
+            } catch (SQLException ex) {
+                String msg = InternalConstants.RESULT_SET_PREPARED_STATEMENT_CLOSE_ERROR;
+                log.error(msg, ex);
+            }
+
+            if (transactionSucceeded) {
+                commitTransaction(jdbcDataAccessManager);
+            } else {
+                rollbackTransaction(jdbcDataAccessManager);
+            }
+        }
+    }
+
+    // Prepares a query for the current tenant, with the given parameters.
+    private PreparedStatement prepareQuery(Connection conn, String sqlString, Map<?, ?> parameters)
+            throws SQLException, RepositoryException {
+        return prepareQuery(conn, sqlString, parameters, null, null);
+    }
+
+    // Prepares a query for the current tenant, with the given parameters. If key columns are given,
+    // the results are ordered by them, and start after the given key.
+    private PreparedStatement prepareQuery(Connection conn, String sqlString, Map<?, ?> parameters,
+                                           String[] keyColumns, Object[] afterKey)
+            throws SQLException, RepositoryException {
+        // adding the tenant ids for the query
+        TenantAwareSQLTransformer transformer = new TenantAwareSQLTransformer(sqlString);
+        String transformedQuery = transformer.getTransformedQuery();
+        int transformedParameterCount = transformer.getAdditionalParameterCount();
+//        int trailingParameterCount = transformer.getTrailingParameterCount();
+
+        int keyParameterIndex = countParameters(transformedQuery);
+        List<Object> keyParameters = new ArrayList<Object>();
+
+        if (keyColumns != null) {
+            transformedQuery = getKeysetQuery(transformedQuery, keyColumns, afterKey, keyParameters);
+        }
+
+        PreparedStatement s = conn.prepareStatement(transformedQuery);
+        /*s = conn.prepareStatement(transformedQuery, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY);*/
+
+        int nextParameterIndex = 0;
+
+        // adding the additional parameters caused due to adding the tenant id,
+        for (int i = 0; i < transformedParameterCount; i++) {
+            nextParameterIndex++;
+            s.setInt(nextParameterIndex, CurrentContext.getTenantId());
+        }
+
+        if (parameters != null) {
+            List<String> exclusions = Arrays.asList("content", "query", "mediaType",
+                    RepositoryConstants.RESULT_TYPE_PROPERTY_NAME, InternalConstants.RESULT_PAGING_PROPERTY_NAME);
+            
+            for (Object parameterNumberObject : parameters.keySet()) {
+                String parameterNumber = (String) parameterNumberObject;
+                
+                if (exclusions.contains(parameterNumber)) {
+                    continue;
+                }
+                
+                Object parameterValue = parameters.get(parameterNumber);
+                s.setObject(Integer.parseInt(parameterNumber) + nextParameterIndex, parameterValue);
+            }
+        }
+
+        for (Object keyParameter : keyParameters) {
+            s.setObject(++keyParameterIndex, keyParameter);
+        }
+
+        return s;
+    }
+
+    // Wraps a query to order its results by the given key columns, starting after the given key.
+    // NULL keys are ordered first on every database, and compared with IS NULL.
+    private static String getKeysetQuery(String query, String[] keyColumns, Object[] afterKey,
+                                         List<Object> keyParameters) {
+        StringBuilder sb = new StringBuilder("SELECT * FROM (").append(removeOrderBy(query))
+                .append(") LAZY_RESULTS");
+
+        if (afterKey != null) {
+            sb.append(" WHERE ");
+
+            for (int i = 0; i < keyColumns.length; i++) {
+                sb.append(i == 0 ? "(" : " OR (");
+
+                for (int j = 0; j < i; j++) {
+                    if (afterKey[j] == null) {
+                        sb.append("LAZY_RESULTS.").append(keyColumns[j]).append(" IS NULL AND ");
+                    } else {
+                        sb.append("LAZY_RESULTS.").append(keyColumns[j]).append("=? AND ");
+                        keyParameters.add(afterKey[j]);
+                    }
+                }
+
+                if (afterKey[i] == null) {
+                    sb.append("LAZY_RESULTS.").append(keyColumns[i]).append(" IS NOT NULL)");
+                } else {
+                    sb.append("LAZY_RESULTS.").append(keyColumns[i]).append(">?)");
+                    keyParameters.add(afterKey[i]);
+                }
+            }
+        }
+
+        sb.append(" ORDER BY ");
+
+        for (int i = 0; i < keyColumns.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append("CASE WHEN LAZY_RESULTS.").append(keyColumns[i])
+                    .append(" IS NULL THEN 0 ELSE 1 END, LAZY_RESULTS.").append(keyColumns[i]);
+        }
+
+        return sb.toString();
+    }
+
+    // Removes a trailing ORDER BY clause, which some databases do not allow in a derived table,
+    // unless it is followed by a clause limiting the results or has parameters.
+    private static String removeOrderBy(String query) {
+        String upperCaseQuery = query.toUpperCase();
+        int orderByIndex = upperCaseQuery.lastIndexOf("ORDER BY");
+
+        if (orderByIndex == -1) {
+            return query;
+        }
+
+        String orderBy = upperCaseQuery.substring(orderByIndex);
+
+        for (String s : new String[] {")", "?", "LIMIT", "OFFSET", "FETCH", "ROWS"}) {
+            if (orderBy.contains(s)) {
+                return query;
+            }
+        }
+
+        return query.substring(0, orderByIndex);
+    }
+
+    // Counts the parameters of a query, leaving out question marks within string literals.
+    private static int countParameters(String query) {
+        int count = 0;
+        boolean quoted = false;
+
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (c == '?' && !quoted) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    // Returns the columns identifying the results of the result types that can be paged.
+    private static String[] getKeyColumns(String resultType) {
+        if (RepositoryConstants.RESOURCES_RESULT_TYPE.equals(resultType)) {
+            return new String[] {DatabaseConstants.PATH_ID_FIELD, DatabaseConstants.NAME_FIELD};
+        } else if (InternalConstants.RESOURCE_UUID_RESULT_TYPE.equals(resultType)) {
+            return new String[] {DatabaseConstants.MOCK_PATH, DatabaseConstants.UUID_FIELD};
+        } else {
+            return new String[] {DatabaseConstants.MOCK_PATH, DatabaseConstants.TAG_NAME};
+        }
+    }
+
+    // Whether the results of the given result type can be read page by page.
+    private static boolean isPageable(String resultType) {
+        return RepositoryConstants.RESOURCES_RESULT_TYPE.equals(resultType) ||
+                InternalConstants.RESOURCE_UUID_RESULT_TYPE.equals(resultType) ||
+                InternalConstants.TAG_SUMMARY_RESULT_TYPE.equals(resultType);
+    }
+
+    // Returns the path of the result at the current row, for the result types that can be paged.
+    private String getResultPath(ResultSet results, String resultType) throws SQLException, RepositoryException {
+        if (RepositoryConstants.RESOURCES_RESULT_TYPE.equals(resultType)) {
+            int pathId = results.getInt(DatabaseConstants.PATH_ID_FIELD);
+            String resourceName = results.getString(DatabaseConstants.NAME_FIELD);
+            return resourceDAO.getPath(pathId, resourceName, false);
+        } else if (InternalConstants.RESOURCE_UUID_RESULT_TYPE.equals(resultType)) {
+            return results.getString(DatabaseConstants.MOCK_PATH) + ";" +
+                    results.getString(DatabaseConstants.UUID_FIELD);
+        } else {
+            return results.getString(DatabaseConstants.MOCK_PATH) + ";" +
+                    results.getString(DatabaseConstants.TAG_NAME) + ":" +
+                    String.valueOf(results.getInt(DatabaseConstants.USED_COUNT));
+        }
+    }
+
+    // Fails if the given number of results does not fit within the maximum query result size.
+    private static void checkResultSize(int resultCount) throws RepositoryDBException {
+        int maxQueryResultSize = StaticConfiguration.getMaxQueryResultSize();
+
+        if (maxQueryResultSize >= 0 && resultCount > maxQueryResultSize) {
+            String msg = "The query has more than " + maxQueryResultSize + " results to be read " +
+                    "into memory. Set the " + InternalConstants.RESULT_PAGING_PROPERTY_NAME +
+                    " property of the query to " + InternalConstants.LAZY_RESULT_PAGING +
+                    " to read the results page by page.";
+            log.error(msg);
+            throw new RepositoryDBException(msg);
+        }
+    }
+
+    private void beginTransaction(JDBCDataAccessManager dataAccessManager) throws RepositoryException {
+        Transaction.pushTransaction();
+        dataAccessManager.getTransactionManager().beginTransaction();
+    }
+
+    private void commitTransaction(JDBCDataAccessManager dataAccessManager) throws RepositoryException {
+        dataAccessManager.getTransactionManager().commitTransaction();
+        Transaction.popTransaction();
+    }
+
+    private void rollbackTransaction(JDBCDataAccessManager dataAccessManager) throws RepositoryException {
+        dataAccessManager.getTransactionManager().rollbackTransaction();
+        Transaction.popTransaction();
+    }
+
     /**
      * Fil the resource collection from a query result set with resources
      *
@@ -234,11 +613,9 @@ public class SQLQueryProcessor implements QueryProcessor {
 	//We can't use a HashSet here, because it doesn't keep the order that may lead to failures of queries having ORDER BY
         Set<String>  pathSet = new LinkedHashSet<String>();        
         while (results.next()) {
-            int pathId = results.getInt(DatabaseConstants.PATH_ID_FIELD);
-            String resourceName = results.getString(DatabaseConstants.NAME_FIELD);
-            String path = resourceDAO.getPath(pathId, resourceName, false);
-            if(path!=null){
-                pathSet.add(path);
+            String path = getResultPath(results, RepositoryConstants.RESOURCES_RESULT_TYPE);
+            if(path!=null && pathSet.add(path)){
+                checkResultSize(pathSet.size());
             }
         }
         String[] paths = pathSet.toArray(new String[pathSet.size()]);
@@ -370,6 +747,7 @@ public class SQLQueryProcessor implements QueryProcessor {
 
             String tagPath = mockPath+";"+tagName +":"+String.valueOf(tagOccurrence);
             tagPathList.add(tagPath);
+            checkResultSize(tagPathList.size());
         }
         
         String[] tagPaths = tagPathList.toArray(new String[tagPathList.size()]);
@@ -399,6 +777,7 @@ public class SQLQueryProcessor implements QueryProcessor {
 
             if (path != null && (!uuidList.contains(path))) {
                 uuidList.add(path);
+                checkResultSize(uuidList.size());
             }
         }
 
@@ -0,0 +1,515 @@
+/*
+ *  Copyright (c) 2005-2009, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.wso2.carbon.repository.core.statistics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.repository.api.handlers.Filter;
+import org.wso2.carbon.repository.api.handlers.Handler;
+import org.wso2.carbon.repository.api.handlers.HandlerContext;
+
+/**
+ * This class collects the latencies of the filter evaluations and handler invocations done by the
+ * handler managers, and of each handler lifecycle phase as a whole. Latencies are kept in a
+ * {@link LatencyHistogram} per operation, lifecycle phase, kind (filter, handler or phase) and
+ * class of the filter or handler, and the slowest invocations are kept for reporting.
+ * <p/>
+ * Collection is disabled by default. To enable it, set the
+ * <code>carbon.registry.statistics.handlers</code> system property to <code>true</code>. Only one
+ * in every <code>carbon.registry.statistics.handlers.sample.interval</code> (by default 100) handler
+ * manager invocations is timed, chosen at random, so that collection can be left enabled. The
+ * number of slowest invocations kept is set using the
+ * <code>carbon.registry.statistics.handlers.slowest</code> system property, which is 20 by default.
+ */
+public final class HandlerStatistics {
+
+    private static final Log log = LogFactory.getLog(HandlerStatistics.class);
+
+    /**
+     * The kind of the latencies of filter evaluations.
+     */
+    public static final String FILTER = "filter";
+
+    /**
+     * The kind of the latencies of handler invocations.
+     */
+    public static final String HANDLER = "handler";
+
+    /**
+     * The kind of the latencies of complete handler lifecycle phases.
+     */
+    public static final String PHASE = "phase";
+
+    private static final int DEFAULT_SAMPLE_INTERVAL = 100;
+    private static final int DEFAULT_SLOWEST_COUNT = 20;
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    private static volatile boolean enabled =
+            Boolean.toString(true).equals(System.getProperty("carbon.registry.statistics.handlers"));
+    private static volatile int sampleInterval = getIntegerProperty(
+            "carbon.registry.statistics.handlers.sample.interval", DEFAULT_SAMPLE_INTERVAL);
+    private static volatile int slowestCount = getIntegerProperty(
+            "carbon.registry.statistics.handlers.slowest", DEFAULT_SLOWEST_COUNT);
+
+    private static final Map<Key, LatencyHistogram> histograms =
+            new ConcurrentHashMap<Key, LatencyHistogram>();
+
+    // the slowest invocations, with the fastest of them at the head. guarded by itself.
+    private static final PriorityQueue<Invocation> slowest = new PriorityQueue<Invocation>();
+    private static volatile long slowestThreshold = 0;
+
+    private static final ThreadLocal<Random> random = new ThreadLocal<Random>() {
+        protected Random initialValue() {
+            return new Random();
+        }
+    };
+
+    // This class is not supposed to be instantiated.
+    private HandlerStatistics() {
+    }
+
+    /**
+     * Identifies the latencies of one operation, lifecycle phase, kind, and filter or handler
+     * class.
+     */
+    public static final class Key {
+
+        private final String operation;
+        private final String phase;
+        private final String kind;
+        private final String name;
+        private final String id;
+
+        /**
+         * Creates a key.
+         *
+         * @param operation the handler method, one of the method names defined in {@link Filter}.
+         * @param phase     the handler lifecycle phase, or null if not known.
+         * @param kind      one of {@link #FILTER}, {@link #HANDLER} or {@link #PHASE}.
+         * @param name      the class of the filter or handler, or null for a phase.
+         */
+        public Key(String operation, String phase, String kind, String name) {
+            this.operation = operation;
+            this.phase = phase;
+            this.kind = kind;
+            this.name = name;
+            this.id = operation + " " + (phase != null ? phase : "-") + " " + kind +
+                    (name != null ? " " + name : "");
+        }
+
+        /**
+         * Method to obtain the handler method.
+         *
+         * @return the handler method.
+         */
+        public String getOperation() {
+            return operation;
+        }
+
+        /**
+         * Method to obtain the handler lifecycle phase.
+         *
+         * @return the handler lifecycle phase, or null if not known.
+         */
+        public String getPhase() {
+            return phase;
+        }
+
+        /**
+         * Method to obtain the kind of the latencies.
+         *
+         * @return one of {@link #FILTER}, {@link #HANDLER} or {@link #PHASE}.
+         */
+        public String getKind() {
+            return kind;
+        }
+
+        /**
+         * Method to obtain the class of the filter or handler.
+         *
+         * @return the class name, or null for a phase.
+         */
+        public String getName() {
+            return name;
+        }
+
+        public int hashCode() {
+            return id.hashCode();
+        }
+
+        public boolean equals(Object obj) {
+            return obj instanceof Key && id.equals(((Key) obj).id);
+        }
+
+        public String toString() {
+            return id;
+        }
+    }
+
+    /**
+     * A single timed filter evaluation or handler invocation.
+     */
+    public static final class Invocation implements Comparable<Invocation> {
+
+        private final Key key;
+        private final long time;
+        private final String path;
+        private final long timestamp;
+
+        private Invocation(Key key, long time, String path, long timestamp) {
+            this.key = key;
+            this.time = time;
+            this.path = path;
+            this.timestamp = timestamp;
+        }
+
+        /**
+         * Method to obtain the key of the invocation.
+         *
+         * @return the key.
+         */
+        public Key getKey() {
+            return key;
+        }
+
+        /**
+         * Method to obtain the latency of the invocation.
+         *
+         * @return the latency in nanoseconds.
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * Method to obtain the path of the request.
+         *
+         * @return the path, or null if the request had no path.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Method to obtain the time the invocation ended.
+         *
+         * @return the time in milliseconds since the epoch.
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public int compareTo(Invocation other) {
+            return time < other.time ? -1 : (time == other.time ? 0 : 1);
+        }
+    }
+
+    /**
+     * A sampled invocation of a handler manager.
+     */
+    public static final class Dispatch {
+
+        private final String operation;
+        private final String phase;
+        private final HandlerContext requestContext;
+        private final long startTime = System.nanoTime();
+
+        private Dispatch(String operation, String phase, HandlerContext requestContext) {
+            this.operation = operation;
+            this.phase = phase;
+            this.requestContext = requestContext;
+        }
+
+        private String getPath() {
+            if (requestContext == null) {
+                return null;
+            } else if (requestContext.getResourcePath() != null) {
+                return requestContext.getResourcePath().getPath();
+            }
+
+            return requestContext.getSourcePath();
+        }
+    }
+
+    /**
+     * Method to check whether latencies are collected.
+     *
+     * @return true if latencies are collected.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Method to enable or disable the collection of latencies.
+     *
+     * @param enabled whether latencies should be collected.
+     */
+    public static void setEnabled(boolean enabled) {
+        HandlerStatistics.enabled = enabled;
+    }
+
+    /**
+     * Method to set how many handler manager invocations there are for each timed one.
+     *
+     * @param sampleInterval the sample interval, where 1 times every invocation.
+     */
+    public static void setSampleInterval(int sampleInterval) {
+        HandlerStatistics.sampleInterval = Math.max(1, sampleInterval);
+    }
+
+    /**
+     * Method to set the number of slowest invocations kept.
+     *
+     * @param slowestCount the number of slowest invocations kept.
+     */
+    public static void setSlowestCount(int slowestCount) {
+        HandlerStatistics.slowestCount = Math.max(0, slowestCount);
+
+        synchronized (slowest) {
+            trimSlowest();
+        }
+    }
+
+    /**
+     * Method to be called when a handler manager is invoked, which decides whether the invocation
+     * is timed.
+     *
+     * @param operation      the handler method, one of the method names defined in {@link Filter}.
+     * @param phase          the handler lifecycle phase of the handler manager, or null.
+     * @param requestContext the request context.
+     *
+     * @return the sampled invocation to pass to the other methods, or null if it is not timed.
+     */
+    public static Dispatch startDispatch(String operation, String phase,
+                                         HandlerContext requestContext) {
+        if (!enabled) {
+            return null;
+        }
+
+        int interval = sampleInterval;
+        if (interval > 1 && random.get().nextInt(interval) != 0) {
+            return null;
+        }
+
+        return new Dispatch(operation, phase, requestContext);
+    }
+
+    /**
+     * Method to obtain the start time of a filter evaluation or handler invocation.
+     *
+     * @param dispatch the sampled invocation, or null.
+     *
+     * @return the current time in nanoseconds, or 0 if the invocation is not timed.
+     */
+    public static long now(Dispatch dispatch) {
+        return dispatch != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Method to record the latency of a filter evaluation.
+     *
+     * @param dispatch  the sampled invocation, or null.
+     * @param filter    the evaluated filter.
+     * @param startTime the time returned by {@link #now} before the evaluation.
+     */
+    public static void filterEvaluated(Dispatch dispatch, Filter filter, long startTime) {
+        if (dispatch != null && filter != null) {
+            record(dispatch, FILTER, filter.getClass().getName(), System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Method to record the latency of a handler invocation.
+     *
+     * @param dispatch  the sampled invocation, or null.
+     * @param handler   the invoked handler.
+     * @param startTime the time returned by {@link #now} before the invocation.
+     */
+    public static void handlerInvoked(Dispatch dispatch, Handler handler, long startTime) {
+        if (dispatch != null) {
+            record(dispatch, HANDLER, handler.getClass().getName(), System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Method to be called when a handler manager invocation ends, which records the latency of the
+     * lifecycle phase.
+     *
+     * @param dispatch the sampled invocation, or null.
+     */
+    public static void endDispatch(Dispatch dispatch) {
+        if (dispatch != null) {
+            getHistogram(new Key(dispatch.operation, dispatch.phase, PHASE, null))
+                    .record(System.nanoTime() - dispatch.startTime);
+        }
+    }
+
+    /**
+     * Method to obtain the collected latencies.
+     *
+     * @return a copy of the histograms by key.
+     */
+    public static Map<Key, LatencyHistogram> getHistograms() {
+        return new HashMap<Key, LatencyHistogram>(histograms);
+    }
+
+    /**
+     * Method to obtain the slowest invocations.
+     *
+     * @return the slowest invocations, starting from the slowest.
+     */
+    public static List<Invocation> getSlowestInvocations() {
+        List<Invocation> invocations;
+
+        synchronized (slowest) {
+            invocations = new ArrayList<Invocation>(slowest);
+        }
+
+        Collections.sort(invocations, Collections.reverseOrder());
+        return invocations;
+    }
+
+    /**
+     * Method to clear the collected latencies.
+     */
+    public static void reset() {
+        histograms.clear();
+
+        synchronized (slowest) {
+            slowest.clear();
+            slowestThreshold = 0;
+        }
+    }
+
+    /**
+     * Method to build a report of the collected latencies, listing the given number of keys with
+     * the largest total latency, followed by the slowest invocations.
+     *
+     * @param count the number of keys to list.
+     *
+     * @return the report.
+     */
+    public static String getReport(int count) {
+        List<Map.Entry<Key, LatencyHistogram>> entries =
+                new ArrayList<Map.Entry<Key, LatencyHistogram>>(histograms.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<Key, LatencyHistogram>>() {
+            public int compare(Map.Entry<Key, LatencyHistogram> entry1,
+                               Map.Entry<Key, LatencyHistogram> entry2) {
+                long total1 = entry1.getValue().getTotalTime();
+                long total2 = entry2.getValue().getTotalTime();
+                return total1 > total2 ? -1 : (total1 == total2 ? 0 : 1);
+            }
+        });
+
+        StringBuilder report = new StringBuilder();
+        report.append("Handler latencies (ms), sampled 1 in ").append(sampleInterval).append(":\n");
+
+        for (int i = 0; i < entries.size() && i < count; i++) {
+            LatencyHistogram histogram = entries.get(i).getValue();
+            report.append(entries.get(i).getKey())
+                    .append(": count=").append(histogram.getCount())
+                    .append(" total=").append(toMillis(histogram.getTotalTime()))
+                    .append(" mean=").append(toMillis(histogram.getMeanTime()))
+                    .append(" p50=").append(toMillis(histogram.getPercentile(50)))
+                    .append(" p99=").append(toMillis(histogram.getPercentile(99)))
+                    .append(" max=").append(toMillis(histogram.getMaxTime())).append("\n");
+        }
+
+        report.append("Slowest invocations (ms):\n");
+
+        for (Invocation invocation : getSlowestInvocations()) {
+            report.append(invocation.getKey())
+                    .append(": time=").append(toMillis(invocation.getTime()))
+                    .append(" path=").append(invocation.getPath()).append("\n");
+        }
+
+        return report.toString();
+    }
+
+    private static void record(Dispatch dispatch, String kind, String name, long time) {
+        Key key = new Key(dispatch.operation, dispatch.phase, kind, name);
+        getHistogram(key).record(time);
+
+        if (time > slowestThreshold && slowestCount > 0) {
+            Invocation invocation = new Invocation(key, time, dispatch.getPath(),
+                    System.currentTimeMillis());
+
+            synchronized (slowest) {
+                slowest.add(invocation);
+                trimSlowest();
+            }
+        }
+    }
+
+    // must be called while holding the lock of the slowest invocations.
+    private static void trimSlowest() {
+        while (slowest.size() > slowestCount) {
+            slowest.poll();
+        }
+
+        slowestThreshold = (slowest.size() >= slowestCount && !slowest.isEmpty()) ?
+                slowest.peek().getTime() : 0;
+    }
+
+    private static LatencyHistogram getHistogram(Key key) {
+        LatencyHistogram histogram = histograms.get(key);
+
+        if (histogram == null) {
+            synchronized (histograms) {
+                histogram = histograms.get(key);
+                if (histogram == null) {
+                    histogram = new LatencyHistogram();
+                    histograms.put(key, histogram);
+                }
+            }
+        }
+
+        return histogram;
+    }
+
+    private static String toMillis(long time) {
+        return String.format("%.3f", time / NANOS_PER_MILLI);
+    }
+
+    private static int getIntegerProperty(String name, int defaultValue) {
+        String value = System.getProperty(name);
+
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value " + value + " for " + name + ", using " + defaultValue);
+            }
+        }
+
+        return defaultValue;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ *  Copyright (c) 2005-2009, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.wso2.carbon.repository.core.statistics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies in nanoseconds, which can be updated concurrently without locking. The
+ * latencies are counted in buckets growing in powers of two, where bucket <i>n</i> holds the
+ * latencies from 2<sup>n-1</sup> up to 2<sup>n</sup> - 1 nanoseconds, so percentiles are accurate
+ * to within a factor of two.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKET_COUNT = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalTime = new AtomicLong();
+    private final AtomicLong maxTime = new AtomicLong();
+
+    /**
+     * Method to record a latency.
+     *
+     * @param time the latency in nanoseconds.
+     */
+    public void record(long time) {
+        if (time < 0) {
+            time = 0;
+        }
+
+        buckets.incrementAndGet(getBucket(time));
+        count.incrementAndGet();
+        totalTime.addAndGet(time);
+
+        long max = maxTime.get();
+        while (time > max && !maxTime.compareAndSet(max, time)) {
+            max = maxTime.get();
+        }
+    }
+
+    /**
+     * Method to obtain the number of recorded latencies.
+     *
+     * @return the number of recorded latencies.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Method to obtain the sum of the recorded latencies.
+     *
+     * @return the sum of the recorded latencies in nanoseconds.
+     */
+    public long getTotalTime() {
+        return totalTime.get();
+    }
+
+    /**
+     * Method to obtain the largest recorded latency.
+     *
+     * @return the largest recorded latency in nanoseconds.
+     */
+    public long getMaxTime() {
+        return maxTime.get();
+    }
+
+    /**
+     * Method to obtain the mean of the recorded latencies.
+     *
+     * @return the mean latency in nanoseconds, or 0 if no latency was recorded.
+     */
+    public long getMeanTime() {
+        long recorded = count.get();
+        return recorded == 0 ? 0 : totalTime.get() / recorded;
+    }
+
+    /**
+     * Method to obtain an upper bound of the given percentile of the recorded latencies.
+     *
+     * @param percentile the percentile, between 0 and 100.
+     *
+     * @return the upper bound of the bucket holding the percentile, limited to the largest
+     *         recorded latency, or 0 if no latency was recorded.
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = getBucketCounts();
+        long recorded = 0;
+
+        for (long bucketCount : counts) {
+            recorded += bucketCount;
+        }
+
+        if (recorded == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(recorded * percentile / 100));
+        long seen = 0;
+
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+
+            if (seen >= rank) {
+                return Math.min(getBucketUpperBound(i), maxTime.get());
+            }
+        }
+
+        return maxTime.get();
+    }
+
+    /**
+     * Method to obtain the number of latencies recorded in each bucket.
+     *
+     * @return the counts of the buckets.
+     */
+    public long[] getBucketCounts() {
+        long[] counts = new long[BUCKET_COUNT];
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+        }
+
+        return counts;
+    }
+
+    /**
+     * Method to obtain the largest latency counted in the given bucket.
+     *
+     * @param bucket the index of the bucket.
+     *
+     * @return the largest latency of the bucket in nanoseconds.
+     */
+    public static long getBucketUpperBound(int bucket) {
+        return bucket >= BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    private static int getBucket(long time) {
+        return 64 - Long.numberOfLeadingZeros(time);
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.repository.core.tracing;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Exports spans to a file in the JSON encoding of the OpenTelemetry protocol. Each export is
+ * appended as one line holding a <code>resourceSpans</code> document, so the file can be read as
+ * JSON Lines by OpenTelemetry collectors and tools.
+ */
+public class FileSpanExporter implements SpanExporter {
+
+    private static final Log log = LogFactory.getLog(FileSpanExporter.class);
+
+    private static final String SERVICE_NAME = "wso2-carbon-repository";
+    private static final String SCOPE_NAME = "org.wso2.carbon.repository";
+    private static final int STATUS_CODE_ERROR = 2;
+
+    private final File file;
+
+    /**
+     * Creates an exporter appending to the given file.
+     *
+     * @param file the file, which is created with its parent directories if it does not exist.
+     */
+    public FileSpanExporter(File file) {
+        this.file = file;
+    }
+
+    public void export(List<Span> spans) {
+        if (spans.isEmpty()) {
+            return;
+        }
+
+        String line = toJson(spans);
+
+        synchronized (this) {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                log.error("Unable to create the directory of the trace file " + file);
+                return;
+            }
+
+            Writer writer = null;
+            try {
+                writer = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+                writer.write(line);
+                writer.write('\n');
+            } catch (IOException e) {
+                log.error("Unable to write spans to the trace file " + file, e);
+            } finally {
+                if (writer != null) {
+                    try {
+                        writer.close();
+                    } catch (IOException e) {
+                        log.error("Unable to close the trace file " + file, e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to encode spans as an OpenTelemetry <code>resourceSpans</code> JSON document.
+     *
+     * @param spans the spans to encode.
+     *
+     * @return the JSON document, on a single line.
+     */
+    public static String toJson(List<Span> spans) {
+        StringBuilder json = new StringBuilder(256 * spans.size());
+        json.append("{\"resourceSpans\":[{\"resource\":{\"attributes\":[");
+        appendAttribute(json, "service.name", SERVICE_NAME);
+        json.append("]},\"scopeSpans\":[{\"scope\":{\"name\":");
+        appendString(json, SCOPE_NAME);
+        json.append("},\"spans\":[");
+
+        boolean first = true;
+        for (Span span : spans) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            appendSpan(json, span);
+        }
+
+        json.append("]}]}]}");
+        return json.toString();
+    }
+
+    private static void appendSpan(StringBuilder json, Span span) {
+        json.append("{\"traceId\":");
+        appendString(json, span.getTraceId());
+        json.append(",\"spanId\":");
+        appendString(json, span.getSpanId());
+        if (span.getParentSpanId() != null) {
+            json.append(",\"parentSpanId\":");
+            appendString(json, span.getParentSpanId());
+        }
+        json.append(",\"name\":");
+        appendString(json, span.getName());
+        json.append(",\"kind\":").append(span.getKind());
+        json.append(",\"startTimeUnixNano\":\"").append(span.getStartTime());
+        json.append("\",\"endTimeUnixNano\":\"").append(span.getEndTime()).append('"');
+
+        json.append(",\"attributes\":[");
+        boolean first = true;
+        for (Map.Entry<String, String> attribute : span.getAttributes().entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            appendAttribute(json, attribute.getKey(), attribute.getValue());
+        }
+        json.append(']');
+
+        if (span.isError()) {
+            json.append(",\"status\":{\"code\":").append(STATUS_CODE_ERROR);
+            if (span.getErrorMessage() != null) {
+                json.append(",\"message\":");
+                appendString(json, span.getErrorMessage());
+            }
+            json.append('}');
+        } else {
+            json.append(",\"status\":{}");
+        }
+        json.append('}');
+    }
+
+    private static void appendAttribute(StringBuilder json, String key, String value) {
+        json.append("{\"key\":");
+        appendString(json, key);
+        json.append(",\"value\":{\"stringValue\":");
+        appendString(json, value);
+        json.append("}}");
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        String hex = Integer.toHexString(c);
+                        json.append("\\u");
+                        for (int j = hex.length(); j < 4; j++) {
+                            json.append('0');
+                        }
+                        json.append(hex);
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+
+        json.append('"');
+    }
+}
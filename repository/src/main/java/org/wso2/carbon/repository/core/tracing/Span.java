@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.repository.core.tracing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A timed unit of work in a trace, such as a repository operation, a handler invocation, a DAO call
+ * or a JDBC statement. Spans are created and ended through the {@link Tracer}.
+ * <p/>
+ * A span of a trace that was not sampled does not record anything, and is only used to make sure
+ * that the nested work is not traced either.
+ */
+public class Span {
+
+    /**
+     * The kind of spans of work done within the repository.
+     */
+    public static final int KIND_INTERNAL = 1;
+
+    /**
+     * The kind of spans of calls to the database.
+     */
+    public static final int KIND_CLIENT = 3;
+
+    static final Span NOT_SAMPLED = new Span(null, null, null, null, KIND_INTERNAL, 0);
+
+    private final Trace trace;
+    private final String spanId;
+    private final String parentSpanId;
+    private final String name;
+    private final int kind;
+    private final long startTime;
+    private final Map<String, String> attributes = new LinkedHashMap<String, String>();
+    private volatile long endTime;
+    private String errorMessage;
+    private boolean error;
+
+    // The spans of one trace, which are exported together when the root span ends.
+    static final class Trace {
+
+        private final String traceId;
+        private final List<Span> endedSpans = new ArrayList<Span>();
+
+        Trace(String traceId) {
+            this.traceId = traceId;
+        }
+
+        synchronized void ended(Span span) {
+            endedSpans.add(span);
+        }
+
+        synchronized List<Span> drain() {
+            List<Span> spans = new ArrayList<Span>(endedSpans);
+            endedSpans.clear();
+            return spans;
+        }
+    }
+
+    Span(Trace trace, String spanId, String parentSpanId, String name, int kind, long startTime) {
+        this.trace = trace;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.kind = kind;
+        this.startTime = startTime;
+    }
+
+    /**
+     * Method to check whether the span records its work.
+     *
+     * @return true if the span belongs to a sampled trace.
+     */
+    public boolean isRecording() {
+        return trace != null;
+    }
+
+    /**
+     * Method to set an attribute of the span. Attributes of spans that do not record are ignored.
+     *
+     * @param key   the attribute key.
+     * @param value the attribute value.
+     */
+    public void setAttribute(String key, String value) {
+        if (trace != null && value != null) {
+            synchronized (attributes) {
+                attributes.put(key, value);
+            }
+        }
+    }
+
+    /**
+     * Method to mark the span as failed.
+     *
+     * @param cause the failure, which may be null.
+     */
+    public synchronized void setError(Throwable cause) {
+        error = true;
+        errorMessage = (cause != null) ? cause.getMessage() : null;
+    }
+
+    /**
+     * Method to obtain the identifier of the trace of the span.
+     *
+     * @return the trace identifier as 32 hexadecimal characters, or null if not recording.
+     */
+    public String getTraceId() {
+        return trace != null ? trace.traceId : null;
+    }
+
+    /**
+     * Method to obtain the identifier of the span.
+     *
+     * @return the span identifier as 16 hexadecimal characters, or null if not recording.
+     */
+    public String getSpanId() {
+        return spanId;
+    }
+
+    /**
+     * Method to obtain the identifier of the parent span.
+     *
+     * @return the parent span identifier, or null for the root span of a trace.
+     */
+    public String getParentSpanId() {
+        return parentSpanId;
+    }
+
+    /**
+     * Method to obtain the name of the span.
+     *
+     * @return the name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Method to obtain the kind of the span.
+     *
+     * @return {@link #KIND_INTERNAL} or {@link #KIND_CLIENT}.
+     */
+    public int getKind() {
+        return kind;
+    }
+
+    /**
+     * Method to obtain the time the span started.
+     *
+     * @return the time in nanoseconds since the epoch.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Method to obtain the time the span ended.
+     *
+     * @return the time in nanoseconds since the epoch, or 0 if the span has not ended.
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Method to obtain the attributes of the span.
+     *
+     * @return a copy of the attributes, in the order they were set.
+     */
+    public Map<String, String> getAttributes() {
+        synchronized (attributes) {
+            return Collections.unmodifiableMap(new LinkedHashMap<String, String>(attributes));
+        }
+    }
+
+    /**
+     * Method to check whether the span failed.
+     *
+     * @return true if the span was marked as failed.
+     */
+    public synchronized boolean isError() {
+        return error;
+    }
+
+    /**
+     * Method to obtain the message of the failure of the span.
+     *
+     * @return the message, or null if none.
+     */
+    public synchronized String getErrorMessage() {
+        return errorMessage;
+    }
+
+    Trace getTrace() {
+        return trace;
+    }
+
+    void setEndTime(long endTime) {
+        this.endTime = endTime;
+    }
+}
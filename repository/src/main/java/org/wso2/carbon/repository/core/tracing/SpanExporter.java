@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.repository.core.tracing;
+
+import java.util.List;
+
+/**
+ * Receives the ended spans of sampled traces from the {@link Tracer}.
+ */
+public interface SpanExporter {
+
+    /**
+     * Method to export ended spans. The spans of a trace are normally exported together once its
+     * root span ends. Spans ending after that are exported on their own.
+     *
+     * @param spans the ended spans.
+     */
+    void export(List<Span> spans);
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.repository.core.tracing;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.repository.api.handlers.Handler;
+import org.wso2.carbon.repository.core.CurrentContext;
+
+/**
+ * Creates the spans that trace repository operations through the handlers, DAOs and JDBC
+ * statements they use. The span of the work being run is kept in the {@link CurrentContext}, so it
+ * follows the operation to the threads it is handed to.
+ * <p/>
+ * A trace starts when a repository operation is invoked outside of any other traced operation.
+ * Whether it is recorded is decided at that point, with the probability given by the
+ * <code>carbon.registry.tracing.sample.ratio</code> system property (0.01 by default), and all
+ * work nested in it follows that decision. Recorded traces are exported as OpenTelemetry JSON to
+ * the file given by the <code>carbon.registry.tracing.file</code> system property.
+ * <p/>
+ * Tracing is disabled by default. To enable it, set the <code>carbon.registry.tracing</code>
+ * system property to <code>true</code>. DAO calls are only traced if tracing is enabled when the
+ * DAOs are created.
+ */
+public final class Tracer {
+
+    private static final Log log = LogFactory.getLog(Tracer.class);
+
+    private static final double DEFAULT_SAMPLE_RATIO = 0.01;
+    private static final String DEFAULT_FILE_NAME = "repository-traces.json";
+
+    private static volatile boolean enabled =
+            Boolean.toString(true).equals(System.getProperty("carbon.registry.tracing"));
+    private static volatile double sampleRatio = getSampleRatioProperty();
+    private static volatile SpanExporter exporter;
+
+    // the epoch time in nanoseconds is derived from the monotonic clock, for precision.
+    private static final long EPOCH_NANOS_BASE = System.currentTimeMillis() * 1000000L;
+    private static final long NANO_TIME_BASE = System.nanoTime();
+
+    private static final ThreadLocal<Random> random = new ThreadLocal<Random>() {
+        protected Random initialValue() {
+            return new Random();
+        }
+    };
+
+    // This class is not supposed to be instantiated.
+    private Tracer() {
+    }
+
+    /**
+     * Method to check whether tracing is enabled.
+     *
+     * @return true if new traces are started.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Method to enable or disable tracing. Operations already being traced are not affected.
+     *
+     * @param enabled whether new traces should be started.
+     */
+    public static void setEnabled(boolean enabled) {
+        Tracer.enabled = enabled;
+    }
+
+    /**
+     * Method to set the fraction of traces that are recorded.
+     *
+     * @param sampleRatio the fraction, between 0 and 1.
+     */
+    public static void setSampleRatio(double sampleRatio) {
+        Tracer.sampleRatio = Math.max(0, Math.min(1, sampleRatio));
+    }
+
+    /**
+     * Method to set the exporter of the recorded spans, replacing the file exporter.
+     *
+     * @param exporter the exporter, or null to use the file exporter.
+     */
+    public static void setExporter(SpanExporter exporter) {
+        Tracer.exporter = exporter;
+    }
+
+    /**
+     * Method to check whether the work being run is recorded.
+     *
+     * @return true if the current span records its work.
+     */
+    public static boolean isRecording() {
+        Span span = CurrentContext.getSpan();
+        return span != null && span.isRecording();
+    }
+
+    /**
+     * Method to be called when a repository operation starts. It starts a span for the operation,
+     * or a new trace if no operation is being traced, and makes it the current span. Each call
+     * must be followed by a call to {@link #endOperation()}.
+     *
+     * @param operation the name of the operation.
+     */
+    public static void beginOperation(String operation) {
+        Span parent = CurrentContext.getSpan();
+        Span span;
+
+        if (parent != null) {
+            span = parent.isRecording() ?
+                    createSpan(parent, "Repository." + operation, Span.KIND_INTERNAL) : parent;
+        } else if (!enabled) {
+            span = null;
+        } else if (random.get().nextDouble() < sampleRatio) {
+            span = new Span(new Span.Trace(newId(16)), newId(8), null, "Repository." + operation,
+                    Span.KIND_INTERNAL, now());
+        } else {
+            span = Span.NOT_SAMPLED;
+        }
+
+        if (span != null && span != parent) {
+            span.setAttribute("repository.operation", operation);
+            span.setAttribute("repository.tenant.id", String.valueOf(CurrentContext.getTenantId()));
+            span.setAttribute("repository.user", CurrentContext.getUser());
+        }
+
+        CurrentContext.setSpan(span);
+    }
+
+    /**
+     * Method to be called when a repository operation ends, which ends the span started by the
+     * matching call to {@link #beginOperation(String)}.
+     */
+    public static void endOperation() {
+        Span span = CurrentContext.getSpan();
+        CurrentContext.removeSpan();
+
+        if (span != null && span != CurrentContext.getSpan()) {
+            end(span);
+        }
+    }
+
+    /**
+     * Method to start the span of a handler invocation and make it the current span.
+     *
+     * @param handler the invoked handler.
+     * @param method  the handler method.
+     * @param phase   the handler lifecycle phase, which may be null.
+     *
+     * @return the span, to be passed to {@link #exit(Span)}, or null if the work is not recorded.
+     */
+    public static Span enterHandler(Handler handler, String method, String phase) {
+        Span span = enter(handler.getClass().getSimpleName() + "." + method, Span.KIND_INTERNAL);
+
+        if (span != null) {
+            span.setAttribute("repository.handler.class", handler.getClass().getName());
+            span.setAttribute("repository.handler.method", method);
+            span.setAttribute("repository.handler.phase", phase);
+        }
+
+        return span;
+    }
+
+    /**
+     * Method to start the span of a JDBC statement. The span is not made the current span.
+     *
+     * @param sql the SQL of the statement.
+     *
+     * @return the span, to be passed to {@link #end(Span)}, or null if the work is not recorded.
+     */
+    public static Span startStatement(String sql) {
+        Span parent = CurrentContext.getSpan();
+
+        if (parent == null || !parent.isRecording()) {
+            return null;
+        }
+
+        Span span = createSpan(parent, "JDBC " + getStatementType(sql), Span.KIND_CLIENT);
+        span.setAttribute("db.statement", sql);
+        return span;
+    }
+
+    /**
+     * Method to end the span of a handler invocation or DAO call, and make its parent the current
+     * span again.
+     *
+     * @param span the span returned when it was started, which may be null.
+     */
+    public static void exit(Span span) {
+        if (span != null) {
+            CurrentContext.removeSpan();
+            end(span);
+        }
+    }
+
+    /**
+     * Method to mark a span as failed.
+     *
+     * @param span  the span, which may be null.
+     * @param cause the failure.
+     */
+    public static void setError(Span span, Throwable cause) {
+        if (span != null) {
+            span.setError(cause);
+        }
+    }
+
+    /**
+     * Method to end a span. The spans of a trace are exported when its root span ends.
+     *
+     * @param span the span, which may be null.
+     */
+    public static void end(Span span) {
+        if (span == null || !span.isRecording()) {
+            return;
+        }
+
+        span.setEndTime(now());
+        Span.Trace trace = span.getTrace();
+        trace.ended(span);
+
+        if (span.getParentSpanId() == null) {
+            export(trace.drain());
+        }
+    }
+
+    /**
+     * Method to wrap an object so that calls to the methods of the given interface are traced.
+     *
+     * @param type   the interface to trace.
+     * @param target the object to wrap.
+     *
+     * @return the wrapped object, or the object itself if tracing is disabled.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T wrap(final Class<T> type, final T target) {
+        if (!enabled || target == null) {
+            return target;
+        }
+
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                            throws Throwable {
+                        if (method.getDeclaringClass() == Object.class) {
+                            return method.invoke(target, args);
+                        }
+
+                        Span span = enter(type.getSimpleName() + "." + method.getName(),
+                                Span.KIND_INTERNAL);
+
+                        try {
+                            return method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            setError(span, e.getCause());
+                            throw e.getCause();
+                        } finally {
+                            exit(span);
+                        }
+                    }
+                });
+    }
+
+    private static Span enter(String name, int kind) {
+        Span parent = CurrentContext.getSpan();
+
+        if (parent == null || !parent.isRecording()) {
+            return null;
+        }
+
+        Span span = createSpan(parent, name, kind);
+        CurrentContext.setSpan(span);
+        return span;
+    }
+
+    private static Span createSpan(Span parent, String name, int kind) {
+        return new Span(parent.getTrace(), newId(8), parent.getSpanId(), name, kind, now());
+    }
+
+    private static void export(List<Span> spans) {
+        SpanExporter spanExporter = exporter;
+
+        if (spanExporter == null) {
+            synchronized (Tracer.class) {
+                if (exporter == null) {
+                    exporter = new FileSpanExporter(new File(getFileProperty()));
+                }
+                spanExporter = exporter;
+            }
+        }
+
+        try {
+            spanExporter.export(spans);
+        } catch (RuntimeException e) {
+            log.error("Unable to export trace spans", e);
+        }
+    }
+
+    private static String getStatementType(String sql) {
+        String statement = sql.trim();
+        int end = 0;
+
+        while (end < statement.length() && Character.isLetter(statement.charAt(end))) {
+            end++;
+        }
+
+        return end > 0 ? statement.substring(0, end).toUpperCase() : "STATEMENT";
+    }
+
+    private static long now() {
+        return EPOCH_NANOS_BASE + (System.nanoTime() - NANO_TIME_BASE);
+    }
+
+    private static String newId(int bytes) {
+        Random generator = random.get();
+        StringBuilder id = new StringBuilder(bytes * 2);
+
+        for (int i = 0; i < bytes; i++) {
+            String hex = Integer.toHexString(generator.nextInt(256));
+            if (hex.length() == 1) {
+                id.append('0');
+            }
+            id.append(hex);
+        }
+
+        return id.toString();
+    }
+
+    private static double getSampleRatioProperty() {
+        String value = System.getProperty("carbon.registry.tracing.sample.ratio");
+
+        if (value != null) {
+            try {
+                return Double.parseDouble(value.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid trace sample ratio " + value + ", using " + DEFAULT_SAMPLE_RATIO);
+            }
+        }
+
+        return DEFAULT_SAMPLE_RATIO;
+    }
+
+    private static String getFileProperty() {
+        String file = System.getProperty("carbon.registry.tracing.file");
+
+        if (file == null) {
+            String carbonHome = System.getProperty("carbon.home");
+            file = (carbonHome != null) ?
+                    carbonHome + File.separator + "repository" + File.separator + "logs" +
+                            File.separator + DEFAULT_FILE_NAME : DEFAULT_FILE_NAME;
+        }
+
+        return file;
+    }
+}
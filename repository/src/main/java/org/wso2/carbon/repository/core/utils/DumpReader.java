@@ -53,11 +53,11 @@ public class DumpReader extends Reader {
     private Map<Integer, Integer> resourceEndingBufferIndices;
     private Map<Integer, Integer> resourceEndingOffset = new HashMap<Integer, Integer>();
 
-    // to collect some statistics
-    private static int totalRead = 0;
-    private static int totalBuffered = 0;
-    private static int maximumBuffer = 0;
-    private static int totalBufferedRead = 0;
+    // to collect some statistics of this reader
+    private long totalRead = 0;
+    private long totalBuffered = 0;
+    private int maximumBuffer = 0;
+    private long totalBufferedRead = 0;
 
     // sometimes parent have to read a bit of child resource, as only child resource have the
     // the name of the resource, but parent need to know the child path to construct the child path,
@@ -461,20 +461,20 @@ public class DumpReader extends Reader {
     }
 
     /**
-     * Return the total number of read bytes from the main reader.
+     * Return the total number of characters read from the main reader.
      *
-     * @return the total number of read bytes.
+     * @return the total number of read characters.
      */
-    public static int getTotalRead() {
+    public long getTotalRead() {
         return totalRead;
     }
 
     /**
-     * Return the total number of buffered bytes from the main reader.
+     * Return the total number of characters buffered when reading from the main reader.
      *
-     * @return the total number of buffed bytes.
+     * @return the total number of buffered characters.
      */
-    public static int getTotalBuffered() {
+    public long getTotalBuffered() {
         return totalBuffered;
     }
 
@@ -483,17 +483,17 @@ public class DumpReader extends Reader {
      *
      * @return the maximum size of the buffer.
      */
-    public static int getMaxBufferedSize() {
+    public int getMaxBufferedSize() {
         return maximumBuffer;
     }
 
     /**
-     * Return the total number of bytes read from the buffer (buffered when reading from the main
-     * reader)
+     * Return the total number of characters read from the buffer (buffered when reading from the
+     * main reader)
      *
-     * @return the total number of bytes read from the buffer.
+     * @return the total number of characters read from the buffer.
      */
-    public static int getTotalBufferedRead() {
+    public long getTotalBufferedRead() {
         return totalBufferedRead;
     }
 }
@@ -62,7 +62,22 @@ public class InternalConstants {
 	 * Result type : summary count of all tags
 	 */
 	public static final String TAG_SUMMARY_RESULT_TYPE = "TagSummary";
-	
+
+	/**
+	 * Name of the property of a query, or of the query parameter, selecting how its results are paged
+	 */
+	public static final String RESULT_PAGING_PROPERTY_NAME = "resultPaging";
+
+	/**
+	 * Result paging: the results are read page by page, as they are requested
+	 */
+	public static final String LAZY_RESULT_PAGING = "lazy";
+
+	/**
+	 * Name of the property of a query, set to "true" to cache its results until a table it reads is written
+	 */
+	public static final String CACHE_RESULTS_PROPERTY_NAME = "cacheResults";
+
 	/**
 	 * Used to pass handler throughout request context
 	 */
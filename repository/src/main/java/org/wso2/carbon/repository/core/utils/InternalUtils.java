@@ -27,6 +27,7 @@ import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -61,6 +62,7 @@ import org.wso2.carbon.repository.core.EmbeddedRepositoryService;
 import org.wso2.carbon.repository.core.ResourceIDImpl;
 import org.wso2.carbon.repository.core.ResourceImpl;
 import org.wso2.carbon.repository.core.caching.CacheResource;
+import org.wso2.carbon.repository.core.caching.LinkResolutionCache;
 import org.wso2.carbon.repository.core.caching.RepositoryCacheEntry;
 import org.wso2.carbon.repository.core.caching.RepositoryCacheKey;
 import org.wso2.carbon.repository.core.config.RemoteConfiguration;
@@ -1055,6 +1057,56 @@ public class InternalUtils {
         return chroot;
     }
     
+    /**
+     * Method to check the existence of resources at a number of paths. Embedded repositories check
+     * the paths together, while other repositories are asked for each path.
+     *
+     * @param repository the repository to check.
+     * @param paths      the paths to check.
+     *
+     * @return the subset of the given paths at which a resource exists.
+     * @throws RepositoryException if the operation failed.
+     */
+    public static Set<String> getExistingPaths(Repository repository, String[] paths) throws RepositoryException {
+        if (repository instanceof EmbeddedRepository) {
+            return ((EmbeddedRepository) repository).getExistingPaths(paths);
+        }
+
+        Set<String> existingPaths = new HashSet<String>();
+
+        for (String path : paths) {
+            if (path != null && repository.resourceExists(path)) {
+                existingPaths.add(path);
+            }
+        }
+
+        return existingPaths;
+    }
+
+    /**
+     * Method to get the resources at a number of paths. Embedded repositories read the resources
+     * together, while other repositories are asked for each path.
+     *
+     * @param repository the repository to read from.
+     * @param paths      the paths of the resources.
+     *
+     * @return the resources, in the order of the given paths.
+     * @throws RepositoryException if the operation failed.
+     */
+    public static Resource[] getResources(Repository repository, String[] paths) throws RepositoryException {
+        if (repository instanceof EmbeddedRepository) {
+            return ((EmbeddedRepository) repository).getResources(paths);
+        }
+
+        Resource[] resources = new Resource[paths.length];
+
+        for (int i = 0; i < paths.length; i++) {
+            resources[i] = repository.get(paths[i]);
+        }
+
+        return resources;
+    }
+
     /**
      * this method can only be called if the registry context is initialized.
      *
@@ -1240,6 +1292,23 @@ public class InternalUtils {
         
         return registryContext;
     }
+
+    /**
+     * Method to obtain the cache of the targets resolved for paths under symbolic links and mounts
+     * of the given repository.
+     *
+     * @param repository the repository.
+     *
+     * @return the link resolution cache, or null if the repository is not an embedded repository.
+     */
+    public static LinkResolutionCache getLinkResolutionCache(Repository repository) {
+        if (repository instanceof EmbeddedRepository &&
+                ((EmbeddedRepository) repository).getRepository() != null) {
+            return ((EmbeddedRepository) repository).getRepository().getLinkResolutionCache();
+        }
+
+        return null;
+    }
     
     /**
      * Set-up the system properties required to access the trust-store in Carbon. This is used in
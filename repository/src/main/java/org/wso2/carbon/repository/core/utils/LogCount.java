@@ -0,0 +1,88 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.carbon.repository.core.utils;
+
+import java.util.Date;
+
+/**
+ * Represents the number of logs of a resource path, user or action in an hour or day, as counted
+ * in the log rollups.
+ */
+public class LogCount {
+
+    /**
+     * Counts grouped by resource path.
+     */
+    public static final String BY_PATH = "P";
+
+    /**
+     * Counts grouped by the name of the user.
+     */
+    public static final String BY_USER = "U";
+
+    /**
+     * Counts grouped by action.
+     */
+    public static final String BY_ACTION = "A";
+
+    private Date periodStart;
+    private String value;
+    private long count;
+
+    /**
+     * Creates a log count.
+     *
+     * @param periodStart the start of the hour or day.
+     * @param value       the resource path, user name or action.
+     * @param count       the number of logs.
+     */
+    public LogCount(Date periodStart, String value, long count) {
+        this.periodStart = periodStart;
+        this.value = value;
+        this.count = count;
+    }
+
+    /**
+     * Method to obtain the start of the hour or day the logs are counted in.
+     *
+     * @return the start of the period.
+     */
+    public Date getPeriodStart() {
+        return periodStart;
+    }
+
+    /**
+     * Method to obtain the resource path, user name or action the logs are counted for. Actions
+     * are given by their number.
+     *
+     * @return the value.
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Method to obtain the number of logs.
+     *
+     * @return the number of logs.
+     */
+    public long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.carbon.repository.core.utils;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The position of a page of logs, given by the logged time and the id of the last log read. Pages
+ * of logs read with a cursor start right after its position, and move it to their last log, so that
+ * reading a page never scans the logs of the pages before it.
+ */
+public class LogCursor {
+
+    private Timestamp loggedTime;
+    private int logId;
+    private Set<Integer> appliedLogIds = new HashSet<Integer>();
+
+    /**
+     * Creates a cursor positioned before the first log.
+     */
+    public LogCursor() {
+    }
+
+    /**
+     * Creates a cursor positioned at the given log.
+     *
+     * @param loggedTime the logged time of the log.
+     * @param logId      the id of the log.
+     */
+    public LogCursor(Date loggedTime, int logId) {
+        moveTo(loggedTime, logId);
+    }
+
+    /**
+     * Method to obtain the logged time of the last log read.
+     *
+     * @return the logged time, or null if no log was read.
+     */
+    public Timestamp getLoggedTime() {
+        return loggedTime;
+    }
+
+    /**
+     * Method to obtain the id of the last log read.
+     *
+     * @return the id of the log.
+     */
+    public int getLogId() {
+        return logId;
+    }
+
+    /**
+     * Method to move the cursor to the given log.
+     *
+     * @param loggedTime the logged time of the log.
+     * @param logId      the id of the log.
+     */
+    public void moveTo(Date loggedTime, int logId) {
+        this.loggedTime = (loggedTime instanceof Timestamp) ? (Timestamp) loggedTime :
+                new Timestamp(loggedTime.getTime());
+        this.logId = logId;
+    }
+
+    /**
+     * Method to obtain the ids of the logs logged shortly before the position that were already
+     * read. Logs may be written some time after they are logged, so the logs before a position
+     * are read again to find those written late, dropping the ones with these ids.
+     *
+     * @return the ids of the logs.
+     */
+    public Set<Integer> getAppliedLogIds() {
+        return appliedLogIds;
+    }
+
+    /**
+     * Method to set the ids of the logs logged shortly before the position that were already read.
+     *
+     * @param appliedLogIds the ids of the logs.
+     */
+    public void setAppliedLogIds(Set<Integer> appliedLogIds) {
+        this.appliedLogIds = appliedLogIds;
+    }
+}
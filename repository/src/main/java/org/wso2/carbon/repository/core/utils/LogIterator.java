@@ -0,0 +1,116 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.carbon.repository.core.utils;
+
+import java.util.Date;
+import java.util.NoSuchElementException;
+
+import org.wso2.carbon.repository.api.Activity;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.spi.dao.LogsDAO;
+import org.wso2.carbon.repository.spi.dataaccess.DataAccessManager;
+
+/**
+ * Iterates over the logs matching a filter, reading them page by page through a {@link LogCursor},
+ * so that only a page of logs is held in memory at once. Each page is read with its own query.
+ */
+public class LogIterator {
+
+    private final LogsDAO logsDAO;
+    private final String resourcePath;
+    private final int action;
+    private final String userName;
+    private final Date from;
+    private final Date to;
+    private final boolean descending;
+    private final int pageLen;
+    private final DataAccessManager dataAccessManager;
+
+    private final LogCursor cursor = new LogCursor();
+    private Activity[] page = new Activity[0];
+    private int index;
+    private boolean lastPage;
+
+    /**
+     * Creates an iterator over the logs matching the given filter.
+     *
+     * @param logsDAO           the data access object reading the logs.
+     * @param resourcePath      the resource path.
+     * @param action            the action in concern.
+     * @param userName          the name of the user who we want to get logs for.
+     * @param from              the starting date.
+     * @param to                the ending date.
+     * @param descending        whether descending or ascending.
+     * @param pageLen           the number of logs read at once.
+     * @param dataAccessManager the data access manager used to connect to the database.
+     */
+    public LogIterator(LogsDAO logsDAO, String resourcePath, int action, String userName, Date from, Date to,
+                       boolean descending, int pageLen, DataAccessManager dataAccessManager) {
+        if (pageLen <= 0) {
+            throw new IllegalArgumentException("The page length should be positive: " + pageLen);
+        }
+
+        this.logsDAO = logsDAO;
+        this.resourcePath = resourcePath;
+        this.action = action;
+        this.userName = userName;
+        this.from = from;
+        this.to = to;
+        this.descending = descending;
+        this.pageLen = pageLen;
+        this.dataAccessManager = dataAccessManager;
+    }
+
+    /**
+     * Method to check whether there are more logs, reading the next page if required.
+     *
+     * @return whether there are more logs.
+     * @throws RepositoryException if an error occurred while reading the logs.
+     */
+    public boolean hasNext() throws RepositoryException {
+        if (index < page.length) {
+            return true;
+        }
+
+        if (lastPage) {
+            return false;
+        }
+
+        page = logsDAO.getLogs(resourcePath, action, userName, from, to, descending, cursor, pageLen,
+                dataAccessManager);
+        index = 0;
+        lastPage = page.length < pageLen;
+
+        return page.length > 0;
+    }
+
+    /**
+     * Method to obtain the next log.
+     *
+     * @return the next log.
+     * @throws RepositoryException if an error occurred while reading the logs.
+     */
+    public Activity next() throws RepositoryException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("There are no more logs.");
+        }
+
+        return page[index++];
+    }
+}
@@ -33,7 +33,11 @@ import org.wso2.carbon.repository.spi.dataaccess.DataAccessManager;
 public class LogWriter extends Thread {
 
     private static final Log log = LogFactory.getLog(LogWriter.class);
-    private static final int DEFAULT_SLEEP_TIME = 10 * 1000;
+
+    /**
+     * The time the writer waits between writing the queued log records, in milliseconds.
+     */
+    public static final int DEFAULT_SLEEP_TIME = 10 * 1000;
 
     private LogQueue logQueue = null;
     private DataAccessManager dataAccessManager = null;
@@ -94,18 +98,8 @@ public class LogWriter extends Thread {
     public void logWrite() {
         while (true) {
             if (logQueue != null && !logQueue.isEmpty() && dataAccessManager != null) {
-                int queueLength = logQueue.size();
-                LogRecord[] logRecords = new LogRecord[queueLength];
-                
-                for (int a = 0; a < queueLength; a++) {
-                    LogRecord logRecord = (LogRecord) logQueue.poll();
-                    logRecords[a] = logRecord;
-                }
-                
-                LogsDAO logsDAO = dataAccessManager.getDAOManager().getLogsDAO();
-                
                 try {
-                    logsDAO.saveLogBatch(logRecords);
+                    flush();
                 } catch (RepositoryException e) {
                     log.error("Unable to save log records", e);
                 }
@@ -126,6 +120,30 @@ public class LogWriter extends Thread {
     }
 
 
+    /**
+     * Writes the log records waiting in the queue to the database, without waiting for the next
+     * round of the writer thread. This is used where the logs written so far must be read, such as
+     * when dumping the changes made since a log.
+     *
+     * @throws RepositoryException if the log records could not be saved.
+     */
+    public synchronized void flush() throws RepositoryException {
+        if (logQueue == null || logQueue.isEmpty() || dataAccessManager == null) {
+            return;
+        }
+
+        int queueLength = logQueue.size();
+        LogRecord[] logRecords = new LogRecord[queueLength];
+
+        for (int a = 0; a < queueLength; a++) {
+            LogRecord logRecord = (LogRecord) logQueue.poll();
+            logRecords[a] = logRecord;
+        }
+
+        LogsDAO logsDAO = dataAccessManager.getDAOManager().getLogsDAO();
+        logsDAO.saveLogBatch(logRecords);
+    }
+
     /**
      * Adds log record to queue
      *
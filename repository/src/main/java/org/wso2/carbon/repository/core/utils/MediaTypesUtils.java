@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -58,7 +59,7 @@ public class MediaTypesUtils {
 
     private static final String CUSTOM_UI_MIME_TYPE_INDEX = "custom.ui";
 
-    private static Map<String,String> humanReadableMediaTypeMap;
+    private static volatile HumanReadableMediaTypes humanReadableMediaTypes;
 
     private static final String HUMAN_READABLE_MEDIA_TYPE_MAPPINGS_FILE = "mime.mappings";
     private static final String
@@ -70,6 +71,58 @@ public class MediaTypesUtils {
     public static String resourceMediaTypeMappings = null ;
     public static String collectionMediaTypeMappings = null;
 
+    private static volatile MediaTypeMappings resourceMediaTypeMap = new MediaTypeMappings(null);
+    private static volatile MediaTypeMappings collectionMediaTypeMap = new MediaTypeMappings(null);
+
+    // The media type mappings string, in the format key:type,key:type,... parsed into a map. The
+    // first mapping of a key wins.
+    private static final class MediaTypeMappings {
+
+        private final String mappings;
+        private final Map<String, String> mediaTypes;
+
+        private MediaTypeMappings(String mappings) {
+            Map<String, String> mediaTypes = new HashMap<String, String>();
+
+            if (mappings != null) {
+                for (String mapping : mappings.split(",")) {
+                    int index = mapping.indexOf(':');
+                    
+                    if (index > 0) {
+                        String key = mapping.substring(0, index).toLowerCase();
+                        
+                        if (!mediaTypes.containsKey(key)) {
+                            mediaTypes.put(key, mapping.substring(index + 1));
+                        }
+                    }
+                }
+            }
+
+            this.mappings = mappings;
+            this.mediaTypes = Collections.unmodifiableMap(mediaTypes);
+        }
+    }
+
+    // The human readable media type to mime type mappings, and the reverse mappings.
+    private static final class HumanReadableMediaTypes {
+
+        private final Map<String, String> mimeTypes;
+        private final Map<String, String> humanReadableMediaTypes;
+
+        private HumanReadableMediaTypes(Map<String, String> mimeTypes) {
+            Map<String, String> humanReadableMediaTypes = new HashMap<String, String>();
+            
+            for (Map.Entry<String, String> entry : mimeTypes.entrySet()) {
+                if (!humanReadableMediaTypes.containsKey(entry.getValue())) {
+                    humanReadableMediaTypes.put(entry.getValue(), entry.getKey());
+                }
+            }
+
+            this.mimeTypes = Collections.unmodifiableMap(mimeTypes);
+            this.humanReadableMediaTypes = Collections.unmodifiableMap(humanReadableMediaTypes);
+        }
+    }
+
     /**
      * Method to obtain the collection media types.
      *
@@ -338,28 +391,51 @@ public class MediaTypesUtils {
         }
         
         String extension = resourceName.substring(resourceName.lastIndexOf('.') + 1).toLowerCase();
-        String mediaTypes = MediaTypesUtils.getResourceMediaTypes();
+        MediaTypeMappings mappings = getParsedResourceMediaTypes();
         
-        if (mediaTypes == null) {
+        if (mappings.mappings == null) {
             // We don't treat this as an error, since some collections and resources would be
             // created even before the media types have been stored into the registry, and have
             // been initialized.
             return null;
         }
         
-        extension += ":";
+        return mappings.mediaTypes.get(extension);
+    }
+
+    /**
+     * Method to obtain the media type of a given collection.
+     *
+     * @param collectionName the name of the collection.
+     *
+     * @return the media type, or null if no media type is mapped to the name.
+     */
+    public static String getCollectionMediaType(String collectionName) {
+        if (collectionName == null) {
+            return null;
+        }
+
+        MediaTypeMappings mappings = collectionMediaTypeMap;
         
-        if (mediaTypes.contains(extension)) {
-            String temp = mediaTypes.substring(mediaTypes.indexOf(extension) + extension.length());
-            
-            if (temp.indexOf(',') == -1) {
-                return temp;
-            } else {
-                return temp.substring(0, temp.indexOf(','));
-            }
+        if (mappings.mappings != collectionMediaTypeMappings) {
+            mappings = new MediaTypeMappings(collectionMediaTypeMappings);
+            collectionMediaTypeMap = mappings;
         }
+
+        return mappings.mediaTypes.get(collectionName.toLowerCase());
+    }
+
+    // Method to obtain the parsed resource media types, which are parsed again if the mappings
+    // string has been replaced directly.
+    private static MediaTypeMappings getParsedResourceMediaTypes() {
+        MediaTypeMappings mappings = resourceMediaTypeMap;
         
-        return null;
+        if (mappings.mappings != resourceMediaTypeMappings) {
+            mappings = new MediaTypeMappings(resourceMediaTypeMappings);
+            resourceMediaTypeMap = mappings;
+        }
+
+        return mappings;
     }
 
     // Method to obtain the media types file.
@@ -416,9 +492,25 @@ public class MediaTypesUtils {
         }
     }
 
-    private static void populateMediaTypeMappings() throws RepositoryException {
+    private static HumanReadableMediaTypes populateMediaTypeMappings() throws RepositoryException {
+        HumanReadableMediaTypes mappings = humanReadableMediaTypes;
+        
+        if (mappings != null) {
+            return mappings;
+        }
+
+        synchronized (MediaTypesUtils.class) {
+            if (humanReadableMediaTypes == null) {
+                humanReadableMediaTypes = new HumanReadableMediaTypes(readHumanReadableMediaTypes());
+            }
+            
+            return humanReadableMediaTypes;
+        }
+    }
+
+    private static Map<String, String> readHumanReadableMediaTypes() throws RepositoryException {
         BufferedReader reader;
-        humanReadableMediaTypeMap = new HashMap<String, String>();
+        Map<String, String> humanReadableMediaTypeMap = new LinkedHashMap<String, String>();
         
         try {
             File mimeFile = getHumanMediaTypeMappingsFile();
@@ -426,7 +518,7 @@ public class MediaTypesUtils {
         } catch (Exception e) {
             String msg = FAILED_TO_READ_THE_THE_HUMAN_READABLE_MEDIA_TYPE_MIME_TYPE_MAPPINGS_FILE_MSG;
             log.warn(msg, e);
-            return;
+            return humanReadableMediaTypeMap;
         }
 
         try {
@@ -462,12 +554,11 @@ public class MediaTypesUtils {
         } finally {
             try {
                 reader.close();
-                if(humanReadableMediaTypeMap == null){
-                    humanReadableMediaTypeMap = Collections.emptyMap();
-                }
             } catch (IOException ignore) {
             }
         }
+
+        return humanReadableMediaTypeMap;
     }
 
         /**
@@ -480,15 +571,8 @@ public class MediaTypesUtils {
 
     public static String getMimeTypeFromHumanReadableMediaType(String mediaType){
         try {
-            if (humanReadableMediaTypeMap == null) {
-                populateMediaTypeMappings();
-            }
-
-            if(humanReadableMediaTypeMap.containsKey(mediaType)){
-                return humanReadableMediaTypeMap.get(mediaType);
-            }
-            return mediaType;
-
+            String mimeType = populateMediaTypeMappings().mimeTypes.get(mediaType);
+            return mimeType != null ? mimeType : mediaType;
         } catch (RepositoryException e) {
             String msg = FAILED_TO_READ_THE_THE_HUMAN_READABLE_MEDIA_TYPE_MIME_TYPE_MAPPINGS_FILE_MSG;
             log.error(msg);
@@ -499,18 +583,8 @@ public class MediaTypesUtils {
     
     public static String getHumanReadableMediaTypeFromMimeType(String mediaType){
         try {
-            if (humanReadableMediaTypeMap == null) {
-                populateMediaTypeMappings();
-            }
-
-            if(humanReadableMediaTypeMap.containsValue(mediaType)){
-                for (Map.Entry<String, String> entry : humanReadableMediaTypeMap.entrySet()) {
-                    if(entry.getValue().equals(mediaType)){
-                        return entry.getKey();
-                    }
-                }
-            }
-            return mediaType;
+            String humanReadableMediaType = populateMediaTypeMappings().humanReadableMediaTypes.get(mediaType);
+            return humanReadableMediaType != null ? humanReadableMediaType : mediaType;
         } catch (RepositoryException e) {
             String msg = FAILED_TO_READ_THE_THE_HUMAN_READABLE_MEDIA_TYPE_MIME_TYPE_MAPPINGS_FILE_MSG;
             log.error(msg);
@@ -524,11 +598,7 @@ public class MediaTypesUtils {
         String returnString = "";
         
         try {
-            if (humanReadableMediaTypeMap == null) {
-                populateMediaTypeMappings();
-            }
-
-            for (Map.Entry<String, String> entry : humanReadableMediaTypeMap.entrySet()) {
+            for (Map.Entry<String, String> entry : populateMediaTypeMappings().mimeTypes.entrySet()) {
                 returnStringBuilder.append(entry.getValue()).append(":").append(entry.getKey()).append(",");
             }
             
@@ -560,7 +630,9 @@ public class MediaTypesUtils {
 	 * @param resourceMediaTypes the resource media types.
 	 */
 	public static void setResourceMediaTypes(String resourceMediaTypes) throws RepositoryException {
+		MediaTypeMappings mappings = new MediaTypeMappings(resourceMediaTypes);
 		resourceMediaTypeMappings = resourceMediaTypes;
+		resourceMediaTypeMap = mappings;
 	}
 
 	/**
@@ -578,6 +650,8 @@ public class MediaTypesUtils {
 	 * @param collectionMediaTypes the collection media types.
 	 */
 	public static void setCollectionMediaTypes(String collectionMediaTypes) throws RepositoryException {
+		MediaTypeMappings mappings = new MediaTypeMappings(collectionMediaTypes);
 		collectionMediaTypeMappings = collectionMediaTypes;
+		collectionMediaTypeMap = mappings;
 	}
 }
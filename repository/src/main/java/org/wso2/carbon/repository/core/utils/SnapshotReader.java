@@ -0,0 +1,397 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.repository.core.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.repository.api.RepositoryConstants;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.core.CollectionImpl;
+import org.wso2.carbon.repository.core.ResourceImpl;
+
+/**
+ * Reads a snapshot written by {@link SnapshotWriter}. The tables of the snapshot are read when it
+ * is opened, and the blocks are memory-mapped and decoded when they are read, so the blocks of a
+ * snapshot can be read by a number of threads at the same time.
+ */
+public class SnapshotReader {
+
+    private static final Log log = LogFactory.getLog(SnapshotReader.class);
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final boolean compressed;
+
+    private String[] strings;
+    private String[] paths;
+    private String rootName;
+    private long[] blockOffsets;
+    private int[] blockStoredLengths;
+    private int[] blockLengths;
+    private int[] blockRecords;
+    private int[] blockCollections;
+    private long recordCount;
+
+    /**
+     * A resource read from a snapshot.
+     */
+    public static class Entry {
+
+        private final String path;
+        private final ResourceImpl resource;
+        private final byte[] content;
+
+        private Entry(String path, ResourceImpl resource, byte[] content) {
+            this.path = path;
+            this.resource = resource;
+            this.content = content;
+        }
+
+        /**
+         * Method to obtain the path of the resource, relative to the root of the snapshot.
+         *
+         * @return the relative path, which is empty for the root.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Method to obtain the resource, with its fields and properties.
+         *
+         * @return the resource, which is a collection if one was written.
+         */
+        public ResourceImpl getResource() {
+            return resource;
+        }
+
+        /**
+         * Method to obtain the content of the resource.
+         *
+         * @return the content, or null if the resource has none.
+         */
+        public byte[] getContent() {
+            return content;
+        }
+    }
+
+    /**
+     * Opens a snapshot, reading its tables and block index.
+     *
+     * @param file the snapshot file.
+     *
+     * @throws RepositoryException if the file could not be read, or is not a snapshot.
+     */
+    public SnapshotReader(File file) throws RepositoryException {
+        this.file = file;
+
+        try {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            channel = randomAccessFile.getChannel();
+        } catch (IOException e) {
+            String msg = "Failed to open the snapshot " + file.getAbsolutePath() + ".";
+            log.error(msg, e);
+            throw new RepositoryException(msg, e);
+        }
+
+        try {
+            long size = channel.size();
+
+            if (size < 8 + SnapshotWriter.TRAILER_LENGTH) {
+                throw invalidSnapshot(null);
+            }
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, 8);
+            if (header.getInt() != SnapshotWriter.MAGIC || header.getShort() != SnapshotWriter.FORMAT_VERSION) {
+                throw invalidSnapshot(null);
+            }
+            compressed = (header.getShort() & SnapshotWriter.FLAG_COMPRESSED) != 0;
+
+            ByteBuffer trailer = channel.map(FileChannel.MapMode.READ_ONLY, size - SnapshotWriter.TRAILER_LENGTH,
+                    SnapshotWriter.TRAILER_LENGTH);
+            long stringTableOffset = trailer.getLong();
+            long pathTableOffset = trailer.getLong();
+            long indexOffset = trailer.getLong();
+            if (trailer.getInt() != SnapshotWriter.MAGIC || stringTableOffset < 8 ||
+                    stringTableOffset > pathTableOffset || pathTableOffset > indexOffset ||
+                    indexOffset > size - SnapshotWriter.TRAILER_LENGTH) {
+                throw invalidSnapshot(null);
+            }
+
+            ByteBuffer tables = channel.map(FileChannel.MapMode.READ_ONLY, stringTableOffset,
+                    size - SnapshotWriter.TRAILER_LENGTH - stringTableOffset);
+            readTables(tables);
+        } catch (IOException e) {
+            close();
+            String msg = "Failed to read the snapshot " + file.getAbsolutePath() + ".";
+            log.error(msg, e);
+            throw new RepositoryException(msg, e);
+        } catch (RuntimeException e) {
+            close();
+            throw invalidSnapshot(e);
+        } catch (RepositoryException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Method to obtain the name of the root resource of the snapshot.
+     *
+     * @return the name of the root.
+     */
+    public String getRootName() {
+        return rootName;
+    }
+
+    /**
+     * Method to obtain the number of blocks of the snapshot.
+     *
+     * @return the number of blocks.
+     */
+    public int getBlockCount() {
+        return blockOffsets.length;
+    }
+
+    /**
+     * Method to obtain the number of resources in a block.
+     *
+     * @param block the index of the block.
+     *
+     * @return the number of resources.
+     */
+    public int getRecordCount(int block) {
+        return blockRecords[block];
+    }
+
+    /**
+     * Method to obtain the number of collections in a block.
+     *
+     * @param block the index of the block.
+     *
+     * @return the number of collections.
+     */
+    public int getCollectionCount(int block) {
+        return blockCollections[block];
+    }
+
+    /**
+     * Method to obtain the number of resources in the snapshot.
+     *
+     * @return the number of resources.
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Method to read the resources of a block, in the order they were written.
+     *
+     * @param block the index of the block.
+     *
+     * @return the resources of the block.
+     * @throws RepositoryException if the block could not be read.
+     */
+    public List<Entry> readBlock(int block) throws RepositoryException {
+        return readBlock(block, true, true);
+    }
+
+    /**
+     * Method to read some of the resources of a block, in the order they were written. The records
+     * of the other resources are skipped without being decoded.
+     *
+     * @param block       the index of the block.
+     * @param collections whether to read the collections.
+     * @param resources   whether to read the resources that are not collections.
+     *
+     * @return the resources of the block.
+     * @throws RepositoryException if the block could not be read.
+     */
+    public List<Entry> readBlock(int block, boolean collections, boolean resources) throws RepositoryException {
+        List<Entry> entries = new ArrayList<Entry>(blockRecords[block]);
+
+        try {
+            ByteBuffer buffer = mapBlock(block);
+
+            while (buffer.hasRemaining()) {
+                int length = buffer.getInt();
+                int next = buffer.position() + length;
+                int pathId = buffer.getInt();
+                int flags = buffer.get();
+                boolean isCollection = (flags & SnapshotWriter.RECORD_COLLECTION) != 0;
+
+                if (isCollection ? collections : resources) {
+                    entries.add(readEntry(buffer, pathId, flags));
+                }
+
+                buffer.position(next);
+            }
+        } catch (IOException e) {
+            String msg = "Failed to read block " + block + " of the snapshot " + file.getAbsolutePath() + ".";
+            log.error(msg, e);
+            throw new RepositoryException(msg, e);
+        } catch (DataFormatException e) {
+            throw invalidSnapshot(e);
+        } catch (RuntimeException e) {
+            throw invalidSnapshot(e);
+        }
+
+        return entries;
+    }
+
+    /**
+     * Method to close the snapshot. Blocks that have been mapped remain readable until they are
+     * no longer used.
+     */
+    public void close() {
+        try {
+            randomAccessFile.close();
+        } catch (IOException ignore) {
+        }
+    }
+
+    private void readTables(ByteBuffer tables) throws RepositoryException {
+        strings = new String[tables.getInt()];
+
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[tables.getInt()];
+            tables.get(bytes);
+            strings[i] = new String(bytes, SnapshotWriter.UTF_8);
+        }
+
+        // parents are written before their children, so each path is built from that of its parent.
+        paths = new String[tables.getInt()];
+
+        for (int i = 0; i < paths.length; i++) {
+            int parentId = tables.getInt();
+            String name = getString(tables.getInt());
+
+            if (parentId < 0) {
+                paths[i] = "";
+                rootName = name;
+            } else if (parentId < i) {
+                paths[i] = paths[parentId] + RepositoryConstants.PATH_SEPARATOR + name;
+            } else {
+                throw invalidSnapshot(null);
+            }
+        }
+
+        int blocks = tables.getInt();
+        blockOffsets = new long[blocks];
+        blockStoredLengths = new int[blocks];
+        blockLengths = new int[blocks];
+        blockRecords = new int[blocks];
+        blockCollections = new int[blocks];
+
+        for (int i = 0; i < blocks; i++) {
+            blockOffsets[i] = tables.getLong();
+            blockStoredLengths[i] = tables.getInt();
+            blockLengths[i] = tables.getInt();
+            blockRecords[i] = tables.getInt();
+            blockCollections[i] = tables.getInt();
+            recordCount += blockRecords[i];
+        }
+    }
+
+    private ByteBuffer mapBlock(int block) throws IOException, DataFormatException {
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, blockOffsets[block],
+                blockStoredLengths[block]);
+
+        if (!compressed) {
+            return mapped;
+        }
+
+        byte[] stored = new byte[blockStoredLengths[block]];
+        mapped.get(stored);
+        byte[] bytes = new byte[blockLengths[block]];
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(stored);
+            int length = 0;
+
+            while (length < bytes.length && !inflater.finished()) {
+                int inflated = inflater.inflate(bytes, length, bytes.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated block " + block + ".");
+                }
+                length += inflated;
+            }
+        } finally {
+            inflater.end();
+        }
+
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private Entry readEntry(ByteBuffer buffer, int pathId, int flags) throws BufferUnderflowException {
+        ResourceImpl resource = ((flags & SnapshotWriter.RECORD_COLLECTION) != 0) ? new CollectionImpl() :
+                new ResourceImpl();
+
+        resource.setMediaType(getString(buffer.getInt()));
+        resource.setVersionNumber(buffer.getLong());
+        resource.setAuthorUserName(getString(buffer.getInt()));
+        long createdTime = buffer.getLong();
+        if (createdTime >= 0) {
+            resource.setCreatedTime(new Date(createdTime));
+        }
+        resource.setLastUpdaterUserName(getString(buffer.getInt()));
+        long lastModified = buffer.getLong();
+        if (lastModified >= 0) {
+            resource.setLastModified(new Date(lastModified));
+        }
+        resource.setUUID(getString(buffer.getInt()));
+        resource.setDescription(getString(buffer.getInt()));
+
+        int properties = buffer.getInt();
+        for (int i = 0; i < properties; i++) {
+            resource.addPropertyWithNoUpdate(getString(buffer.getInt()), getString(buffer.getInt()));
+        }
+
+        byte[] content = null;
+        if ((flags & SnapshotWriter.RECORD_CONTENT) != 0) {
+            content = new byte[buffer.getInt()];
+            buffer.get(content);
+        }
+
+        return new Entry(paths[pathId], resource, content);
+    }
+
+    private String getString(int id) {
+        return (id < 0) ? null : strings[id];
+    }
+
+    private RepositoryException invalidSnapshot(Exception cause) {
+        String msg = "Invalid snapshot " + file.getAbsolutePath() + ".";
+        log.error(msg, cause);
+        return new RepositoryException(msg, cause);
+    }
+}
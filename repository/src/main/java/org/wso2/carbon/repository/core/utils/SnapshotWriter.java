@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.repository.core.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.Deflater;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.repository.api.RepositoryConstants;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.api.utils.RepositoryUtils;
+import org.wso2.carbon.repository.core.CollectionImpl;
+import org.wso2.carbon.repository.core.ResourceImpl;
+
+/**
+ * Writes a snapshot of a subtree in the binary format read by {@link SnapshotReader}. A snapshot
+ * holds the same fields as an XML dump, but is laid out to be loaded quickly:
+ * <ul>
+ * <li>the resources are written as length-prefixed records, in blocks that can optionally be
+ * compressed, so that blocks can be read independently of each other,</li>
+ * <li>every string, such as a media type, a user name or a property, is kept once in a string
+ * table and referred to by its index,</li>
+ * <li>every path is kept in a path dictionary as the index of its parent and the index of its
+ * name, and</li>
+ * <li>a block index at the end of the file gives the position and size of each block.</li>
+ * </ul>
+ * Resources must be written parents first, with paths relative to the root of the snapshot, the
+ * root itself being the empty path. The tables are kept in memory until the snapshot is closed.
+ */
+public class SnapshotWriter {
+
+    private static final Log log = LogFactory.getLog(SnapshotWriter.class);
+
+    static final int MAGIC = 0x57534e50;
+    static final int FORMAT_VERSION = 1;
+    static final int FLAG_COMPRESSED = 1;
+    static final int RECORD_COLLECTION = 1;
+    static final int RECORD_CONTENT = 2;
+    static final int TRAILER_LENGTH = 28;
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The default number of bytes of records collected in a block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    private final File file;
+    private final boolean compressed;
+    private final int blockSize;
+
+    private DataOutputStream out;
+    private long position;
+
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+    private final List<String> stringTable = new ArrayList<String>();
+    private final Map<String, Integer> paths = new HashMap<String, Integer>();
+    private final List<int[]> pathTable = new ArrayList<int[]>();
+    private final List<long[]> blockIndex = new ArrayList<long[]>();
+
+    private final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+    private int blockRecords;
+    private int blockCollections;
+    private long recordCount;
+
+    /**
+     * Creates a writer of a snapshot with blocks of the default size.
+     *
+     * @param file       the file to write the snapshot to, which is replaced if it exists.
+     * @param compressed whether the blocks are compressed.
+     *
+     * @throws RepositoryException if the file could not be opened.
+     */
+    public SnapshotWriter(File file, boolean compressed) throws RepositoryException {
+        this(file, compressed, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a writer of a snapshot.
+     *
+     * @param file       the file to write the snapshot to, which is replaced if it exists.
+     * @param compressed whether the blocks are compressed.
+     * @param blockSize  the number of bytes of records after which a block is completed.
+     *
+     * @throws RepositoryException if the file could not be opened.
+     */
+    public SnapshotWriter(File file, boolean compressed, int blockSize) throws RepositoryException {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("The block size must be positive: " + blockSize);
+        }
+
+        this.file = file;
+        this.compressed = compressed;
+        this.blockSize = blockSize;
+
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            out.writeInt(MAGIC);
+            out.writeShort(FORMAT_VERSION);
+            out.writeShort(compressed ? FLAG_COMPRESSED : 0);
+            position = 8;
+        } catch (IOException e) {
+            abort();
+            String msg = "Failed to create the snapshot " + file.getAbsolutePath() + ".";
+            log.error(msg, e);
+            throw new RepositoryException(msg, e);
+        }
+    }
+
+    /**
+     * Method to write a resource to the snapshot.
+     *
+     * @param path     the path of the resource, relative to the root of the snapshot.
+     * @param resource the resource, with its properties filled.
+     * @param content  the content of the resource, or null if it has none.
+     *
+     * @throws RepositoryException if the parent of the resource was not written before it, or the
+     *                             snapshot could not be written.
+     */
+    public void write(String path, ResourceImpl resource, byte[] content) throws RepositoryException {
+        int pathId = addPath(path, resource);
+        boolean isCollection = resource instanceof CollectionImpl;
+
+        try {
+            record.writeInt(pathId);
+            record.writeByte((isCollection ? RECORD_COLLECTION : 0) | (content != null ? RECORD_CONTENT : 0));
+            record.writeInt(addString(resource.getMediaType()));
+            record.writeLong(resource.getVersionNumber());
+            record.writeInt(addString(resource.getAuthorUserName()));
+            record.writeLong(resource.getCreatedTime() != null ? resource.getCreatedTime().getTime() : -1);
+            record.writeInt(addString(resource.getLastUpdaterUserName()));
+            record.writeLong(resource.getLastModified() != null ? resource.getLastModified().getTime() : -1);
+            record.writeInt(addString(resource.getUUID()));
+            record.writeInt(addString(resource.getDescription()));
+
+            Properties properties = resource.getProperties();
+            List<int[]> propertyValues = new ArrayList<int[]>();
+
+            if (properties != null) {
+                for (Object key : properties.keySet()) {
+                    List<String> values = resource.getPropertyValues((String) key);
+
+                    if (values != null) {
+                        for (String value : values) {
+                            propertyValues.add(new int[] {addString((String) key), addString(value)});
+                        }
+                    }
+                }
+            }
+
+            record.writeInt(propertyValues.size());
+
+            for (int[] propertyValue : propertyValues) {
+                record.writeInt(propertyValue[0]);
+                record.writeInt(propertyValue[1]);
+            }
+
+            if (content != null) {
+                record.writeInt(content.length);
+                record.write(content);
+            }
+
+            record.flush();
+
+            // the length prefix lets readers skip the records they are not interested in.
+            DataOutputStream block = new DataOutputStream(blockBytes);
+            block.writeInt(recordBytes.size());
+            recordBytes.writeTo(block);
+            block.flush();
+            recordBytes.reset();
+        } catch (IOException e) {
+            String msg = "Failed to write " + path + " to the snapshot " + file.getAbsolutePath() + ".";
+            log.error(msg, e);
+            throw new RepositoryException(msg, e);
+        }
+
+        blockRecords++;
+        recordCount++;
+
+        if (isCollection) {
+            blockCollections++;
+        }
+
+        if (blockBytes.size() >= blockSize) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Method to obtain the number of resources written so far.
+     *
+     * @return the number of resources.
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Method to complete the snapshot, writing the last block, the tables and the block index.
+     *
+     * @throws RepositoryException if the snapshot could not be written.
+     */
+    public void close() throws RepositoryException {
+        if (out == null) {
+            return;
+        }
+
+        try {
+            if (blockRecords > 0) {
+                writeBlock();
+            }
+
+            long stringTableOffset = position;
+            out.writeInt(stringTable.size());
+            position += 4;
+
+            for (String string : stringTable) {
+                byte[] bytes = string.getBytes(UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                position += 4 + bytes.length;
+            }
+
+            long pathTableOffset = position;
+            out.writeInt(pathTable.size());
+            position += 4;
+
+            for (int[] entry : pathTable) {
+                out.writeInt(entry[0]);
+                out.writeInt(entry[1]);
+                position += 8;
+            }
+
+            long indexOffset = position;
+            out.writeInt(blockIndex.size());
+
+            for (long[] entry : blockIndex) {
+                out.writeLong(entry[0]);
+                out.writeInt((int) entry[1]);
+                out.writeInt((int) entry[2]);
+                out.writeInt((int) entry[3]);
+                out.writeInt((int) entry[4]);
+            }
+
+            out.writeLong(stringTableOffset);
+            out.writeLong(pathTableOffset);
+            out.writeLong(indexOffset);
+            out.writeInt(MAGIC);
+            out.close();
+            out = null;
+        } catch (IOException e) {
+            abort();
+            String msg = "Failed to complete the snapshot " + file.getAbsolutePath() + ".";
+            log.error(msg, e);
+            throw new RepositoryException(msg, e);
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Wrote " + recordCount + " resources in " + blockIndex.size() + " blocks, with " +
+                    stringTable.size() + " distinct strings, to the snapshot " + file.getAbsolutePath() + ".");
+        }
+    }
+
+    /**
+     * Method to abandon the snapshot, deleting what has been written of it.
+     */
+    public void abort() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ignore) {
+            }
+            out = null;
+        }
+
+        if (file.exists() && !file.delete()) {
+            log.warn("Unable to delete the incomplete snapshot " + file.getAbsolutePath() + ".");
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        byte[] bytes = blockBytes.toByteArray();
+        int length = bytes.length;
+
+        if (compressed) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(bytes);
+                deflater.finish();
+
+                ByteArrayOutputStream compressedBytes = new ByteArrayOutputStream(length / 2 + 64);
+                byte[] buffer = new byte[8192];
+
+                while (!deflater.finished()) {
+                    compressedBytes.write(buffer, 0, deflater.deflate(buffer));
+                }
+                bytes = compressedBytes.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        out.write(bytes);
+        blockIndex.add(new long[] {position, bytes.length, length, blockRecords, blockCollections});
+        position += bytes.length;
+
+        blockBytes.reset();
+        blockRecords = 0;
+        blockCollections = 0;
+    }
+
+    private int addString(String string) {
+        if (string == null) {
+            return -1;
+        }
+
+        Integer id = strings.get(string);
+
+        if (id == null) {
+            id = stringTable.size();
+            strings.put(string, id);
+            stringTable.add(string);
+        }
+
+        return id;
+    }
+
+    private int addPath(String path, ResourceImpl resource) throws RepositoryException {
+        if (paths.containsKey(path)) {
+            String msg = "The path " + path + " has already been written to the snapshot " +
+                    file.getAbsolutePath() + ".";
+            log.error(msg);
+            throw new RepositoryException(msg);
+        }
+
+        int parentId;
+        String name;
+
+        if (path.length() == 0) {
+            // the name of the root is kept only to be written back to dumps.
+            parentId = -1;
+            name = (resource.getPath() == null) ? "" : RepositoryUtils.getResourceName(resource.getPath());
+        } else {
+            int separator = path.lastIndexOf(RepositoryConstants.PATH_SEPARATOR);
+            String parentPath = (separator <= 0) ? "" : path.substring(0, separator);
+            Integer parent = paths.get(parentPath);
+
+            if (parent == null) {
+                String msg = "The parent of " + path + " has not been written to the snapshot " +
+                        file.getAbsolutePath() + ".";
+                log.error(msg);
+                throw new RepositoryException(msg);
+            }
+
+            parentId = parent;
+            name = path.substring(separator + 1);
+        }
+
+        int id = pathTable.size();
+        paths.put(path, id);
+        pathTable.add(new int[] {parentId, addString(name)});
+
+        return id;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.carbon.repository.core.utils;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLConnection;
+
+/**
+ * Opens the connections that the content of imported resources is read from. The repository
+ * opens connections through {@link URL#openConnection()} unless another fetcher is set on the
+ * repository context, for example one serving content from memory in tests.
+ */
+public interface URLFetcher {
+
+    /**
+     * The fetcher opening connections through {@link URL#openConnection()}.
+     */
+    URLFetcher DEFAULT = new URLFetcher() {
+        public URLConnection openConnection(URL url) throws IOException {
+            return url.openConnection();
+        }
+    };
+
+    /**
+     * Method to open a connection to the given URL. The content is read from the input stream
+     * of the connection, and its media type is taken from the content type of the connection.
+     *
+     * @param url the source URL.
+     *
+     * @return the connection.
+     * @throws IOException if the connection could not be opened.
+     */
+    URLConnection openConnection(URL url) throws IOException;
+}
@@ -21,6 +21,9 @@ import java.util.List;
 
 import org.wso2.carbon.repository.api.Activity;
 import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.core.utils.LogCount;
+import org.wso2.carbon.repository.core.utils.LogCursor;
+import org.wso2.carbon.repository.core.utils.LogIterator;
 import org.wso2.carbon.repository.core.utils.LogRecord;
 import org.wso2.carbon.repository.spi.dataaccess.DataAccessManager;
 
@@ -89,6 +92,43 @@ public interface LogsDAO {
     Activity[] getLogs(String resourcePath, int action, String userName, Date from, Date to,
                               boolean descending, DataAccessManager dataAccessManager) throws RepositoryException;
 
+    /**
+     * Method to get the page of log entries following the position of the given cursor, ordered by
+     * their logged time and id. The cursor is moved to the last log entry of the page.
+     *
+     * @param resourcePath        the resource path.
+     * @param action              the action in concern.
+     * @param userName            the name of the user who we want to get logs for.
+     * @param from                the starting date.
+     * @param to                  the ending date.
+     * @param descending          whether descending or ascending.
+     * @param cursor              the position of the page.
+     * @param pageLen             the maximum length of the array returned.
+     * @param dataAccessManager   the data access manager used to connect to the database.
+     *
+     * @return an array of log entries, which is shorter than the page length for the last page.
+     * @throws RepositoryException if an error occurred while obtaining logs.
+     */
+    Activity[] getLogs(String resourcePath, int action, String userName, Date from, Date to, boolean descending,
+                       LogCursor cursor, int pageLen, DataAccessManager dataAccessManager) throws RepositoryException;
+
+    /**
+     * Method to iterate over log entries, which are read page by page.
+     *
+     * @param resourcePath        the resource path.
+     * @param action              the action in concern.
+     * @param userName            the name of the user who we want to get logs for.
+     * @param from                the starting date.
+     * @param to                  the ending date.
+     * @param descending          whether descending or ascending.
+     * @param pageLen             the number of log entries read at once.
+     * @param dataAccessManager   the data access manager used to connect to the database.
+     *
+     * @return an iterator over the log entries.
+     */
+    LogIterator getLogIterator(String resourcePath, int action, String userName, Date from, Date to,
+                               boolean descending, int pageLen, DataAccessManager dataAccessManager);
+
     /**
      * Method to get the number of log entries available
      *
@@ -103,4 +143,40 @@ public interface LogsDAO {
      * @throws RepositoryException if an error occurred.
      */
     int getLogsCount(String resourcePath, int action, String userName, Date from, Date to, boolean descending) throws RepositoryException;
+
+    /**
+     * Method to get the number of log entries available, counting no more than the given limit.
+     * This reads at most as many log entries as the limit, where counting all of them would not
+     * be required, such as when showing that there are more than a number of log entries.
+     *
+     * @param resourcePath the resource path.
+     * @param action       the action in concern.
+     * @param userName     the name of the user who we want to get logs for.
+     * @param from         the starting date.
+     * @param to           the ending date.
+     * @param limit        the maximum number of logs counted, or -1 to count all of them.
+     *
+     * @return the number of logs, or the limit if there are more logs.
+     * @throws RepositoryException if an error occurred.
+     */
+    int getLogsCount(String resourcePath, int action, String userName, Date from, Date to, int limit)
+            throws RepositoryException;
+
+    /**
+     * Method to get the number of log entries of each resource path, user or action per hour or
+     * day, as counted in the log rollups.
+     *
+     * @param groupBy           what the log entries are counted for, which is one of
+     *                          {@link LogCount#BY_PATH}, {@link LogCount#BY_USER} and
+     *                          {@link LogCount#BY_ACTION}.
+     * @param hourly            whether the log entries are counted per hour or per day.
+     * @param from              the starting date.
+     * @param to                the ending date.
+     * @param dataAccessManager the data access manager used to connect to the database.
+     *
+     * @return the counts, ordered by their hour or day.
+     * @throws RepositoryException if the log rollups are not enabled or an error occurred.
+     */
+    List<LogCount> getLogCounts(String groupBy, boolean hourly, Date from, Date to,
+                                DataAccessManager dataAccessManager) throws RepositoryException;
 }
@@ -17,7 +17,10 @@
 package org.wso2.carbon.repository.spi.dao;
 
 import java.io.InputStream;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.wso2.carbon.repository.api.exceptions.RepositoryException;
 import org.wso2.carbon.repository.core.CollectionImpl;
@@ -95,6 +98,30 @@ public interface ResourceDAO {
      */
     boolean resourceExists(String path, boolean isCollection) throws RepositoryException;
 
+    /**
+     * Method to check the resource existence for a number of paths at once. Paths sharing a parent
+     * collection are checked together, so the number of queries does not grow with the number of
+     * children of a collection.
+     *
+     * @param paths the pure paths to check the resource existence.
+     *
+     * @return the subset of the given paths at which a resource or collection exists.
+     * @throws RepositoryException throws if checking existence failed.
+     */
+    Set<String> getExistingPaths(List<String> paths) throws RepositoryException;
+
+    /**
+     * Method to obtain the paths of the resources and collections in a subtree that were updated
+     * after the given time, in the order they were last updated.
+     *
+     * @param rootPath the path of the subtree.
+     * @param since    the time after which the resources were updated.
+     *
+     * @return the paths of the updated resources and collections.
+     * @throws RepositoryException throws if the operation failed.
+     */
+    List<String> getPathsUpdatedSince(String rootPath, Date since) throws RepositoryException;
+
     /**
      * Method to return the version of a resource from resourceID
      *
@@ -177,6 +204,31 @@ public interface ResourceDAO {
      */
     void fillResource(CollectionImpl collection, int start, int pageLen) throws RepositoryException;
 
+    /**
+     * Get the resource at the given path, filled as {@link #getResourceMetaData(String)} followed
+     * by {@link #fillResource(ResourceImpl)} would, but reading the meta data, the properties and
+     * small contents together where the database allows it.
+     *
+     * @param path the pure path of the resource.
+     *
+     * @return the resource, or null if no resource exists at the path.
+     * @throws RepositoryException throws if resource retrieval failed.
+     */
+    ResourceImpl getFilledResource(String path) throws RepositoryException;
+
+    /**
+     * Get the resources at a number of paths at once, filled as {@link #getResourceMetaData(String)}
+     * followed by {@link #fillResource(ResourceImpl)} would. Paths sharing a parent collection are
+     * read together, so the number of queries does not grow with the number of children of a
+     * collection.
+     *
+     * @param paths the pure paths of the resources.
+     *
+     * @return the resources found, keyed by path. Paths at which no resource exists are left out.
+     * @throws RepositoryException throws if resource retrieval failed.
+     */
+    Map<String, ResourceImpl> getResources(List<String> paths) throws RepositoryException;
+
     /**
      * Fill the properties for a resource without making the properties modified flag.
      *
@@ -258,6 +310,19 @@ public interface ResourceDAO {
      */
     InputStream getContentStream(int contentID) throws RepositoryException;
 
+    /**
+     * Get a range of the content for a given content id, without loading the rest of the content
+     * in to memory.
+     *
+     * @param contentID the content id as an argument.
+     * @param offset    the position of the first byte to read.
+     * @param length    the maximum number of bytes to read, or -1 to read up to the end.
+     *
+     * @return the content input stream, or null if there is no content.
+     * @throws RepositoryException throws if the operation failed.
+     */
+    InputStream getContentStream(int contentID, long offset, long length) throws RepositoryException;
+
     /**
      * Save the updates of a given resource.
      *
@@ -503,6 +568,19 @@ public interface ResourceDAO {
      */
     List<ResourceIDImpl> getChildPathIds(ResourceIDImpl resourceID) throws RepositoryException;
 
+    /**
+     * Get the meta data of the children of a number of collections at once. The children of each
+     * collection are in the order of {@link #getChildPathIds(ResourceIDImpl)}, the resources
+     * before the collections.
+     *
+     * @param collectionIDs the resource ids of the collections.
+     *
+     * @return the children of each collection that has any, keyed by the path id of the collection.
+     * @throws RepositoryException throws if the operation failed.
+     */
+    Map<Integer, List<ResourceImpl>> getChildResourcesMetaData(List<ResourceIDImpl> collectionIDs)
+            throws RepositoryException;
+
     /**
      * Get the path from the path id.
      *
@@ -17,6 +17,7 @@
 package org.wso2.carbon.repository.spi.dao;
 
 import java.io.InputStream;
+import java.util.List;
 
 import org.wso2.carbon.repository.api.exceptions.RepositoryException;
 import org.wso2.carbon.repository.core.CollectionImpl;
@@ -219,6 +220,19 @@ public interface ResourceVersionDAO {
      */
     void versionResource(ResourceDO resourceDO, boolean keepProperties) throws RepositoryException;
 
+    /**
+     * Create versions of a number of resources at once. This has the same effect as versioning
+     * each resource with {@link #versionResource(ResourceDO, boolean)}, but the rows and contents
+     * are copied to the history tables and removed from the current tables with one statement
+     * per table for each batch of resources.
+     *
+     * @param resourceDOs    the resource data objects.
+     * @param keepProperties whether to keep properties or not.
+     *
+     * @throws RepositoryException if the operation failed.
+     */
+    void versionResources(List<ResourceDO> resourceDOs, boolean keepProperties) throws RepositoryException;
+
     /**
      * Method to Archive Resource.
      *
@@ -227,6 +241,16 @@ public interface ResourceVersionDAO {
      * @throws RepositoryException if the operation failed.
      */
     void putResourceToHistory(ResourceDO resourceDO) throws RepositoryException;
+
+    /**
+     * Copies the current resources with the given versions to the history, skipping the versions
+     * that are already there.
+     *
+     * @param versions the versions of the resources.
+     *
+     * @throws RepositoryException if the operation failed.
+     */
+    void putResourcesToHistory(List<Long> versions) throws RepositoryException;
     
     /**
      * Removes a snapshot of a given resource.
@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.jdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+import org.wso2.carbon.registry.core.test.utils.BaseTestCase;
+import org.wso2.carbon.repository.api.Repository;
+import org.wso2.carbon.repository.api.Resource;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.api.utils.RepositoryUtils;
+import org.wso2.carbon.repository.core.AsyncRepository;
+import org.wso2.carbon.repository.core.CurrentContext;
+
+public class AsyncRepositoryTest extends BaseTestCase {
+
+    protected static Repository registry = null;
+
+    @BeforeTest
+    public void setUp() {
+        super.setUp();
+
+        try {
+            RealmUnawareRegistryCoreServiceComponent comp = new RealmUnawareRegistryCoreServiceComponent();
+            comp.registerBuiltInHandlers(embeddedRegistryService);
+
+            registry = embeddedRegistryService.getRepository("admin");
+        } catch (RepositoryException e) {
+            Assert.fail("Failed to initialize the registry. Caused by: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void testOperations() throws Exception {
+        AsyncRepository asyncRepository = new AsyncRepository(registry, 2);
+
+        try {
+            Resource r = registry.newResource();
+            r.setContent("a");
+            Assert.assertEquals(asyncRepository.put("/testAsync/a", r).get(), "/testAsync/a");
+            Assert.assertTrue(asyncRepository.resourceExists("/testAsync/a").get());
+
+            List<Future<Resource>> resources = asyncRepository.getAll(Arrays.asList("/testAsync/a", "/testAsync"));
+            Assert.assertEquals(RepositoryUtils.decodeBytes((byte[]) resources.get(0).get().getContent()), "a");
+            Assert.assertEquals(resources.get(1).get().getPath(), "/testAsync");
+
+            asyncRepository.delete("/testAsync/a").get();
+            Assert.assertFalse(registry.resourceExists("/testAsync/a"));
+        } finally {
+            asyncRepository.shutdown();
+        }
+    }
+
+    @Test
+    public void testErrorPropagation() throws Exception {
+        AsyncRepository asyncRepository = new AsyncRepository(registry, 1);
+
+        try {
+            try {
+                asyncRepository.get("/testAsync/missing").get();
+                Assert.fail("Getting a missing resource should fail.");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof RepositoryException,
+                        "The error of the operation should be the cause.");
+            }
+
+            Future<Object> failed = asyncRepository.submit(new Callable<Object>() {
+                public Object call() throws Exception {
+                    throw new IllegalStateException("failed");
+                }
+            });
+
+            try {
+                failed.get();
+                Assert.fail("The failure of the task should be propagated.");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+
+            // the permits of the failed operations are given back.
+            Assert.assertEquals(asyncRepository.submit(new Callable<String>() {
+                public String call() {
+                    return "done";
+                }
+            }).get(5, TimeUnit.SECONDS), "done");
+        } finally {
+            asyncRepository.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrencyLimit() throws Exception {
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(4);
+        final AsyncRepository asyncRepository = new AsyncRepository(registry, executor, 2);
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger started = new AtomicInteger();
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        List<Future<Object>> futures = new ArrayList<Future<Object>>();
+
+        Callable<Object> task = new Callable<Object>() {
+            public Object call() throws Exception {
+                started.incrementAndGet();
+                int current = running.incrementAndGet();
+                synchronized (maxRunning) {
+                    maxRunning.set(Math.max(maxRunning.get(), current));
+                }
+
+                try {
+                    release.await(30, TimeUnit.SECONDS);
+                    return null;
+                } finally {
+                    running.decrementAndGet();
+                }
+            }
+        };
+
+        try {
+            // the caller is never held back, whatever the number of operations submitted.
+            long submitStart = System.currentTimeMillis();
+            for (int i = 0; i < 5; i++) {
+                futures.add(asyncRepository.submit(task));
+            }
+            Assert.assertTrue(System.currentTimeMillis() - submitStart < 5000, "The caller should not wait.");
+
+            Thread.sleep(500);
+            Assert.assertEquals(started.get(), 2, "Only two operations should have started.");
+            Assert.assertTrue(executor.getActiveCount() <= 2, "Executor threads should not wait for permits.");
+
+            release.countDown();
+            for (Future<Object> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+
+            Assert.assertEquals(started.get(), 5);
+            Assert.assertTrue(maxRunning.get() <= 2, "At most two operations should run at the same time.");
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCancelledOperation() throws Exception {
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(2);
+        AsyncRepository asyncRepository = new AsyncRepository(registry, executor, 1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger running = new AtomicInteger();
+
+        try {
+            // an operation that does not stop when interrupted.
+            Future<Object> first = asyncRepository.submit(new Callable<Object>() {
+                public Object call() throws Exception {
+                    running.incrementAndGet();
+                    started.countDown();
+
+                    try {
+                        while (!release.await(30, TimeUnit.SECONDS)) {
+                        }
+                    } catch (InterruptedException e) {
+                        release.await(30, TimeUnit.SECONDS);
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                    return null;
+                }
+            });
+
+            Future<String> queued = asyncRepository.submit(new Callable<String>() {
+                public String call() {
+                    return "queued";
+                }
+            });
+
+            final AtomicInteger seenRunning = new AtomicInteger(-1);
+            Future<String> next = asyncRepository.submit(new Callable<String>() {
+                public String call() {
+                    seenRunning.set(running.get());
+                    return "next";
+                }
+            });
+
+            Assert.assertTrue(started.await(30, TimeUnit.SECONDS));
+            Assert.assertTrue(queued.cancel(false));
+            Assert.assertTrue(first.cancel(true));
+
+            // the permit of the cancelled operation is kept until its work has ended.
+            Thread.sleep(500);
+            Assert.assertFalse(next.isDone(), "No operation should run while the cancelled one still runs.");
+
+            release.countDown();
+            Assert.assertEquals(next.get(30, TimeUnit.SECONDS), "next");
+            Assert.assertEquals(seenRunning.get(), 0, "The operations should not have overlapped.");
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCallerContext() throws Exception {
+        AsyncRepository asyncRepository = new AsyncRepository(registry, 1);
+        final CountDownLatch release = new CountDownLatch(1);
+        CurrentContext.Frame start = CurrentContext.attach(null);
+
+        try {
+            asyncRepository.submit(new Callable<Object>() {
+                public Object call() throws Exception {
+                    release.await(30, TimeUnit.SECONDS);
+                    return null;
+                }
+            });
+
+            CurrentContext.setTenantId(7);
+            CurrentContext.setUser("asyncUser");
+
+            Future<String> seen = asyncRepository.submit(new Callable<String>() {
+                public String call() {
+                    return CurrentContext.getTenantId() + ":" + CurrentContext.getUser();
+                }
+            });
+
+            // the context is captured when the operation is queued, not when it runs.
+            CurrentContext.setTenantId(8);
+            CurrentContext.setUser("otherUser");
+            release.countDown();
+
+            Assert.assertEquals(seen.get(30, TimeUnit.SECONDS), "7:asyncUser",
+                    "The tenant and user of the caller should reach the worker.");
+            Assert.assertEquals(CurrentContext.getUser(), "otherUser", "The caller's context should not change.");
+        } finally {
+            release.countDown();
+            CurrentContext.restore(start);
+            asyncRepository.shutdown();
+        }
+    }
+}
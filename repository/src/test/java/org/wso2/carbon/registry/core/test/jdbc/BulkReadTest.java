@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.jdbc;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+import org.wso2.carbon.registry.core.test.utils.BaseTestCase;
+import org.wso2.carbon.repository.api.Collection;
+import org.wso2.carbon.repository.api.Resource;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.api.handlers.Handler;
+import org.wso2.carbon.repository.api.handlers.HandlerContext;
+import org.wso2.carbon.repository.api.utils.RepositoryUtils;
+import org.wso2.carbon.repository.core.CollectionImpl;
+import org.wso2.carbon.repository.core.CurrentContext;
+import org.wso2.carbon.repository.core.EmbeddedRepository;
+import org.wso2.carbon.repository.core.ResourceImpl;
+import org.wso2.carbon.repository.core.handlers.HandlerLifecycleManager;
+import org.wso2.carbon.repository.core.handlers.builtin.URLMatcher;
+import org.wso2.carbon.repository.spi.dao.ResourceDAO;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
+
+public class BulkReadTest extends BaseTestCase {
+
+    protected static EmbeddedRepository registry = null;
+
+    @BeforeTest
+    public void setUp() {
+        super.setUp();
+
+        try {
+            RealmUnawareRegistryCoreServiceComponent comp = new RealmUnawareRegistryCoreServiceComponent();
+            comp.registerBuiltInHandlers(embeddedRegistryService);
+
+            registry = (EmbeddedRepository) embeddedRegistryService.getRepository("admin");
+        } catch (RepositoryException e) {
+            Assert.fail("Failed to initialize the registry. Caused by: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void testGetResources() throws Exception {
+        putResource("/testBulkRead/a", "a");
+        putResource("/testBulkRead/b", "b");
+        putResource("/testBulkRead/c/d", "d");
+
+        Resource a = registry.get("/testBulkRead/a");
+        a.addProperty("p1", "v1");
+        a.addProperty("p1", "v2");
+        a.setDescription("resource a");
+        registry.put("/testBulkRead/a", a);
+
+        Resource[] resources = registry.getResources(new String[] {"/testBulkRead/b", "/testBulkRead/a",
+                "/testBulkRead/c", "/testBulkRead/a"});
+
+        Assert.assertEquals(resources.length, 4);
+        Assert.assertEquals(getContent(resources[0]), "b");
+        Assert.assertEquals(getContent(resources[1]), "a");
+        Assert.assertEquals(resources[1].getPropertyValues("p1").size(), 2);
+        Assert.assertEquals(resources[1].getDescription(), "resource a");
+        Assert.assertTrue(resources[2] instanceof Collection, "The collection should be read as a collection.");
+        Assert.assertEquals(resources[2].getPath(), "/testBulkRead/c");
+        Assert.assertEquals(getContent(resources[3]), "a");
+
+        try {
+            registry.getResources(new String[] {"/testBulkRead/a", "/testBulkRead/missing"});
+            Assert.fail("Reading a missing resource should fail.");
+        } catch (RepositoryException e) {
+            // expected.
+        }
+    }
+
+    @Test
+    public void testGetChildren() throws Exception {
+        putResource("/testBulkChildren/a", "a");
+        putResource("/testBulkChildren/b", "b");
+        putResource("/testBulkChildren/c/d", "d");
+
+        Collection collection = (Collection) registry.get("/testBulkChildren");
+        Resource[] children = ((CollectionImpl) collection).getChildren();
+
+        Assert.assertEquals(children.length, 3);
+        for (Resource child : children) {
+            if (child.getPath().equals("/testBulkChildren/a")) {
+                Assert.assertEquals(getContent(child), "a");
+            } else if (child.getPath().equals("/testBulkChildren/b")) {
+                Assert.assertEquals(getContent(child), "b");
+            } else {
+                Assert.assertEquals(child.getPath(), "/testBulkChildren/c");
+                Assert.assertTrue(child instanceof Collection, "The collection should be read as a collection.");
+            }
+        }
+
+        Assert.assertEquals(((CollectionImpl) collection).getChildren(1, 1).length, 1);
+    }
+
+    @Test
+    public void testHandlerServedPaths() throws Exception {
+        putResource("/testBulkServed/stored", "stored");
+        putResource("/testBulkServed/served", "stored");
+
+        Handler handler = new Handler() {
+            public Resource get(HandlerContext requestContext) throws RepositoryException {
+                ResourceImpl resource = new ResourceImpl();
+                resource.setPath(requestContext.getResourcePath().getPath());
+                resource.setContent(RepositoryUtils.encodeString("served"));
+                return resource;
+            }
+        };
+
+        URLMatcher filter = new URLMatcher();
+        filter.setGetPattern("/testBulkServed/served.*");
+
+        CurrentContext.setCallerTenantId(MultitenantConstants.SUPER_TENANT_ID);
+
+        try {
+            registry.getRepositoryService().addHandler(null, filter, handler);
+        } finally {
+            CurrentContext.removeCallerTenantId();
+        }
+
+        try {
+            Resource[] resources = registry.getResources(new String[] {"/testBulkServed/stored",
+                    "/testBulkServed/served", "/testBulkServed/servedOnly"});
+
+            Assert.assertEquals(getContent(resources[0]), "stored");
+            Assert.assertEquals(getContent(resources[1]), "served", "The handler should serve the path.");
+            Assert.assertEquals(getContent(resources[2]), "served",
+                    "Paths served by a handler need not exist in the database.");
+        } finally {
+            CurrentContext.setCallerTenantId(MultitenantConstants.SUPER_TENANT_ID);
+
+            try {
+                registry.getRepositoryService().removeHandler(handler,
+                        HandlerLifecycleManager.DEFAULT_SYSTEM_HANDLER_PHASE);
+            } finally {
+                CurrentContext.removeCallerTenantId();
+            }
+        }
+    }
+
+    @Test
+    public void testResourceDAOGetResources() throws Exception {
+        putResource("/testBulkDAO/a", "a");
+        putResource("/testBulkDAO/b", "b");
+        putResource("/testBulkDAO/c/d", "d");
+
+        Resource b = registry.get("/testBulkDAO/b");
+        b.setProperty("p2", "v3");
+        registry.put("/testBulkDAO/b", b);
+
+        ResourceDAO resourceDAO = ctx.getDataAccessManager().getDAOManager().getResourceDAO();
+        Map<String, ResourceImpl> resources;
+
+        registry.beginTransaction();
+        try {
+            resources = resourceDAO.getResources(Arrays.asList("/testBulkDAO/a", "/testBulkDAO/b",
+                    "/testBulkDAO/c", "/testBulkDAO/c/d", "/testBulkDAO/missing"));
+        } finally {
+            registry.commitTransaction();
+        }
+
+        Assert.assertEquals(resources.size(), 4, "Missing paths should be left out.");
+        Assert.assertEquals(RepositoryUtils.decodeBytes((byte[]) resources.get("/testBulkDAO/a").getContent()), "a");
+        Assert.assertEquals(resources.get("/testBulkDAO/b").getProperty("p2"), "v3");
+        Assert.assertTrue(resources.get("/testBulkDAO/c") instanceof CollectionImpl,
+                "The collection should be read as a collection.");
+        Assert.assertEquals(RepositoryUtils.decodeBytes((byte[]) resources.get("/testBulkDAO/c/d").getContent()), "d");
+    }
+
+    private static void putResource(String path, String content) throws RepositoryException {
+        Resource r = registry.newResource();
+        r.setContent(content);
+        registry.put(path, r);
+    }
+
+    private static String getContent(Resource resource) throws RepositoryException {
+        return RepositoryUtils.decodeBytes((byte[]) resource.getContent());
+    }
+}
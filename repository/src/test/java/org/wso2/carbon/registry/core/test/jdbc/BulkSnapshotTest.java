@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+import org.wso2.carbon.registry.core.test.utils.BaseTestCase;
+import org.wso2.carbon.repository.api.Repository;
+import org.wso2.carbon.repository.api.Resource;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.core.ResourceImpl;
+import org.wso2.carbon.repository.core.jdbc.dataaccess.JDBCDataAccessManager;
+import org.wso2.carbon.repository.core.utils.VersionRetriever;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
+
+public class BulkSnapshotTest extends BaseTestCase {
+
+    protected static Repository registry = null;
+
+    @BeforeTest
+    public void setUp() {
+        super.setUp();
+
+        try {
+            RealmUnawareRegistryCoreServiceComponent comp = new RealmUnawareRegistryCoreServiceComponent();
+            comp.registerBuiltInHandlers(embeddedRegistryService);
+
+            registry = embeddedRegistryService.getRepository("admin");
+        } catch (RepositoryException e) {
+            Assert.fail("Failed to initialize the registry. Caused by: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void testSnapshotRows() throws Exception {
+        String root = "/testBulkSnapshot/c";
+        putResource(root + "/a", "a");
+        putResource(root + "/b", "b");
+        putResource(root + "/d/e", "e");
+
+        long rootVersion = getVersion(root);
+        long aVersion = getVersion(root + "/a");
+        long bVersion = getVersion(root + "/b");
+        long dVersion = getVersion(root + "/d");
+        long eVersion = getVersion(root + "/d/e");
+
+        registry.createVersion(root);
+
+        List<Long> versions = getSnapshotVersions(root);
+
+        // as the recursive walk lists them: the collection, its children, then their descendants.
+        Assert.assertEquals(versions.size(), 5);
+        Assert.assertEquals(versions.get(0).longValue(), rootVersion);
+        Assert.assertEquals(new HashSet<Long>(versions.subList(1, 4)),
+                new HashSet<Long>(Arrays.asList(aVersion, bVersion, dVersion)));
+        Assert.assertEquals(versions.get(4).longValue(), eVersion);
+
+        // every version of the snapshot is archived, and the current resources are renewed.
+        for (long version : versions) {
+            Assert.assertTrue(isInHistory(version), "Version " + version + " should be in the history.");
+        }
+
+        for (String path : new String[] {root, root + "/a", root + "/b", root + "/d", root + "/d/e"}) {
+            Assert.assertFalse(versions.contains(getVersion(path)), "The resource " + path + " should be renewed.");
+        }
+
+        Assert.assertEquals(getArchivedContentCount(Arrays.asList(aVersion, bVersion, eVersion)), 3,
+                "The content of the archived resources should be in the history.");
+    }
+
+    private List<Long> getSnapshotVersions(String path) throws Exception {
+        String[] versionPaths = registry.getVersions(path);
+        long snapshotID = -1;
+        for (String versionPath : versionPaths) {
+            snapshotID = Math.max(snapshotID, Long.parseLong(versionPath.substring(versionPath.lastIndexOf(':') + 1)));
+        }
+
+        Connection conn = ((JDBCDataAccessManager) ctx.getDataAccessManager()).getDataSource().getConnection();
+
+        try {
+            PreparedStatement ps = conn.prepareStatement(
+                    "SELECT REG_RESOURCE_VIDS FROM REG_SNAPSHOT WHERE REG_SNAPSHOT_ID=? AND REG_TENANT_ID=?");
+            ps.setLong(1, snapshotID);
+            ps.setInt(2, MultitenantConstants.SUPER_TENANT_ID);
+            ResultSet results = ps.executeQuery();
+            Assert.assertTrue(results.next(), "The snapshot should be stored.");
+
+            VersionRetriever retriever = new VersionRetriever(results.getBinaryStream(1));
+            List<Long> versions = new ArrayList<Long>();
+            for (int i = 0; retriever.getVersion(i) != -1; i++) {
+                versions.add(retriever.getVersion(i));
+            }
+            results.close();
+            ps.close();
+            return versions;
+        } finally {
+            conn.close();
+        }
+    }
+
+    private boolean isInHistory(long version) throws Exception {
+        Connection conn = ((JDBCDataAccessManager) ctx.getDataAccessManager()).getDataSource().getConnection();
+
+        try {
+            PreparedStatement ps = conn.prepareStatement(
+                    "SELECT COUNT(*) FROM REG_RESOURCE_HISTORY WHERE REG_VERSION=? AND REG_TENANT_ID=?");
+            ps.setLong(1, version);
+            ps.setInt(2, MultitenantConstants.SUPER_TENANT_ID);
+            ResultSet results = ps.executeQuery();
+            results.next();
+            int count = results.getInt(1);
+            results.close();
+            ps.close();
+            return count == 1;
+        } finally {
+            conn.close();
+        }
+    }
+
+    private int getArchivedContentCount(List<Long> versions) throws Exception {
+        Connection conn = ((JDBCDataAccessManager) ctx.getDataAccessManager()).getDataSource().getConnection();
+
+        try {
+            int count = 0;
+            PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM REG_RESOURCE_HISTORY H, " +
+                    "REG_CONTENT_HISTORY C WHERE H.REG_VERSION=? AND H.REG_TENANT_ID=? AND " +
+                    "C.REG_CONTENT_ID=H.REG_CONTENT_ID AND C.REG_TENANT_ID=H.REG_TENANT_ID");
+
+            for (long version : versions) {
+                ps.setLong(1, version);
+                ps.setInt(2, MultitenantConstants.SUPER_TENANT_ID);
+                ResultSet results = ps.executeQuery();
+                results.next();
+                count += results.getInt(1);
+                results.close();
+            }
+
+            ps.close();
+            return count;
+        } finally {
+            conn.close();
+        }
+    }
+
+    private static long getVersion(String path) throws RepositoryException {
+        return ((ResourceImpl) registry.get(path)).getVersionNumber();
+    }
+
+    private static void putResource(String path, String content) throws RepositoryException {
+        Resource r = registry.newResource();
+        r.setContent(content);
+        registry.put(path, r);
+    }
+}
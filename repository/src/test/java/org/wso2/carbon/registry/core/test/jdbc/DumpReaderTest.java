@@ -134,10 +134,10 @@ public class DumpReaderTest {
         processDump(dumpReader, result, "");
         Assert.assertEquals(62, result.size());
 
-        System.out.println("total read: " + DumpReader.getTotalRead());
-        System.out.println("total buffered: " + DumpReader.getTotalBuffered());
-        System.out.println("maximum buffer size: " + DumpReader.getMaxBufferedSize());
-        System.out.println("total buffer read size: " + DumpReader.getTotalBufferedRead());
+        System.out.println("total read: " + dumpReader.getTotalRead());
+        System.out.println("total buffered: " + dumpReader.getTotalBuffered());
+        System.out.println("maximum buffer size: " + dumpReader.getMaxBufferedSize());
+        System.out.println("total buffer read size: " + dumpReader.getTotalBufferedRead());
     }
 
     @Test
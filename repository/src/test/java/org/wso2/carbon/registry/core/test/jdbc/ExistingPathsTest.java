@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.jdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+import org.wso2.carbon.registry.core.test.utils.BaseTestCase;
+import org.wso2.carbon.repository.api.Resource;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.core.EmbeddedRepository;
+import org.wso2.carbon.repository.core.jdbc.dao.JDBCResourceDAO;
+import org.wso2.carbon.repository.core.tracing.Span;
+import org.wso2.carbon.repository.core.tracing.SpanExporter;
+import org.wso2.carbon.repository.core.tracing.Tracer;
+
+public class ExistingPathsTest extends BaseTestCase {
+
+    protected static EmbeddedRepository registry = null;
+
+    @BeforeTest
+    public void setUp() {
+        super.setUp();
+
+        try {
+            RealmUnawareRegistryCoreServiceComponent comp = new RealmUnawareRegistryCoreServiceComponent();
+            comp.registerBuiltInHandlers(embeddedRegistryService);
+
+            registry = (EmbeddedRepository) embeddedRegistryService.getRepository("admin");
+        } catch (RepositoryException e) {
+            Assert.fail("Failed to initialize the registry. Caused by: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void testExistingPaths() throws Exception {
+        putResource("/testExistingPaths/a");
+        putResource("/testExistingPaths/b");
+        putResource("/testExistingPaths/c/d");
+
+        List<String> paths = Arrays.asList("/testExistingPaths/a", "/testExistingPaths/b", "/testExistingPaths/c",
+                "/testExistingPaths/c/d", "/testExistingPaths/missing", "/testExistingPaths/c/missing",
+                "/testExistingMissing/a", "/");
+
+        Set<String> existingPaths = getExistingPaths(paths, new ArrayList<String>());
+
+        Assert.assertEquals(existingPaths, new HashSet<String>(Arrays.asList("/testExistingPaths/a",
+                "/testExistingPaths/b", "/testExistingPaths/c", "/testExistingPaths/c/d", "/")));
+
+        for (String path : paths) {
+            Assert.assertEquals(existingPaths.contains(path), registry.resourceExists(path),
+                    "The existence of " + path + " should be the same as checked by resourceExists.");
+        }
+    }
+
+    @Test
+    public void testQueryCount() throws Exception {
+        List<String> children = new ArrayList<String>();
+        for (int i = 0; i < 120; i++) {
+            putResource("/testExistingCount/r" + i);
+            children.add("/testExistingCount/r" + i);
+        }
+        putResource("/testExistingCount/c/d");
+        children.add("/testExistingCount/c");
+        children.add("/testExistingCount/missing");
+
+        // the path of the parent collection is cached by the first check.
+        getExistingPaths(children.subList(0, 3), new ArrayList<String>());
+
+        List<String> fewStatements = new ArrayList<String>();
+        Assert.assertEquals(getExistingPaths(children.subList(0, 3), fewStatements).size(), 3);
+
+        List<String> someStatements = new ArrayList<String>();
+        List<String> some = new ArrayList<String>(children.subList(0, 10));
+        some.add("/testExistingCount/c");
+        some.add("/testExistingCount/missing");
+        Assert.assertEquals(getExistingPaths(some, someStatements).size(), 11);
+
+        Assert.assertEquals(getExistenceStatements(fewStatements).size(), 2,
+                "One query should find the collections and one the resources of a parent.");
+        Assert.assertEquals(getExistenceStatements(someStatements).size(), 2,
+                "The number of queries should not grow with the number of paths.");
+        Assert.assertEquals(someStatements.size(), fewStatements.size(),
+                "No other queries should be issued per path.");
+
+        // paths beyond the size of an IN list are checked in further batches.
+        List<String> manyStatements = new ArrayList<String>();
+        Assert.assertEquals(getExistingPaths(children, manyStatements).size(), 121);
+        Assert.assertEquals(getExistenceStatements(manyStatements).size(), 4,
+                "Each query should be repeated once per 100 paths.");
+    }
+
+    @Test
+    public void testEmbeddedRepository() throws Exception {
+        putResource("/testExistingEmbedded/a");
+        putResource("/testExistingEmbedded/c/d");
+        registry.get("/testExistingEmbedded/a");
+
+        String[] paths = {"/testExistingEmbedded/a", "/testExistingEmbedded/c", "/testExistingEmbedded/c/d",
+                "/testExistingEmbedded/missing", null};
+
+        Assert.assertEquals(registry.getExistingPaths(paths), new HashSet<String>(Arrays.asList(
+                "/testExistingEmbedded/a", "/testExistingEmbedded/c", "/testExistingEmbedded/c/d")));
+
+        registry.delete("/testExistingEmbedded/a");
+        Assert.assertEquals(registry.getExistingPaths(paths), new HashSet<String>(Arrays.asList(
+                "/testExistingEmbedded/c", "/testExistingEmbedded/c/d")), "Deleted paths should not be found.");
+    }
+
+    // Checks the paths in a traced transaction, collecting the statements issued.
+    private static Set<String> getExistingPaths(List<String> paths, final List<String> statements)
+            throws RepositoryException {
+        Tracer.setExporter(new SpanExporter() {
+            public void export(List<Span> spans) {
+                for (Span span : spans) {
+                    if (span.getKind() == Span.KIND_CLIENT) {
+                        statements.add(span.getAttributes().get("db.statement"));
+                    }
+                }
+            }
+        });
+        Tracer.setEnabled(true);
+        Tracer.setSampleRatio(1);
+
+        try {
+            Tracer.beginOperation("getExistingPaths");
+            try {
+                registry.beginTransaction();
+                try {
+                    return new JDBCResourceDAO().getExistingPaths(paths);
+                } finally {
+                    registry.commitTransaction();
+                }
+            } finally {
+                Tracer.endOperation();
+            }
+        } finally {
+            Tracer.setEnabled(false);
+            Tracer.setExporter(null);
+        }
+    }
+
+    private static List<String> getExistenceStatements(List<String> statements) {
+        List<String> matching = new ArrayList<String>();
+        for (String statement : statements) {
+            if (statement != null && (statement.contains("REG_PATH_VALUE IN") || statement.contains("REG_NAME IN"))) {
+                matching.add(statement);
+            }
+        }
+        return matching;
+    }
+
+    private static void putResource(String path) throws RepositoryException {
+        Resource r = registry.newResource();
+        r.setContent("content");
+        registry.put(path, r);
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.jdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+import org.wso2.carbon.registry.core.test.utils.BaseTestCase;
+import org.wso2.carbon.repository.api.Resource;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.api.utils.RepositoryUtils;
+import org.wso2.carbon.repository.core.CollectionImpl;
+import org.wso2.carbon.repository.core.EmbeddedRepository;
+import org.wso2.carbon.repository.core.ResourceIDImpl;
+import org.wso2.carbon.repository.core.ResourceImpl;
+import org.wso2.carbon.repository.core.jdbc.dao.JDBCResourceDAO;
+import org.wso2.carbon.repository.core.tracing.Span;
+import org.wso2.carbon.repository.core.tracing.SpanExporter;
+import org.wso2.carbon.repository.core.tracing.Tracer;
+
+public class FusedReadTest extends BaseTestCase {
+
+    protected static EmbeddedRepository registry = null;
+
+    @BeforeTest
+    public void setUp() {
+        super.setUp();
+
+        try {
+            RealmUnawareRegistryCoreServiceComponent comp = new RealmUnawareRegistryCoreServiceComponent();
+            comp.registerBuiltInHandlers(embeddedRegistryService);
+
+            registry = (EmbeddedRepository) embeddedRegistryService.getRepository("admin");
+        } catch (RepositoryException e) {
+            Assert.fail("Failed to initialize the registry. Caused by: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void testFusedRead() throws Exception {
+        putResource("/testFusedRead/small", "small", "p1", "v1", "v2", "p2", "v3");
+
+        List<String> statements = new ArrayList<String>();
+        ResourceImpl resource = getFilledResource(new JDBCResourceDAO(), "/testFusedRead/small", statements);
+
+        Assert.assertEquals(getContent(resource), "small");
+        assertValues(resource.getPropertyValues("p1"), "v1", "v2");
+        Assert.assertEquals(resource.getProperty("p2"), "v3");
+
+        List<String> contentStatements = getStatements(statements, "REG_CONTENT_DATA");
+        Assert.assertEquals(contentStatements.size(), 1, "Small content should be read with the properties.");
+        Assert.assertTrue(contentStatements.get(0).contains("REG_RESOURCE_PROPERTY"));
+    }
+
+    @Test
+    public void testLargeContent() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            content.append((char) ('a' + i % 26));
+        }
+        putResource("/testFusedRead/large", content.toString(), "p1", "v1");
+
+        List<String> statements = new ArrayList<String>();
+        ResourceImpl resource = getFilledResource(new JDBCResourceDAO(), "/testFusedRead/large", statements);
+
+        Assert.assertEquals(getContent(resource), content.toString());
+        Assert.assertEquals(resource.getProperty("p1"), "v1");
+        Assert.assertEquals(getStatements(statements, "REG_CONTENT_DATA").size(), 2,
+                "Large content should be read by a separate query.");
+    }
+
+    @Test
+    public void testDialectFallback() throws Exception {
+        putResource("/testFusedRead/fallback", "fallback", "p1", "v1", "v2");
+
+        JDBCResourceDAO resourceDAO = new JDBCResourceDAO() {
+            protected String getContentLengthFunction(String dbProductName) {
+                return null;
+            }
+        };
+
+        List<String> statements = new ArrayList<String>();
+        ResourceImpl resource = getFilledResource(resourceDAO, "/testFusedRead/fallback", statements);
+
+        Assert.assertEquals(getContent(resource), "fallback");
+        assertValues(resource.getPropertyValues("p1"), "v1", "v2");
+
+        List<String> propertyStatements = getStatements(statements, "REG_RESOURCE_PROPERTY");
+        Assert.assertEquals(propertyStatements.size(), 1);
+        Assert.assertFalse(propertyStatements.get(0).contains("REG_CONTENT_DATA"),
+                "Content should not be read inline on an unknown database.");
+        Assert.assertEquals(getStatements(statements, "REG_CONTENT_DATA").size(), 1,
+                "Content should be read by a separate query on an unknown database.");
+    }
+
+    @Test
+    public void testCollection() throws Exception {
+        putResource("/testFusedRead/collection/child", "child");
+        Resource collection = registry.get("/testFusedRead/collection");
+        collection.setProperty("p1", "v1");
+        registry.put("/testFusedRead/collection", collection);
+
+        ResourceImpl resource = getFilledResource(new JDBCResourceDAO(), "/testFusedRead/collection",
+                new ArrayList<String>());
+
+        Assert.assertTrue(resource instanceof CollectionImpl, "The collection should be read as a collection.");
+        Assert.assertEquals(resource.getProperty("p1"), "v1");
+        Assert.assertNull(getFilledResource(new JDBCResourceDAO(), "/testFusedRead/missing",
+                new ArrayList<String>()));
+    }
+
+    @Test
+    public void testContentLengthFunctions() {
+        JDBCResourceDAO resourceDAO = new JDBCResourceDAO() {
+            {
+                Assert.assertEquals(getContentLengthFunction("H2"), "LENGTH");
+                Assert.assertEquals(getContentLengthFunction("MySQL"), "LENGTH");
+                Assert.assertEquals(getContentLengthFunction("PostgreSQL"), "LENGTH");
+                Assert.assertEquals(getContentLengthFunction("DB2/LINUXX8664"), "LENGTH");
+                Assert.assertEquals(getContentLengthFunction("Oracle"), "DBMS_LOB.GETLENGTH");
+                Assert.assertEquals(getContentLengthFunction("Microsoft SQL Server"), "DATALENGTH");
+                Assert.assertNull(getContentLengthFunction("Informix Dynamic Server"));
+                Assert.assertNull(getContentLengthFunction(null));
+            }
+        };
+        Assert.assertNotNull(resourceDAO);
+    }
+
+    @Test
+    public void testGetByID() throws Exception {
+        putResource("/testFusedRead/byID", "byID", "p1", "v1", "v2");
+
+        JDBCResourceDAO resourceDAO = new JDBCResourceDAO();
+        ResourceImpl resource;
+
+        registry.beginTransaction();
+        try {
+            ResourceIDImpl resourceID = resourceDAO.getResourceID("/testFusedRead/byID", false);
+            resource = resourceDAO.get(resourceID);
+        } finally {
+            registry.commitTransaction();
+        }
+
+        Assert.assertEquals(resource.getPath(), "/testFusedRead/byID");
+        assertValues(resource.getPropertyValues("p1"), "v1", "v2");
+    }
+
+    // Reads a resource in a traced transaction, collecting the statements issued.
+    private static ResourceImpl getFilledResource(JDBCResourceDAO resourceDAO, String path,
+                                                  final List<String> statements) throws RepositoryException {
+        Tracer.setExporter(new SpanExporter() {
+            public void export(List<Span> spans) {
+                for (Span span : spans) {
+                    if (span.getKind() == Span.KIND_CLIENT) {
+                        statements.add(span.getAttributes().get("db.statement"));
+                    }
+                }
+            }
+        });
+        Tracer.setEnabled(true);
+        Tracer.setSampleRatio(1);
+
+        try {
+            Tracer.beginOperation("getFilledResource");
+            try {
+                registry.beginTransaction();
+                try {
+                    return resourceDAO.getFilledResource(path);
+                } finally {
+                    registry.commitTransaction();
+                }
+            } finally {
+                Tracer.endOperation();
+            }
+        } finally {
+            Tracer.setEnabled(false);
+            Tracer.setExporter(null);
+        }
+    }
+
+    // Each value should be read once, whatever the order of the rows.
+    private static void assertValues(List<String> values, String... expected) {
+        Assert.assertEquals(values.size(), expected.length, "Each property value should be read once.");
+        Assert.assertEquals(new HashSet<String>(values), new HashSet<String>(Arrays.asList(expected)));
+    }
+
+    private static List<String> getStatements(List<String> statements, String table) {
+        List<String> matching = new ArrayList<String>();
+        for (String statement : statements) {
+            if (statement != null && statement.contains(table)) {
+                matching.add(statement);
+            }
+        }
+        return matching;
+    }
+
+    private static void putResource(String path, String content, String... properties) throws RepositoryException {
+        Resource r = registry.newResource();
+        r.setContent(content);
+
+        String name = null;
+        for (String property : properties) {
+            if (property.startsWith("p")) {
+                name = property;
+            } else {
+                r.addProperty(name, property);
+            }
+        }
+
+        registry.put(path, r);
+    }
+
+    private static String getContent(Resource resource) throws RepositoryException {
+        return RepositoryUtils.decodeBytes((byte[]) resource.getContent());
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.jdbc;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+import org.wso2.carbon.registry.core.test.utils.BaseTestCase;
+import org.wso2.carbon.repository.api.Activity;
+import org.wso2.carbon.repository.api.Resource;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.api.utils.RepositoryUtils;
+import org.wso2.carbon.repository.core.EmbeddedRepository;
+import org.wso2.carbon.repository.core.jdbc.dataaccess.JDBCDataAccessManager;
+import org.wso2.carbon.repository.core.utils.LogCursor;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
+
+public class IncrementalDumpTest extends BaseTestCase {
+
+    protected static EmbeddedRepository registry = null;
+
+    @BeforeTest
+    public void setUp() {
+        super.setUp();
+
+        try {
+            RealmUnawareRegistryCoreServiceComponent comp = new RealmUnawareRegistryCoreServiceComponent();
+            comp.registerBuiltInHandlers(embeddedRegistryService);
+
+            registry = (EmbeddedRepository) embeddedRegistryService.getRepository("admin");
+        } catch (RepositoryException e) {
+            Assert.fail("Failed to initialize the registry. Caused by: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void testDumpChanges() throws Exception {
+        putResource("/testDelta/unchanged", "unchanged");
+        putResource("/testDelta/a", "a");
+        putResource("/testDelta/b", "b");
+        putResource("/testDelta/c/d", "d");
+
+        StringWriter writer = new StringWriter();
+        LogCursor cursor = registry.dumpChanges("/testDelta", null, writer);
+        Assert.assertNotNull(cursor.getLoggedTime(), "The dump should cover the logs so far.");
+
+        LogCursor restoredCursor = registry.restoreChanges("/testDeltaCopy", new StringReader(writer.toString()));
+        Assert.assertEquals(restoredCursor.getLoggedTime().getTime(), cursor.getLoggedTime().getTime());
+        Assert.assertEquals(restoredCursor.getLogId(), cursor.getLogId());
+        Assert.assertEquals(getContent("/testDeltaCopy/c/d"), "d");
+
+        putResource("/testDelta/a", "a2");
+        registry.delete("/testDelta/b");
+        registry.move("/testDelta/c/d", "/testDelta/e");
+        putResource("/testDelta/f", "f");
+
+        writer = new StringWriter();
+        cursor = registry.dumpChanges("/testDelta", cursor, writer);
+        String changes = writer.toString();
+        Assert.assertFalse(changes.contains("path=\"/unchanged\""), "Unchanged resources should not be dumped.");
+        Assert.assertTrue(changes.contains("path=\"/b\" status=\"deleted\""), "Deletions should be tombstones.");
+
+        registry.restoreChanges("/testDeltaCopy", new StringReader(changes));
+
+        Assert.assertEquals(getContent("/testDeltaCopy/unchanged"), "unchanged");
+        Assert.assertEquals(getContent("/testDeltaCopy/a"), "a2");
+        Assert.assertFalse(registry.resourceExists("/testDeltaCopy/b"), "The deleted resource should be deleted.");
+        Assert.assertFalse(registry.resourceExists("/testDeltaCopy/c/d"), "The moved resource should be deleted.");
+        Assert.assertEquals(getContent("/testDeltaCopy/e"), "d");
+        Assert.assertEquals(getContent("/testDeltaCopy/f"), "f");
+
+        writer = new StringWriter();
+        registry.dumpChanges("/testDelta", cursor, writer);
+        Assert.assertFalse(writer.toString().contains("<resource"), "Nothing should be dumped without changes.");
+    }
+
+    @Test
+    public void testLateLogs() throws Exception {
+        putResource("/testLateLogs/a", "a");
+        putResource("/testLateLogs/b", "b");
+
+        StringWriter writer = new StringWriter();
+        LogCursor cursor = registry.dumpChanges("/testLateLogs", null, writer);
+        registry.restoreChanges("/testLateLogsCopy", new StringReader(writer.toString()));
+
+        // the log of the delete is written after the dump, but logged before its position, as
+        // with a node writing its logs late.
+        registry.delete("/testLateLogs/b");
+        ctx.getLogWriter().flush();
+        setLoggedTime("/testLateLogs/b", Activity.DELETE_RESOURCE, cursor.getLoggedTime().getTime() - 1000);
+
+        writer = new StringWriter();
+        cursor = registry.dumpChanges("/testLateLogs", cursor, writer);
+        String changes = writer.toString();
+        Assert.assertTrue(changes.contains("path=\"/b\" status=\"deleted\""),
+                "A log written late should be dumped.");
+        Assert.assertFalse(changes.contains("path=\"/a\""), "Logs already dumped should be dropped.");
+
+        LogCursor restoredCursor = registry.restoreChanges("/testLateLogsCopy", new StringReader(changes));
+        Assert.assertFalse(registry.resourceExists("/testLateLogsCopy/b"), "The deleted resource should be deleted.");
+        Assert.assertEquals(getContent("/testLateLogsCopy/a"), "a");
+        Assert.assertEquals(restoredCursor.getAppliedLogIds(), cursor.getAppliedLogIds(),
+                "The logs already dumped should be restored with the position.");
+
+        writer = new StringWriter();
+        registry.dumpChanges("/testLateLogs", restoredCursor, writer);
+        Assert.assertFalse(writer.toString().contains("<resource"), "A log should only be dumped once.");
+    }
+
+    // Moves the logged time of the logs of an action on a path, as if they were logged at that time.
+    private void setLoggedTime(String path, int action, long loggedTime) throws Exception {
+        Connection conn = ((JDBCDataAccessManager) ctx.getDataAccessManager()).getDataSource().getConnection();
+
+        try {
+            PreparedStatement ps = conn.prepareStatement("UPDATE REG_LOG SET REG_LOGGED_TIME=? WHERE " +
+                    "REG_PATH=? AND REG_ACTION=? AND REG_TENANT_ID=?");
+            ps.setTimestamp(1, new Timestamp(loggedTime));
+            ps.setString(2, path);
+            ps.setInt(3, action);
+            ps.setInt(4, MultitenantConstants.SUPER_TENANT_ID);
+            Assert.assertEquals(ps.executeUpdate(), 1);
+            ps.close();
+
+            if (!conn.getAutoCommit()) {
+                conn.commit();
+            }
+        } finally {
+            conn.close();
+        }
+    }
+
+    private static void putResource(String path, String content) throws RepositoryException {
+        Resource r = registry.newResource();
+        r.setContent(content);
+        registry.put(path, r);
+    }
+
+    private static String getContent(String path) throws RepositoryException {
+        return RepositoryUtils.decodeBytes((byte[]) registry.get(path).getContent());
+    }
+}
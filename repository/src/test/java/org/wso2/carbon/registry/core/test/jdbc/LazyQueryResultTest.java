@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.jdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+import org.wso2.carbon.registry.core.test.utils.BaseTestCase;
+import org.wso2.carbon.repository.api.Collection;
+import org.wso2.carbon.repository.api.Repository;
+import org.wso2.carbon.repository.api.Resource;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.core.jdbc.dataaccess.QueryResultCollection;
+import org.wso2.carbon.repository.core.utils.InternalConstants;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
+
+public class LazyQueryResultTest extends BaseTestCase {
+
+    private static final String QUERY =
+            "SELECT R.REG_PATH_ID, R.REG_NAME FROM REG_RESOURCE R WHERE R.REG_DESCRIPTION LIKE ?";
+
+    protected static Repository registry = null;
+
+    @BeforeTest
+    public void setUp() {
+        super.setUp();
+
+        try {
+            RealmUnawareRegistryCoreServiceComponent comp = new RealmUnawareRegistryCoreServiceComponent();
+            comp.registerBuiltInHandlers(embeddedRegistryService);
+
+            registry = embeddedRegistryService.getRepository("admin");
+        } catch (RepositoryException e) {
+            Assert.fail("Failed to initialize the registry. Caused by: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void testPaging() throws Exception {
+        for (int i = 0; i < 7; i++) {
+            putResource(registry, "/testLazyPaging/r" + i, "lazy-paging");
+        }
+
+        Map<String, String> parameters = getParameters(QUERY, "lazy-paging");
+        Set<String> expected = new HashSet<String>(Arrays.asList(registry.executeQuery(null, parameters).getChildPaths()));
+        Assert.assertEquals(expected.size(), 7);
+
+        parameters.put(InternalConstants.RESULT_PAGING_PROPERTY_NAME, InternalConstants.LAZY_RESULT_PAGING);
+        Collection results = registry.executeQuery(null, parameters);
+        Assert.assertTrue(results instanceof QueryResultCollection, "The results should be read lazily.");
+
+        List<String> paths = readPages(results, 3);
+        Assert.assertEquals(paths.size(), 7, "Each result should be read once.");
+        Assert.assertEquals(new HashSet<String>(paths), expected);
+        Assert.assertEquals(results.getChildPaths(7, 3).length, 0, "No results should be left.");
+
+        // pages already read, and pages not read yet, are read from where they start.
+        Assert.assertEquals(Arrays.asList(results.getChildPaths(4, 2)), paths.subList(4, 6));
+        Collection unread = registry.executeQuery(null, parameters);
+        Assert.assertEquals(Arrays.asList(unread.getChildPaths(5, 2)), paths.subList(5, 7));
+        Assert.assertEquals(Arrays.asList(unread.getChildPaths(1, 3)), paths.subList(1, 4));
+
+        Assert.assertEquals(unread.getChildCount(), 7);
+        Assert.assertEquals(Arrays.asList(unread.getChildPaths()), paths);
+    }
+
+    @Test
+    public void testDuplicateRows() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            putResource(registry, "/testLazyDuplicates/r" + i, "lazy-duplicates");
+        }
+
+        // every resource is in as many rows as there are resources.
+        Map<String, String> parameters = getParameters("SELECT R.REG_PATH_ID, R.REG_NAME FROM " +
+                "REG_RESOURCE R, REG_RESOURCE R2 WHERE R.REG_DESCRIPTION LIKE ? AND R2.REG_DESCRIPTION LIKE ?",
+                "lazy-duplicates");
+        parameters.put("2", "lazy-duplicates");
+        parameters.put(InternalConstants.RESULT_PAGING_PROPERTY_NAME, InternalConstants.LAZY_RESULT_PAGING);
+
+        List<String> paths = readPages(registry.executeQuery(null, parameters), 3);
+        Assert.assertEquals(paths.size(), 4, "Duplicate rows should be read as one result.");
+        Assert.assertEquals(new HashSet<String>(paths).size(), 4);
+    }
+
+    @Test
+    public void testChroot() throws Exception {
+        Repository chrootRegistry = embeddedRegistryService.getRepository("admin",
+                MultitenantConstants.SUPER_TENANT_ID, "/testLazyChroot");
+
+        for (int i = 0; i < 3; i++) {
+            putResource(registry, "/testLazyChroot/r" + i, "lazy-chroot");
+            putResource(registry, "/testLazyOutside/r" + i, "lazy-chroot");
+        }
+
+        Map<String, String> parameters = getParameters(QUERY, "lazy-chroot");
+        parameters.put(InternalConstants.RESULT_PAGING_PROPERTY_NAME, InternalConstants.LAZY_RESULT_PAGING);
+
+        Collection results = chrootRegistry.executeQuery(null, parameters);
+        Assert.assertTrue(results instanceof QueryResultCollection, "The results should stay lazy in a chroot.");
+
+        List<String> paths = readPages(results, 2);
+        Assert.assertEquals(new HashSet<String>(paths), new HashSet<String>(Arrays.asList("/r0", "/r1", "/r2")),
+                "Only the results within the chroot should be read, with relative paths.");
+        Assert.assertEquals(results.getChildCount(), 3);
+    }
+
+    private static List<String> readPages(Collection results, int pageSize) throws RepositoryException {
+        List<String> paths = new ArrayList<String>();
+
+        while (true) {
+            String[] page = results.getChildPaths(paths.size(), pageSize);
+            Assert.assertTrue(page.length <= pageSize, "A page should not have more results than requested.");
+            paths.addAll(Arrays.asList(page));
+
+            if (page.length < pageSize) {
+                return paths;
+            }
+        }
+    }
+
+    private static Map<String, String> getParameters(String query, String description) {
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put("query", query);
+        parameters.put("1", description);
+        return parameters;
+    }
+
+    private static void putResource(Repository repository, String path, String description)
+            throws RepositoryException {
+        Resource r = repository.newResource();
+        r.setContent("content");
+        r.setDescription(description);
+        repository.put(path, r);
+    }
+}
@@ -0,0 +1,410 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import javax.sql.DataSource;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+import org.wso2.carbon.registry.core.test.utils.BaseTestCase;
+import org.wso2.carbon.repository.api.Activity;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.core.CurrentContext;
+import org.wso2.carbon.repository.core.config.LogStorageConfiguration;
+import org.wso2.carbon.repository.core.jdbc.dao.JDBCLogsDAO;
+import org.wso2.carbon.repository.core.jdbc.dao.LogStorageManager;
+import org.wso2.carbon.repository.core.jdbc.dataaccess.JDBCDataAccessManager;
+import org.wso2.carbon.repository.core.utils.LogCount;
+import org.wso2.carbon.repository.core.utils.LogRecord;
+
+public class LogStorageTest extends BaseTestCase {
+
+    @BeforeTest
+    public void setUp() {
+        super.setUp();
+
+        try {
+            RealmUnawareRegistryCoreServiceComponent comp = new RealmUnawareRegistryCoreServiceComponent();
+            comp.registerBuiltInHandlers(embeddedRegistryService);
+        } catch (RepositoryException e) {
+            Assert.fail("Failed to initialize the registry. Caused by: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void testPartitioning() throws Exception {
+        String path = "/testLogPartitions/p";
+        LogStorageConfiguration configuration = new LogStorageConfiguration();
+        configuration.setPartitionPeriod(LogStorageConfiguration.PERIOD_MONTH);
+
+        LogStorageConfiguration previous = ctx.getLogStorageConfiguration();
+        ctx.setLogStorageConfiguration(configuration);
+
+        try {
+            JDBCLogsDAO logsDAO = new JDBCLogsDAO();
+            logsDAO.saveLogBatch(new LogRecord[] {
+                    newLogRecord(path, "user1", utc("2000-01-15 10:20"), Activity.UPDATE),
+                    newLogRecord(path, "user1", utc("2000-02-05 10:20"), Activity.UPDATE),
+                    newLogRecord(path, "user1", utc("2000-02-20 10:20"), Activity.UPDATE),
+                    newLogRecord(path, "user1", new Date(), Activity.UPDATE)});
+
+            LogStorageManager.maintain(getDataSource(), configuration);
+
+            // the logs of the months that have ended are moved, and the current logs are kept.
+            Assert.assertEquals(countLogs("REG_LOG", path), 1, "The current log should stay in REG_LOG.");
+            Assert.assertEquals(countLogs("REG_LOG_P200001", path), 1);
+            Assert.assertEquals(countLogs("REG_LOG_P200002", path), 2);
+
+            LogStorageManager.maintain(getDataSource(), configuration);
+            Assert.assertEquals(countLogs("REG_LOG", path), 1, "Moved logs should not be moved again.");
+            Assert.assertEquals(countLogs("REG_LOG_P200002", path), 2, "Moved logs should not be moved again.");
+
+            // the logs are read from REG_LOG together with the partition tables.
+            Assert.assertEquals(getLogs(logsDAO, path, null, null).length, 4,
+                    "The logs of all partitions should be read.");
+
+            Activity[] february = getLogs(logsDAO, path, utc("2000-02-01 00:00"), utc("2000-03-01 00:00"));
+            Assert.assertEquals(february.length, 2, "Only the logs between the dates should be read.");
+            for (Activity activity : february) {
+                Assert.assertTrue(activity.getDate().after(utc("2000-02-01 00:00")));
+            }
+
+            Connection conn = getDataSource().getConnection();
+            try {
+                String source = LogStorageManager.getLogSource(conn, configuration,
+                        utc("2000-02-01 00:00"), utc("2000-03-01 00:00"));
+                Assert.assertTrue(source.contains(" UNION ALL "), "REG_LOG should be read with the partition.");
+                Assert.assertTrue(source.contains("REG_LOG_P200002"));
+                Assert.assertFalse(source.contains("REG_LOG_P200001"),
+                        "Partitions outside of the dates should not be read.");
+
+                Assert.assertEquals(LogStorageManager.getLogSource(conn, configuration,
+                        utc("1990-01-01 00:00"), utc("1990-02-01 00:00")), "REG_LOG",
+                        "REG_LOG alone should be read when no partition overlaps the dates.");
+            } finally {
+                conn.close();
+            }
+        } finally {
+            ctx.setLogStorageConfiguration(previous);
+        }
+    }
+
+    @Test
+    public void testRetention() throws Exception {
+        String path = "/testLogRetention/r";
+        LogStorageConfiguration configuration = new LogStorageConfiguration();
+        configuration.setPartitionPeriod(LogStorageConfiguration.PERIOD_MONTH);
+        configuration.setRollupsEnabled(true);
+
+        LogStorageConfiguration previous = ctx.getLogStorageConfiguration();
+        ctx.setLogStorageConfiguration(configuration);
+
+        try {
+            JDBCLogsDAO logsDAO = new JDBCLogsDAO();
+            logsDAO.saveLogBatch(new LogRecord[] {
+                    newLogRecord(path, "user1", utc("1999-01-15 10:20"), Activity.UPDATE),
+                    newLogRecord(path, "user1", utc("1999-02-05 10:20"), Activity.UPDATE),
+                    newLogRecord(path, "user1", utc("1999-02-20 10:20"), Activity.UPDATE)});
+
+            LogStorageManager.maintain(getDataSource(), configuration);
+            Assert.assertEquals(countLogs("REG_LOG_P199901", path), 1);
+            Assert.assertEquals(countLogs("REG_LOG_P199902", path), 2);
+
+            // logs written late are still in REG_LOG when the retention is applied.
+            logsDAO.saveLogBatch(new LogRecord[] {
+                    newLogRecord(path, "user1", utc("1999-02-08 10:20"), Activity.UPDATE),
+                    newLogRecord(path, "user1", utc("1999-02-25 10:20"), Activity.UPDATE)});
+
+            Date cutoff = utc("1999-02-10 00:00");
+            configuration.setRetention(System.currentTimeMillis() - cutoff.getTime());
+            LogStorageManager.maintain(getDataSource(), configuration);
+
+            Assert.assertFalse(tableExists("REG_LOG_P199901"), "Partitions that have expired should be dropped.");
+            Assert.assertEquals(countLogs("REG_LOG_P199902", path), 2,
+                    "Only the expired logs of the partition holding the cutoff should be removed.");
+            Assert.assertEquals(countLogs("REG_LOG", path), 0,
+                    "Expired logs in REG_LOG should be removed, and the others moved.");
+
+            Activity[] logs = getLogs(logsDAO, path, null, null);
+            Assert.assertEquals(logs.length, 2);
+            for (Activity activity : logs) {
+                Assert.assertTrue(activity.getDate().after(cutoff), "Only the logs after the cutoff should be kept.");
+            }
+
+            // hourly counts expire with the logs, while daily counts are kept.
+            Assert.assertEquals(getCounts(logsDAO, LogCount.BY_PATH, true, utc("1999-01-01 00:00"),
+                    utc("1999-03-01 00:00"), path).size(), 2, "Only the hourly counts after the cutoff should be kept.");
+            Assert.assertEquals(getCounts(logsDAO, LogCount.BY_PATH, false, utc("1999-01-01 00:00"),
+                    utc("1999-03-01 00:00"), path).size(), 5, "The daily counts should be kept.");
+        } finally {
+            ctx.setLogStorageConfiguration(previous);
+        }
+    }
+
+    @Test
+    public void testRollups() throws Exception {
+        String path = "/testLogRollups/a";
+        String otherPath = "/testLogRollups/b";
+        LogStorageConfiguration configuration = new LogStorageConfiguration();
+        configuration.setRollupsEnabled(true);
+
+        LogStorageConfiguration previous = ctx.getLogStorageConfiguration();
+        ctx.setLogStorageConfiguration(configuration);
+
+        try {
+            JDBCLogsDAO logsDAO = new JDBCLogsDAO();
+            logsDAO.saveLogBatch(new LogRecord[] {
+                    newLogRecord(path, "rollupUser1", utc("2002-03-04 10:05"), Activity.UPDATE),
+                    newLogRecord(path, "rollupUser2", utc("2002-03-04 10:40"), Activity.UPDATE)});
+
+            // the counts of the second batch are added to those of the first.
+            logsDAO.saveLogBatch(new LogRecord[] {
+                    newLogRecord(path, "rollupUser1", utc("2002-03-04 11:15"), Activity.ADD),
+                    newLogRecord(otherPath, "rollupUser1", utc("2002-03-04 11:20"), Activity.UPDATE),
+                    newLogRecord(path, "rollupUser1", utc("2002-03-04 10:50"), Activity.UPDATE)});
+
+            Date from = utc("2002-03-04 00:00");
+            Date to = utc("2002-03-05 00:00");
+
+            List<LogCount> hourly = getCounts(logsDAO, LogCount.BY_PATH, true, from, to, path);
+            Assert.assertEquals(hourly.size(), 2);
+            assertCount(hourly.get(0), utc("2002-03-04 10:00"), 3);
+            assertCount(hourly.get(1), utc("2002-03-04 11:00"), 1);
+
+            List<LogCount> daily = getCounts(logsDAO, LogCount.BY_PATH, false, from, to, otherPath);
+            Assert.assertEquals(daily.size(), 1);
+            assertCount(daily.get(0), from, 1);
+
+            assertCount(getCounts(logsDAO, LogCount.BY_USER, false, from, to, "rollupUser1").get(0), from, 4);
+            assertCount(getCounts(logsDAO, LogCount.BY_USER, false, from, to, "rollupUser2").get(0), from, 1);
+
+            // the counts of the hour holding the starting date are included.
+            hourly = getCounts(logsDAO, LogCount.BY_PATH, true, utc("2002-03-04 11:30"), to, path);
+            Assert.assertEquals(hourly.size(), 1);
+            assertCount(hourly.get(0), utc("2002-03-04 11:00"), 1);
+
+            // each batch adds rows of its own, which are replaced by their sum once the day has settled.
+            Assert.assertEquals(countRollupRows("H", path), 3);
+            if (tableExists("REG_LOG_MAINTENANCE")) {
+                executeUpdate("UPDATE REG_LOG_MAINTENANCE SET REG_ROLLUPS_COMPACTED=NULL");
+            }
+            LogStorageManager.maintain(getDataSource(), configuration);
+
+            Assert.assertEquals(countRollupRows("H", path), 2, "One row should be kept per hour.");
+            Assert.assertEquals(countRollupRows("D", "rollupUser1"), 1, "One row should be kept per day.");
+            hourly = getCounts(logsDAO, LogCount.BY_PATH, true, from, to, path);
+            assertCount(hourly.get(0), utc("2002-03-04 10:00"), 3);
+            assertCount(hourly.get(1), utc("2002-03-04 11:00"), 1);
+            assertCount(getCounts(logsDAO, LogCount.BY_USER, false, from, to, "rollupUser1").get(0), from, 4);
+
+            configuration.setRollupsEnabled(false);
+            try {
+                logsDAO.getLogCounts(LogCount.BY_PATH, true, from, to, ctx.getDataAccessManager());
+                Assert.fail("Log counts should not be read when rollups are not enabled.");
+            } catch (RepositoryException expected) {
+            }
+        } finally {
+            ctx.setLogStorageConfiguration(previous);
+        }
+    }
+
+    @Test
+    public void testMaintenanceLock() throws Exception {
+        String path = "/testLogLock/l";
+        LogStorageConfiguration configuration = new LogStorageConfiguration();
+        configuration.setPartitionPeriod(LogStorageConfiguration.PERIOD_MONTH);
+
+        LogStorageConfiguration previous = ctx.getLogStorageConfiguration();
+        ctx.setLogStorageConfiguration(configuration);
+
+        try {
+            // creates the maintenance table.
+            LogStorageManager.maintain(getDataSource(), configuration);
+
+            new JDBCLogsDAO().saveLogBatch(new LogRecord[] {
+                    newLogRecord(path, "user1", utc("2001-05-15 10:20"), Activity.UPDATE)});
+
+            // the logs are not maintained while another node holds the lease.
+            executeUpdate("UPDATE REG_LOG_MAINTENANCE SET REG_OWNER='other', REG_LOCKED_UNTIL=" +
+                    "{ts '" + new Timestamp(System.currentTimeMillis() + LogStorageManager.LOCK_LEASE) + "'}");
+            LogStorageManager.maintain(getDataSource(), configuration);
+            Assert.assertEquals(countLogs("REG_LOG", path), 1, "The logs should not be moved by a second node.");
+            Assert.assertFalse(tableExists("REG_LOG_P200105"));
+
+            // the lease of a node that stopped expires.
+            executeUpdate("UPDATE REG_LOG_MAINTENANCE SET REG_LOCKED_UNTIL=" +
+                    "{ts '" + new Timestamp(System.currentTimeMillis() - 1000) + "'}");
+            LogStorageManager.maintain(getDataSource(), configuration);
+            Assert.assertEquals(countLogs("REG_LOG", path), 0);
+            Assert.assertEquals(countLogs("REG_LOG_P200105", path), 1);
+
+            // nodes maintaining the logs at the same time move each log once.
+            newLogs(path, utc("2001-06-15 10:20"), 50);
+            Thread[] threads = new Thread[4];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread(new MaintenanceRunner(getDataSource(), configuration));
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join(60000);
+            }
+            LogStorageManager.maintain(getDataSource(), configuration);
+
+            Assert.assertEquals(countLogs("REG_LOG", path), 0);
+            Assert.assertEquals(countLogs("REG_LOG_P200106", path), 50, "The logs should be moved once.");
+        } finally {
+            ctx.setLogStorageConfiguration(previous);
+        }
+    }
+
+    private static class MaintenanceRunner implements Runnable {
+
+        private final DataSource dataSource;
+        private final LogStorageConfiguration configuration;
+
+        private MaintenanceRunner(DataSource dataSource, LogStorageConfiguration configuration) {
+            this.dataSource = dataSource;
+            this.configuration = configuration;
+        }
+
+        public void run() {
+            LogStorageManager.maintain(dataSource, configuration);
+        }
+    }
+
+    private static void newLogs(String path, Date timestamp, int count) throws RepositoryException {
+        LogRecord[] logRecords = new LogRecord[count];
+        for (int i = 0; i < count; i++) {
+            logRecords[i] = newLogRecord(path, "user1", new Date(timestamp.getTime() + i * 1000), Activity.UPDATE);
+        }
+        new JDBCLogsDAO().saveLogBatch(logRecords);
+    }
+
+    private Activity[] getLogs(JDBCLogsDAO logsDAO, String path, Date from, Date to) throws RepositoryException {
+        return logsDAO.getLogs(path, -1, null, from, to, false, 0, -1, ctx.getDataAccessManager());
+    }
+
+    private List<LogCount> getCounts(JDBCLogsDAO logsDAO, String groupBy, boolean hourly, Date from, Date to,
+                                     String value) throws RepositoryException {
+        List<LogCount> counts = new ArrayList<LogCount>();
+        for (LogCount count : logsDAO.getLogCounts(groupBy, hourly, from, to, ctx.getDataAccessManager())) {
+            if (value.equals(count.getValue())) {
+                counts.add(count);
+            }
+        }
+        return counts;
+    }
+
+    private static void assertCount(LogCount count, Date periodStart, long expected) {
+        Assert.assertEquals(count.getPeriodStart(), periodStart);
+        Assert.assertEquals(count.getCount(), expected,
+                "Unexpected count for " + count.getValue() + " at " + periodStart + ".");
+    }
+
+    private int countLogs(String table, String path) throws Exception {
+        Connection conn = getDataSource().getConnection();
+
+        try {
+            PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM " + table + " WHERE REG_PATH=?");
+            ps.setString(1, path);
+            ResultSet results = ps.executeQuery();
+            results.next();
+            int count = results.getInt(1);
+            results.close();
+            ps.close();
+            return count;
+        } finally {
+            conn.close();
+        }
+    }
+
+    private int countRollupRows(String period, String value) throws Exception {
+        Connection conn = getDataSource().getConnection();
+
+        try {
+            PreparedStatement ps = conn.prepareStatement(
+                    "SELECT COUNT(*) FROM REG_LOG_ROLLUP WHERE REG_PERIOD=? AND REG_VALUE=?");
+            ps.setString(1, period);
+            ps.setString(2, value);
+            ResultSet results = ps.executeQuery();
+            results.next();
+            int count = results.getInt(1);
+            results.close();
+            ps.close();
+            return count;
+        } finally {
+            conn.close();
+        }
+    }
+
+    private void executeUpdate(String sql) throws Exception {
+        Connection conn = getDataSource().getConnection();
+
+        try {
+            Statement s = conn.createStatement();
+            s.executeUpdate(sql);
+            s.close();
+        } finally {
+            conn.close();
+        }
+    }
+
+    private boolean tableExists(String table) throws Exception {
+        Connection conn = getDataSource().getConnection();
+
+        try {
+            ResultSet results = conn.getMetaData().getTables(null, null, table, new String[] {"TABLE"});
+            boolean exists = results.next();
+            results.close();
+            return exists;
+        } finally {
+            conn.close();
+        }
+    }
+
+    private DataSource getDataSource() {
+        return ((JDBCDataAccessManager) ctx.getDataAccessManager()).getDataSource();
+    }
+
+    private static LogRecord newLogRecord(String path, String userName, Date timestamp, int action) {
+        LogRecord logRecord = new LogRecord();
+        logRecord.setResourcePath(path);
+        logRecord.setUserName(userName);
+        logRecord.setTimestamp(timestamp);
+        logRecord.setAction(action);
+        logRecord.setTenantId(CurrentContext.getTenantId());
+        return logRecord;
+    }
+
+    private static Date utc(String time) throws Exception {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.parse(time);
+    }
+}
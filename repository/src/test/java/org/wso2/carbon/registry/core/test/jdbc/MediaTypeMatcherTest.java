@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+import org.wso2.carbon.registry.core.test.utils.BaseTestCase;
+import org.wso2.carbon.repository.api.Repository;
+import org.wso2.carbon.repository.api.Resource;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.api.handlers.Handler;
+import org.wso2.carbon.repository.api.handlers.HandlerContext;
+import org.wso2.carbon.repository.core.CurrentContext;
+import org.wso2.carbon.repository.core.handlers.HandlerLifecycleManager;
+import org.wso2.carbon.repository.core.handlers.builtin.MediaTypeMatcher;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
+
+public class MediaTypeMatcherTest extends BaseTestCase {
+
+    private static final String MEDIA_TYPE = "application/vnd.test-matched";
+
+    @BeforeTest
+    public void setUp() {
+        super.setUp();
+
+        try {
+            RealmUnawareRegistryCoreServiceComponent comp = new RealmUnawareRegistryCoreServiceComponent();
+            comp.registerBuiltInHandlers(embeddedRegistryService);
+        } catch (RepositoryException e) {
+            Assert.fail("Failed to initialize the registry. Caused by: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void testMatchAcrossRepositories() throws Exception {
+        Repository writer = embeddedRegistryService.getRepository("admin");
+        Repository reader = embeddedRegistryService.getRepository("admin");
+        Assert.assertNotSame(writer, reader, "Each call should return a new repository.");
+
+        String path = "/testMediaTypeMatcher/shared";
+        putResource(writer, path, MEDIA_TYPE);
+
+        final List<Resource> handled = new ArrayList<Resource>();
+        Handler handler = new Handler() {
+            public Resource get(HandlerContext requestContext) throws RepositoryException {
+                handled.add(requestContext.getResource());
+                return null;
+            }
+
+            public void delete(HandlerContext requestContext) throws RepositoryException {
+                handled.add(requestContext.getResource());
+            }
+        };
+
+        addHandler(handler);
+
+        try {
+            reader.get(path);
+            Assert.assertEquals(handled.size(), 1, "The handler should be invoked for the media type.");
+            Assert.assertNotNull(handled.get(0), "The resource should be set for the handler.");
+            Assert.assertEquals(handled.get(0).getMediaType(), MEDIA_TYPE);
+
+            // written through one repository, and read through the other.
+            putResource(writer, path, "text/plain");
+            reader.get(path);
+            Assert.assertEquals(handled.size(), 1,
+                    "A write through another repository should invalidate the cached media type.");
+
+            putResource(writer, path, MEDIA_TYPE);
+            reader.get(path);
+            Assert.assertEquals(handled.size(), 2, "The new media type should be matched.");
+
+            reader.delete(path);
+            Assert.assertEquals(handled.size(), 3, "The handler should be invoked on delete.");
+            Assert.assertNotNull(handled.get(2), "The resource should be set for the handler on delete.");
+            Assert.assertEquals(handled.get(2).getPath(), path);
+        } finally {
+            removeHandler(handler);
+        }
+    }
+
+    private static void putResource(Repository repository, String path, String mediaType)
+            throws RepositoryException {
+        Resource r = repository.newResource();
+        r.setContent("content");
+        r.setMediaType(mediaType);
+        repository.put(path, r);
+    }
+
+    private static void addHandler(Handler handler) throws RepositoryException {
+        CurrentContext.setCallerTenantId(MultitenantConstants.SUPER_TENANT_ID);
+
+        try {
+            embeddedRegistryService.addHandler(null, new MediaTypeMatcher(MEDIA_TYPE), handler);
+        } finally {
+            CurrentContext.removeCallerTenantId();
+        }
+    }
+
+    private static void removeHandler(Handler handler) throws RepositoryException {
+        CurrentContext.setCallerTenantId(MultitenantConstants.SUPER_TENANT_ID);
+
+        try {
+            embeddedRegistryService.removeHandler(handler, HandlerLifecycleManager.DEFAULT_SYSTEM_HANDLER_PHASE);
+        } finally {
+            CurrentContext.removeCallerTenantId();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+import org.wso2.carbon.registry.core.test.utils.BaseTestCase;
+import org.wso2.carbon.repository.api.Repository;
+import org.wso2.carbon.repository.api.Resource;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.core.caching.PathTree;
+import org.wso2.carbon.repository.core.jdbc.dao.PathCacheWarmer;
+import org.wso2.carbon.repository.core.jdbc.dataaccess.JDBCDataAccessManager;
+import org.wso2.carbon.repository.core.utils.InternalUtils;
+import org.wso2.carbon.repository.spi.dataaccess.DataAccessManager;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
+
+public class PathCacheWarmerTest extends BaseTestCase {
+
+    protected static Repository registry = null;
+
+    @BeforeTest
+    public void setUp() {
+        super.setUp();
+
+        try {
+            RealmUnawareRegistryCoreServiceComponent comp = new RealmUnawareRegistryCoreServiceComponent();
+            comp.registerBuiltInHandlers(embeddedRegistryService);
+
+            registry = embeddedRegistryService.getRepository("admin");
+        } catch (RepositoryException e) {
+            Assert.fail("Failed to initialize the registry. Caused by: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void testPrefixedWarmUp() throws Exception {
+        putResource("/testWarmUp/hot_a/x");
+        putResource("/testWarmUp/hotXa/y");
+        putResource("/testWarmUp/hot_ab/z");
+        putResource("/testWarmUp/cold/w");
+
+        DataSource dataSource = ((JDBCDataAccessManager) ctx.getDataAccessManager()).getDataSource();
+        String connectionId = getConnectionId(dataSource);
+        PathTree.removePathTree(connectionId, MultitenantConstants.SUPER_TENANT_ID);
+
+        List<boolean[]> connectionStates = new ArrayList<boolean[]>();
+        PathCacheWarmer.Progress progress =
+                warmUp(RecordingDataSource.create(dataSource, connectionStates), "/testWarmUp/hot_a/");
+
+        Assert.assertFalse(progress.isFailed(), "The warm-up should not fail.");
+        Assert.assertEquals(progress.getLoadedPaths(), 2, "Only the paths under the prefix should be loaded.");
+
+        PathTree pathTree = PathTree.getPathTree(connectionId, MultitenantConstants.SUPER_TENANT_ID);
+        Assert.assertTrue(pathTree.getPathID("/testWarmUp/hot_a") != PathTree.UNKNOWN);
+        Assert.assertTrue(pathTree.getPathID("/testWarmUp/hot_a/x") != PathTree.UNKNOWN);
+
+        // '_' is not a wild card, and a prefix only matches whole path segments.
+        Assert.assertEquals(pathTree.getPathID("/testWarmUp/hotXa/y"), PathTree.UNKNOWN);
+        Assert.assertEquals(pathTree.getPathID("/testWarmUp/hot_ab/z"), PathTree.UNKNOWN);
+        Assert.assertEquals(pathTree.getPathID("/testWarmUp/cold/w"), PathTree.UNKNOWN);
+
+        // the connection goes back in the state it was borrowed in.
+        Assert.assertEquals(connectionStates.size(), 1);
+        boolean[] state = connectionStates.get(0);
+        Assert.assertEquals(state[2], state[0], "Auto-commit should be restored.");
+        Assert.assertEquals(state[3], state[1], "Read-only should be restored.");
+    }
+
+    @Test
+    public void testWarmUpWithoutPrefixes() throws Exception {
+        putResource("/testWarmUpAll/a");
+
+        DataSource dataSource = ((JDBCDataAccessManager) ctx.getDataAccessManager()).getDataSource();
+        String connectionId = getConnectionId(dataSource);
+        PathTree.removePathTree(connectionId, MultitenantConstants.SUPER_TENANT_ID);
+
+        PathCacheWarmer.Progress progress = warmUp(dataSource, null);
+
+        Assert.assertFalse(progress.isFailed(), "The warm-up should not fail.");
+        PathTree pathTree = PathTree.getPathTree(connectionId, MultitenantConstants.SUPER_TENANT_ID);
+        Assert.assertTrue(progress.getLoadedPaths() >= 3, "All paths should be loaded.");
+        Assert.assertTrue(pathTree.getPathID("/testWarmUpAll/a") != PathTree.UNKNOWN);
+        Assert.assertTrue(pathTree.getPathID("/testWarmUp/cold/w") != PathTree.UNKNOWN);
+    }
+
+    private PathCacheWarmer.Progress warmUp(DataSource dataSource, String prefix) throws Exception {
+        DataAccessManager dataAccessManager = ctx.getDataAccessManager();
+        boolean enabled = ctx.isPathCacheWarmUpEnabled();
+        List<String> prefixes = ctx.getPathCacheWarmUpPrefixes();
+        List<String> previousPrefixes = new ArrayList<String>(prefixes);
+
+        prefixes.clear();
+        if (prefix != null) {
+            prefixes.add(prefix);
+        }
+        ctx.setPathCacheWarmUpEnabled(true);
+        ctx.setDataAccessManager(new JDBCDataAccessManager(dataSource));
+
+        try {
+            PathCacheWarmer.warmUp(ctx, MultitenantConstants.SUPER_TENANT_ID);
+        } finally {
+            ctx.setDataAccessManager(dataAccessManager);
+            ctx.setPathCacheWarmUpEnabled(enabled);
+            prefixes.clear();
+            prefixes.addAll(previousPrefixes);
+        }
+
+        PathCacheWarmer.Progress progress = PathCacheWarmer.getProgress(MultitenantConstants.SUPER_TENANT_ID);
+        Assert.assertNotNull(progress, "The warm-up should be scheduled.");
+
+        long deadline = System.currentTimeMillis() + 30000;
+        while (progress.isRunning() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        Assert.assertFalse(progress.isRunning(), "The warm-up should complete.");
+        return progress;
+    }
+
+    private static String getConnectionId(DataSource dataSource) throws Exception {
+        Connection conn = dataSource.getConnection();
+
+        try {
+            return InternalUtils.getConnectionId(conn);
+        } finally {
+            conn.close();
+        }
+    }
+
+    private static void putResource(String path) throws RepositoryException {
+        Resource r = registry.newResource();
+        r.setContent("content");
+        registry.put(path, r);
+    }
+
+    // Records the auto-commit and read-only state of each connection when borrowed and when closed.
+    private static final class RecordingDataSource implements InvocationHandler {
+
+        private final DataSource dataSource;
+        private final List<boolean[]> connectionStates;
+
+        private RecordingDataSource(DataSource dataSource, List<boolean[]> connectionStates) {
+            this.dataSource = dataSource;
+            this.connectionStates = connectionStates;
+        }
+
+        private static DataSource create(DataSource dataSource, List<boolean[]> connectionStates) {
+            return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(),
+                    new Class[] {DataSource.class}, new RecordingDataSource(dataSource, connectionStates));
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = invokeTarget(dataSource, method, args);
+            if (!"getConnection".equals(method.getName())) {
+                return result;
+            }
+
+            final Connection conn = (Connection) result;
+            final boolean[] state = new boolean[] {conn.getAutoCommit(), conn.isReadOnly(), false, false};
+
+            return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class[] {Connection.class},
+                    new InvocationHandler() {
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            if ("close".equals(method.getName())) {
+                                state[2] = conn.getAutoCommit();
+                                state[3] = conn.isReadOnly();
+                                connectionStates.add(state);
+                            }
+                            return invokeTarget(conn, method, args);
+                        }
+                    });
+        }
+
+        private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
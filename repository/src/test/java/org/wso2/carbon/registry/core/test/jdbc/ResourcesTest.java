@@ -59,4 +59,25 @@ public class ResourcesTest extends BaseTestCase {
         String r1e2Content = RepositoryUtils.decodeBytes((byte[]) r1e2.getContent());
         Assert.assertEquals(r1e2Content, "c1", "r1 content should be c1");
     }
+
+    @Test
+    public void testContentRange() throws RepositoryException {
+        String rPath = "/rTest/ranged";
+        Resource r = registry.newResource();
+        r.setContent("0123456789");
+        registry.put(rPath, r);
+
+        // the content of a resource read through getMetaData is read from the database by range.
+        Resource metaData = registry.getMetaData(rPath);
+        Assert.assertEquals(RepositoryUtils.decodeBytes(RepositoryUtils.getByteArray(
+                metaData.getContentStream(3, 4))), "3456", "Range of the stored content incorrect.");
+        Assert.assertEquals(RepositoryUtils.decodeBytes(RepositoryUtils.getByteArray(
+                metaData.getContentStream(7, -1))), "789", "Range to the end incorrect.");
+        Assert.assertEquals(RepositoryUtils.decodeBytes(RepositoryUtils.getByteArray(
+                metaData.getContentStream(0, 3))), "012", "Range from the start incorrect.");
+        Assert.assertEquals(RepositoryUtils.getByteArray(metaData.getContentStream(0, 0)).length, 0,
+                "Empty range should be empty.");
+        Assert.assertEquals(RepositoryUtils.getByteArray(metaData.getContentStream(20, 5)).length, 0,
+                "Range beyond the end should be empty.");
+    }
 }
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.jdbc;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Properties;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+import org.wso2.carbon.registry.core.test.utils.BaseTestCase;
+import org.wso2.carbon.repository.api.Collection;
+import org.wso2.carbon.repository.api.Repository;
+import org.wso2.carbon.repository.api.Resource;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.api.utils.RepositoryUtils;
+import org.wso2.carbon.repository.core.RestoreSession;
+
+public class RestoreSessionTest extends BaseTestCase {
+
+    protected static Repository registry = null;
+
+    private static String dump;
+
+    @BeforeTest
+    public void setUp() {
+        super.setUp();
+
+        try {
+            RealmUnawareRegistryCoreServiceComponent comp = new RealmUnawareRegistryCoreServiceComponent();
+            comp.registerBuiltInHandlers(embeddedRegistryService);
+
+            registry = embeddedRegistryService.getRepository("admin");
+
+            Resource r = registry.newCollection();
+            r.setProperty("key1", "value1");
+            registry.put("/testBatchRestore", r);
+
+            for (int i = 0; i < 5; i++) {
+                Resource child = registry.newResource();
+                child.setContent("content " + i);
+                registry.put("/testBatchRestore/child" + i, child);
+            }
+
+            StringWriter writer = new StringWriter();
+            registry.dump("/testBatchRestore", writer);
+            dump = writer.toString();
+        } catch (RepositoryException e) {
+            Assert.fail("Failed to initialize the registry. Caused by: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void testBatchedRestore() throws Exception {
+        File checkpointFile = new File("target/batchedRestore.checkpoint");
+        RestoreSession session = new RestoreSession(2, checkpointFile);
+        session.restore(registry, "/testBatchRestoreDup", new StringReader(dump));
+
+        Assert.assertTrue(session.isCompleted());
+        Assert.assertEquals(session.getRestoredCount(), 6, "The collection and its children should be restored.");
+        Assert.assertEquals(session.getSkippedCount(), 0);
+        Assert.assertEquals(session.getBatchCount(), 3, "The resources should be committed in pairs.");
+        Assert.assertEquals(session.getCommittedCount(), 6);
+        Assert.assertTrue(session.getCharactersRead() > 0);
+        Assert.assertFalse(checkpointFile.exists(), "The checkpoint should be deleted once the restore completes.");
+
+        Resource r = registry.get("/testBatchRestoreDup");
+        Assert.assertEquals(r.getProperty("key1"), "value1");
+        Assert.assertEquals(((Collection) r).getChildCount(), 5);
+        r = registry.get("/testBatchRestoreDup/child3");
+        Assert.assertEquals(RepositoryUtils.decodeBytes((byte[]) r.getContent()), "content 3");
+    }
+
+    @Test
+    public void testResumedRestore() throws Exception {
+        // a checkpoint left behind by a restore interrupted after committing the collection.
+        File checkpointFile = writeCheckpoint("target/resumedRestore.checkpoint", "/testBatchRestoreResumed", 1,
+                "/testBatchRestoreResumed");
+
+        RestoreSession session = new RestoreSession(2, checkpointFile);
+        session.restore(registry, "/testBatchRestoreResumed", new StringReader(dump));
+
+        Assert.assertEquals(session.getSkippedCount(), 1, "The committed collection should not be restored again.");
+        Assert.assertEquals(session.getRestoredCount(), 5, "The children should be restored.");
+        Assert.assertFalse(checkpointFile.exists());
+
+        Resource r = registry.get("/testBatchRestoreResumed");
+        Assert.assertNull(r.getProperty("key1"), "The collection should not have been written by the resumed restore.");
+        Assert.assertEquals(((Collection) r).getChildCount(), 5);
+    }
+
+    @Test
+    public void testInterruptedRestore() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            content.append("interrupted content ");
+        }
+
+        registry.put("/testBatchRestoreLarge", registry.newCollection());
+        for (int i = 0; i < 30; i++) {
+            Resource child = registry.newResource();
+            child.setContent(content.toString() + i);
+            registry.put("/testBatchRestoreLarge/child" + i, child);
+        }
+
+        StringWriter writer = new StringWriter();
+        registry.dump("/testBatchRestoreLarge", writer);
+        String largeDump = writer.toString();
+
+        File checkpointFile = new File("target/interruptedRestore.checkpoint");
+        checkpointFile.delete();
+
+        RestoreSession interrupted = new RestoreSession(4, checkpointFile);
+        try {
+            interrupted.restore(registry, "/testBatchRestoreInterrupted",
+                    new FailingReader(new StringReader(largeDump), largeDump.length() / 2));
+            Assert.fail("The restore should fail when the dump can not be read.");
+        } catch (RepositoryException expected) {
+        }
+
+        long committed = interrupted.getCommittedCount();
+        Assert.assertFalse(interrupted.isCompleted());
+        Assert.assertTrue(committed > 0 && committed < 31, "Some of the batches should have been committed.");
+        Assert.assertTrue(checkpointFile.exists(), "The checkpoint should be kept for the restore to resume.");
+        Assert.assertEquals(((Collection) registry.get("/testBatchRestoreInterrupted")).getChildCount(), committed - 1,
+                "Only the committed batches should have been kept.");
+
+        // the resumed restore reads the whole dump again, but only writes what was not committed.
+        RestoreSession resumed = new RestoreSession(4, checkpointFile);
+        resumed.restore(registry, "/testBatchRestoreInterrupted", new StringReader(largeDump));
+
+        Assert.assertTrue(resumed.isCompleted());
+        Assert.assertEquals(resumed.getSkippedCount(), committed);
+        Assert.assertEquals(resumed.getRestoredCount(), 31 - committed);
+        Assert.assertFalse(checkpointFile.exists());
+
+        Assert.assertEquals(((Collection) registry.get("/testBatchRestoreInterrupted")).getChildCount(), 30);
+        for (int i = 0; i < 30; i++) {
+            Resource r = registry.get("/testBatchRestoreInterrupted/child" + i);
+            Assert.assertEquals(RepositoryUtils.decodeBytes((byte[]) r.getContent()), content.toString() + i);
+        }
+    }
+
+    @Test
+    public void testMismatchedCheckpoint() throws Exception {
+        File checkpointFile = writeCheckpoint("target/mismatchedRestore.checkpoint", "/testBatchRestoreMismatch", 1,
+                "/somewhereElse");
+
+        try {
+            new RestoreSession(2, checkpointFile).restore(registry, "/testBatchRestoreMismatch", new StringReader(dump));
+            Assert.fail("A checkpoint of another dump should not be resumed from.");
+        } catch (RepositoryException expected) {
+        } finally {
+            checkpointFile.delete();
+        }
+
+        Assert.assertFalse(registry.resourceExists("/testBatchRestoreMismatch/child0"),
+                "Nothing should be restored from a mismatched checkpoint.");
+    }
+
+    // A reader failing once the given number of characters has been read, as if the dump was cut.
+    private static class FailingReader extends FilterReader {
+
+        private int remaining;
+
+        private FailingReader(Reader in, int limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        public int read() throws IOException {
+            char[] c = new char[1];
+            return (read(c, 0, 1) < 0) ? -1 : c[0];
+        }
+
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                throw new IOException("The dump was cut.");
+            }
+
+            int read = super.read(buffer, offset, Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+
+    private static File writeCheckpoint(String fileName, String path, long count, String lastPath) throws Exception {
+        File checkpointFile = new File(fileName);
+        checkpointFile.getParentFile().mkdirs();
+
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty("path", path);
+        checkpoint.setProperty("count", Long.toString(count));
+        checkpoint.setProperty("lastPath", lastPath);
+
+        OutputStream out = new FileOutputStream(checkpointFile);
+        try {
+            checkpoint.store(out, null);
+        } finally {
+            out.close();
+        }
+
+        return checkpointFile;
+    }
+}
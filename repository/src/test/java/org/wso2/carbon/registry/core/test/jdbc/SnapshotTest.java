@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.jdbc;
+
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+import org.wso2.carbon.registry.core.test.utils.BaseTestCase;
+import org.wso2.carbon.repository.api.Collection;
+import org.wso2.carbon.repository.api.Resource;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.api.utils.RepositoryUtils;
+import org.wso2.carbon.repository.core.EmbeddedRepository;
+import org.wso2.carbon.repository.core.SnapshotConverter;
+import org.wso2.carbon.repository.core.utils.SnapshotReader;
+import org.wso2.carbon.repository.core.utils.SnapshotWriter;
+
+public class SnapshotTest extends BaseTestCase {
+
+    protected static EmbeddedRepository registry = null;
+
+    @BeforeTest
+    public void setUp() {
+        super.setUp();
+
+        try {
+            RealmUnawareRegistryCoreServiceComponent comp = new RealmUnawareRegistryCoreServiceComponent();
+            comp.registerBuiltInHandlers(embeddedRegistryService);
+
+            registry = (EmbeddedRepository) embeddedRegistryService.getRepository("admin");
+        } catch (RepositoryException e) {
+            Assert.fail("Failed to initialize the registry. Caused by: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void testSnapshotRestore() throws Exception {
+        putTree("/testSnapshot");
+
+        File file = File.createTempFile("snapshot", ".bin");
+        file.deleteOnExit();
+
+        for (boolean compressed : new boolean[] {false, true}) {
+            Assert.assertEquals(registry.dumpSnapshot("/testSnapshot", file, compressed), 7);
+
+            putResource("/testSnapshotCopy/stale", "stale");
+            Assert.assertEquals(registry.restoreSnapshot("/testSnapshotCopy", file, 2, 2), 7);
+
+            Assert.assertFalse(registry.resourceExists("/testSnapshotCopy/stale"),
+                    "Resources not in the snapshot should be removed.");
+            verifyTree("/testSnapshotCopy");
+        }
+    }
+
+    @Test
+    public void testDumpConversion() throws Exception {
+        putTree("/testSnapshotDump");
+
+        StringWriter dump = new StringWriter();
+        registry.dump("/testSnapshotDump", dump);
+
+        // small blocks, so that the resources are restored from several of them.
+        File file = File.createTempFile("snapshot", ".bin");
+        file.deleteOnExit();
+        SnapshotWriter writer = new SnapshotWriter(file, true, 64);
+        SnapshotConverter.fromDump(new StringReader(dump.toString()), writer);
+        writer.close();
+
+        SnapshotReader reader = new SnapshotReader(file);
+        try {
+            Assert.assertTrue(reader.getBlockCount() > 1, "The snapshot should have several blocks.");
+            Assert.assertEquals(reader.getRecordCount(), 7);
+            Assert.assertEquals(reader.getRootName(), "testSnapshotDump");
+
+            registry.restoreSnapshot("/testSnapshotFromDump", file, 3, 1);
+            verifyTree("/testSnapshotFromDump");
+
+            StringWriter convertedDump = new StringWriter();
+            SnapshotConverter.toDump(reader, convertedDump);
+            registry.restore("/testSnapshotToDump", new StringReader(convertedDump.toString()));
+            verifyTree("/testSnapshotToDump");
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void putTree(String path) throws RepositoryException {
+        putResource(path + "/a", "a");
+        putResource(path + "/b", "b");
+        putResource(path + "/c/d", "d");
+        putResource(path + "/c/e/f", "f");
+
+        Resource r = registry.get(path + "/a");
+        r.addProperty("p1", "v1");
+        r.addProperty("p1", "v2");
+        r.setDescription("resource a");
+        registry.put(path + "/a", r);
+
+        Collection c = (Collection) registry.get(path + "/c");
+        c.setProperty("p2", "v3");
+        registry.put(path + "/c", c);
+    }
+
+    private static void verifyTree(String path) throws RepositoryException {
+        Assert.assertEquals(getContent(path + "/a"), "a");
+        Assert.assertEquals(getContent(path + "/b"), "b");
+        Assert.assertEquals(getContent(path + "/c/d"), "d");
+        Assert.assertEquals(getContent(path + "/c/e/f"), "f");
+
+        Resource a = registry.get(path + "/a");
+        Assert.assertEquals(a.getPropertyValues("p1").size(), 2);
+        Assert.assertEquals(a.getDescription(), "resource a");
+        Assert.assertEquals(registry.get(path + "/c").getProperty("p2"), "v3");
+
+        Assert.assertEquals(((Collection) registry.get(path)).getChildCount(), 3);
+        Assert.assertEquals(((Collection) registry.get(path + "/c")).getChildCount(), 2);
+    }
+
+    private static void putResource(String path, String content) throws RepositoryException {
+        Resource r = registry.newResource();
+        r.setContent(content);
+        registry.put(path, r);
+    }
+
+    private static String getContent(String path) throws RepositoryException {
+        return RepositoryUtils.decodeBytes((byte[]) registry.get(path).getContent());
+    }
+}
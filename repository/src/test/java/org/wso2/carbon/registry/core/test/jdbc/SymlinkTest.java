@@ -71,6 +71,35 @@ public class SymlinkTest extends BaseTestCase {
         Assert.assertTrue(exceptionOccurred, "Symlink link to itself is not valid");
     }
 
+    @Test
+    public void testMissingLinkTarget() throws RepositoryException {
+        registry.createLink("/missingLink", "/missingTarget");
+        Assert.assertEquals(registry.get("/missingLink").getProperty("registry.absent"), "true");
+
+        // a target created after a read through the link is found on the next read.
+        Resource target = registry.newResource();
+        target.setProperty("name", "created");
+        registry.put("/missingTarget", target);
+        Assert.assertEquals(registry.get("/missingLink").getProperty("name"), "created");
+
+        registry.delete("/missingTarget");
+        Assert.assertEquals(registry.get("/missingLink").getProperty("registry.absent"), "true");
+
+        // as is a target created by renaming another resource onto it.
+        Resource renamed = registry.newResource();
+        renamed.setProperty("name", "renamed");
+        registry.put("/missingTargetSource", renamed);
+        registry.rename("/missingTargetSource", "missingTarget");
+        Assert.assertEquals(registry.get("/missingLink").getProperty("name"), "renamed");
+
+        // and a target reached through a chain of links.
+        registry.createLink("/missingChain", "/missingLink");
+        registry.delete("/missingTarget");
+        Assert.assertEquals(registry.get("/missingChain").getProperty("registry.absent"), "true");
+        registry.put("/missingTarget", target);
+        Assert.assertEquals(registry.get("/missingChain").getProperty("name"), "created");
+    }
+
     @Test
     public void testSymbolicLinksRoots() throws RepositoryException {
         Collection testCollection = registry.newCollection();
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.jdbc;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+import org.wso2.carbon.registry.core.test.utils.BaseTestCase;
+import org.wso2.carbon.repository.api.Repository;
+import org.wso2.carbon.repository.api.Resource;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.api.utils.RepositoryUtils;
+import org.wso2.carbon.repository.core.config.VersionRetentionPolicy;
+import org.wso2.carbon.repository.core.jdbc.dao.VersionHistoryCompactor;
+import org.wso2.carbon.repository.core.jdbc.dataaccess.JDBCDataAccessManager;
+import org.wso2.carbon.repository.core.utils.VersionRetriever;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
+
+public class VersionHistoryCompactorTest extends BaseTestCase {
+
+    protected static Repository registry = null;
+
+    @BeforeTest
+    public void setUp() {
+        super.setUp();
+
+        try {
+            RealmUnawareRegistryCoreServiceComponent comp = new RealmUnawareRegistryCoreServiceComponent();
+            comp.registerBuiltInHandlers(embeddedRegistryService);
+
+            registry = embeddedRegistryService.getRepository("admin");
+        } catch (RepositoryException e) {
+            Assert.fail("Failed to initialize the registry. Caused by: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        String path = "/testCompaction/r";
+
+        for (int i = 1; i <= 4; i++) {
+            Resource r = registry.newResource();
+            r.setContent("content " + i);
+            registry.put(path, r);
+            registry.createVersion(path);
+        }
+
+        String[] versions = sortVersions(registry.getVersions(path));
+        Assert.assertEquals(versions.length, 4);
+        int historyRows = countHistoryRows();
+
+        VersionRetentionPolicy policy = new VersionRetentionPolicy();
+        policy.setPathPrefix("/testCompaction");
+        policy.setKeepLast(2);
+        ctx.addVersionRetentionPolicy(policy);
+        ctx.setVersionRetentionEnabled(true);
+
+        try {
+            VersionHistoryCompactor.Progress progress =
+                    VersionHistoryCompactor.compact(ctx, MultitenantConstants.SUPER_TENANT_ID);
+            Assert.assertNotNull(progress, "Compaction should run when a policy is configured.");
+
+            long deadline = System.currentTimeMillis() + 30000;
+            while (progress.isRunning() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+
+            Assert.assertFalse(progress.isRunning(), "Compaction should complete.");
+            Assert.assertFalse(progress.isFailed(), "Compaction should not fail.");
+            Assert.assertEquals(progress.getRemovedSnapshots(), 2);
+            Assert.assertTrue(progress.getRemovedVersions() > 0, "Unreferenced versions should be removed.");
+        } finally {
+            ctx.setVersionRetentionEnabled(false);
+            ctx.getVersionRetentionPolicies().remove(policy);
+        }
+
+        String[] remaining = sortVersions(registry.getVersions(path));
+        Assert.assertEquals(remaining, new String[] {versions[2], versions[3]},
+                "The two most recent versions should be kept.");
+        Assert.assertEquals(RepositoryUtils.decodeBytes((byte[]) registry.get(versions[2]).getContent()), "content 3");
+        Assert.assertEquals(RepositoryUtils.decodeBytes((byte[]) registry.get(versions[3]).getContent()), "content 4");
+
+        Assert.assertTrue(countHistoryRows() < historyRows, "History rows should be removed.");
+        assertOnlyReferencedHistoryRows();
+    }
+
+    // Sorts version paths by their version number, oldest first.
+    private static String[] sortVersions(String[] versions) {
+        String[] sorted = versions.clone();
+        Arrays.sort(sorted, new Comparator<String>() {
+            public int compare(String first, String second) {
+                return Long.valueOf(getVersion(first)).compareTo(getVersion(second));
+            }
+        });
+        return sorted;
+    }
+
+    private static long getVersion(String versionPath) {
+        return Long.parseLong(versionPath.substring(versionPath.lastIndexOf(':') + 1));
+    }
+
+    private int countHistoryRows() throws Exception {
+        Connection conn = ((JDBCDataAccessManager) ctx.getDataAccessManager()).getDataSource().getConnection();
+
+        try {
+            PreparedStatement ps = conn.prepareStatement(
+                    "SELECT COUNT(*) FROM REG_RESOURCE_HISTORY WHERE REG_TENANT_ID=?");
+            ps.setInt(1, MultitenantConstants.SUPER_TENANT_ID);
+            ResultSet results = ps.executeQuery();
+            results.next();
+            int count = results.getInt(1);
+            results.close();
+            ps.close();
+            return count;
+        } finally {
+            conn.close();
+        }
+    }
+
+    // Every archived version left must be referenced by a snapshot, or be the current version.
+    private void assertOnlyReferencedHistoryRows() throws Exception {
+        Connection conn = ((JDBCDataAccessManager) ctx.getDataAccessManager()).getDataSource().getConnection();
+
+        try {
+            Set<Long> referenced = new HashSet<Long>();
+
+            PreparedStatement ps = conn.prepareStatement(
+                    "SELECT REG_RESOURCE_VIDS FROM REG_SNAPSHOT WHERE REG_TENANT_ID=?");
+            ps.setInt(1, MultitenantConstants.SUPER_TENANT_ID);
+            ResultSet results = ps.executeQuery();
+            while (results.next()) {
+                InputStream versionsStream = results.getBinaryStream(1);
+                VersionRetriever retriever = new VersionRetriever(versionsStream);
+                for (int i = 0; retriever.getVersion(i) != -1; i++) {
+                    referenced.add(retriever.getVersion(i));
+                }
+            }
+            results.close();
+            ps.close();
+
+            ps = conn.prepareStatement("SELECT H.REG_VERSION FROM REG_RESOURCE_HISTORY H WHERE " +
+                    "H.REG_TENANT_ID=? AND NOT EXISTS (SELECT R.REG_VERSION FROM REG_RESOURCE R WHERE " +
+                    "R.REG_VERSION=H.REG_VERSION AND R.REG_TENANT_ID=H.REG_TENANT_ID)");
+            ps.setInt(1, MultitenantConstants.SUPER_TENANT_ID);
+            results = ps.executeQuery();
+            while (results.next()) {
+                Assert.assertTrue(referenced.contains(results.getLong(1)),
+                        "Archived version " + results.getLong(1) + " is not referenced by any snapshot.");
+            }
+            results.close();
+            ps.close();
+        } finally {
+            conn.close();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.utils;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.repository.core.CurrentContext;
+
+public class CurrentContextTest extends BaseTestCase {
+
+    @Test
+    public void testPushPopBalance() {
+        CurrentContext.Frame start = CurrentContext.attach(null);
+
+        try {
+            Assert.assertNull(CurrentContext.getUser());
+            Assert.assertEquals(CurrentContext.getTenantId(), -1);
+            Assert.assertEquals(CurrentContext.getCallerTenantId(), -1);
+
+            Map<String, String> localPathMap = Collections.singletonMap("/a", "/b");
+            CurrentContext.setUser("outer");
+            CurrentContext.setTenantId(1);
+            CurrentContext.setCallerTenantId(11);
+            CurrentContext.setChroot("/outer");
+            CurrentContext.setLocalPathMap(localPathMap);
+            CurrentContext.setAttribute("key", "outer");
+
+            CurrentContext.setUser("inner");
+            CurrentContext.setTenantId(2);
+            CurrentContext.setCallerTenantId(12);
+            CurrentContext.setChroot("/inner");
+            CurrentContext.setLocalPathMap(null);
+
+            Assert.assertEquals(CurrentContext.getUser(), "inner");
+            Assert.assertEquals(CurrentContext.getTenantId(), 2);
+            Assert.assertEquals(CurrentContext.getCallerTenantId(), 12);
+            Assert.assertEquals(CurrentContext.getChroot(), "/inner");
+            Assert.assertNull(CurrentContext.getLocalPathMap());
+
+            // each removal brings back the value set before it, independently of the others.
+            CurrentContext.removeUser();
+            CurrentContext.removeCallerTenantId();
+            Assert.assertEquals(CurrentContext.getUser(), "outer");
+            Assert.assertEquals(CurrentContext.getTenantId(), 2);
+            Assert.assertEquals(CurrentContext.getCallerTenantId(), 11);
+
+            CurrentContext.removeTenantId();
+            CurrentContext.removeChroot();
+            CurrentContext.removeLocalPathMap();
+            Assert.assertEquals(CurrentContext.getTenantId(), 1);
+            Assert.assertEquals(CurrentContext.getChroot(), "/outer");
+            Assert.assertEquals(CurrentContext.getLocalPathMap(), localPathMap);
+            Assert.assertEquals(CurrentContext.getAttribute("key"), "outer");
+
+            CurrentContext.removeUser();
+            CurrentContext.removeTenantId();
+            CurrentContext.removeCallerTenantId();
+            CurrentContext.removeChroot();
+            CurrentContext.removeLocalPathMap();
+            CurrentContext.removeAttribute("key");
+
+            // removing more values than were set leaves the session empty.
+            CurrentContext.removeUser();
+            CurrentContext.removeTenantId();
+            CurrentContext.removeCallerTenantId();
+
+            Assert.assertNull(CurrentContext.getUser());
+            Assert.assertEquals(CurrentContext.getTenantId(), -1);
+            Assert.assertEquals(CurrentContext.getCallerTenantId(), -1);
+            Assert.assertNull(CurrentContext.getChroot());
+            Assert.assertNull(CurrentContext.getLocalPathMap());
+            Assert.assertNull(CurrentContext.getAttribute("key"));
+        } finally {
+            CurrentContext.restore(start);
+        }
+    }
+
+    @Test
+    public void testCapturedFrame() {
+        CurrentContext.Frame start = CurrentContext.attach(null);
+
+        try {
+            CurrentContext.setUser("captured");
+            CurrentContext.setTenantId(1);
+            CurrentContext.Frame captured = CurrentContext.capture();
+
+            // a captured session is not changed by the values set after it.
+            CurrentContext.setUser("later");
+            CurrentContext.removeTenantId();
+            CurrentContext.setAttribute("key", "later");
+
+            CurrentContext.Frame previous = CurrentContext.attach(captured);
+            Assert.assertEquals(CurrentContext.getUser(), "captured");
+            Assert.assertEquals(CurrentContext.getTenantId(), 1);
+            Assert.assertNull(CurrentContext.getAttribute("key"));
+
+            CurrentContext.restore(previous);
+            Assert.assertEquals(CurrentContext.getUser(), "later");
+            Assert.assertEquals(CurrentContext.getTenantId(), -1);
+            Assert.assertEquals(CurrentContext.getAttribute("key"), "later");
+        } finally {
+            CurrentContext.restore(start);
+        }
+    }
+
+    @Test
+    public void testThreadIsolation() throws Exception {
+        CurrentContext.Frame start = CurrentContext.attach(null);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            CurrentContext.setUser("caller");
+            CurrentContext.setTenantId(1);
+
+            final CountDownLatch set = new CountDownLatch(1);
+            final CountDownLatch checked = new CountDownLatch(1);
+
+            Thread other = new Thread(new Runnable() {
+                public void run() {
+                    CurrentContext.setUser("other");
+                    CurrentContext.setTenantId(2);
+                    set.countDown();
+
+                    try {
+                        checked.await(30, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            other.start();
+
+            Assert.assertTrue(set.await(30, TimeUnit.SECONDS));
+            Assert.assertEquals(CurrentContext.getUser(), "caller", "Another thread should not change the session.");
+            Assert.assertEquals(CurrentContext.getTenantId(), 1);
+            checked.countDown();
+            other.join(30000);
+
+            // a thread does not see the session of another, unless the task is wrapped.
+            Assert.assertNull(executor.submit(new Callable<String>() {
+                public String call() {
+                    return CurrentContext.getUser();
+                }
+            }).get(30, TimeUnit.SECONDS));
+
+            Assert.assertEquals(executor.submit(CurrentContext.wrap(new Callable<String>() {
+                public String call() {
+                    return CurrentContext.getUser() + ":" + CurrentContext.getTenantId();
+                }
+            })).get(30, TimeUnit.SECONDS), "caller:1");
+        } finally {
+            executor.shutdownNow();
+            CurrentContext.restore(start);
+        }
+    }
+
+    @Test
+    public void testWrappedTasks() throws Exception {
+        CurrentContext.Frame start = CurrentContext.attach(null);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            executor.submit(new Runnable() {
+                public void run() {
+                    CurrentContext.setUser("worker");
+                }
+            }).get(30, TimeUnit.SECONDS);
+
+            CurrentContext.setUser("caller");
+            final String[] seen = new String[1];
+
+            executor.submit(CurrentContext.wrap(new Runnable() {
+                public void run() {
+                    seen[0] = CurrentContext.getUser();
+                    // values set by the task are dropped with the session of the caller.
+                    CurrentContext.setUser("task");
+                }
+            })).get(30, TimeUnit.SECONDS);
+            Assert.assertEquals(seen[0], "caller");
+
+            try {
+                executor.submit(CurrentContext.wrap(new Callable<String>() {
+                    public String call() {
+                        throw new IllegalStateException("failed");
+                    }
+                })).get(30, TimeUnit.SECONDS);
+                Assert.fail("The failure of the task should be propagated.");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+
+            // the session of the executing thread is restored after each task.
+            Assert.assertEquals(executor.submit(new Callable<String>() {
+                public String call() {
+                    return CurrentContext.getUser();
+                }
+            }).get(30, TimeUnit.SECONDS), "worker");
+            Assert.assertEquals(CurrentContext.getUser(), "caller", "The caller's session should not change.");
+        } finally {
+            executor.shutdownNow();
+            CurrentContext.restore(start);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.api.utils.RepositoryUtils;
+import org.wso2.carbon.repository.core.content.FileContentStore;
+
+public class FileContentStoreTest extends BaseTestCase {
+
+    @Test
+    public void testTransactionalWrites() throws Exception {
+        File root = createRoot();
+        FileContentStore store = new FileContentStore(root);
+        Object transaction = new Object();
+
+        FileContentStore.Reference reference = store.write(1, stream("0123456789"), transaction);
+        File file = new File(new File(new File(root, "1"), reference.getChecksum().substring(0, 2)), reference.getChecksum());
+        Assert.assertEquals(reference.getLength(), 10, "Content length incorrect.");
+        Assert.assertFalse(file.exists(), "Content should not be in place before the commit.");
+        Assert.assertEquals(read(store.read(1, reference, 2, 3)), "234", "Pending content should be readable in the transaction.");
+
+        FileContentStore.transactionCommitting(transaction);
+        Assert.assertTrue(file.exists(), "Content should be in place after the commit.");
+        Assert.assertEquals(read(store.read(1, reference, 0, -1)), "0123456789", "Committed content incorrect.");
+
+        Object rolledBack = new Object();
+        store.write(1, stream("discarded"), rolledBack);
+        FileContentStore.transactionRolledBack(rolledBack);
+        Assert.assertEquals(new File(root, "tmp").list().length, 0, "Rolled back content should be deleted.");
+
+        FileContentStore.Reference duplicate = store.write(1, stream("0123456789"), null);
+        Assert.assertEquals(duplicate.getChecksum(), reference.getChecksum(), "Same content should share the file.");
+        Assert.assertEquals(new File(root, "tmp").list().length, 0, "Duplicate content should not be kept.");
+    }
+
+    @Test
+    public void testChecksum() throws Exception {
+        FileContentStore store = new FileContentStore(createRoot());
+        FileContentStore.Reference reference = store.write(1, stream("0123456789"), null);
+
+        try {
+            store.read(1, new FileContentStore.Reference(reference.getChecksum(), 5), 0, -1);
+            Assert.fail("Content not matching the checksum should not be read.");
+        } catch (RepositoryException expected) {
+            // the whole content does not match the checksum of the reference.
+        }
+    }
+
+    @Test
+    public void testLargeContent() throws Exception {
+        FileContentStore store = new FileContentStore(createRoot());
+        byte[] content = new byte[200 * 1024];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i % 251);
+        }
+        FileContentStore.Reference reference = store.write(1, new ByteArrayInputStream(content), null);
+
+        InputStream in = store.read(1, reference, 0, -1);
+        Assert.assertFalse(in instanceof ByteArrayInputStream, "Large content should not be copied to the heap.");
+        Assert.assertEquals(RepositoryUtils.getByteArray(in), content, "Large content incorrect.");
+
+        byte[] range = RepositoryUtils.getByteArray(store.read(1, reference, 1000, 100000));
+        Assert.assertEquals(range, Arrays.copyOfRange(content, 1000, 101000), "Range of large content incorrect.");
+
+        in = store.read(1, reference, 0, -1);
+        Assert.assertEquals(in.skip(150000), 150000);
+        Assert.assertEquals(in.read(), content[150000] & 0xFF, "Content after skipping incorrect.");
+        in.close();
+
+        in = store.read(1, new FileContentStore.Reference(reference.getChecksum(), content.length - 1), 0, -1);
+        try {
+            RepositoryUtils.getByteArray(in);
+            Assert.fail("Large content not matching the checksum should fail at the end of the stream.");
+        } catch (RepositoryException expected) {
+            // the whole content does not match the checksum of the reference.
+        }
+    }
+
+    @Test
+    public void testDatabaseContent() throws Exception {
+        Assert.assertEquals(read(FileContentStore.getContentStream(1, stream("0123456789"), 3, 2)), "34",
+                "Content stored in the database should be read as it is.");
+    }
+
+    @Test
+    public void testInvalidReferences() throws Exception {
+        FileContentStore store = new FileContentStore(createRoot());
+        FileContentStore.Reference reference = store.write(1, stream("0123456789"), null);
+        byte[] marker = Arrays.copyOf(reference.getBytes(), FileContentStore.getReferenceMarkerLength());
+
+        String[] invalidReferences = {"../../../etc/passwd:10", reference.getChecksum().toUpperCase() + ":10",
+                reference.getChecksum().substring(1) + ":10", reference.getChecksum() + ":-1",
+                reference.getChecksum()};
+
+        for (String invalidReference : invalidReferences) {
+            byte[] value = RepositoryUtils.encodeString(invalidReference);
+            byte[] storedContent = Arrays.copyOf(marker, marker.length + value.length);
+            System.arraycopy(value, 0, storedContent, marker.length, value.length);
+
+            try {
+                FileContentStore.getContentStream(1, new ByteArrayInputStream(storedContent), 0, 2);
+                Assert.fail("The reference " + invalidReference + " should be rejected as corrupt content.");
+            } catch (RepositoryException expected) {
+                // only the checksum and length of stored content are accepted.
+            }
+        }
+
+        try {
+            new FileContentStore.Reference("../" + reference.getChecksum().substring(3), 10);
+            Assert.fail("A checksum naming a file outside the store should be rejected.");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static File createRoot() throws Exception {
+        File root = File.createTempFile("content", "store");
+        Assert.assertTrue(root.delete() && root.mkdirs(), "Unable to create the store directory.");
+        root.deleteOnExit();
+        return root;
+    }
+
+    private static ByteArrayInputStream stream(String content) throws Exception {
+        return new ByteArrayInputStream(RepositoryUtils.encodeString(content));
+    }
+
+    private static String read(InputStream in) throws Exception {
+        return RepositoryUtils.decodeBytes(RepositoryUtils.getByteArray(in));
+    }
+}
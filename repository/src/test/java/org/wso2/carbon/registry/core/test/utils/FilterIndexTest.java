@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.repository.api.ResourcePath;
+import org.wso2.carbon.repository.api.handlers.Filter;
+import org.wso2.carbon.repository.api.handlers.HandlerContext;
+import org.wso2.carbon.repository.core.ResourceImpl;
+import org.wso2.carbon.repository.core.handlers.FilterIndex;
+import org.wso2.carbon.repository.core.handlers.builtin.MediaTypeMatcher;
+import org.wso2.carbon.repository.core.handlers.builtin.URLMatcher;
+
+public class FilterIndexTest extends BaseTestCase {
+
+    @Test
+    public void testLiteralPrefix() {
+        boolean[] exact = new boolean[1];
+
+        Assert.assertEquals(FilterIndex.getLiteralPrefix("/a/b", exact), "/a/b", "Literal pattern is its own prefix.");
+        Assert.assertTrue(exact[0], "Literal pattern should be exact.");
+
+        Assert.assertEquals(FilterIndex.getLiteralPrefix("^/a/b\\.xml$", exact), "/a/b.xml", "Escapes and anchors should be literal.");
+        Assert.assertTrue(exact[0], "Anchored literal pattern should be exact.");
+
+        Assert.assertEquals(FilterIndex.getLiteralPrefix("/a/.*", exact), "/a/", "Prefix should end before wildcard.");
+        Assert.assertFalse(exact[0], "Wildcard pattern should not be exact.");
+
+        Assert.assertEquals(FilterIndex.getLiteralPrefix("/ab?c", exact), "/a", "Quantified character should not be in prefix.");
+        Assert.assertEquals(FilterIndex.getLiteralPrefix("/a\\d+", exact), "/a", "Character class should end prefix.");
+        Assert.assertEquals(FilterIndex.getLiteralPrefix("(?i)/a", exact), "", "Group should end prefix.");
+        Assert.assertNull(FilterIndex.getLiteralPrefix("/a|/b", exact), "Alternation should have no prefix.");
+    }
+
+    @Test
+    public void testSelection() {
+        URLMatcher exact = new URLMatcher();
+        exact.setGetPattern("/a/b");
+        URLMatcher prefixed = new URLMatcher();
+        prefixed.setGetPattern("/a/.*");
+        URLMatcher other = new URLMatcher();
+        other.setGetPattern("/c/.*");
+        URLMatcher noPattern = new URLMatcher();
+        noPattern.setPutPattern("/a/b");
+        URLMatcher inverted = new URLMatcher();
+        inverted.setGetPattern("/c/.*");
+        inverted.setInvert("true");
+        MediaTypeMatcher text = new MediaTypeMatcher("text/plain");
+        MediaTypeMatcher xml = new MediaTypeMatcher("application/xml");
+
+        Map<Filter, Object> filters = new LinkedHashMap<Filter, Object>();
+        filters.put(xml, null);
+        filters.put(other, null);
+        filters.put(prefixed, null);
+        filters.put(noPattern, null);
+        filters.put(text, null);
+        filters.put(exact, null);
+        filters.put(inverted, null);
+
+        FilterIndex index = new FilterIndex(Filter.GET, filters);
+        HandlerContext context = new HandlerContext(null);
+        context.setResourcePath(new ResourcePath("/a/b"));
+
+        Assert.assertEquals(select(index, context), list(xml, prefixed, text, exact, inverted),
+                "Unknown media type should select all media type matchers.");
+
+        ResourceImpl resource = new ResourceImpl();
+        resource.setMediaType("text/plain");
+        context.setResource(resource);
+
+        Assert.assertEquals(select(index, context), list(prefixed, text, exact, inverted),
+                "Known media type should select matching media type matchers.");
+
+        context.setResourcePath(new ResourcePath("/c/d"));
+        Assert.assertEquals(select(index, context), list(other, text, inverted),
+                "Path should select matching URL matchers.");
+    }
+
+    private static List<Filter> select(FilterIndex index, HandlerContext context) {
+        List<Filter> selected = new ArrayList<Filter>();
+
+        for (Filter filter : index.select(context)) {
+            selected.add(filter);
+        }
+
+        return selected;
+    }
+
+    private static List<Filter> list(Filter... filters) {
+        List<Filter> list = new ArrayList<Filter>();
+
+        for (Filter filter : filters) {
+            list.add(filter);
+        }
+
+        return list;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.utils;
+
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.repository.api.Resource;
+import org.wso2.carbon.repository.api.ResourcePath;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.api.handlers.Filter;
+import org.wso2.carbon.repository.api.handlers.Handler;
+import org.wso2.carbon.repository.api.handlers.HandlerContext;
+import org.wso2.carbon.repository.core.ResourceImpl;
+import org.wso2.carbon.repository.core.handlers.HandlerManager;
+import org.wso2.carbon.repository.core.handlers.builtin.URLMatcher;
+import org.wso2.carbon.repository.core.statistics.HandlerStatistics;
+import org.wso2.carbon.repository.core.statistics.LatencyHistogram;
+
+public class HandlerStatisticsTest extends BaseTestCase {
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(histogram.getPercentile(50), 0L, "Empty histogram should have no percentile.");
+
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000);
+        }
+
+        Assert.assertEquals(histogram.getCount(), 100L, "All latencies should be counted.");
+        Assert.assertEquals(histogram.getMaxTime(), 100000L, "Largest latency should be kept.");
+        Assert.assertEquals(histogram.getMeanTime(), 50500L, "Mean should be exact.");
+
+        long median = histogram.getPercentile(50);
+        Assert.assertTrue(median >= 50000 && median < 100000, "Median should be within a factor of two.");
+        Assert.assertEquals(histogram.getPercentile(100), 100000L, "Percentile should not exceed the maximum.");
+    }
+
+    @Test
+    public void testHandlerTiming() throws RepositoryException {
+        URLMatcher filter = new URLMatcher();
+        filter.setGetPattern("/a.*");
+        Handler handler = new Handler() {
+            public Resource get(HandlerContext requestContext) throws RepositoryException {
+                return new ResourceImpl();
+            }
+        };
+
+        HandlerManager handlerManager = new HandlerManager();
+        handlerManager.setLifecyclePhase("user");
+        handlerManager.addHandler(new String[] {Filter.GET}, filter, handler);
+
+        HandlerContext context = new HandlerContext(null);
+        context.setResourcePath(new ResourcePath("/a/b"));
+
+        HandlerStatistics.reset();
+        handlerManager.get(context);
+        Assert.assertTrue(HandlerStatistics.getHistograms().isEmpty(), "Nothing should be timed when disabled.");
+
+        HandlerStatistics.setEnabled(true);
+        HandlerStatistics.setSampleInterval(1);
+
+        try {
+            handlerManager.get(context);
+            Map<HandlerStatistics.Key, LatencyHistogram> histograms = HandlerStatistics.getHistograms();
+
+            Assert.assertEquals(histograms.get(new HandlerStatistics.Key(Filter.GET, "user",
+                    HandlerStatistics.FILTER, URLMatcher.class.getName())).getCount(), 1L, "Filter should be timed.");
+            Assert.assertEquals(histograms.get(new HandlerStatistics.Key(Filter.GET, "user",
+                    HandlerStatistics.HANDLER, handler.getClass().getName())).getCount(), 1L, "Handler should be timed.");
+            Assert.assertEquals(histograms.get(new HandlerStatistics.Key(Filter.GET, "user",
+                    HandlerStatistics.PHASE, null)).getCount(), 1L, "Phase should be timed.");
+
+            Assert.assertEquals(HandlerStatistics.getSlowestInvocations().get(0).getPath(), "/a/b",
+                    "Slowest invocation should record the path.");
+            Assert.assertTrue(HandlerStatistics.getReport(10).contains(handler.getClass().getName()),
+                    "Report should list the handler.");
+        } finally {
+            HandlerStatistics.setEnabled(false);
+            HandlerStatistics.reset();
+        }
+    }
+}
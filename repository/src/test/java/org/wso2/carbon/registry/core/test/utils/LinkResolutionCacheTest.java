@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.utils;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.repository.core.caching.LinkResolutionCache;
+
+public class LinkResolutionCacheTest extends BaseTestCase {
+
+    @Test
+    public void testInvalidation() {
+        LinkResolutionCache cache = new LinkResolutionCache();
+        put(cache, 1, "/link/a", "/target/a");
+        put(cache, 1, "/link/b", "/target/b");
+        put(cache, 1, "/other/c", "/targets/c");
+        put(cache, 2, "/link/a", "/target/a");
+
+        Assert.assertNotNull(cache.get(1, "/link/a", "/target/a"), "Resolved target should be returned.");
+        Assert.assertNull(cache.get(1, "/link/a", "/moved/a"), "Entry of another target should not be returned.");
+
+        cache.invalidate(1, "/target/a", false);
+        Assert.assertNull(cache.get(1, "/link/a", "/target/a"), "Entry with written target should be dropped.");
+        Assert.assertNotNull(cache.get(1, "/link/b", "/target/b"), "Entry with other target should be kept.");
+
+        cache.invalidate(1, "/link", true);
+        Assert.assertNull(cache.get(1, "/link/b", "/target/b"), "Entry under removed link should be dropped.");
+
+        put(cache, 1, "/link/a", "/target/a");
+        cache.invalidate(1, "/target", true);
+        Assert.assertNull(cache.get(1, "/link/a", "/target/a"), "Entry with descendant target should be dropped.");
+        Assert.assertNotNull(cache.get(1, "/other/c", "/targets/c"), "Target with same prefix should be kept.");
+        Assert.assertNotNull(cache.get(2, "/link/a", "/target/a"), "Other tenant should be kept.");
+        cache.transactionEnded();
+    }
+
+    @Test
+    public void testStaleResolutions() {
+        LinkResolutionCache cache = new LinkResolutionCache();
+
+        long generation = cache.getGeneration(1);
+        cache.invalidate(1, "/target/a", false);
+        cache.put(1, "/link/a", new LinkResolutionCache.Entry("/target/a"), generation);
+        Assert.assertNull(cache.get(1, "/link/a", "/target/a"), "Target resolved before an invalidation should not be cached.");
+
+        put(cache, 1, "/link/a", "/target/a");
+        cache.transactionEnded();
+        Assert.assertNull(cache.get(1, "/link/a", "/target/a"), "Written target should be dropped when the transaction ends.");
+    }
+
+    @Test
+    public void testTargetIndex() {
+        LinkResolutionCache cache = new LinkResolutionCache(2);
+        put(cache, 1, "/link/a", "/target/a");
+        put(cache, 1, "/link/b", "/target/b");
+        put(cache, 1, "/link/c", "/target/a");
+        Assert.assertNull(cache.get(1, "/link/a", "/target/a"), "Least recently used entry should be evicted.");
+
+        // an entry resolved again to another target is no longer dropped by the old target.
+        put(cache, 1, "/link/b", "/target/x");
+        cache.invalidate(1, "/target/b", false);
+        Assert.assertNotNull(cache.get(1, "/link/b", "/target/x"), "Entry with the new target should be kept.");
+
+        cache.invalidate(1, "/target/a", false);
+        Assert.assertNull(cache.get(1, "/link/c", "/target/a"), "Entry with written target should be dropped.");
+
+        put(cache, 1, "/link/a", "/target/a");
+        Assert.assertNotNull(cache.get(1, "/link/a", "/target/a"), "Evicted path should be cached again.");
+        cache.invalidate(1, "/target/x", true);
+        Assert.assertNull(cache.get(1, "/link/b", "/target/x"), "Entry with written target should be dropped.");
+        Assert.assertNotNull(cache.get(1, "/link/a", "/target/a"), "Entry with other target should be kept.");
+        cache.transactionEnded();
+    }
+
+    private static void put(LinkResolutionCache cache, int tenantId, String path, String targetPath) {
+        cache.put(tenantId, path, new LinkResolutionCache.Entry(targetPath), cache.getGeneration(tenantId));
+    }
+}
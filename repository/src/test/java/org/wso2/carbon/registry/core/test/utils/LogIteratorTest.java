@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.repository.api.Activity;
+import org.wso2.carbon.repository.core.utils.LogCursor;
+import org.wso2.carbon.repository.core.utils.LogIterator;
+import org.wso2.carbon.repository.spi.dao.LogsDAO;
+
+public class LogIteratorTest extends BaseTestCase {
+
+    @Test
+    public void testPaging() throws Exception {
+        final List<Integer> pageStarts = new ArrayList<Integer>();
+        LogsDAO logsDAO = (LogsDAO) Proxy.newProxyInstance(LogsDAO.class.getClassLoader(),
+                new Class[] {LogsDAO.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        // serves logs with the ids 1 to 5 from the position of the cursor.
+                        LogCursor cursor = (LogCursor) args[6];
+                        int pageLen = (Integer) args[7];
+                        int start = (cursor.getLoggedTime() == null) ? 1 : cursor.getLogId() + 1;
+                        pageStarts.add(start);
+
+                        List<Activity> page = new ArrayList<Activity>();
+                        for (int id = start; id <= 5 && page.size() < pageLen; id++) {
+                            Activity activity = new Activity();
+                            activity.setActionData(Integer.toString(id));
+                            page.add(activity);
+                            cursor.moveTo(new Date(id), id);
+                        }
+                        return page.toArray(new Activity[page.size()]);
+                    }
+                });
+
+        LogIterator iterator = new LogIterator(logsDAO, null, Activity.ALL, null, null, null, true, 2, null);
+        StringBuilder ids = new StringBuilder();
+        while (iterator.hasNext()) {
+            ids.append(iterator.next().getActionData());
+        }
+
+        Assert.assertEquals(ids.toString(), "12345", "All logs should be read in order.");
+        Assert.assertEquals(pageStarts.toString(), "[1, 3, 5]", "Each page should start after the last log read.");
+        Assert.assertFalse(iterator.hasNext(), "No page should be read after the last page.");
+        Assert.assertEquals(pageStarts.size(), 3, "No page should be read after the last page.");
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.utils;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.repository.core.config.LogStorageConfiguration;
+
+public class LogStorageConfigurationTest extends BaseTestCase {
+
+    private static Date utc(String time) throws Exception {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.parse(time);
+    }
+
+    @Test
+    public void testMonthlyPartitions() throws Exception {
+        LogStorageConfiguration configuration = new LogStorageConfiguration();
+        configuration.setPartitionPeriod(LogStorageConfiguration.PERIOD_MONTH);
+
+        Date start = configuration.getPartitionStart(utc("2016-02-29 23:59"));
+        Assert.assertEquals(start, utc("2016-02-01 00:00"), "A month should start on its first day.");
+        Assert.assertEquals(configuration.getPartitionEnd(start), utc("2016-03-01 00:00"),
+                "A month should end where the next month starts.");
+        Assert.assertEquals(configuration.getPartitionTable(start), "REG_LOG_P201602",
+                "A month should be named by its year and month.");
+
+        Assert.assertEquals(configuration.parsePartitionTable("REG_LOG_P201602"), start,
+                "A table name should give the start of its month.");
+        Assert.assertEquals(configuration.parsePartitionTable("reg_log_p201602"), start,
+                "Table names in lower case should be recognized.");
+        Assert.assertNull(configuration.parsePartitionTable("REG_LOG_P20160201"),
+                "A daily table should not be taken as a monthly table.");
+        Assert.assertNull(configuration.parsePartitionTable("REG_LOG_P201613"), "Invalid months should be ignored.");
+        Assert.assertNull(configuration.parsePartitionTable("REG_LOG_ROLLUP"), "Other tables should be ignored.");
+    }
+
+    @Test
+    public void testDailyPartitions() throws Exception {
+        LogStorageConfiguration configuration = new LogStorageConfiguration();
+        configuration.setPartitionPeriod(LogStorageConfiguration.PERIOD_DAY);
+
+        Date start = configuration.getPartitionStart(utc("2016-12-31 13:45"));
+        Assert.assertEquals(start, utc("2016-12-31 00:00"), "A day should start at midnight.");
+        Assert.assertEquals(configuration.getPartitionEnd(start), utc("2017-01-01 00:00"),
+                "A day should end where the next day starts.");
+        Assert.assertEquals(configuration.getPartitionTable(start), "REG_LOG_P20161231",
+                "A day should be named by its date.");
+        Assert.assertEquals(configuration.parsePartitionTable("REG_LOG_P20161231"), start,
+                "A table name should give the start of its day.");
+    }
+
+    @Test
+    public void testRollupPeriods() throws Exception {
+        Assert.assertEquals(LogStorageConfiguration.getHourStart(utc("2016-05-04 10:59")), utc("2016-05-04 10:00"),
+                "Logs should be counted in the hour they were written in.");
+        Assert.assertEquals(LogStorageConfiguration.getDayStart(utc("2016-05-04 10:59")), utc("2016-05-04 00:00"),
+                "Logs should be counted in the day they were written in.");
+    }
+
+    @Test
+    public void testInvalidPeriod() {
+        LogStorageConfiguration configuration = new LogStorageConfiguration();
+        Assert.assertFalse(configuration.isPartitioned(), "Logs should not be partitioned by default.");
+        Assert.assertNull(configuration.parsePartitionTable("REG_LOG_P201602"),
+                "No table should be a partition table when logs are not partitioned.");
+
+        try {
+            configuration.setPartitionPeriod("week");
+            Assert.fail("Only days and months should be accepted as partition periods.");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
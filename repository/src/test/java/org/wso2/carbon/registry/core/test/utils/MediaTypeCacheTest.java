@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.utils;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.repository.core.caching.MediaTypeCache;
+
+public class MediaTypeCacheTest extends BaseTestCase {
+
+    @Test
+    public void testInvalidation() {
+        MediaTypeCache cache = new MediaTypeCache();
+        put(cache, 1, "/a", true);
+        put(cache, 1, "/a/b", false);
+        put(cache, 1, "/ab", false);
+        put(cache, 2, "/a", true);
+
+        Assert.assertEquals(cache.get(1, "/a/b").getMediaType(), "text/plain", "Cached media type should be returned.");
+        Assert.assertTrue(cache.get(1, "/a").isCollection(), "Collection flag should be cached.");
+
+        cache.invalidate(1, "/a", false);
+        Assert.assertNull(cache.get(1, "/a"), "Invalidated path should be dropped.");
+        Assert.assertNotNull(cache.get(1, "/a/b"), "Descendant should be kept.");
+
+        put(cache, 1, "/a", true);
+        cache.invalidate(1, "/a", true);
+        Assert.assertNull(cache.get(1, "/a/b"), "Descendant should be dropped.");
+        Assert.assertNotNull(cache.get(1, "/ab"), "Sibling with same prefix should be kept.");
+        Assert.assertNotNull(cache.get(2, "/a"), "Other tenant should be kept.");
+        cache.transactionEnded();
+    }
+
+    @Test
+    public void testStaleReads() {
+        MediaTypeCache cache = new MediaTypeCache();
+
+        long generation = cache.getGeneration(1);
+        cache.invalidate(1, "/a", false);
+        cache.put(1, "/a", new MediaTypeCache.Entry("text/plain", false), generation);
+        Assert.assertNull(cache.get(1, "/a"), "Entry read before an invalidation should not be cached.");
+
+        put(cache, 1, "/a", false);
+        cache.transactionEnded();
+        Assert.assertNull(cache.get(1, "/a"), "Written path should be dropped when the transaction ends.");
+    }
+
+    @Test
+    public void testCapacity() {
+        MediaTypeCache cache = new MediaTypeCache(2);
+        put(cache, 1, "/a", false);
+        put(cache, 1, "/b", false);
+        cache.get(1, "/a");
+        put(cache, 1, "/c", false);
+
+        Assert.assertNotNull(cache.get(1, "/a"), "Recently used entry should be kept.");
+        Assert.assertNull(cache.get(1, "/b"), "Least recently used entry should be evicted.");
+    }
+
+    private static void put(MediaTypeCache cache, int tenantId, String path, boolean collection) {
+        cache.put(tenantId, path, new MediaTypeCache.Entry("text/plain", collection), cache.getGeneration(tenantId));
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.utils;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.core.utils.MediaTypesUtils;
+
+public class MediaTypesUtilsTest extends BaseTestCase {
+
+    @Test
+    public void testGetMediaType() throws RepositoryException {
+        String mappings = MediaTypesUtils.getResourceMediaTypes();
+
+        try {
+            MediaTypesUtils.setResourceMediaTypes("sxml:application/sxml,xml:application/xml,txt:text/plain,xml:text/xml");
+
+            Assert.assertEquals(MediaTypesUtils.getMediaType("a.xml"), "application/xml", "Extension should be mapped.");
+            Assert.assertEquals(MediaTypesUtils.getMediaType("a.XML"), "application/xml", "Extension should be case insensitive.");
+            Assert.assertEquals(MediaTypesUtils.getMediaType("a.sxml"), "application/sxml", "Longer extension should be mapped.");
+            Assert.assertNull(MediaTypesUtils.getMediaType("a.ml"), "Suffix of an extension should not be mapped.");
+            Assert.assertNull(MediaTypesUtils.getMediaType("a"), "Name without extension should not be mapped.");
+
+            MediaTypesUtils.setResourceMediaTypes("xml:text/xml");
+            Assert.assertEquals(MediaTypesUtils.getMediaType("a.xml"), "text/xml", "Changed mappings should be used.");
+        } finally {
+            MediaTypesUtils.setResourceMediaTypes(mappings);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.utils;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.repository.core.caching.PathTree;
+
+public class PathTreeTest extends BaseTestCase {
+
+    @Test
+    public void testPathToIdAndBack() {
+        PathTree pathTree = new PathTree();
+        pathTree.put("/", 1);
+        pathTree.put("/_system", 2);
+        pathTree.put("/_system/config", 3);
+        pathTree.put("/_system/local", 4);
+
+        Assert.assertEquals(pathTree.getPathID("/"), 1, "Root path id incorrect.");
+        Assert.assertEquals(pathTree.getPathID("/_system/config"), 3, "Path id incorrect.");
+        Assert.assertEquals(pathTree.getPath(4), "/_system/local", "Path incorrect.");
+        Assert.assertEquals(pathTree.getPath(1), "/", "Root path incorrect.");
+        Assert.assertEquals(pathTree.getPathID("/_system/governance"), PathTree.UNKNOWN,
+                "Unknown path should not resolve.");
+        Assert.assertEquals(pathTree.getPathID("/_system/config/"), PathTree.UNKNOWN,
+                "Non canonical path should not resolve.");
+    }
+
+    @Test
+    public void testIntermediatePaths() {
+        PathTree pathTree = new PathTree();
+        pathTree.put("/a/b/c", 30);
+        pathTree.put("/a/b/d", 40);
+        pathTree.put("/a", 10);
+
+        Assert.assertEquals(pathTree.getPathID("/a/b"), PathTree.UNKNOWN,
+                "Intermediate path should not have an id until it is resolved.");
+        Assert.assertEquals(pathTree.getPath(30), "/a/b/c", "Path incorrect.");
+
+        pathTree.put("/a/b", 20);
+        Assert.assertEquals(pathTree.getPathID("/a/b"), 20, "Path id incorrect.");
+        Assert.assertEquals(pathTree.getPath(40), "/a/b/d", "Path incorrect.");
+    }
+
+    @Test
+    public void testBoundedSize() {
+        PathTree pathTree = new PathTree(100);
+        for (int i = 1; i <= 250; i++) {
+            pathTree.put("/bounded/" + i, i + 1);
+            Assert.assertTrue(pathTree.size() <= 102, "The tree should not grow beyond its bound.");
+        }
+
+        // the tree was cleared when full, and keeps the paths added since.
+        Assert.assertEquals(pathTree.getPathID("/bounded/250"), 251, "Recent path should resolve.");
+        Assert.assertEquals(pathTree.getPathID("/bounded/1"), PathTree.UNKNOWN, "Old path should be dropped.");
+        Assert.assertNull(pathTree.getPath(2), "Old path id should be dropped.");
+    }
+
+    @Test
+    public void testBoundedTrees() {
+        PathTree first = PathTree.getPathTree("testBoundedTrees", 0);
+        first.put("/a", 1);
+
+        for (int tenantId = 1; tenantId <= PathTree.MAX_PATH_TREES; tenantId++) {
+            PathTree.getPathTree("testBoundedTrees", tenantId);
+        }
+
+        Assert.assertNotSame(PathTree.getPathTree("testBoundedTrees", 0), first,
+                "The least recently used tree should be dropped.");
+
+        for (int tenantId = 0; tenantId <= PathTree.MAX_PATH_TREES; tenantId++) {
+            PathTree.removePathTree("testBoundedTrees", tenantId);
+        }
+    }
+
+    @Test
+    public void testRemoveSubtree() {
+        PathTree pathTree = new PathTree();
+        for (int i = 1; i <= 500; i++) {
+            pathTree.put("/x/" + i, i + 1);
+            pathTree.put("/x/" + i + "/y", i + 1000);
+        }
+        pathTree.put("/x", 1);
+        Assert.assertEquals(pathTree.size(), 1002, "Tree size incorrect.");
+
+        pathTree.remove("/x/7");
+        Assert.assertEquals(pathTree.getPathID("/x/7"), PathTree.UNKNOWN, "Removed path resolved.");
+        Assert.assertNull(pathTree.getPath(1007), "Removed descendant resolved.");
+        Assert.assertEquals(pathTree.getPathID("/x/8/y"), 1008, "Sibling subtree was affected.");
+        Assert.assertEquals(pathTree.size(), 1000, "Removed nodes counted.");
+
+        pathTree.put("/x/7", 8);
+        Assert.assertEquals(pathTree.getPath(8), "/x/7", "Re-added path incorrect.");
+    }
+}
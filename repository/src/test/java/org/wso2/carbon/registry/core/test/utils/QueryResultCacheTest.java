@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.repository.core.caching.QueryResultCache;
+
+public class QueryResultCacheTest extends BaseTestCase {
+
+    private static final String SQL = "SELECT R.REG_PATH_ID, R.REG_NAME FROM REG_RESOURCE R, REG_RESOURCE_TAG RT " +
+            "WHERE R.REG_VERSION=RT.REG_VERSION AND RT.REG_TAG_ID=?";
+
+    @Test
+    public void testReadTables() {
+        Set<String> tables = QueryResultCache.getReadTables(SQL);
+        Assert.assertNotNull(tables, "Query of repository tables should be cacheable.");
+        Assert.assertTrue(tables.contains("REG_RESOURCE"), "Table in FROM clause should be read.");
+        Assert.assertTrue(tables.contains("REG_RESOURCE_TAG"), "Table after comma should be read.");
+
+        Assert.assertTrue(QueryResultCache.getReadTables("select P.REG_PATH_VALUE from REG_PATH P join " +
+                "REG_RESOURCE R on P.REG_PATH_ID=R.REG_PATH_ID").contains("REG_PATH"),
+                "Lower case query should be parsed.");
+        Assert.assertNull(QueryResultCache.getReadTables("SELECT REG_NAME FROM REG_RESOURCE, UM_USER"),
+                "Query of other tables should not be cacheable.");
+        Assert.assertNull(QueryResultCache.getReadTables("DELETE FROM REG_RESOURCE"),
+                "Write should not be cacheable.");
+    }
+
+    @Test
+    public void testInvalidation() {
+        QueryResultCache cache = new QueryResultCache(10);
+        QueryResultCache.Key key = key(1, "a");
+        QueryResultCache.Key otherTenantKey = key(2, "a");
+        put(cache, key);
+        put(cache, 2, otherTenantKey);
+
+        Assert.assertEquals(cache.get(key(1, "a"))[0], "/a", "Cached results should be returned.");
+        Assert.assertNull(cache.get(key(1, "b")), "Results of other parameters should not be returned.");
+
+        cache.statementPrepared(1, "SELECT REG_NAME FROM REG_RESOURCE");
+        cache.statementPrepared(1, "INSERT INTO REG_LOG (REG_PATH) VALUES (?)");
+        Assert.assertNotNull(cache.get(key), "Write to other table should keep results.");
+
+        cache.statementPrepared(1, "UPDATE REG_RESOURCE_TAG SET REG_TAG_ID=?");
+        Assert.assertNull(cache.get(key), "Write to read table should drop results.");
+        Assert.assertNotNull(cache.get(otherTenantKey), "Results of other tenant should be kept.");
+        cache.transactionEnded();
+
+        put(cache, key);
+        cache.statementPrepared(1, "{call REG_CLEANUP()}");
+        Assert.assertNull(cache.get(key), "Unknown statement should drop results of all tables.");
+        cache.transactionEnded();
+    }
+
+    @Test
+    public void testUntrackedWrites() {
+        QueryResultCache cache = new QueryResultCache(10);
+        QueryResultCache.Key key = key(1, "a");
+        QueryResultCache.Key otherTenantKey = key(2, "a");
+
+        put(cache, key);
+        cache.statementCreated(1);
+        Assert.assertNull(cache.get(key), "Statement of unknown SQL should drop results of all tables.");
+        cache.transactionEnded();
+
+        // writes on connections not managed by the repository are reported by their writers.
+        put(cache, key);
+        put(cache, 2, otherTenantKey);
+        cache.tableWritten(1, "REG_LOG");
+        Assert.assertNotNull(cache.get(key), "Write to other table should keep results.");
+        cache.tableWritten(1, "REG_RESOURCE");
+        Assert.assertNull(cache.get(key), "Reported write should drop results.");
+        Assert.assertNotNull(cache.get(otherTenantKey), "Results of other tenant should be kept.");
+
+        put(cache, key);
+        Assert.assertNotNull(cache.get(key), "Results read after the write should be cached.");
+        cache.tableWritten("REG_RESOURCE_TAG");
+        Assert.assertNull(cache.get(key), "Write reported for all tenants should drop results.");
+        Assert.assertNull(cache.get(otherTenantKey), "Write reported for all tenants should drop results.");
+    }
+
+    @Test
+    public void testStaleResults() {
+        QueryResultCache cache = new QueryResultCache(10);
+        QueryResultCache.Key key = key(1, "a");
+
+        QueryResultCache.Stamp stamp = cache.getStamp(1, QueryResultCache.getReadTables(SQL));
+        cache.invalidate(1, "REG_RESOURCE");
+        cache.transactionEnded();
+        cache.put(key, new String[] {"/a"}, stamp);
+        Assert.assertNull(cache.get(key), "Results read before a write should not be cached.");
+
+        cache.invalidate(1, "REG_LOG");
+        put(cache, key);
+        Assert.assertNull(cache.get(key), "Results read with uncommitted writes should not be cached.");
+        cache.transactionEnded();
+
+        put(cache, key);
+        cache.invalidate(1, "REG_RESOURCE");
+        cache.transactionEnded();
+        Assert.assertNull(cache.get(key), "Written table should drop results when the transaction ends.");
+    }
+
+    @Test
+    public void testCapacity() {
+        QueryResultCache cache = new QueryResultCache(2);
+        put(cache, key(1, "a"));
+        put(cache, key(1, "b"));
+        put(cache, key(1, "c"));
+
+        Assert.assertNull(cache.get(key(1, "a")), "Least recently used results should be evicted.");
+        Assert.assertNotNull(cache.get(key(1, "c")), "Recent results should be kept.");
+    }
+
+    private static QueryResultCache.Key key(int tenantId, String tag) {
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put("1", tag);
+        return new QueryResultCache.Key(tenantId, "/queries/tagged", 1, SQL, parameters);
+    }
+
+    private static void put(QueryResultCache cache, QueryResultCache.Key key) {
+        put(cache, 1, key);
+    }
+
+    private static void put(QueryResultCache cache, int tenantId, QueryResultCache.Key key) {
+        cache.put(key, new String[] {"/a"}, cache.getStamp(tenantId, QueryResultCache.getReadTables(SQL)));
+    }
+}
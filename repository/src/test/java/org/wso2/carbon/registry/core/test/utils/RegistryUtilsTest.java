@@ -16,9 +16,12 @@
 
 package org.wso2.carbon.registry.core.test.utils;
 
+import java.io.ByteArrayInputStream;
+
 import org.testng.Assert;
 import org.testng.annotations.Test;
 import org.wso2.carbon.repository.api.utils.RepositoryUtils;
+import org.wso2.carbon.repository.core.ResourceImpl;
 
 public class RegistryUtilsTest extends BaseTestCase {
 
@@ -31,4 +34,28 @@ public class RegistryUtilsTest extends BaseTestCase {
     	Assert.assertEquals("a", RepositoryUtils.getResourceName("/a/"), "Resource name incorrect.");
     	Assert.assertEquals("b", RepositoryUtils.getResourceName("/a/b/"), "Resource name incorrect.");
     }
+
+    @Test
+    public void testGetMemoryStreamRange() throws Exception {
+        byte[] content = RepositoryUtils.encodeString("0123456789");
+
+        Assert.assertEquals(RepositoryUtils.decodeBytes(RepositoryUtils.getByteArray(
+                RepositoryUtils.getMemoryStream(new ByteArrayInputStream(content), 2, 3))), "234", "Range incorrect.");
+        Assert.assertEquals(RepositoryUtils.decodeBytes(RepositoryUtils.getByteArray(
+                RepositoryUtils.getMemoryStream(new ByteArrayInputStream(content), 7, -1))), "789", "Range to the end incorrect.");
+        Assert.assertEquals(RepositoryUtils.decodeBytes(RepositoryUtils.getByteArray(
+                RepositoryUtils.getMemoryStream(new ByteArrayInputStream(content), 8, 10))), "89", "Range past the end incorrect.");
+        Assert.assertEquals(RepositoryUtils.getByteArray(
+                RepositoryUtils.getMemoryStream(new ByteArrayInputStream(content), 20, 5)).length, 0, "Range beyond the end should be empty.");
+    }
+
+    @Test
+    public void testResourceContentRange() throws Exception {
+        ResourceImpl resource = new ResourceImpl();
+        resource.setContent("0123456789");
+
+        Assert.assertEquals(RepositoryUtils.decodeBytes(RepositoryUtils.getByteArray(
+                resource.getContentStream(4, 2))), "45", "Range of the content incorrect.");
+        Assert.assertEquals(resource.getContent(), "0123456789", "Content should not change.");
+    }
 }
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+import org.wso2.carbon.repository.api.Repository;
+import org.wso2.carbon.repository.api.Resource;
+import org.wso2.carbon.repository.api.exceptions.RepositoryException;
+import org.wso2.carbon.repository.api.utils.RepositoryUtils;
+import org.wso2.carbon.repository.core.AsyncRepository;
+import org.wso2.carbon.repository.core.ResourceImporter;
+import org.wso2.carbon.repository.core.content.FileContentStore;
+import org.wso2.carbon.repository.core.utils.URLFetcher;
+
+public class ResourceImporterTest extends BaseTestCase {
+
+    protected static Repository registry = null;
+
+    @BeforeTest
+    public void setUp() {
+        super.setUp();
+
+        try {
+            RealmUnawareRegistryCoreServiceComponent comp = new RealmUnawareRegistryCoreServiceComponent();
+            comp.registerBuiltInHandlers(embeddedRegistryService);
+
+            registry = embeddedRegistryService.getRepository("admin");
+        } catch (RepositoryException e) {
+            Assert.fail("Failed to initialize the registry. Caused by: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void testImportThroughRepository() throws Exception {
+        StubURLFetcher urlFetcher = new StubURLFetcher();
+        URLFetcher previousFetcher = ctx.getURLFetcher();
+        FileContentStore previousStore = ctx.getContentStore();
+        ctx.setURLFetcher(urlFetcher);
+
+        File root = File.createTempFile("import", "store");
+        Assert.assertTrue(root.delete() && root.mkdirs(), "Unable to create the store directory.");
+        root.deleteOnExit();
+
+        AsyncRepository asyncRepository = new AsyncRepository(registry, 2);
+        try {
+            // the content is read into the resource when there is no content store.
+            ctx.setContentStore(null);
+            importAndCheck(asyncRepository, "/testImport/db", urlFetcher);
+            Assert.assertEquals(countFiles(root), 0);
+
+            // and copied from the connection into the store when there is one.
+            ctx.setContentStore(new FileContentStore(root));
+            importAndCheck(asyncRepository, "/testImport/store", urlFetcher);
+            Assert.assertTrue(countFiles(root) > 0, "The imported content should be kept in the store.");
+        } finally {
+            asyncRepository.shutdown();
+            ctx.setURLFetcher(previousFetcher);
+            ctx.setContentStore(previousStore);
+        }
+    }
+
+    private static void importAndCheck(AsyncRepository asyncRepository, String path, StubURLFetcher urlFetcher)
+            throws Exception {
+        List<ResourceImporter.Item> items = new ArrayList<ResourceImporter.Item>();
+        for (int i = 0; i < 3; i++) {
+            items.add(new ResourceImporter.Item(path + "/r" + i, "http://example.org" + path + "/r" + i, null));
+        }
+        ResourceImporter.Item missing = new ResourceImporter.Item(path + "/missing",
+                "http://example.org" + path + "/missing", null);
+        items.add(missing);
+
+        ResourceImporter.Progress progress = new ResourceImporter(asyncRepository, 1, 10).importResources(items, null);
+        Assert.assertEquals(progress.getImported(), 3);
+        Assert.assertEquals(progress.getFailed(), 1, "The content that can not be fetched should fail.");
+        Assert.assertNotNull(missing.getError());
+
+        for (int i = 0; i < 3; i++) {
+            String url = "http://example.org" + path + "/r" + i;
+            Assert.assertTrue(urlFetcher.fetched.contains(url), "The content should be fetched through the stub.");
+
+            Resource r = registry.get(path + "/r" + i);
+            Assert.assertEquals(r.getMediaType(), "text/plain", "The media type should come from the connection.");
+            Assert.assertEquals(RepositoryUtils.decodeBytes((byte[]) r.getContent()), StubURLFetcher.getContent(url));
+        }
+        Assert.assertFalse(registry.resourceExists(path + "/missing"));
+    }
+
+    private static int countFiles(File directory) {
+        int count = 0;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                count += file.isDirectory() ? countFiles(file) : 1;
+            }
+        }
+        return count;
+    }
+
+    // Serves the content of any URL from memory, failing for URLs ending with "missing".
+    private static class StubURLFetcher implements URLFetcher {
+
+        private final Set<String> fetched = Collections.synchronizedSet(new HashSet<String>());
+
+        private static String getContent(String url) {
+            return "content of " + url;
+        }
+
+        public URLConnection openConnection(final URL url) throws IOException {
+            fetched.add(url.toString());
+
+            return new URLConnection(url) {
+                public void connect() {
+                }
+
+                public InputStream getInputStream() throws IOException {
+                    if (url.getPath().endsWith("missing")) {
+                        throw new FileNotFoundException(url.toString());
+                    }
+                    return new ByteArrayInputStream(RepositoryUtils.encodeString(StubURLFetcher.getContent(url.toString())));
+                }
+
+                public String getContentType() {
+                    return "text/plain";
+                }
+            };
+        }
+    }
+
+    @Test
+    public void testImportResources() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+        final ConcurrentHashMap<String, Boolean> failedOnce = new ConcurrentHashMap<String, Boolean>();
+
+        Repository repository = (Repository) Proxy.newProxyInstance(Repository.class.getClassLoader(),
+                new Class[] {Repository.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (!method.getName().equals("importResource")) {
+                            return null;
+                        }
+
+                        // the source URL tells how the import behaves.
+                        String path = (String) args[0];
+                        String sourceURL = (String) args[1];
+                        int current = running.incrementAndGet();
+                        try {
+                            int highest;
+                            while ((highest = peak.get()) < current && !peak.compareAndSet(highest, current)) {
+                            }
+                            Thread.sleep(20);
+
+                            if (sourceURL.endsWith("flaky") && failedOnce.putIfAbsent(path, true) == null) {
+                                throw new RepositoryException("Failed to read " + sourceURL,
+                                        new IOException("Connection reset"));
+                            }
+                            if (sourceURL.endsWith("denied")) {
+                                throw new RepositoryException("Access denied for " + path);
+                            }
+                            return path;
+                        } finally {
+                            running.decrementAndGet();
+                        }
+                    }
+                });
+
+        List<ResourceImporter.Item> items = new ArrayList<ResourceImporter.Item>();
+        for (int i = 0; i < 6; i++) {
+            items.add(new ResourceImporter.Item("/test/r" + i, "http://example.org/r" + i, null));
+        }
+        ResourceImporter.Item flaky = new ResourceImporter.Item("/test/flaky", "http://example.org/flaky", null);
+        ResourceImporter.Item denied = new ResourceImporter.Item("/test/denied", "http://example.org/denied", null);
+        items.add(flaky);
+        items.add(denied);
+
+        final List<ResourceImporter.Item> completed = new ArrayList<ResourceImporter.Item>();
+        AsyncRepository asyncRepository = new AsyncRepository(repository, 2);
+        try {
+            ResourceImporter.Progress progress = new ResourceImporter(asyncRepository, 3, 10).importResources(items,
+                    new ResourceImporter.ProgressListener() {
+                        public void itemCompleted(ResourceImporter.Item item, ResourceImporter.Progress progress) {
+                            synchronized (completed) {
+                                completed.add(item);
+                            }
+                        }
+                    });
+
+            Assert.assertTrue(progress.isCompleted(), "All items should have completed.");
+            Assert.assertEquals(progress.getImported(), 7, "All but the denied item should have been imported.");
+            Assert.assertEquals(progress.getFailed(), 1, "The denied item should have failed.");
+            Assert.assertEquals(progress.getRetries(), 1, "Only the failed read should have been retried.");
+            Assert.assertEquals(completed.size(), items.size(), "The listener should receive every item.");
+            Assert.assertTrue(peak.get() <= 2, "No more imports than allowed should run at once: " + peak.get());
+        } finally {
+            asyncRepository.shutdown();
+        }
+
+        Assert.assertEquals(flaky.getAttempts(), 2, "The failed read should have succeeded on its retry.");
+        Assert.assertEquals(flaky.getImportedPath(), "/test/flaky");
+        Assert.assertNull(flaky.getError(), "A retried item that succeeded should not keep its error.");
+        Assert.assertEquals(denied.getAttempts(), 1, "Failures other than reads should not be retried.");
+        Assert.assertNotNull(denied.getError(), "The error of a failed item should be kept.");
+        Assert.assertNull(denied.getImportedPath());
+    }
+}
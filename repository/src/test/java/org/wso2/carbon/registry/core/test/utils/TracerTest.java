@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.repository.core.CurrentContext;
+import org.wso2.carbon.repository.core.tracing.FileSpanExporter;
+import org.wso2.carbon.repository.core.tracing.Span;
+import org.wso2.carbon.repository.core.tracing.SpanExporter;
+import org.wso2.carbon.repository.core.tracing.Tracer;
+
+public class TracerTest extends BaseTestCase {
+
+    @Test
+    public void testSampledTrace() {
+        final List<Span> exported = new ArrayList<Span>();
+        Tracer.setExporter(new SpanExporter() {
+            public void export(List<Span> spans) {
+                exported.addAll(spans);
+            }
+        });
+        Tracer.setEnabled(true);
+        Tracer.setSampleRatio(1);
+
+        try {
+            Tracer.beginOperation("put");
+            Span root = CurrentContext.getSpan();
+            Tracer.beginOperation("get");
+            Span statement = Tracer.startStatement("SELECT REG_PATH_ID FROM REG_PATH");
+            Tracer.end(statement);
+            Tracer.endOperation();
+            Assert.assertTrue(exported.isEmpty(), "Spans should be exported when the root span ends.");
+            Tracer.endOperation();
+
+            Assert.assertNull(CurrentContext.getSpan(), "Span stack should be empty.");
+            Assert.assertEquals(exported.size(), 3, "All spans of the trace should be exported.");
+            Span nested = exported.get(1);
+            Assert.assertEquals(exported.get(0).getParentSpanId(), nested.getSpanId(), "Statement should be a child of the nested operation.");
+            Assert.assertEquals(nested.getParentSpanId(), root.getSpanId(), "Nested operation should be a child of the root.");
+            Assert.assertEquals(exported.get(0).getTraceId(), root.getTraceId(), "Spans should share the trace.");
+            Assert.assertTrue(root.getEndTime() >= root.getStartTime(), "Root span should be ended.");
+
+            String json = FileSpanExporter.toJson(exported);
+            Assert.assertTrue(json.startsWith("{\"resourceSpans\":[{"), "JSON should hold resource spans.");
+            Assert.assertTrue(json.contains("\"traceId\":\"" + root.getTraceId() + "\""), "JSON should hold the trace id.");
+            Assert.assertTrue(json.contains("\"db.statement\""), "JSON should hold the statement attribute.");
+        } finally {
+            Tracer.setEnabled(false);
+            Tracer.setExporter(null);
+        }
+    }
+
+    @Test
+    public void testUnsampledTrace() {
+        final List<Span> exported = new ArrayList<Span>();
+        Tracer.setExporter(new SpanExporter() {
+            public void export(List<Span> spans) {
+                exported.addAll(spans);
+            }
+        });
+        Tracer.setEnabled(true);
+        Tracer.setSampleRatio(0);
+
+        try {
+            Tracer.beginOperation("put");
+            Assert.assertFalse(Tracer.isRecording(), "Unsampled trace should not record.");
+            Tracer.beginOperation("get");
+            Assert.assertNull(Tracer.startStatement("SELECT 1"), "Unsampled trace should not have statement spans.");
+            Tracer.endOperation();
+            Tracer.endOperation();
+
+            Assert.assertNull(CurrentContext.getSpan(), "Span stack should be empty.");
+            Assert.assertTrue(exported.isEmpty(), "Unsampled trace should not be exported.");
+        } finally {
+            Tracer.setEnabled(false);
+            Tracer.setExporter(null);
+        }
+    }
+}
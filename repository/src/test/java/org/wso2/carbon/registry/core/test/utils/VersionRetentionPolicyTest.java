@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2008, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.registry.core.test.utils;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.repository.core.config.VersionRetentionPolicy;
+
+public class VersionRetentionPolicyTest extends BaseTestCase {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Test
+    public void testMatching() {
+        VersionRetentionPolicy policy = new VersionRetentionPolicy();
+        policy.setPathPrefix("/_system/governance");
+
+        Assert.assertTrue(policy.matches("/_system/governance", null), "Prefix itself should match.");
+        Assert.assertTrue(policy.matches("/_system/governance/a/b", "text/plain"), "Descendant should match.");
+        Assert.assertFalse(policy.matches("/_system/governance2", null), "Sibling with same prefix should not match.");
+
+        policy.setMediaType("application/wsdl+xml");
+        Assert.assertTrue(policy.matches("/_system/governance/a.wsdl", "application/wsdl+xml"),
+                "Matching media type should match.");
+        Assert.assertFalse(policy.matches("/_system/governance/a.txt", "text/plain"),
+                "Other media type should not match.");
+
+        Assert.assertTrue(new VersionRetentionPolicy().matches("/a", null), "Policy without filters should match all.");
+    }
+
+    @Test
+    public void testExpiry() {
+        long now = 100 * DAY;
+
+        VersionRetentionPolicy keepLast = new VersionRetentionPolicy();
+        keepLast.setKeepLast(2);
+        Assert.assertFalse(keepLast.isExpired(1, 0, now), "Second most recent snapshot should be kept.");
+        Assert.assertTrue(keepLast.isExpired(2, now, now), "Third most recent snapshot should expire.");
+
+        VersionRetentionPolicy keepNewer = new VersionRetentionPolicy();
+        keepNewer.setKeepNewerThan(30 * DAY);
+        Assert.assertFalse(keepNewer.isExpired(10, now - DAY, now), "Recent snapshot should be kept.");
+        Assert.assertTrue(keepNewer.isExpired(0, now - 31 * DAY, now), "Old snapshot should expire.");
+        Assert.assertFalse(keepNewer.isExpired(10, -1, now), "Snapshot of unknown age should be kept.");
+
+        VersionRetentionPolicy both = new VersionRetentionPolicy();
+        both.setKeepLast(2);
+        both.setKeepNewerThan(30 * DAY);
+        Assert.assertFalse(both.isExpired(0, now - 31 * DAY, now), "Old snapshot among the last two should be kept.");
+        Assert.assertFalse(both.isExpired(5, now - DAY, now), "Recent snapshot beyond the last two should be kept.");
+        Assert.assertTrue(both.isExpired(5, now - 31 * DAY, now), "Old snapshot beyond the last two should expire.");
+
+        Assert.assertFalse(new VersionRetentionPolicy().isExpired(100, 0, now), "Policy without limits keeps all.");
+    }
+}